@@ -0,0 +1,84 @@
+package com.example.apigateway.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.apigateway.config.jwt.JwtTokenProvider;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Chi phí xác thực JWT ở gateway. filterPath lặp lại đúng các lần gọi của
+ * JwtAuthenticationFilter (mỗi lần gọi parse + verify lại token).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "mySecretKeyForJwtTokenThatShouldBeAtLeast256BitsLongToEnsureSecurityAndProperFunctioning";
+
+    private JwtTokenProvider jwtTokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        jwtTokenProvider = new JwtTokenProvider();
+        Field secret = JwtTokenProvider.class.getDeclaredField("jwtSecret");
+        secret.setAccessible(true);
+        secret.set(jwtTokenProvider, SECRET);
+
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        token = Jwts.builder()
+                .id(UUID.randomUUID().toString())
+                .subject("42")
+                .claim("userId", 42L)
+                .claim("cccd", "001099012345")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(key)
+                .compact();
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtTokenProvider.validateToken(token);
+    }
+
+    @Benchmark
+    public Claims getAllClaims() {
+        return jwtTokenProvider.getAllClaimsFromToken(token);
+    }
+
+    /*
+     * validate + userId + cccd + jti như JwtAuthenticationFilter
+     */
+    @Benchmark
+    public void filterPath(Blackhole blackhole) {
+        blackhole.consume(jwtTokenProvider.validateToken(token));
+        blackhole.consume(jwtTokenProvider.getUserIdFromToken(token));
+        blackhole.consume(jwtTokenProvider.getCccdFromToken(token));
+        blackhole.consume(jwtTokenProvider.getJwtIdFromToken(token));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.learnservice.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.example.learnservice.controller.WebSocketController;
+import com.example.learnservice.controller.WebSocketController.TestStatus;
+import com.example.learnservice.controller.WebSocketController.UserJoinMessage;
+import com.example.learnservice.controller.WebSocketController.UserStatus;
+import com.example.learnservice.service.InMemoryRoomBackend;
+import com.example.learnservice.service.RoomBroadcastService;
+import com.example.learnservice.service.RoomPresenceService;
+import com.example.learnservice.service.RoomRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Chi phí cập nhật phòng thi theo số người trong phòng: snapshot đầy đủ (đếm
+ * trạng thái + serialize JSON cả danh sách) so với 1 delta đổi trạng thái.
+ * Broker được thay bằng channel chỉ nhận message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastUserListBenchmark {
+
+    private static final Long SEMESTER_TEST_ID = 1L;
+
+    @Param({ "10", "100", "1000", "5000" })
+    private int roomSize;
+
+    private WebSocketController webSocketController;
+    private RoomBroadcastService roomBroadcastService;
+    private UserJoinMessage requester;
+    private SimpMessagingTemplate messagingTemplate;
+    private Message<?> lastMessage;
+    private boolean testing;
+
+    @Setup
+    public void setUp() {
+        MessageChannel channel = (Message<?> message, long timeout) -> {
+            lastMessage = message;
+            return true;
+        };
+        messagingTemplate = new SimpMessagingTemplate(channel);
+        messagingTemplate.setMessageConverter(new MappingJackson2MessageConverter());
+
+        InMemoryRoomBackend roomBackend = new InMemoryRoomBackend(messagingTemplate, event -> {
+        });
+        roomBroadcastService = new RoomBroadcastService(roomBackend, new SimpleMeterRegistry());
+        RoomRegistry roomRegistry = new RoomRegistry(roomBackend, roomBroadcastService);
+        for (long i = 1; i <= roomSize; i++) {
+            roomRegistry.join(SEMESTER_TEST_ID, new UserStatus(i, "Student " + i, String.format("%012d", i),
+                    i % 2 == 0 ? TestStatus.TESTING : TestStatus.WAITING), "session-" + i);
+        }
+        roomBroadcastService.flushDirty();
+
+        // Presence tắt (không có @Value) nên không ảnh hưởng kết quả đo
+        RoomPresenceService roomPresenceService = new RoomPresenceService(roomRegistry, new SimpleMeterRegistry());
+        webSocketController = new WebSocketController(null, messagingTemplate, roomRegistry, roomBackend,
+                roomPresenceService);
+        requester = new UserJoinMessage(1L, "Student 1", "000000000001");
+    }
+
+    /*
+     * request-state: snapshot cả phòng, serialize như khi gửi cho client
+     */
+    @Benchmark
+    public Message<?> broadcastUserList() {
+        messagingTemplate.convertAndSend("/queue/test/state",
+                webSocketController.requestRoomState(SEMESTER_TEST_ID, requester));
+        return lastMessage;
+    }
+
+    /*
+     * 1 học viên đổi trạng thái rồi flush: 1 delta
+     */
+    @Benchmark
+    public Message<?> statusDelta() {
+        testing = !testing;
+        webSocketController.updateUserStatus(SEMESTER_TEST_ID, requester.userId(),
+                testing ? TestStatus.TESTING : TestStatus.WAITING);
+        roomBroadcastService.flushDirty();
+        return lastMessage;
+    }
+}
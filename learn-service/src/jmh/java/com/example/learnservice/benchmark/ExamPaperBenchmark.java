@@ -0,0 +1,182 @@
+package com.example.learnservice.benchmark;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.learnservice.model.Answer;
+import com.example.learnservice.model.ExamPaper;
+import com.example.learnservice.model.Question;
+import com.example.learnservice.model.SemesterTest;
+import com.example.learnservice.model.Test;
+import com.example.learnservice.model.TestQuestion;
+import com.example.learnservice.repository.ExamPaperRepository;
+import com.example.learnservice.repository.QuestionRepository;
+import com.example.learnservice.repository.SemeterTestRepository;
+import com.example.learnservice.repository.TestRepository;
+import com.example.learnservice.service.ExamPaperService;
+import com.example.learnservice.util.scoring.AnswerKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Chi phí dựng đề qua API public của ExamPaperService: build lại đề khi cache
+ * hết hạn (detailTest, trueAnswers, questionIds, hash, studentAnswers ban đầu),
+ * đọc đề từ cache, tạo studentAnswers cho Result mới và biên dịch AnswerKey.
+ * Repository được mock, exam_paper giữ trong Map nên không tính thời gian DB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExamPaperBenchmark {
+
+    private static final Long SEMESTER_TEST_ID = 1L;
+
+    @Param({ "20", "100", "500" })
+    private int questionCount;
+
+    private ExamPaperService examPaperService;
+    private ExamPaper paper;
+    private ExamPaper uncachedPaper;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        Test test = new Test();
+        test.setId(1L);
+        test.setName("Benchmark test");
+        SemesterTest semesterTest = new SemesterTest();
+        semesterTest.setId(SEMESTER_TEST_ID);
+        semesterTest.setName("Benchmark semester test");
+        semesterTest.setTest(test);
+        semesterTest.setStartDate(LocalDateTime.now());
+        semesterTest.setEndDate(LocalDateTime.now().plusHours(2));
+
+        Random random = new Random(42);
+        List<TestQuestion> testQuestions = new ArrayList<>(questionCount);
+        for (int i = 0; i < questionCount; i++) {
+            Question question = new Question();
+            question.setId((long) i + 1);
+            question.setText("Question " + i + " - Lorem ipsum dolor sit amet, consectetur adipiscing elit?");
+            List<Answer> answers = new ArrayList<>();
+            int correct = random.nextInt(4);
+            for (int a = 0; a < 4; a++) {
+                Answer answer = new Answer();
+                answer.setText("Answer " + a + " of question " + i);
+                answer.setTrueAnswer(a == correct);
+                answers.add(answer);
+            }
+            question.setAnswers(answers);
+
+            TestQuestion testQuestion = new TestQuestion();
+            testQuestion.setTest(test);
+            testQuestion.setQuestion(question);
+            testQuestions.add(testQuestion);
+        }
+        test.setTestQuestions(testQuestions);
+
+        SemeterTestRepository semesterTestRepository = mock(SemeterTestRepository.class);
+        when(semesterTestRepository.findById(SEMESTER_TEST_ID)).thenReturn(Optional.of(semesterTest));
+        TestRepository testRepository = mock(TestRepository.class);
+        when(testRepository.findWithQuestionsById(test.getId())).thenReturn(Optional.of(test));
+        QuestionRepository questionRepository = mock(QuestionRepository.class);
+
+        // Bảng exam_paper trong bộ nhớ, khóa theo content hash
+        Map<String, ExamPaper> papers = new ConcurrentHashMap<>();
+        ExamPaperRepository examPaperRepository = mock(ExamPaperRepository.class);
+        when(examPaperRepository.findBySemesterTestIdAndContentHash(anyLong(), anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(papers.get(invocation.getArgument(1, String.class))));
+        when(examPaperRepository.findLatestVersion(anyLong())).thenReturn(Optional.empty());
+        when(examPaperRepository.insertIfAbsent(anyLong(), anyInt(), anyString(), anyInt(), anyString(),
+                anyString(), anyString())).thenAnswer(invocation -> {
+                    ExamPaper inserted = new ExamPaper();
+                    inserted.setId((long) papers.size() + 1);
+                    inserted.setSemesterTestId(invocation.getArgument(0));
+                    inserted.setVersion(invocation.getArgument(1));
+                    inserted.setContentHash(invocation.getArgument(2));
+                    inserted.setQuestionCount(invocation.getArgument(3));
+                    inserted.setDetailTest(objectMapper.readTree(invocation.getArgument(4, String.class)));
+                    inserted.setTrueAnswers(objectMapper.readTree(invocation.getArgument(5, String.class)));
+                    inserted.setQuestionIds(objectMapper.readTree(invocation.getArgument(6, String.class)));
+                    papers.put(inserted.getContentHash(), inserted);
+                    return 1;
+                });
+
+        examPaperService = new ExamPaperService();
+        ReflectionTestUtils.setField(examPaperService, "semesterTestRepository", semesterTestRepository);
+        ReflectionTestUtils.setField(examPaperService, "testRepository", testRepository);
+        ReflectionTestUtils.setField(examPaperService, "questionRepository", questionRepository);
+        ReflectionTestUtils.setField(examPaperService, "examPaperRepository", examPaperRepository);
+        ReflectionTestUtils.setField(examPaperService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(examPaperService, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.setField(examPaperService, "cacheMaxSize", 1000L);
+        ReflectionTestUtils.setField(examPaperService, "cacheIdleSeconds", 3600L);
+        ReflectionTestUtils.invokeMethod(examPaperService, "init");
+
+        paper = examPaperService.getCurrentPaper(SEMESTER_TEST_ID);
+        uncachedPaper = new ExamPaper();
+        uncachedPaper.setId(-1L);
+        uncachedPaper.setSemesterTestId(SEMESTER_TEST_ID);
+        uncachedPaper.setQuestionCount(questionCount);
+    }
+
+    /*
+     * Cache hết hạn/bị evict: build + hash lại, đề đã lưu được dùng lại
+     */
+    @Benchmark
+    public ExamPaper rebuildPaper() {
+        examPaperService.evict(SEMESTER_TEST_ID);
+        return examPaperService.getCurrentPaper(SEMESTER_TEST_ID);
+    }
+
+    @Benchmark
+    public ExamPaper cachedPaper() {
+        return examPaperService.getCurrentPaper(SEMESTER_TEST_ID);
+    }
+
+    /*
+     * Result mới của đề đang cache: copy studentAnswers dựng sẵn
+     */
+    @Benchmark
+    public JsonNode newStudentAnswers() {
+        return examPaperService.newStudentAnswers(paper);
+    }
+
+    /*
+     * Đề không còn trong cache: dựng studentAnswers từ đầu
+     */
+    @Benchmark
+    public JsonNode newStudentAnswersUncached() {
+        return examPaperService.newStudentAnswers(uncachedPaper);
+    }
+
+    @Benchmark
+    public AnswerKey compileAnswerKey() {
+        return AnswerKey.compile(paper.getTrueAnswers());
+    }
+}
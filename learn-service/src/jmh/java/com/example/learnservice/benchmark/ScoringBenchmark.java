@@ -0,0 +1,126 @@
+package com.example.learnservice.benchmark;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.learnservice.enums.ScoringPolicy;
+import com.example.learnservice.util.ValidateUtil;
+import com.example.learnservice.util.scoring.AnswerKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * So sánh cách chấm cũ của endTest (ObjectMapper mới + convertValue +
+ * isSameList) với AnswerKey đã biên dịch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+    @Param({ "20", "100", "500" })
+    private int questionCount;
+
+    private JsonNode trueAnswers;
+    private JsonNode studentAnswers;
+    private AnswerKey answerKey;
+    private long[] selections;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Random random = new Random(42);
+        ObjectNode trueAnswersNode = objectMapper.createObjectNode();
+        ObjectNode studentAnswersNode = objectMapper.createObjectNode();
+
+        for (int i = 0; i < questionCount; i++) {
+            ArrayNode correct = objectMapper.createArrayNode().add(random.nextInt(4));
+            trueAnswersNode.set(String.valueOf(i), correct);
+
+            ObjectNode answer = objectMapper.createObjectNode();
+            answer.set("selectedAnswers", random.nextBoolean()
+                    ? correct.deepCopy()
+                    : objectMapper.createArrayNode().add(random.nextInt(4)));
+            answer.put("flagged", false);
+            answer.putNull("answeredAt");
+            studentAnswersNode.set(String.valueOf(i), answer);
+        }
+
+        trueAnswers = trueAnswersNode;
+        studentAnswers = studentAnswersNode;
+        answerKey = AnswerKey.compile(trueAnswers);
+        selections = answerKey.encodeSelections(studentAnswers);
+    }
+
+    /*
+     * Cách chấm cũ trong SemesterTestService.endTest
+     */
+    @Benchmark
+    public float legacy() {
+        ObjectMapper mapper = new ObjectMapper();
+        Iterator<String> fieldNames = trueAnswers.fieldNames();
+        float score = 0;
+        while (fieldNames.hasNext()) {
+            String index = fieldNames.next();
+
+            List<Integer> trueList = mapper.convertValue(trueAnswers.get(index),
+                    mapper.getTypeFactory().constructCollectionType(List.class, Integer.class));
+
+            JsonNode selectedAnswersNode = studentAnswers.get(index).get("selectedAnswers");
+            List<Integer> selectedList = mapper.convertValue(selectedAnswersNode,
+                    mapper.getTypeFactory().constructCollectionType(List.class, Integer.class));
+
+            if (ValidateUtil.isSameList(trueList, selectedList))
+                score += 1;
+        }
+        return score;
+    }
+
+    /*
+     * Đường chấm hiện tại: key đã cache, mã hóa bài làm + chấm
+     */
+    @Benchmark
+    public float compiled() {
+        return answerKey.score(studentAnswers, ScoringPolicy.ALL_OR_NOTHING, 0.25f);
+    }
+
+    @Benchmark
+    public float compiledPartialCredit() {
+        return answerKey.score(studentAnswers, ScoringPolicy.PARTIAL_CREDIT, 0.25f);
+    }
+
+    /*
+     * Chỉ vòng lặp chấm trên bitmask đã mã hóa
+     */
+    @Benchmark
+    public float scoreLoopOnly() {
+        return answerKey.score(selections, ScoringPolicy.ALL_OR_NOTHING, 0.25f);
+    }
+
+    /*
+     * Chi phí biên dịch key (chỉ trả 1 lần mỗi đề)
+     */
+    @Benchmark
+    public AnswerKey compileKey() {
+        return AnswerKey.compile(trueAnswers);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.learnservice.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.learnservice.util.FileUtil;
+
+/**
+ * FileUtil.addWatermark trên PDF nhỏ (1 trang) và lớn (nhiều trang có chữ)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WatermarkBenchmark {
+
+    @Param({ "1", "20", "200" })
+    private int pageCount;
+
+    private FileUtil fileUtil;
+    private byte[] pdf;
+
+    @Setup
+    public void setUp() throws IOException {
+        fileUtil = new FileUtil();
+        pdf = createPdf(pageCount);
+    }
+
+    @Benchmark
+    public byte[] addWatermark() throws IOException {
+        return fileUtil.addWatermark(pdf, "001099012345");
+    }
+
+    private static byte[] createPdf(int pageCount) throws IOException {
+        try (PDDocument document = new PDDocument();
+                ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int i = 0; i < pageCount; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+                    cs.beginText();
+                    cs.setFont(PDType1Font.HELVETICA, 11);
+                    cs.setLeading(14);
+                    cs.newLineAtOffset(50, 780);
+                    for (int line = 0; line < 50; line++) {
+                        cs.showText("Page " + (i + 1) + " line " + line
+                                + " - Lorem ipsum dolor sit amet, consectetur adipiscing elit.");
+                        cs.newLine();
+                    }
+                    cs.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.learnservice.loadtest;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import com.example.learnservice.LearnserviceApplication;
+import com.example.learnservice.config.TestConfig;
+import com.example.learnservice.controller.WebSocketController.UserJoinMessage;
+import com.example.learnservice.dto.StartTestResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Giả lập buổi thi: khởi động learn-service với PostgreSQL (Testcontainers) rồi
+ * cho N học viên ảo (mỗi người 1 virtual thread) chạy đủ luồng: vào phòng chờ
+ * qua STOMP, cùng bắt đầu thi, chọn đáp án từng câu, nộp bài.
+ * In ra p50/p95/p99, throughput từng bước và mức bão hòa connection pool.
+ *
+ * Chạy: mvn -Ploadtest test-compile exec:exec -Dloadtest.args="students=500 questions=40"
+ * Tham số dạng --spring.x=y / --learnservice.x=y được chuyển thẳng cho service.
+ */
+public class ExamDayLoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final int students;
+    private final int answers;
+    private final long thinkMillis;
+    private final String baseUrl;
+    private final String wsUrl;
+    private final ExamFixture fixture;
+
+    private final HttpClient httpClient;
+    private final WebSocketStompClient stompClient;
+
+    private final LatencyRecorder connect = new LatencyRecorder("ws-connect");
+    private final LatencyRecorder start = new LatencyRecorder("start");
+    private final LatencyRecorder answer = new LatencyRecorder("answer");
+    private final LatencyRecorder end = new LatencyRecorder("end");
+    private final AtomicLong roomMessages = new AtomicLong();
+    private final ConcurrentLinkedQueue<String> errorSamples = new ConcurrentLinkedQueue<>();
+
+    private ExamDayLoadTest(Map<String, String> options, int port, ExamFixture fixture, ExecutorService executor) {
+        this.students = fixture.studentIds().size();
+        this.answers = Math.min(intOption(options, "answers", fixture.questions()), fixture.questions());
+        this.thinkMillis = intOption(options, "think-ms", 100);
+        this.baseUrl = "http://localhost:" + port;
+        this.wsUrl = "http://localhost:" + port + "/ws/test-waiting";
+        this.fixture = fixture;
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        this.stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        Map<String, String> serviceProperties = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            if (arg.startsWith("--")) {
+                serviceProperties.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int students = intOption(options, "students", 200);
+        int questions = intOption(options, "questions", 40);
+
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+                .withDatabaseName("loadtest")
+                .withUsername("test")
+                .withPassword("test")
+                .withCommand("postgres", "-c", "max_connections=300")) {
+            postgres.start();
+
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put("spring.profiles.active", "test");
+            properties.put("server.port", "0");
+            properties.put("spring.datasource.url", postgres.getJdbcUrl());
+            properties.put("spring.datasource.username", postgres.getUsername());
+            properties.put("spring.datasource.password", postgres.getPassword());
+            properties.put("spring.datasource.hikari.maximum-pool-size", options.getOrDefault("pool-size", "10"));
+            properties.put("spring.datasource.hikari.minimum-idle", options.getOrDefault("pool-size", "10"));
+            properties.put("spring.autoconfigure.exclude",
+                    "org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration");
+            properties.put("logging.level.com.example.learnservice", "WARN");
+            properties.putAll(serviceProperties);
+
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                    LearnserviceApplication.class, TestConfig.class)
+                    .run(properties.entrySet().stream()
+                            .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                            .toArray(String[]::new));
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+                ExamFixture fixture = ExamFixture.create(context, students, questions);
+                HikariDataSource dataSource = context.getBean(DataSource.class).unwrap(HikariDataSource.class);
+
+                new ExamDayLoadTest(options, port, fixture, executor).run(executor, dataSource);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private void run(ExecutorService executor, HikariDataSource dataSource) throws InterruptedException {
+        CountDownLatch joined = new CountDownLatch(students);
+        CountDownLatch examStart = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(students);
+        List<StompSession> sessions = Collections.synchronizedList(new ArrayList<>(students));
+
+        try (PoolSampler sampler = new PoolSampler(dataSource, 50)) {
+            for (Long studentId : fixture.studentIds()) {
+                executor.submit(() -> {
+                    try {
+                        try {
+                            StompSession session = join(studentId);
+                            if (session != null) {
+                                sessions.add(session);
+                            }
+                        } finally {
+                            joined.countDown();
+                        }
+                        examStart.await();
+                        takeExam(studentId);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+
+            // Mọi người vào phòng chờ xong mới bắt đầu, giống lúc giáo viên mở đề
+            joined.await(5, TimeUnit.MINUTES);
+            long begin = System.nanoTime();
+            examStart.countDown();
+            finished.await();
+
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            sessions.forEach(StompSession::disconnect);
+            stompClient.stop();
+
+            System.out.println();
+            System.out.printf("Exam-day load test: %d students, %d answers each, think time <= %d ms%n",
+                    students, answers, thinkMillis);
+            System.out.printf("exam phase: %.1f s, room messages received: %d%n", seconds, roomMessages.get());
+            System.out.println(LatencyRecorder.header());
+            for (LatencyRecorder recorder : List.of(connect, start, answer, end)) {
+                System.out.println(recorder.report());
+            }
+            System.out.println(sampler.report());
+            errorSamples.stream().limit(10).forEach(error -> System.out.println("error: " + error));
+        }
+    }
+
+    private StompSession join(Long studentId) {
+        long t0 = System.nanoTime();
+        try {
+            StompSession session = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+            }).get(30, TimeUnit.SECONDS);
+            connect.record(t0, System.nanoTime());
+
+            String topic = "/topic/test/" + fixture.semesterTestId();
+            StompFrameHandler counter = new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return byte[].class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    roomMessages.incrementAndGet();
+                }
+            };
+            session.subscribe(topic + "/users", counter);
+            session.subscribe(topic + "/opened", counter);
+            session.send("/app/test/" + fixture.semesterTestId() + "/join",
+                    new UserJoinMessage(studentId, "Student " + studentId, String.valueOf(studentId)));
+            return session;
+        } catch (Exception e) {
+            failed(connect, "ws-connect", e);
+            return null;
+        }
+    }
+
+    private void takeExam(Long studentId) throws InterruptedException {
+        String body = call(start, studentId, "POST",
+                "/semester/test/" + fixture.semesterTestId() + "/start", null);
+        if (body == null) {
+            return;
+        }
+        Long resultId;
+        try {
+            resultId = MAPPER.readValue(body, StartTestResponse.class).getResultId();
+        } catch (Exception e) {
+            failed(start, "start", e);
+            return;
+        }
+
+        for (int i = 0; i < answers; i++) {
+            if (thinkMillis > 0) {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(thinkMillis + 1));
+            }
+            int selected = ThreadLocalRandom.current().nextInt(4);
+            call(answer, studentId, "PUT", "/semester/test/result/" + resultId + "/question/" + i + "/answer",
+                    "{\"answerIndices\":[" + selected + "]}");
+        }
+
+        call(end, studentId, "POST", "/semester/test/" + resultId + "/end", null);
+    }
+
+    /**
+     * Gọi 1 API, ghi thời gian vào recorder; trả về body hoặc null nếu lỗi
+     */
+    private String call(LatencyRecorder recorder, Long studentId, String method, String path, String json) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("X-User-Id", String.valueOf(studentId))
+                .header("X-User-Role", "STUDENT")
+                .header("Content-Type", "application/json")
+                .method(method, json != null
+                        ? HttpRequest.BodyPublishers.ofString(json)
+                        : HttpRequest.BodyPublishers.noBody())
+                .build();
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            long t1 = System.nanoTime();
+            if (response.statusCode() / 100 != 2) {
+                recorder.error();
+                errorSamples.add(method + " " + path + " -> " + response.statusCode() + " " + response.body());
+                return null;
+            }
+            recorder.record(t0, t1);
+            return response.body();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            failed(recorder, method + " " + path, e);
+            return null;
+        }
+    }
+
+    private void failed(LatencyRecorder recorder, String step, Exception e) {
+        recorder.error();
+        errorSamples.add(step + " -> " + e);
+    }
+
+    private static int intOption(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.learnservice.loadtest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.context.ApplicationContext;
+
+import com.example.learnservice.enums.TestType;
+import com.example.learnservice.model.Answer;
+import com.example.learnservice.model.Position;
+import com.example.learnservice.model.Question;
+import com.example.learnservice.model.Semester;
+import com.example.learnservice.model.SemesterAccount;
+import com.example.learnservice.model.SemesterTest;
+import com.example.learnservice.model.Test;
+import com.example.learnservice.model.TestQuestion;
+import com.example.learnservice.repository.PositionRepository;
+import com.example.learnservice.repository.QuestionRepository;
+import com.example.learnservice.repository.SemesterAccountRepository;
+import com.example.learnservice.repository.SemesterRepository;
+import com.example.learnservice.repository.SemeterTestRepository;
+import com.example.learnservice.repository.TestQuestionRepository;
+import com.example.learnservice.repository.TestRepository;
+
+/**
+ * Dữ liệu cho 1 buổi thi: 1 kỳ học, 1 Test có questions câu (4 đáp án, đáp án
+ * đầu đúng), 1 SemesterTest EXAM đang mở và students học viên cùng vị trí.
+ */
+public record ExamFixture(Long semesterTestId, List<Long> studentIds, int questions) {
+
+    public static final long FIRST_STUDENT_ID = 100_000L;
+
+    public static ExamFixture create(ApplicationContext context, int students, int questions) {
+        LocalDateTime now = LocalDateTime.now();
+
+        Position position = new Position();
+        position.setName("Loadtest position");
+        position = context.getBean(PositionRepository.class).save(position);
+
+        Semester semester = new Semester();
+        semester.setName("Loadtest semester");
+        semester.setStartDate(now.minusDays(1));
+        semester.setEndDate(now.plusDays(30));
+        semester = context.getBean(SemesterRepository.class).save(semester);
+
+        Test test = new Test();
+        test.setName("Loadtest exam");
+        test.setVisible(true);
+        test.setPosition(position);
+        test = context.getBean(TestRepository.class).save(test);
+
+        List<Question> questionList = new ArrayList<>(questions);
+        for (int i = 0; i < questions; i++) {
+            Question question = new Question();
+            question.setText("Question " + (i + 1));
+            List<Answer> answers = new ArrayList<>(4);
+            for (int j = 0; j < 4; j++) {
+                Answer answer = new Answer();
+                answer.setQuestion(question);
+                answer.setText("Answer " + (j + 1));
+                answer.setTrueAnswer(j == 0);
+                answers.add(answer);
+            }
+            question.setAnswers(answers);
+            questionList.add(question);
+        }
+        questionList = context.getBean(QuestionRepository.class).saveAll(questionList);
+
+        List<TestQuestion> testQuestions = new ArrayList<>(questions);
+        for (Question question : questionList) {
+            TestQuestion testQuestion = new TestQuestion();
+            testQuestion.setTest(test);
+            testQuestion.setQuestion(question);
+            testQuestions.add(testQuestion);
+        }
+        context.getBean(TestQuestionRepository.class).saveAll(testQuestions);
+
+        SemesterTest semesterTest = new SemesterTest();
+        semesterTest.setName("Loadtest exam");
+        semesterTest.setSemester(semester);
+        semesterTest.setTest(test);
+        semesterTest.setType(TestType.EXAM);
+        semesterTest.setOpen(true);
+        semesterTest.setStartDate(now.minusMinutes(5));
+        semesterTest.setEndDate(now.plusHours(3));
+        semesterTest.setMinutes(120);
+        semesterTest = context.getBean(SemeterTestRepository.class).save(semesterTest);
+
+        List<SemesterAccount> accounts = new ArrayList<>(students);
+        List<Long> studentIds = new ArrayList<>(students);
+        for (int i = 0; i < students; i++) {
+            SemesterAccount account = new SemesterAccount();
+            account.setSemester(semester);
+            account.setPosition(position);
+            account.setAccountId(FIRST_STUDENT_ID + i);
+            accounts.add(account);
+            studentIds.add(FIRST_STUDENT_ID + i);
+        }
+        context.getBean(SemesterAccountRepository.class).saveAll(accounts);
+
+        return new ExamFixture(semesterTest.getId(), studentIds, questions);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.learnservice.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lưu thời gian từng lần gọi của 1 bước (nano giây) để tính phân vị lúc báo cáo.
+ * Thread-safe.
+ */
+public class LatencyRecorder {
+
+    private final String step;
+    private final AtomicLong errors = new AtomicLong();
+    private long[] samples = new long[1024];
+    private int size;
+    private long firstStart = Long.MAX_VALUE;
+    private long lastEnd = Long.MIN_VALUE;
+
+    public LatencyRecorder(String step) {
+        this.step = step;
+    }
+
+    public synchronized void record(long startNanos, long endNanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = endNanos - startNanos;
+        firstStart = Math.min(firstStart, startNanos);
+        lastEnd = Math.max(lastEnd, endNanos);
+    }
+
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    public synchronized String report() {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        double seconds = size == 0 ? 0 : (lastEnd - firstStart) / 1e9;
+        return String.format("%-12s %8d %7d %10.1f %9.1f %9.1f %9.1f %9.1f",
+                step, size, errors.get(),
+                seconds > 0 ? size / seconds : 0.0,
+                millis(percentile(sorted, 0.50)),
+                millis(percentile(sorted, 0.95)),
+                millis(percentile(sorted, 0.99)),
+                millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+    }
+
+    public static String header() {
+        return String.format("%-12s %8s %7s %10s %9s %9s %9s %9s",
+                "step", "ok", "errors", "ops/s", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)");
+    }
+
+    // Nearest-rank
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
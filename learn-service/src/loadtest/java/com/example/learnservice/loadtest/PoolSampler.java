@@ -0,0 +1,68 @@
+package com.example.learnservice.loadtest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Lấy mẫu trạng thái Hikari pool định kỳ để đo mức bão hòa connection
+ */
+public class PoolSampler implements AutoCloseable {
+
+    private final HikariDataSource dataSource;
+    private final ScheduledExecutorService scheduler;
+
+    private long samples;
+    private long saturatedSamples;
+    private int maxActive;
+    private int maxWaiting;
+    private long sumActive;
+    private long sumWaiting;
+
+    public PoolSampler(HikariDataSource dataSource, long intervalMillis) {
+        this.dataSource = dataSource;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pool-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void sample() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+        int active = pool.getActiveConnections();
+        int waiting = pool.getThreadsAwaitingConnection();
+        samples++;
+        sumActive += active;
+        sumWaiting += waiting;
+        maxActive = Math.max(maxActive, active);
+        maxWaiting = Math.max(maxWaiting, waiting);
+        if (active >= dataSource.getMaximumPoolSize()) {
+            saturatedSamples++;
+        }
+    }
+
+    public synchronized String report() {
+        if (samples == 0) {
+            return "connection pool: no samples";
+        }
+        return String.format(
+                "connection pool (max %d): active avg %.1f / max %d, waiting threads avg %.1f / max %d, saturated %.1f%% of %d samples",
+                dataSource.getMaximumPoolSize(),
+                (double) sumActive / samples, maxActive,
+                (double) sumWaiting / samples, maxWaiting,
+                100.0 * saturatedSamples / samples, samples);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
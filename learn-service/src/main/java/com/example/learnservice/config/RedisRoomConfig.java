@@ -0,0 +1,38 @@
+package com.example.learnservice.config;
+
+import org.springframework.boot.actuate.data.redis.RedisHealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import com.example.learnservice.service.RedisRoomBackend;
+
+/**
+ * Nhận message phòng thi từ các node khác qua Redis pub/sub (learnservice.exam.room.backend=redis).
+ * Health check Redis mặc định tắt (management.health.redis.enabled=false), chỉ đăng ký ở đây.
+ */
+@Configuration
+@ConditionalOnProperty(name = "learnservice.exam.room.backend", havingValue = "redis")
+public class RedisRoomConfig {
+
+    @Bean
+    public RedisMessageListenerContainer roomMessageListenerContainer(RedisConnectionFactory connectionFactory,
+            RedisRoomBackend redisRoomBackend) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(redisRoomBackend, new ChannelTopic(RedisRoomBackend.CHANNEL));
+        container.addMessageListener(redisRoomBackend, new ChannelTopic(RedisRoomBackend.SCORE_CHANNEL));
+        return container;
+    }
+
+    /**
+     * Thay health check tự cấu hình của Spring Boot, chỉ có khi Redis thực sự được dùng
+     */
+    @Bean
+    public RedisHealthIndicator redisHealthContributor(RedisConnectionFactory connectionFactory) {
+        return new RedisHealthIndicator(connectionFactory);
+    }
+}
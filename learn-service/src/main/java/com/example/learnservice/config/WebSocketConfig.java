@@ -1,19 +1,12 @@
 // learn-service/src/main/java/com/example/learnservice/config/WebSocketConfig.java
 package com.example.learnservice.config;
 
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
-import com.example.learnservice.controller.WebSocketController;
-
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
@@ -21,8 +14,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Simple in-memory broker - KHÔNG CẦN DB
-        config.enableSimpleBroker("/topic");
+        // /topic: delta của phòng thi, /queue: snapshot gửi riêng từng session (/user/queue/...)
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        config.setUserDestinationPrefix("/user");
     }
 
     @Override
@@ -31,9 +26,4 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
-
-    @Bean
-    public Map<Long, Set<WebSocketController.UserStatus>> waitingRooms() {
-        return new ConcurrentHashMap<>();
-    }
 }
\ No newline at end of file
@@ -2,7 +2,6 @@
 package com.example.learnservice.config;
 
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
@@ -12,17 +11,12 @@ import com.example.learnservice.controller.WebSocketController;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
-
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class WebSocketEventListener {
 
-    private final SimpMessagingTemplate messagingTemplate;
-    private final Map<Long, Set<WebSocketController.UserStatus>> testRooms;
+    private final WebSocketController webSocketController;
 
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
@@ -36,45 +30,8 @@ public class WebSocketEventListener {
         if (semesterTestId != null && userId != null) {
             log.info("User {} disconnecting from test {}", userId, semesterTestId);
 
-            // Remove user from room
-            Set<WebSocketController.UserStatus> users = testRooms.get(semesterTestId);
-            if (users != null) {
-                users.removeIf(u -> u.userId().equals(userId));
-
-                // Remove room if empty
-                if (users.isEmpty()) {
-                    testRooms.remove(semesterTestId);
-                    log.info("Test room {} removed (empty)", semesterTestId);
-                }
-                // Broadcast updated list
-                broadcastUserList(semesterTestId, users);
-
-                log.info("User {} disconnected from test room {}", userId, semesterTestId);
-            }
-        }
-    }
-
-    private void broadcastUserList(Long semesterTestId, Set<WebSocketController.UserStatus> users) {
-        if (users == null || users.isEmpty()) {
-            users = Collections.emptySet();
+            // Remove user from room, gửi delta LEFT như khi rời phòng
+            webSocketController.removeUser(semesterTestId, userId, headerAccessor.getSessionId());
         }
-        // Count by status
-        long waitingCount = users.stream()
-                .filter(u -> u.status() == WebSocketController.TestStatus.WAITING)
-                .count();
-        long testingCount = users.stream()
-                .filter(u -> u.status() == WebSocketController.TestStatus.TESTING)
-                .count();
-
-        WebSocketController.TestRoomUpdate update = new WebSocketController.TestRoomUpdate(
-                semesterTestId,
-                users,
-                users.size(),
-                (int) waitingCount,
-                (int) testingCount);
-
-        messagingTemplate.convertAndSend(
-                "/topic/test/" + semesterTestId + "/users",
-                update);
     }
-}
\ No newline at end of file
+}
@@ -19,10 +19,12 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.example.learnservice.annotation.RequireRole;
+import com.example.learnservice.dto.ItemStatsResponse;
 import com.example.learnservice.dto.QuestionCreateRequest;
 import com.example.learnservice.dto.QuestionPositionRequest;
 import com.example.learnservice.enums.Role;
 import com.example.learnservice.model.Question;
+import com.example.learnservice.service.ItemAnalysisService;
 import com.example.learnservice.service.QuestionService;
 import com.example.learnservice.service.SemesterService;
 
@@ -37,6 +39,8 @@ public class QuestionController {
     private QuestionService questionService;
     @Autowired
     private SemesterService semesterService;
+    @Autowired
+    private ItemAnalysisService itemAnalysisService;
 
     /*
      * Tạo câu hỏi mới
@@ -129,5 +133,22 @@ public class QuestionController {
         log.info("Fetching questions for test {} in semester ", testId);
         return ResponseEntity.ok(questionService.getQuestionsInTest(testId));
     }
-    
+
+    /*
+     * Phân tích câu hỏi (độ khó, độ phân biệt) của các câu trong 1 test
+     */
+    @GetMapping("/tests/{testId}/item-stats")
+    @RequireRole({ Role.TEACHER, Role.ADMIN })
+    public ResponseEntity<List<ItemStatsResponse>> getTestItemStats(@PathVariable Long testId) {
+        return ResponseEntity.ok(itemAnalysisService.getTestItemStats(testId));
+    }
+
+    /*
+     * Phân tích 1 câu hỏi: dòng đầu gộp mọi test, sau đó từng test
+     */
+    @GetMapping("/{questionId}/item-stats")
+    @RequireRole({ Role.TEACHER, Role.ADMIN })
+    public ResponseEntity<List<ItemStatsResponse>> getQuestionItemStats(@PathVariable Long questionId) {
+        return ResponseEntity.ok(itemAnalysisService.getQuestionItemStats(questionId));
+    }
 }
@@ -1,13 +1,16 @@
 package com.example.learnservice.controller;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,16 +23,25 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.learnservice.annotation.RequireRole;
 import com.example.learnservice.client.AccountClient;
 import com.example.learnservice.dto.AccountDTO;
+import com.example.learnservice.dto.AnswerBatchRequest;
+import com.example.learnservice.dto.AnswerBatchResponse;
 import com.example.learnservice.dto.ApiResponse;
 import com.example.learnservice.dto.EndTestResponse;
+import com.example.learnservice.dto.ProgressPageResponse;
+import com.example.learnservice.dto.QuestionBundleResponse;
 import com.example.learnservice.dto.QuestionResponse;
 import com.example.learnservice.dto.ResultDetailDTO;
+import com.example.learnservice.dto.ResultProgressResponse;
 import com.example.learnservice.dto.ResultStatusProjection;
 import com.example.learnservice.dto.ResultSummaryDTO;
+import com.example.learnservice.dto.RosterPageResponse;
+import com.example.learnservice.dto.RosterSummaryResponse;
+import com.example.learnservice.dto.ScoreStatsResponse;
 import com.example.learnservice.dto.SelectAnswerRequest;
 import com.example.learnservice.dto.SemesterResponse;
 import com.example.learnservice.dto.SemesterTestAssignRequest;
@@ -38,18 +50,21 @@ import com.example.learnservice.dto.StartTestResponse;
 import com.example.learnservice.dto.SubmittedStudent;
 import com.example.learnservice.dto.TestStatusResponse;
 import com.example.learnservice.dto.SemesterTestCreateRequest;
+import com.example.learnservice.enums.ExportFormat;
 import com.example.learnservice.enums.Role;
+import com.example.learnservice.enums.RosterStatus;
 import com.example.learnservice.model.Result;
+import com.example.learnservice.model.ResultAnswerEvent;
 import com.example.learnservice.model.Semester;
 import com.example.learnservice.model.SemesterTest;
 import com.example.learnservice.model.Test;
+import com.example.learnservice.service.AnswerEventService;
+import com.example.learnservice.service.ExamAdmissionService;
+import com.example.learnservice.service.ExamPaperService;
+import com.example.learnservice.service.ResultExportService;
+import com.example.learnservice.service.ScoreStatsService;
 import com.example.learnservice.service.SemesterService;
 import com.example.learnservice.service.SemesterTestService;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import jakarta.validation.Valid;
@@ -67,7 +82,19 @@ public class SemesterTestController {
     private SemesterTestService semesterTestService;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private ExamPaperService examPaperService;
+
+    @Autowired
+    private ResultExportService resultExportService;
+
+    @Autowired
+    private ScoreStatsService scoreStatsService;
+
+    @Autowired
+    private AnswerEventService answerEventService;
+
+    @Autowired
+    private ExamAdmissionService examAdmissionService;
 
     /**
      * Lấy thông tin chi tiết của một bài thi
@@ -131,7 +158,9 @@ public class SemesterTestController {
 
         Long studentId = Long.valueOf(userIdStr);
         Role userRole = Role.valueOf(userRoleStr);
-        Result result = semesterTestService.startTest(semesterTestId, studentId, userRole);
+        // Qua cổng của bài thi (ngoài transaction), request trùng của cùng học viên dùng chung kết quả
+        Result result = examAdmissionService.start(semesterTestId, studentId,
+                () -> semesterTestService.startTest(semesterTestId, studentId, userRole));
 
         // Map sang DTO
         StartTestResponse response = new StartTestResponse();
@@ -185,7 +214,9 @@ public class SemesterTestController {
 
         Optional<ResultStatusProjection> resultOpt = semesterTestService.getTestStatus(semesterTestId, studentId);
 
-        if (resultOpt.isEmpty()) {
+        // Result tạo sẵn khi mở bài thi nhưng chưa vào thi vẫn là NOT_STARTED
+        if (resultOpt.isEmpty()
+                || (resultOpt.get().getStartDateTime() == null && resultOpt.get().getSubmitDateTime() == null)) {
             response.setStatus("NOT_STARTED");
         } else {
             var result = resultOpt.get();
@@ -205,6 +236,114 @@ public class SemesterTestController {
         return ResponseEntity.ok(submittedIds);
     }
 
+    /**
+     * Danh sách học viên đã nộp / đang làm / chưa vào thi, phân trang keyset theo studentId
+     */
+    @GetMapping("/test/{semesterTestId}/roster")
+    @RequireRole({ Role.ADMIN, Role.TEACHER })
+    public ResponseEntity<RosterPageResponse> getRoster(
+            @PathVariable Long semesterTestId,
+            @RequestParam RosterStatus status,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr,
+            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr) {
+
+        if (Role.valueOf(userRoleStr) == Role.TEACHER) {
+            semesterTestService.validateAccessTestWithTeacher(semesterTestId, Long.valueOf(userIdStr));
+        } else {
+            semesterTestService.getSemesterTestById(semesterTestId);
+        }
+        return ResponseEntity.ok(semesterTestService.getRoster(semesterTestId, status, after, limit));
+    }
+
+    /**
+     * Số học viên theo từng trạng thái
+     */
+    @GetMapping("/test/{semesterTestId}/roster/summary")
+    @RequireRole({ Role.ADMIN, Role.TEACHER })
+    public ResponseEntity<RosterSummaryResponse> getRosterSummary(
+            @PathVariable Long semesterTestId,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr,
+            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr) {
+
+        if (Role.valueOf(userRoleStr) == Role.TEACHER) {
+            semesterTestService.validateAccessTestWithTeacher(semesterTestId, Long.valueOf(userIdStr));
+        } else {
+            semesterTestService.getSemesterTestById(semesterTestId);
+        }
+        return ResponseEntity.ok(semesterTestService.getRosterSummary(semesterTestId));
+    }
+
+    /**
+     * Tiến độ các học viên đang làm bài (số câu đã trả lời / flag), phân trang keyset theo resultId
+     */
+    @GetMapping("/test/{semesterTestId}/progress")
+    @RequireRole({ Role.ADMIN, Role.TEACHER })
+    public ResponseEntity<ProgressPageResponse> getTestProgress(
+            @PathVariable Long semesterTestId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr,
+            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr) {
+
+        if (Role.valueOf(userRoleStr) == Role.TEACHER) {
+            semesterTestService.validateAccessTestWithTeacher(semesterTestId, Long.valueOf(userIdStr));
+        } else {
+            semesterTestService.getSemesterTestById(semesterTestId);
+        }
+        return ResponseEntity.ok(semesterTestService.getTestProgress(semesterTestId, after, limit));
+    }
+
+    /**
+     * Thống kê điểm hiện tại, cập nhật tiếp qua /topic/test/{semesterTestId}/stats
+     */
+    @GetMapping("/test/{semesterTestId}/stats")
+    @RequireRole({ Role.ADMIN, Role.TEACHER })
+    public ResponseEntity<ScoreStatsResponse> getScoreStats(
+            @PathVariable Long semesterTestId,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr,
+            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr) {
+
+        if (Role.valueOf(userRoleStr) == Role.TEACHER) {
+            semesterTestService.validateAccessTestWithTeacher(semesterTestId, Long.valueOf(userIdStr));
+        } else {
+            semesterTestService.getSemesterTestById(semesterTestId);
+        }
+        return ResponseEntity.ok(scoreStatsService.getStats(semesterTestId));
+    }
+
+    /**
+     * Xuất kết quả thi ra file CSV/XLSX, ghi dần ra response
+     */
+    @GetMapping("/test/{semesterTestId}/results/export")
+    @RequireRole({ Role.ADMIN, Role.TEACHER })
+    public ResponseEntity<StreamingResponseBody> exportResults(
+            @PathVariable Long semesterTestId,
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr,
+            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr) {
+
+        // Kiểm tra trước khi bắt đầu ghi để còn trả được 403/404
+        if (Role.valueOf(userRoleStr) == Role.TEACHER) {
+            semesterTestService.validateAccessTestWithTeacher(semesterTestId, Long.valueOf(userIdStr));
+        } else {
+            semesterTestService.getSemesterTestById(semesterTestId);
+        }
+
+        String fileName = "semester-test-" + semesterTestId + "-results." + format.name().toLowerCase();
+        MediaType mediaType = format == ExportFormat.XLSX
+                ? MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                : new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+        StreamingResponseBody body = out -> resultExportService.exportResults(semesterTestId, format, out);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
     /**
      * Lấy thông tin 1 câu hỏi cụ thể
      * Query: detail_test->'questions'->:index, student_answers->':index'
@@ -216,53 +355,31 @@ public class SemesterTestController {
             @PathVariable Long resultId,
             @PathVariable Integer questionIndex,
             @RequestHeader(value = "X-User-Id", required = false) String userIdStr,
-            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr)
-            throws JsonMappingException, JsonProcessingException {
+            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr) {
 
         Long userId = Long.valueOf(userIdStr);
-        Role userRole = Role.valueOf(userRoleStr);
 
         // Dùng JSONB operator - chỉ query đúng 1 phần tử trong array
-        Object[] data = semesterTestService.getQuestionByIndex(resultId, questionIndex, userId);
-        System.out.println(Arrays.deepToString(data));
-
-        // Parse từ native query result
-        Object[] row = (Object[]) data[0];
-        String questionJson = (String) row[0];
-        String studentAnswerJson = (String) row[1];
-        if (questionJson == null || studentAnswerJson == null)
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found");
-
-        JsonNode question = objectMapper.readTree(questionJson);
-        JsonNode studentAnswer = objectMapper.readTree(studentAnswerJson);
+        QuestionResponse response = semesterTestService.getQuestionByIndex(resultId, questionIndex, userId);
+        return ResponseEntity.ok(response);
+    }
 
-        // Map sang DTO
-        QuestionResponse response = new QuestionResponse();
-        response.setQuestionIndex(questionIndex);
-        response.setQuestionText(question.get("questionText").asText());
-
-        // Parse answers
-        List<QuestionResponse.AnswerOption> answers = new ArrayList<>();
-        ArrayNode answersArray = (ArrayNode) question.get("answers");
-        for (JsonNode answerNode : answersArray) {
-            QuestionResponse.AnswerOption option = new QuestionResponse.AnswerOption();
-            option.setAnswerIndex(answerNode.get("answerIndex").asInt());
-            option.setAnswerText(answerNode.get("answerText").asText());
-            answers.add(option);
-        }
-        response.setAnswers(answers);
+    /**
+     * Lấy nhiều câu hỏi liên tiếp (theo thứ tự hiển thị) trong 1 request (prefetch)
+     * Query: unnest(index của đề) -> detail_test->'questions'->index
+     */
+    @GetMapping("/test/result/{resultId}/questions")
+    @RequireRole({ Role.ADMIN, Role.TEACHER, Role.STUDENT })
+    public ResponseEntity<QuestionBundleResponse> getQuestionBundle(
+            @PathVariable Long resultId,
+            @RequestParam(defaultValue = "0") Integer from,
+            @RequestParam(defaultValue = "10") Integer count,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr) {
 
-        // Parse selected answers
-        List<Integer> selectedAnswers = new ArrayList<>();
-        ArrayNode selectedArray = (ArrayNode) studentAnswer.get("selectedAnswers");
-        for (JsonNode selected : selectedArray) {
-            selectedAnswers.add(selected.asInt());
-        }
-        response.setSelectedAnswers(selectedAnswers);
-        response.setFlagged(studentAnswer.get("flagged").asBoolean());
+        Long userId = Long.valueOf(userIdStr);
+        QuestionBundleResponse response = semesterTestService.getQuestionBundle(resultId, from, count, userId);
 
         return ResponseEntity.ok(response);
-
     }
 
     /**
@@ -278,7 +395,8 @@ public class SemesterTestController {
             @RequestHeader(value = "X-User-Id", required = false) String userIdStr) {
 
         Long studentId = Long.valueOf(userIdStr);
-        semesterTestService.selectAnswer(resultId, questionIndex, request.getAnswerIndices(), studentId);
+        semesterTestService.selectAnswer(resultId, questionIndex, request.getAnswerIndices(),
+                request.getClientTimestamp(), request.getSeq(), studentId);
 
         // Map sang DTO
         ApiResponse response = new ApiResponse();
@@ -291,6 +409,66 @@ public class SemesterTestController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Ghi nhiều thay đổi đáp án / flag trong 1 request (client gom khi mất mạng rồi gửi lại).
+     * Mỗi thay đổi có seq tăng dần, thay đổi gửi lại hoặc cũ hơn bị bỏ qua nên gửi lại an toàn.
+     */
+    @PutMapping("/test/result/{resultId}/answers")
+    @RequireRole({ Role.ADMIN, Role.TEACHER, Role.STUDENT })
+    public ResponseEntity<AnswerBatchResponse> submitAnswers(
+            @PathVariable Long resultId,
+            @Valid @RequestBody AnswerBatchRequest request,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr) {
+
+        Long studentId = Long.valueOf(userIdStr);
+        Long ackSeq = semesterTestService.submitAnswers(resultId, request.getUpdates(), studentId);
+
+        return ResponseEntity.ok(AnswerBatchResponse.builder()
+                .success(true)
+                .resultId(resultId)
+                .ackSeq(ackSeq)
+                .build());
+    }
+
+    /**
+     * Tiến độ làm bài của 1 Result (số câu đã trả lời / flag)
+     */
+    @GetMapping("/test/result/{resultId}/progress")
+    @RequireRole({ Role.ADMIN, Role.TEACHER, Role.STUDENT })
+    public ResponseEntity<ResultProgressResponse> getResultProgress(
+            @PathVariable Long resultId,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr,
+            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr) {
+
+        Long userId = Long.valueOf(userIdStr);
+        Role userRole = Role.valueOf(userRoleStr);
+        ResultProgressResponse progress = semesterTestService.getProgress(resultId);
+
+        if (userRole == Role.STUDENT && !userId.equals(progress.getStudentId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        } else if (userRole == Role.TEACHER) {
+            semesterTestService.validateAccessTestWithTeacher(progress.getSemesterTestId(), userId);
+        }
+        return ResponseEntity.ok(progress);
+    }
+
+    /**
+     * Lịch sử chọn đáp án / flag của 1 Result theo thứ tự ghi (khi bật answer-log)
+     */
+    @GetMapping("/test/result/{resultId}/answer-events")
+    @RequireRole({ Role.ADMIN, Role.TEACHER })
+    public ResponseEntity<List<ResultAnswerEvent>> getAnswerEvents(
+            @PathVariable Long resultId,
+            @RequestHeader(value = "X-User-Id", required = false) String userIdStr,
+            @RequestHeader(value = "X-User-Role", required = false) String userRoleStr) {
+
+        ResultProgressResponse progress = semesterTestService.getProgress(resultId);
+        if (Role.valueOf(userRoleStr) == Role.TEACHER) {
+            semesterTestService.validateAccessTestWithTeacher(progress.getSemesterTestId(), Long.valueOf(userIdStr));
+        }
+        return ResponseEntity.ok(answerEventService.getTimeline(resultId));
+    }
+
     /**
      * Đánh flag/unflag câu hỏi
      * UPDATE: jsonb_set(student_answers, '{0,flagged}', 'true')
@@ -301,10 +479,12 @@ public class SemesterTestController {
             @PathVariable Long resultId,
             @PathVariable Integer questionIndex,
             @RequestParam Boolean flagged,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime clientTimestamp,
+            @RequestParam(required = false) Long seq,
             @RequestHeader(value = "X-User-Id", required = false) String userIdStr) {
 
         Long studentId = Long.valueOf(userIdStr);
-        semesterTestService.flagQuestion(resultId, questionIndex, flagged, studentId);
+        semesterTestService.flagQuestion(resultId, questionIndex, flagged, clientTimestamp, seq, studentId);
 
         // Map sang DTO
         ApiResponse response = new ApiResponse();
@@ -328,8 +508,8 @@ public class SemesterTestController {
 
         Long userId = Long.valueOf(userIdStr);
 
-        // Dùng custom query - chỉ lấy results của userId
-        List<Result> results = semesterTestService.getMyResultsBySemesterTest(semesterTestId, userId);
+        // Chỉ đọc các cột tóm tắt, không kéo các cột JSONB của từng lượt làm
+        List<ResultStatusProjection> results = semesterTestService.getMyResultsBySemesterTest(semesterTestId, userId);
 
         // Map sang DTO
         List<ResultSummaryDTO> response = results.stream()
@@ -360,11 +540,13 @@ public class SemesterTestController {
         Long userId = Long.valueOf(userIdStr);
         Role userRole = Role.valueOf(userRoleStr);
 
-        Result result = semesterTestService.getResultById(resultId);
+        Result result = semesterTestService.getResultForDetail(resultId);
 
         // Kiểm tra quyền: STUDENT chỉ xem được result của mình
         if (userRole.equals(Role.STUDENT)) {
-            semesterTestService.validateStudentAccessLight(result.getId(), userId);
+            if (!userId.equals(result.getStudentId())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+            }
         } else if (userRole.equals(Role.TEACHER)) {
             semesterTestService.validateAccessTestWithTeacher(result.getSemesterTest().getSemester().getId(), userId);
         }
@@ -376,14 +558,14 @@ public class SemesterTestController {
         dto.setStartDateTime(result.getStartDateTime());
         dto.setSubmitDateTime(result.getSubmitDateTime());
         dto.setScore(result.getScore());
-        dto.setDetailTest(result.getDetailTest());
-        dto.setStudentAnswers(result.getStudentAnswers());
+        dto.setDetailTest(examPaperService.detailTestOf(result));
+        dto.setStudentAnswers(semesterTestService.studentAnswersOf(result));
         dto.setMinutes(result.getSemesterTest().getMinutes());
 
         // Chỉ hiển thị trueAnswers cho ADMIN/TEACHER hoặc sau khi STUDENT đã submit
         if (userRole == Role.ADMIN || userRole == Role.TEACHER
                 || (userRole == Role.STUDENT && result.getSubmitDateTime() != null)) {
-            dto.setTrueAnswers(result.getTrueAnswers());
+            dto.setTrueAnswers(examPaperService.trueAnswersOf(result));
         }
 
         return ResponseEntity.ok(dto);
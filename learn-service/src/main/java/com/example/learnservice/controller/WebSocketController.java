@@ -6,14 +6,18 @@ import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
 import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.service.RoomBackend;
+import com.example.learnservice.service.RoomPresenceService;
+import com.example.learnservice.service.RoomRegistry;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -25,13 +29,17 @@ public class WebSocketController {
     private final ResultRepository resultRepository;
 
     private final SimpMessagingTemplate messagingTemplate;
-    private final Map<Long, Set<UserStatus>> testRooms;
+    private final RoomRegistry roomRegistry;
+    // Gửi tới client trên mọi node (Redis pub/sub khi chạy nhiều node)
+    private final RoomBackend roomBackend;
+    private final RoomPresenceService roomPresenceService;
 
     /**
-     * User join test room
+     * User join test room: gửi delta JOINED cho cả phòng, trả snapshot riêng cho người vừa vào
      */
     @MessageMapping("/test/{semesterTestId}/join")
-    public void joinTestRoom(
+    @SendToUser(destinations = "/queue/test/state", broadcast = false)
+    public TestRoomUpdate joinTestRoom(
             @DestinationVariable Long semesterTestId,
             @Payload UserJoinMessage message,
             SimpMessageHeaderAccessor headerAccessor) {
@@ -46,22 +54,14 @@ public class WebSocketController {
         headerAccessor.getSessionAttributes().put("semesterTestId", semesterTestId);
         headerAccessor.getSessionAttributes().put("userId", message.userId());
 
-        // Add user to room or update if exists
-        Set<UserStatus> users = testRooms.get(semesterTestId);
-        if (users == null) {
-            users = java.util.concurrent.ConcurrentHashMap.newKeySet();
-            testRooms.put(semesterTestId, users);
-        }
-
-        // Remove old status if exists
-        users.removeIf(u -> u.userId().equals(message.userId()));
-        // Add new status
-        users.add(userStatus);
+        // Add user to room or update if exists, session này giữ user tới lần join sau
+        String sessionId = headerAccessor.getSessionId();
+        roomRegistry.join(semesterTestId, userStatus, sessionId);
+        roomPresenceService.track(semesterTestId, message.userId(), sessionId);
 
         log.info("User {} joined test room {}", message.userId(), semesterTestId);
 
-        // Broadcast updated list
-        broadcastUserList(semesterTestId);
+        return roomRegistry.snapshot(semesterTestId);
     }
 
     /**
@@ -70,43 +70,46 @@ public class WebSocketController {
     @MessageMapping("/test/{semesterTestId}/leave")
     public void leaveTestRoom(
             @DestinationVariable Long semesterTestId,
-            @Payload UserLeaveMessage message) {
-
-        Set<UserStatus> users = testRooms.get(semesterTestId);
-        if (users != null) {
-            users.removeIf(u -> u.userId().equals(message.userId()));
+            @Payload UserLeaveMessage message,
+            SimpMessageHeaderAccessor headerAccessor) {
+        removeUser(semesterTestId, message.userId(), headerAccessor.getSessionId());
+    }
 
-            if (users.isEmpty()) {
-                testRooms.remove(semesterTestId);
-            }
+    /**
+     * Heartbeat của user trong phòng, userId lấy từ session lúc join.
+     * Trả về false cho client nếu user đã bị xóa do quá hạn, client cần join lại
+     */
+    @MessageMapping("/test/{semesterTestId}/heartbeat")
+    @SendToUser(destinations = "/queue/test/presence", broadcast = false)
+    public boolean heartbeat(
+            @DestinationVariable Long semesterTestId,
+            SimpMessageHeaderAccessor headerAccessor) {
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        if (attributes == null || !semesterTestId.equals(attributes.get("semesterTestId"))
+                || !(attributes.get("userId") instanceof Long userId)) {
+            return false;
         }
+        return roomPresenceService.heartbeat(semesterTestId, userId);
+    }
 
-        log.info("User {} left test room {}", message.userId(), semesterTestId);
-        broadcastUserList(semesterTestId);
+    /**
+     * Xóa user khỏi phòng (rời phòng hoặc mất kết nối) và gửi delta LEFT.
+     * Chỉ xóa khi sessionId vẫn giữ user: session cũ ngắt sau khi user đã join lại
+     * (cùng node hoặc node khác) thì không xóa
+     */
+    public void removeUser(Long semesterTestId, Long userId, String sessionId) {
+        roomPresenceService.untrack(semesterTestId, userId, sessionId);
+        if (roomRegistry.leave(semesterTestId, userId, sessionId) != null) {
+            log.info("User {} left test room {}", userId, semesterTestId);
+        }
     }
 
     /**
      * Update user status (called from service when starting/ending test)
      */
     public void updateUserStatus(Long semesterTestId, Long userId, TestStatus status) {
-        Set<UserStatus> users = testRooms.get(semesterTestId);
-        if (users != null) {
-            UserStatus oldStatus = users.stream()
-                    .filter(u -> u.userId().equals(userId))
-                    .findFirst()
-                    .orElse(null);
-
-            if (oldStatus != null) {
-                users.remove(oldStatus);
-                users.add(new UserStatus(
-                        oldStatus.userId(),
-                        oldStatus.fullName(),
-                        oldStatus.cccd(),
-                        status));
-
-                log.info("User {} status updated to {} in test {}", userId, status, semesterTestId);
-                broadcastUserList(semesterTestId);
-            }
+        if (roomRegistry.updateStatus(semesterTestId, userId, status) != null) {
+            log.info("User {} status updated to {} in test {}", userId, status, semesterTestId);
         }
     }
 
@@ -115,58 +118,43 @@ public class WebSocketController {
      */
     public void notifyTestOpened(Long semesterTestId) {
         TestOpenedEvent event = new TestOpenedEvent(semesterTestId, true);
-        messagingTemplate.convertAndSend(
+        roomBackend.fanOut(
                 "/topic/test/" + semesterTestId + "/opened",
                 event);
         log.info("Test {} opened notification sent", semesterTestId);
     }
 
+    /**
+     * Snapshot đầy đủ của phòng, chỉ gửi cho client yêu cầu (lúc vào lại hoặc khi
+     * thấy version bị hụt)
+     */
     @MessageMapping("/test/{semesterTestId}/request-state")
-    public void requestRoomState(
+    @SendToUser(destinations = "/queue/test/state", broadcast = false)
+    public TestRoomUpdate requestRoomState(
             @DestinationVariable Long semesterTestId,
             @Payload UserJoinMessage message) {
-        log.info("User {} requested room state for test {}", message.userId(), semesterTestId);
-        broadcastUserList(semesterTestId);
-    }
-
-    /**
-     * Broadcast current user list to all users in room
-     */
-    private void broadcastUserList(Long semesterTestId) {
-        Set<UserStatus> users = testRooms.get(semesterTestId);
-
-        if (users == null || users.isEmpty()) {
-            users = Collections.emptySet();
-        }
-
-        // Count by status
-        long waitingCount = users.stream()
-                .filter(u -> u.status() == TestStatus.WAITING)
-                .count();
-        long testingCount = users.stream()
-                .filter(u -> u.status() == TestStatus.TESTING)
-                .count();
-
-        TestRoomUpdate update = new TestRoomUpdate(
-                semesterTestId,
-                users,
-                users.size(),
-                (int) waitingCount,
-                (int) testingCount);
-
-        messagingTemplate.convertAndSend(
-                "/topic/test/" + semesterTestId + "/users",
-                update);
+        log.debug("User {} requested room state for test {}", message.userId(), semesterTestId);
+        return roomRegistry.snapshot(semesterTestId);
     }
 
     public void notifyTestSubmitted(Long semesterTestId, Long resultId, Long userId, Float score) {
         TestSubmittedEvent event = new TestSubmittedEvent(semesterTestId, resultId, userId, score);
-        messagingTemplate.convertAndSend(
+        roomBackend.fanOut(
                 "/topic/test/" + semesterTestId + "/submitted",
                 event);
         log.info("Test submitted notification sent for user {} in test {}", userId, semesterTestId);
     }
 
+    /**
+     * Gửi thống kê điểm mới nhất cho dashboard giáo viên.
+     * Mọi node đều nhận mọi bài nộp (RoomBackend.publishScore) và tự gửi cho client của mình
+     */
+    public void notifyScoreStats(Long semesterTestId, Object stats) {
+        messagingTemplate.convertAndSend(
+                "/topic/test/" + semesterTestId + "/stats",
+                stats);
+    }
+
     // DTOs
     public record UserJoinMessage(Long userId, String fullName, String cccd) {
     }
@@ -190,14 +178,43 @@ public class WebSocketController {
         }
     }
 
+    /**
+     * Snapshot của phòng tại version, client áp dụng các delta có version lớn hơn
+     */
     public record TestRoomUpdate(
             Long semesterTestId,
+            long version,
             Set<UserStatus> users,
             int totalUsers,
             int waitingCount,
             int testingCount) {
     }
 
+    /**
+     * Các thay đổi của phòng trong 1 cửa sổ gộp. version tăng liên tục theo từng
+     * phòng, client thấy version hụt thì gửi request-state để lấy lại snapshot
+     */
+    public record RoomDelta(
+            Long semesterTestId,
+            long version,
+            List<RoomChange> changes,
+            int totalUsers,
+            int waitingCount,
+            int testingCount) {
+    }
+
+    public record RoomChange(RoomEvent event, UserStatus user) {
+    }
+
+    public record RoomCounts(int total, int waiting, int testing) {
+    }
+
+    public enum RoomEvent {
+        JOINED,
+        LEFT,
+        STATUS_CHANGED
+    }
+
     public record TestSubmittedEvent(Long semesterTestId, Long resultId, Long userId, Float score) {
     }
 
@@ -7,5 +7,8 @@ import lombok.Data;
 @Data
 public class AccountDTO {
     private Long id;
+    private String username;
+    private String firstName;
+    private String lastName;
     private Role role;
 }
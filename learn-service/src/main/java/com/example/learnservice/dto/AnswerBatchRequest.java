@@ -0,0 +1,13 @@
+package com.example.learnservice.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+@Data
+public class AnswerBatchRequest {
+    @NotEmpty(message = "Updates are required")
+    private List<@Valid AnswerUpdate> updates;
+}
@@ -0,0 +1,13 @@
+package com.example.learnservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class AnswerBatchResponse {
+    private Boolean success;
+    private Long resultId;
+    // Mọi thay đổi có seq <= ackSeq đã được ghi (hoặc bỏ qua vì cũ), client xóa khỏi hàng đợi
+    private Long ackSeq;
+}
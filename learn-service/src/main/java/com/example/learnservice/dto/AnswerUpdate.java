@@ -0,0 +1,29 @@
+package com.example.learnservice.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 1 thay đổi trong lô đáp án, answerIndices / flagged null = không đổi
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerUpdate {
+    @NotNull(message = "Question index is required")
+    private Integer questionIndex;
+
+    private List<Integer> answerIndices;
+    private Boolean flagged;
+
+    // Số thứ tự tăng dần phía client, đáp án / flag có seq <= seq đã ghi của field đó bị bỏ qua
+    @NotNull(message = "Sequence number is required")
+    private Long seq;
+
+    private LocalDateTime clientTimestamp;
+}
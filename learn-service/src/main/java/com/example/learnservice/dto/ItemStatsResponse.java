@@ -0,0 +1,24 @@
+package com.example.learnservice.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Chỉ số phân tích của 1 câu hỏi, testId null khi gộp mọi Test
+ */
+@Data
+@Builder
+public class ItemStatsResponse {
+    private Long questionId;
+    private Long testId;
+    private Long attempts;
+    private Long correct;
+    private Long answered;
+    // Độ khó: tỉ lệ làm đúng
+    private Double pValue;
+    // Độ phân biệt: tương quan point-biserial với tổng điểm
+    private Double pointBiserial;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,14 @@
+package com.example.learnservice.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProgressPageResponse {
+    private List<ResultProgressResponse> entries;
+    // Truyền vào after để lấy trang sau, null nếu đã hết
+    private Long nextAfter;
+}
@@ -0,0 +1,13 @@
+package com.example.learnservice.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class QuestionBundleResponse {
+    private Long resultId;
+    private Integer from;
+    private Integer totalQuestions;
+    private List<QuestionResponse> questions;
+}
@@ -0,0 +1,9 @@
+package com.example.learnservice.dto;
+
+public interface ResultAnswersProjection {
+    Long getId();
+
+    Long getExamPaperId();
+
+    String getStudentAnswers();
+}
@@ -0,0 +1,29 @@
+package com.example.learnservice.dto;
+
+import java.time.LocalDateTime;
+
+public interface ResultAttemptProjection {
+    Long getId();
+
+    Long getStudentId();
+
+    Long getSemesterTestId();
+
+    LocalDateTime getStartDateTime();
+
+    LocalDateTime getSubmitDateTime();
+
+    LocalDateTime getEndDate();
+
+    Integer getMinutes();
+
+    Integer getQuestionCount();
+
+    Long getExamPaperId();
+
+    Long getShuffleSeed();
+
+    Boolean getShuffleQuestions();
+
+    Boolean getShuffleAnswers();
+}
@@ -0,0 +1,15 @@
+package com.example.learnservice.dto;
+
+import java.time.LocalDateTime;
+
+public interface ResultDeadlineProjection {
+    Long getId();
+
+    Long getSemesterTestId();
+
+    LocalDateTime getStartDateTime();
+
+    LocalDateTime getEndDate();
+
+    Integer getMinutes();
+}
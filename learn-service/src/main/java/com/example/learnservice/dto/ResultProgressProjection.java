@@ -0,0 +1,21 @@
+package com.example.learnservice.dto;
+
+import java.time.LocalDateTime;
+
+public interface ResultProgressProjection {
+    Long getId();
+
+    Long getStudentId();
+
+    Long getSemesterTestId();
+
+    Integer getAnsweredCount();
+
+    Integer getFlaggedCount();
+
+    Integer getQuestionCount();
+
+    LocalDateTime getStartDateTime();
+
+    LocalDateTime getSubmitDateTime();
+}
@@ -0,0 +1,20 @@
+package com.example.learnservice.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ResultProgressResponse {
+    private Long resultId;
+    private Long studentId;
+    private Long semesterTestId;
+    private Integer answeredCount;
+    private Integer flaggedCount;
+    // null với Result cũ không có exam_paper
+    private Integer questionCount;
+    private LocalDateTime startDateTime;
+    private LocalDateTime submitDateTime;
+}
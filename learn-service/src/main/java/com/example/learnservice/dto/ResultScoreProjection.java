@@ -0,0 +1,7 @@
+package com.example.learnservice.dto;
+
+public interface ResultScoreProjection {
+    Long getId();
+
+    Float getScore();
+}
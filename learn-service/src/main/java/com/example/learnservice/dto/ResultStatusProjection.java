@@ -7,6 +7,8 @@ public interface ResultStatusProjection {
 
     Long getStudentId();
 
+    LocalDateTime getStartDateTime();
+
     LocalDateTime getSubmitDateTime();
 
     Float getScore();
@@ -0,0 +1,30 @@
+package com.example.learnservice.dto;
+
+import java.time.LocalDateTime;
+
+import com.example.learnservice.enums.ScoringPolicy;
+import com.fasterxml.jackson.databind.JsonNode;
+
+public interface ResultSubmitProjection {
+    Long getId();
+
+    Long getStudentId();
+
+    Long getSemesterTestId();
+
+    LocalDateTime getStartDateTime();
+
+    LocalDateTime getSubmitDateTime();
+
+    LocalDateTime getStartDate();
+
+    LocalDateTime getEndDate();
+
+    Integer getMinutes();
+
+    ScoringPolicy getScoringPolicy();
+
+    Long getExamPaperId();
+
+    JsonNode getStudentAnswers();
+}
@@ -0,0 +1,9 @@
+package com.example.learnservice.dto;
+
+public interface RosterCountsProjection {
+    Long getSubmitted();
+
+    Long getInProgress();
+
+    Long getNotStarted();
+}
@@ -0,0 +1,17 @@
+package com.example.learnservice.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RosterEntry {
+    private Long studentId;
+    // null nếu chưa vào thi
+    private Long resultId;
+    private LocalDateTime startDateTime;
+    private LocalDateTime submitDateTime;
+    private Float score;
+}
@@ -0,0 +1,17 @@
+package com.example.learnservice.dto;
+
+import java.util.List;
+
+import com.example.learnservice.enums.RosterStatus;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RosterPageResponse {
+    private RosterStatus status;
+    private List<RosterEntry> entries;
+    // Truyền vào after để lấy trang sau, null nếu đã hết
+    private Long nextAfter;
+}
@@ -0,0 +1,13 @@
+package com.example.learnservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RosterSummaryResponse {
+    private Long semesterTestId;
+    private long submitted;
+    private long inProgress;
+    private long notStarted;
+}
@@ -0,0 +1,28 @@
+package com.example.learnservice.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import com.example.learnservice.util.stats.ScoreStatistics;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Thống kê điểm của 1 SemesterTest, các giá trị null khi chưa có bài nộp
+ */
+@Data
+@Builder
+public class ScoreStatsResponse {
+    private Long semesterTestId;
+    private Long count;
+    private Double mean;
+    private Double variance;
+    private Double stdDev;
+    private Double min;
+    private Double max;
+    // p25, p50, p75, p90 (ước lượng)
+    private Map<String, Double> percentiles;
+    private Double bucketWidth;
+    private List<ScoreStatistics.Bucket> histogram;
+}
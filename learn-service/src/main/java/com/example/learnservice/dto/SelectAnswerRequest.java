@@ -1,5 +1,6 @@
 package com.example.learnservice.dto;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import jakarta.validation.constraints.NotNull;
@@ -13,4 +14,8 @@ import lombok.NoArgsConstructor;
 public class SelectAnswerRequest {
     @NotNull(message = "Answer indices is required")
     private List<Integer> answerIndices;
+
+    // Không bắt buộc, lưu vào log sự kiện để đối chiếu
+    private LocalDateTime clientTimestamp;
+    private Long seq;
 }
\ No newline at end of file
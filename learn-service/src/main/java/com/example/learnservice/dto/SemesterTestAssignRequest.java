@@ -3,6 +3,7 @@ package com.example.learnservice.dto;
 import java.time.LocalDateTime;
 
 import com.drew.lang.annotations.NotNull;
+import com.example.learnservice.enums.ScoringPolicy;
 import com.example.learnservice.enums.TestType;
 
 import lombok.Data;
@@ -18,4 +19,8 @@ public class SemesterTestAssignRequest {
     private Integer minutes;
     @NotNull
     private TestType type;
+    private ScoringPolicy scoringPolicy;
+    private Boolean provisionOnOpen;
+    private Boolean shuffleQuestions;
+    private Boolean shuffleAnswers;
 }
@@ -2,6 +2,7 @@ package com.example.learnservice.dto;
 
 import java.time.LocalDateTime;
 
+import com.example.learnservice.enums.ScoringPolicy;
 import com.example.learnservice.enums.TestType;
 
 import jakarta.validation.constraints.NotNull;
@@ -19,4 +20,8 @@ public class SemesterTestCreateRequest {
     private Integer minutes;
     private LocalDateTime startDate;
     private LocalDateTime endDate;
+    private ScoringPolicy scoringPolicy;
+    private Boolean provisionOnOpen;
+    private Boolean shuffleQuestions;
+    private Boolean shuffleAnswers;
 }
@@ -2,6 +2,8 @@ package com.example.learnservice.dto;
 
 import java.time.LocalDateTime;
 
+import com.example.learnservice.enums.ScoringPolicy;
+
 import lombok.Data;
 
 @Data
@@ -10,4 +12,8 @@ public class SemesterTestUpdateRequest {
     private LocalDateTime startDate;
     private LocalDateTime endDate;
     private Integer minutes;
+    private ScoringPolicy scoringPolicy;
+    private Boolean provisionOnOpen;
+    private Boolean shuffleQuestions;
+    private Boolean shuffleAnswers;
 }
@@ -0,0 +1,6 @@
+package com.example.learnservice.enums;
+
+public enum ExportFormat {
+    CSV,
+    XLSX
+}
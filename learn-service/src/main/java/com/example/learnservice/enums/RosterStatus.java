@@ -0,0 +1,7 @@
+package com.example.learnservice.enums;
+
+public enum RosterStatus {
+    SUBMITTED,
+    IN_PROGRESS,
+    NOT_STARTED
+}
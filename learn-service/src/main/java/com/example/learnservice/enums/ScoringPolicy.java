@@ -0,0 +1,10 @@
+package com.example.learnservice.enums;
+
+public enum ScoringPolicy {
+    // Đúng hoàn toàn mới được điểm (mặc định)
+    ALL_OR_NOTHING,
+    // Điểm theo tỉ lệ đáp án đúng, chọn sai bị trừ, tối thiểu 0
+    PARTIAL_CREDIT,
+    // Đúng +1, bỏ trống 0, sai bị trừ điểm phạt
+    NEGATIVE_MARKING
+}
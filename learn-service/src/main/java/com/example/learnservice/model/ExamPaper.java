@@ -0,0 +1,69 @@
+package com.example.learnservice.model;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Type;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * Đề thi đã "đóng băng" của một SemesterTest.
+ * Dùng chung cho mọi Result, không sửa sau khi tạo. Nội dung đề thay đổi thì
+ * tạo version mới (phân biệt bằng contentHash).
+ */
+@Entity
+@Data
+@Table(name = "exam_paper", uniqueConstraints = {
+        @UniqueConstraint(columnNames = { "semester_test_id", "version" }),
+        @UniqueConstraint(columnNames = { "semester_test_id", "content_hash" })
+}, indexes = @Index(columnList = "semester_test_id"))
+public class ExamPaper {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "semester_test_id", nullable = false, updatable = false)
+    private Long semesterTestId;
+
+    @Column(nullable = false, updatable = false)
+    private Integer version;
+
+    // SHA-256 của detailTest + trueAnswers + questionIds
+    @Column(name = "content_hash", length = 64, nullable = false, updatable = false)
+    private String contentHash;
+
+    @Column(nullable = false, updatable = false)
+    private Integer questionCount;
+
+    @Type(JsonBinaryType.class)
+    @Column(columnDefinition = "jsonb", updatable = false)
+    private JsonNode detailTest;
+
+    @JsonIgnore
+    @Type(JsonBinaryType.class)
+    @Column(columnDefinition = "jsonb", updatable = false)
+    private JsonNode trueAnswers;
+
+    // id câu hỏi trong ngân hàng theo thứ tự câu của đề (phân tích câu hỏi)
+    @JsonIgnore
+    @Type(JsonBinaryType.class)
+    @Column(columnDefinition = "jsonb", updatable = false)
+    private JsonNode questionIds;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,51 @@
+package com.example.learnservice.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * Bộ đếm phân tích câu hỏi của 1 câu trong 1 Test (gộp mọi SemesterTest).
+ * Chỉ chứa tổng nên cộng dồn được: thêm bài nộp mới chỉ cần cộng thêm.
+ * "total" là số câu đúng của cả bài (chấm ALL_OR_NOTHING).
+ */
+@Entity
+@Data
+@Table(name = "question_item_stats", uniqueConstraints = @UniqueConstraint(columnNames = { "test_id",
+        "question_id" }), indexes = @Index(columnList = "question_id"))
+public class QuestionItemStats {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "test_id", nullable = false)
+    private Long testId;
+
+    @Column(name = "question_id", nullable = false)
+    private Long questionId;
+
+    // Số bài làm có câu này
+    private Long attempts;
+
+    // Số bài làm đúng câu này
+    private Long correct;
+
+    // Số bài có chọn đáp án (không bỏ trống)
+    private Long answered;
+
+    private Double sumTotal;
+    private Double sumTotalSq;
+
+    // Tổng "total" của các bài làm đúng câu này
+    private Double sumTotalCorrect;
+
+    private LocalDateTime updatedAt;
+}
@@ -1,9 +1,9 @@
 package com.example.learnservice.model;
 
 import java.time.LocalDateTime;
-import java.util.Map;
 
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.Type;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -13,15 +13,32 @@ import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 @Entity
 @Data
+// UPDATE chỉ ghi các cột thay đổi, đổi vài cột nhỏ không ghi lại các cột JSONB
+@DynamicUpdate
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_result_exam_attempt", columnNames = {
+        "semester_test_id", "exam_student_id" }), indexes = {
+        // Roster: lượt làm gần nhất của từng học viên theo thứ tự student_id. Cũng dùng cho
+        // các query tra lượt làm theo (semester_test_id, student_id) (quét ngược created_at)
+        @Index(name = "idx_result_roster", columnList = "semester_test_id, student_id, created_at DESC"),
+        @Index(name = "idx_result_item_analyzed", columnList = "item_analyzed, id"),
+        @Index(name = "idx_result_semester_test", columnList = "semester_test_id, id")
+})
+// Đặt tên mọi index để db/result-partitioning.sql tạo lại đúng tên, ddl-auto=update không tạo trùng
 public class Result {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -32,6 +49,14 @@ public class Result {
     @JoinColumn(name = "semester_test_id")
     private SemesterTest semesterTest;
 
+    // Đề thi dùng chung, Result cũ (trước khi có exam_paper) vẫn dùng detailTest/trueAnswers riêng
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "exam_paper_id")
+    private ExamPaper examPaper;
+
     @Type(JsonBinaryType.class)
     @Column(columnDefinition = "jsonb")
     private JsonNode detailTest;
@@ -50,6 +75,35 @@ public class Result {
     private Long studentId;
     private Float score;
 
+    // = studentId với bài EXAM (mỗi học viên 1 lượt), null với bài luyện tập để làm được nhiều lần.
+    // uk_result_exam_attempt là đích ON CONFLICT khi bắt đầu thi / tạo sẵn Result
+    @JsonIgnore
+    @Column(name = "exam_student_id", updatable = false)
+    private Long examStudentId;
+
+    // Thứ tự câu hỏi / đáp án của lượt làm bài suy ra từ (id, shuffleSeed), null = theo đề
+    @JsonIgnore
+    @Column(updatable = false)
+    private Long shuffleSeed;
+
+    // Số câu đã trả lời / đã flag, cập nhật cùng câu UPDATE ghi student_answers
+    @Column(name = "answered_count", columnDefinition = "integer default 0 not null", insertable = false, updatable = false)
+    private Integer answeredCount;
+
+    @Column(name = "flagged_count", columnDefinition = "integer default 0 not null", insertable = false, updatable = false)
+    private Integer flaggedCount;
+
+    // id sự kiện trả lời cuối cùng đã áp dụng vào studentAnswers (AnswerEventService)
+    @JsonIgnore
+    @Column(name = "answer_log_applied_id", columnDefinition = "bigint default 0 not null", insertable = false,
+            updatable = false)
+    private Long answerLogAppliedId;
+
+    // Đã cộng vào thống kê câu hỏi chưa, chỉ ItemAnalysisService cập nhật
+    @JsonIgnore
+    @Column(name = "item_analyzed", columnDefinition = "boolean default false", insertable = false, updatable = false)
+    private Boolean itemAnalyzed;
+
     @JsonIgnore
     @CreationTimestamp
     @Column(updatable = false)
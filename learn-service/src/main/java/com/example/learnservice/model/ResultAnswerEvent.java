@@ -0,0 +1,60 @@
+package com.example.learnservice.model;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Type;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * 1 lần chọn đáp án hoặc flag trong lúc thi (chỉ thêm, không sửa).
+ * selectedAnswers null là sự kiện flag, flagged null là sự kiện chọn đáp án.
+ * Thứ tự áp dụng theo id; student_answers của Result được dựng lại từ log lúc nộp bài.
+ */
+@Entity
+@Data
+@Table(name = "result_answer_event", indexes = {
+        @Index(columnList = "result_id, id"),
+        // Đọc câu hỏi trong lúc thi chỉ lấy sự kiện của các câu đang xem
+        @Index(columnList = "result_id, question_index, id")
+})
+public class ResultAnswerEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "result_id", nullable = false, updatable = false)
+    private Long resultId;
+
+    @Column(nullable = false, updatable = false)
+    private Integer questionIndex;
+
+    @Type(JsonBinaryType.class)
+    @Column(columnDefinition = "jsonb", updatable = false)
+    private JsonNode selectedAnswers;
+
+    @Column(updatable = false)
+    private Boolean flagged;
+
+    // Thời điểm và số thứ tự do client gửi (có thể null)
+    @Column(updatable = false)
+    private LocalDateTime clientTimestamp;
+
+    @Column(updatable = false)
+    private Long seq;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+}
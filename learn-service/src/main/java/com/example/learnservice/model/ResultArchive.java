@@ -0,0 +1,77 @@
+package com.example.learnservice.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Result của kỳ học đã kết thúc, được chuyển khỏi bảng result.
+ * Các cột JSONB được gộp thành 1 document và nén gzip vào payload.
+ * id giữ nguyên id của Result gốc (gán tay) nên isNew dựa vào trạng thái đã lưu/đã đọc,
+ * saveAll chỉ INSERT, không SELECT từng dòng như merge.
+ */
+@Entity
+@Data
+@Table(name = "result_archive", indexes = @Index(columnList = "semester_test_id, student_id"))
+public class ResultArchive implements Persistable<Long> {
+    @Id
+    private Long id;
+
+    @Column(name = "semester_test_id", updatable = false)
+    private Long semesterTestId;
+
+    @Column(name = "student_id", updatable = false)
+    private Long studentId;
+
+    @Column(updatable = false)
+    private Long examPaperId;
+
+    private LocalDateTime startDateTime;
+    private LocalDateTime submitDateTime;
+    private Float score;
+
+    @Column(updatable = false)
+    private Long shuffleSeed;
+
+    @Column(updatable = false)
+    private Integer answeredCount;
+
+    @Column(updatable = false)
+    private Integer flaggedCount;
+
+    // gzip({"detailTest": ..., "trueAnswers": ..., "studentAnswers": ...})
+    @Column(columnDefinition = "bytea", updatable = false)
+    private byte[] payload;
+
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(updatable = false)
+    private LocalDateTime archivedAt;
+
+    @Transient
+    @EqualsAndHashCode.Exclude
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
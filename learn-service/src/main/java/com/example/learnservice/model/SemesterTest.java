@@ -6,6 +6,7 @@ import java.util.List;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import com.example.learnservice.enums.ScoringPolicy;
 import com.example.learnservice.enums.TestType;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -39,6 +40,17 @@ public class SemesterTest {
     @Enumerated(EnumType.STRING)
     private TestType type;
 
+    // null = ALL_OR_NOTHING
+    @Enumerated(EnumType.STRING)
+    private ScoringPolicy scoringPolicy;
+
+    // Tạo sẵn Result cho mọi học viên khi mở bài thi (chỉ áp dụng EXAM)
+    private Boolean provisionOnOpen;
+
+    // Mỗi lượt làm bài có thứ tự câu hỏi / đáp án riêng (theo Result.shuffleSeed)
+    private Boolean shuffleQuestions;
+    private Boolean shuffleAnswers;
+
     @JsonIgnore
     @ManyToOne
     @JoinColumn(name = "semester_id")
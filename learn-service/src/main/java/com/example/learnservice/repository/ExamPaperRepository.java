@@ -0,0 +1,38 @@
+package com.example.learnservice.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.learnservice.model.ExamPaper;
+
+@Repository
+public interface ExamPaperRepository extends JpaRepository<ExamPaper, Long> {
+
+        @Query("SELECT MAX(p.version) FROM ExamPaper p WHERE p.semesterTestId = :semesterTestId")
+        Optional<Integer> findLatestVersion(@Param("semesterTestId") Long semesterTestId);
+
+        Optional<ExamPaper> findBySemesterTestIdAndContentHash(Long semesterTestId, String contentHash);
+
+        /**
+         * Tạo đề mới, bỏ qua nếu trùng (semester_test_id, version) hoặc
+         * (semester_test_id, content_hash) do node khác vừa tạo
+         */
+        @Modifying
+        @Query(value = "INSERT INTO exam_paper (semester_test_id, version, content_hash, question_count, " +
+                        "detail_test, true_answers, question_ids, created_at) " +
+                        "VALUES (:semesterTestId, :version, :contentHash, :questionCount, " +
+                        "CAST(:detailTest AS jsonb), CAST(:trueAnswers AS jsonb), CAST(:questionIds AS jsonb), now()) " +
+                        "ON CONFLICT DO NOTHING", nativeQuery = true)
+        int insertIfAbsent(@Param("semesterTestId") Long semesterTestId,
+                        @Param("version") Integer version,
+                        @Param("contentHash") String contentHash,
+                        @Param("questionCount") Integer questionCount,
+                        @Param("detailTest") String detailTest,
+                        @Param("trueAnswers") String trueAnswers,
+                        @Param("questionIds") String questionIds);
+}
@@ -0,0 +1,51 @@
+package com.example.learnservice.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.learnservice.model.QuestionItemStats;
+
+@Repository
+public interface QuestionItemStatsRepository extends JpaRepository<QuestionItemStats, Long> {
+
+        List<QuestionItemStats> findByTestIdOrderByQuestionId(Long testId);
+
+        List<QuestionItemStats> findByQuestionIdOrderByTestId(Long questionId);
+
+        /**
+         * Cộng dồn bộ đếm của nhiều câu trong 1 Test (mỗi mảng cùng thứ tự câu).
+         * Chèn theo thứ tự question_id để các worker song song khóa dòng cùng thứ tự.
+         */
+        @Modifying
+        @Query(value = "INSERT INTO question_item_stats (test_id, question_id, attempts, correct, answered, " +
+                        "sum_total, sum_total_sq, sum_total_correct, updated_at) " +
+                        "SELECT :testId, d.question_id, d.attempts, d.correct, d.answered, " +
+                        "d.sum_total, d.sum_total_sq, d.sum_total_correct, now() " +
+                        "FROM unnest(CAST(:questionIds AS bigint[]), CAST(:attempts AS bigint[]), " +
+                        "CAST(:correct AS bigint[]), CAST(:answered AS bigint[]), " +
+                        "CAST(:sumTotal AS float8[]), CAST(:sumTotalSq AS float8[]), " +
+                        "CAST(:sumTotalCorrect AS float8[])) " +
+                        "AS d(question_id, attempts, correct, answered, sum_total, sum_total_sq, sum_total_correct) " +
+                        "ORDER BY d.question_id " +
+                        "ON CONFLICT (test_id, question_id) DO UPDATE SET " +
+                        "attempts = question_item_stats.attempts + EXCLUDED.attempts, " +
+                        "correct = question_item_stats.correct + EXCLUDED.correct, " +
+                        "answered = question_item_stats.answered + EXCLUDED.answered, " +
+                        "sum_total = question_item_stats.sum_total + EXCLUDED.sum_total, " +
+                        "sum_total_sq = question_item_stats.sum_total_sq + EXCLUDED.sum_total_sq, " +
+                        "sum_total_correct = question_item_stats.sum_total_correct + EXCLUDED.sum_total_correct, " +
+                        "updated_at = now()", nativeQuery = true)
+        int addCounters(@Param("testId") Long testId,
+                        @Param("questionIds") String questionIds,
+                        @Param("attempts") String attempts,
+                        @Param("correct") String correct,
+                        @Param("answered") String answered,
+                        @Param("sumTotal") String sumTotal,
+                        @Param("sumTotalSq") String sumTotalSq,
+                        @Param("sumTotalCorrect") String sumTotalCorrect);
+}
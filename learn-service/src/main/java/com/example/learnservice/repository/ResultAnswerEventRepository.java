@@ -0,0 +1,79 @@
+package com.example.learnservice.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.learnservice.model.ResultAnswerEvent;
+
+@Repository
+public interface ResultAnswerEventRepository extends JpaRepository<ResultAnswerEvent, Long> {
+
+        /**
+         * Các sự kiện chưa được áp dụng vào student_answers, theo thứ tự ghi
+         */
+        @Query(value = "SELECT e.* FROM result_answer_event e " +
+                        "JOIN result r ON r.id = e.result_id " +
+                        "WHERE e.result_id = :resultId AND e.id > r.answer_log_applied_id " +
+                        "ORDER BY e.id", nativeQuery = true)
+        List<ResultAnswerEvent> findUnapplied(@Param("resultId") Long resultId);
+
+        /**
+         * Sự kiện chờ áp dụng của Result chưa nộp (đọc câu hỏi trong lúc thi),
+         * lọc semester_test_id để chỉ đọc 1 partition của result
+         */
+        @Query(value = "SELECT e.* FROM result_answer_event e " +
+                        "JOIN result r ON r.id = e.result_id AND r.semester_test_id = :semesterTestId " +
+                        "WHERE e.result_id = :resultId AND e.id > r.answer_log_applied_id " +
+                        "AND r.submit_date_time IS NULL " +
+                        "ORDER BY e.id", nativeQuery = true)
+        List<ResultAnswerEvent> findPending(@Param("resultId") Long resultId,
+                        @Param("semesterTestId") Long semesterTestId);
+
+        /**
+         * Như findPending, chỉ các câu cần đọc (index của đề)
+         */
+        @Query(value = "SELECT e.* FROM result_answer_event e " +
+                        "JOIN result r ON r.id = e.result_id AND r.semester_test_id = :semesterTestId " +
+                        "WHERE e.result_id = :resultId AND e.id > r.answer_log_applied_id " +
+                        "AND r.submit_date_time IS NULL " +
+                        "AND e.question_index = ANY(CAST(:questionIndices AS int[])) " +
+                        "ORDER BY e.id", nativeQuery = true)
+        List<ResultAnswerEvent> findPendingByQuestions(@Param("resultId") Long resultId,
+                        @Param("semesterTestId") Long semesterTestId,
+                        @Param("questionIndices") String questionIndices);
+
+        /**
+         * Ghi 1 lô sự kiện trong 1 câu INSERT, giữ thứ tự trong lô.
+         * Chỉ ghi khi Result chưa nộp; FOR SHARE giữ dòng result tới khi commit nên các lần
+         * ghi chạy song song với nhau nhưng lần nộp (lockWritable / UPDATE) phải chờ chúng.
+         * Ghi sau lần nộp thì trả về 0.
+         * updates: [{"questionIndex": 0, "answerIndices": [1], "flagged": null, "seq": 5, "clientTimestamp": "..."}]
+         */
+        @Modifying
+        @Query(value = "INSERT INTO result_answer_event (result_id, question_index, selected_answers, flagged, " +
+                        "client_timestamp, seq, created_at) " +
+                        "SELECT r.id, CAST(u.value->>'questionIndex' AS int), " +
+                        "NULLIF(u.value->'answerIndices', 'null'::jsonb), CAST(u.value->>'flagged' AS boolean), " +
+                        "CAST(u.value->>'clientTimestamp' AS timestamp), CAST(u.value->>'seq' AS bigint), now() " +
+                        "FROM (SELECT id FROM result WHERE id = :resultId AND semester_test_id = :semesterTestId " +
+                        "AND submit_date_time IS NULL FOR SHARE) r " +
+                        "CROSS JOIN jsonb_array_elements(CAST(:updates AS jsonb)) WITH ORDINALITY u(value, ord) " +
+                        "ORDER BY u.ord", nativeQuery = true)
+        int insertBatch(@Param("resultId") Long resultId, @Param("semesterTestId") Long semesterTestId,
+                        @Param("updates") String updates);
+
+        /**
+         * Toàn bộ lịch sử trả lời của 1 Result (giải quyết khiếu nại)
+         */
+        List<ResultAnswerEvent> findByResultIdOrderByIdAsc(Long resultId);
+
+        @Modifying
+        @Query(value = "DELETE FROM result_answer_event WHERE result_id = ANY(CAST(:resultIds AS bigint[]))",
+                        nativeQuery = true)
+        int deleteByResultIds(@Param("resultIds") String resultIds);
+}
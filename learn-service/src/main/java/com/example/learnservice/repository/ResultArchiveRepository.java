@@ -0,0 +1,10 @@
+package com.example.learnservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.learnservice.model.ResultArchive;
+
+@Repository
+public interface ResultArchiveRepository extends JpaRepository<ResultArchive, Long> {
+}
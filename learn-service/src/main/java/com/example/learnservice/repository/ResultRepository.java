@@ -1,16 +1,32 @@
 package com.example.learnservice.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
 
+import com.example.learnservice.dto.ResultAnswersProjection;
+import com.example.learnservice.dto.ResultAttemptProjection;
+import com.example.learnservice.dto.ResultDeadlineProjection;
+import com.example.learnservice.dto.ResultProgressProjection;
+import com.example.learnservice.dto.ResultScoreProjection;
 import com.example.learnservice.dto.ResultStatusProjection;
+import com.example.learnservice.dto.ResultSubmitProjection;
+import com.example.learnservice.dto.RosterCountsProjection;
 import com.example.learnservice.model.Result;
+import com.fasterxml.jackson.databind.JsonNode;
 
 @Repository
 public interface ResultRepository extends JpaRepository<Result, Long> {
@@ -22,17 +38,80 @@ public interface ResultRepository extends JpaRepository<Result, Long> {
         List<Result> findBySemesterTestIdAndStudentId(@Param("semesterTestId") Long semesterTestId,
                         @Param("userId") Long userId);
 
+        /**
+         * Các lượt làm bài của user trong một semester test, chỉ các cột tóm tắt
+         * (không đọc detailTest/trueAnswers/studentAnswers)
+         */
+        @Query("SELECT r.id AS id, r.studentId AS studentId, r.startDateTime AS startDateTime, " +
+                        "r.submitDateTime AS submitDateTime, r.score AS score " +
+                        "FROM Result r WHERE r.semesterTest.id = :semesterTestId AND r.studentId = :userId " +
+                        "ORDER BY r.createdAt")
+        List<ResultStatusProjection> findSummariesBySemesterTestIdAndStudentId(
+                        @Param("semesterTestId") Long semesterTestId,
+                        @Param("userId") Long userId);
+
         /**
          * Kiểm tra user đã từng làm một semester test nào đó chưa
          */
         boolean existsBySemesterTestIdAndStudentId(Long semesterTestId, Long userId);
 
+        /**
+         * Semester test đã có Result nào chưa (tạo sẵn hoặc đã vào thi)
+         */
+        boolean existsBySemesterTestId(Long semesterTestId);
+
         /**
          * Kiểm tra quyền truy cập - chỉ lấy studentId
          */
         @Query("SELECT r.studentId FROM Result r WHERE r.id = :resultId")
         Optional<Long> findStudentIdById(@Param("resultId") Long resultId);
 
+        /**
+         * Thông tin 1 lượt làm bài cho cache: chủ bài, trạng thái nộp, deadline, số câu, cách xáo đề
+         */
+        @Query("SELECT r.id AS id, r.studentId AS studentId, st.id AS semesterTestId, " +
+                        "r.startDateTime AS startDateTime, r.submitDateTime AS submitDateTime, " +
+                        "st.endDate AS endDate, st.minutes AS minutes, p.questionCount AS questionCount, " +
+                        "p.id AS examPaperId, r.shuffleSeed AS shuffleSeed, " +
+                        "st.shuffleQuestions AS shuffleQuestions, st.shuffleAnswers AS shuffleAnswers " +
+                        "FROM Result r LEFT JOIN r.semesterTest st LEFT JOIN r.examPaper p WHERE r.id = :resultId")
+        Optional<ResultAttemptProjection> findAttemptById(@Param("resultId") Long resultId);
+
+        /**
+         * Dữ liệu để nộp + chấm 1 Result: chỉ studentAnswers trong các cột JSONB
+         */
+        @Query("SELECT r.id AS id, r.studentId AS studentId, st.id AS semesterTestId, " +
+                        "r.startDateTime AS startDateTime, r.submitDateTime AS submitDateTime, " +
+                        "st.startDate AS startDate, st.endDate AS endDate, st.minutes AS minutes, " +
+                        "st.scoringPolicy AS scoringPolicy, p.id AS examPaperId, r.studentAnswers AS studentAnswers " +
+                        "FROM Result r LEFT JOIN r.semesterTest st LEFT JOIN r.examPaper p WHERE r.id = :resultId")
+        Optional<ResultSubmitProjection> findSubmitById(@Param("resultId") Long resultId);
+
+        @Query("SELECT r.id AS id, r.studentId AS studentId, st.id AS semesterTestId, " +
+                        "r.startDateTime AS startDateTime, r.submitDateTime AS submitDateTime, " +
+                        "st.startDate AS startDate, st.endDate AS endDate, st.minutes AS minutes, " +
+                        "st.scoringPolicy AS scoringPolicy, p.id AS examPaperId, r.studentAnswers AS studentAnswers " +
+                        "FROM Result r LEFT JOIN r.semesterTest st LEFT JOIN r.examPaper p WHERE r.id IN :resultIds")
+        List<ResultSubmitProjection> findSubmitByIds(@Param("resultIds") List<Long> resultIds);
+
+        /**
+         * trueAnswers riêng của Result cũ (trước khi có exam_paper)
+         */
+        @Query("SELECT r.trueAnswers FROM Result r WHERE r.id = :resultId")
+        JsonNode findTrueAnswersById(@Param("resultId") Long resultId);
+
+        /**
+         * Nộp bài: chỉ ghi thời điểm nộp + điểm, không ghi lại các cột JSONB.
+         * Trả 0 nếu Result đã được nộp (nộp tay và nộp tự động tranh nhau).
+         * Clear persistence context để Result đã nạp trước đó không giữ trạng thái cũ
+         */
+        @Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query(value = "UPDATE result SET submit_date_time = :submitDateTime, score = :score, updated_at = now() " +
+                        "WHERE id = :resultId AND submit_date_time IS NULL", nativeQuery = true)
+        int submit(@Param("resultId") Long resultId,
+                        @Param("submitDateTime") LocalDateTime submitDateTime,
+                        @Param("score") Float score);
+
         /**
          * Kiểm tra đã submit chưa
          */
@@ -40,19 +119,46 @@ public interface ResultRepository extends JpaRepository<Result, Long> {
         Optional<Boolean> isSubmitted(@Param("resultId") Long resultId);
 
         // ==================== JSONB OPERATORS - PostgreSQL ====================
+        // Các query theo resultId trong lúc thi lọc thêm semester_test_id (lấy từ cache lượt
+        // làm bài) để chỉ đọc 1 partition khi bảng result được partition (db/result-partitioning.sql)
 
         /**
          * Lấy 1 câu hỏi cụ thể từ detailTest bằng JSONB operator
-         * detailTest->'questions'->:index
+         * detailTest->'questions'->:index (ưu tiên đề dùng chung exam_paper)
          */
         @Query(value = "SELECT " +
-                        "detail_test->'questions'->:questionIndex as question, " +
-                        "student_answers->:questionIndexStr as student_answer " +
-                        "FROM result WHERE id = :resultId", nativeQuery = true)
+                        "COALESCE(p.detail_test, r.detail_test)->'questions'->:questionIndex as question, " +
+                        "r.student_answers->:questionIndexStr as student_answer " +
+                        "FROM result r LEFT JOIN exam_paper p ON p.id = r.exam_paper_id " +
+                        "WHERE r.id = :resultId AND r.semester_test_id = :semesterTestId", nativeQuery = true)
         Optional<Object[]> findQuestionByIndex(@Param("resultId") Long resultId,
+                        @Param("semesterTestId") Long semesterTestId,
                         @Param("questionIndex") Integer questionIndex,
                         @Param("questionIndexStr") String questionIndexStr);
 
+        /**
+         * Lấy các câu hỏi theo danh sách index của đề (giữ thứ tự danh sách) kèm trạng thái
+         * trả lời trong 1 query, index ngoài đề bị bỏ qua
+         * unnest('{3,0,7}') WITH ORDINALITY -> detail_test->'questions'->idx || student_answers->idx
+         * Trả về {"totalQuestions": n, "questions": [{questionIndex, questionText, answers,
+         * selectedAnswers, flagged}, ...]}
+         */
+        @Query(value = "SELECT jsonb_build_object(" +
+                        "'totalQuestions', jsonb_array_length(d.detail -> 'questions'), " +
+                        "'questions', COALESCE((SELECT jsonb_agg(q.question || jsonb_build_object(" +
+                        "'selectedAnswers', COALESCE(r.student_answers -> CAST(i.idx AS text) -> 'selectedAnswers', '[]'::jsonb), " +
+                        "'flagged', COALESCE(r.student_answers -> CAST(i.idx AS text) -> 'flagged', 'false'::jsonb)) " +
+                        "ORDER BY i.ord) " +
+                        "FROM unnest(CAST(:questionIndices AS int[])) WITH ORDINALITY AS i(idx, ord) " +
+                        "CROSS JOIN LATERAL (SELECT d.detail -> 'questions' -> i.idx AS question) q " +
+                        "WHERE i.idx >= 0 AND q.question IS NOT NULL), '[]'::jsonb))::text " +
+                        "FROM result r LEFT JOIN exam_paper p ON p.id = r.exam_paper_id " +
+                        "CROSS JOIN LATERAL (SELECT COALESCE(p.detail_test, r.detail_test) AS detail) d " +
+                        "WHERE r.id = :resultId AND r.semester_test_id = :semesterTestId", nativeQuery = true)
+        Optional<String> findQuestionBundle(@Param("resultId") Long resultId,
+                        @Param("semesterTestId") Long semesterTestId,
+                        @Param("questionIndices") String questionIndices);
+
         /**
          * Lấy studentAnswer của 1 câu hỏi cụ thể
          * student_answers->'0'
@@ -65,49 +171,314 @@ public interface ResultRepository extends JpaRepository<Result, Long> {
          * Lấy trueAnswer của 1 câu hỏi cụ thể
          * true_answers->'0'
          */
-        @Query(value = "SELECT true_answers->:questionIndexStr FROM result WHERE id = :resultId", nativeQuery = true)
+        @Query(value = "SELECT COALESCE(p.true_answers, r.true_answers)->:questionIndexStr " +
+                        "FROM result r LEFT JOIN exam_paper p ON p.id = r.exam_paper_id " +
+                        "WHERE r.id = :resultId", nativeQuery = true)
         Optional<String> findTrueAnswerByIndex(@Param("resultId") Long resultId,
                         @Param("questionIndexStr") String questionIndexStr);
 
         /**
-         * Update selectedAnswers của 1 câu hỏi cụ thể bằng jsonb_set
+         * Update selectedAnswers + answeredAt của 1 câu hỏi cụ thể bằng jsonb_set,
+         * đồng thời cộng/trừ answered_count theo trạng thái cũ và mới của câu đó
          * jsonb_set(student_answers, '{0,selectedAnswers}', '[1,2]')
          */
         @Modifying
-        @Query(value = "UPDATE result SET student_answers = " +
-                        "jsonb_set(student_answers, CAST(:path AS text[]), CAST(:value AS jsonb)) " +
-                        "WHERE id = :resultId", nativeQuery = true)
-        int updateStudentAnswerPath(@Param("resultId") Long resultId,
-                        @Param("path") String path,
-                        @Param("value") String value);
+        @Query(value = "UPDATE result SET student_answers = jsonb_set(jsonb_set(student_answers, " +
+                        "ARRAY[:questionIndexStr, 'selectedAnswers'], CAST(:value AS jsonb)), " +
+                        "ARRAY[:questionIndexStr, 'answeredAt'], to_jsonb(CAST(:answeredAt AS text))), " +
+                        "answered_count = answered_count + CASE WHEN jsonb_exists(student_answers, :questionIndexStr) " +
+                        "THEN CAST((CAST(:value AS jsonb)->0) IS NOT NULL AS int) " +
+                        "- CAST((student_answers->:questionIndexStr->'selectedAnswers'->0) IS NOT NULL AS int) " +
+                        "ELSE 0 END " +
+                        "WHERE id = :resultId AND semester_test_id = :semesterTestId AND submit_date_time IS NULL",
+                        nativeQuery = true)
+        int updateSelectedAnswers(@Param("resultId") Long resultId,
+                        @Param("semesterTestId") Long semesterTestId,
+                        @Param("questionIndexStr") String questionIndexStr,
+                        @Param("value") String value,
+                        @Param("answeredAt") String answeredAt);
 
         /**
-         * Update flagged của 1 câu hỏi cụ thể
+         * Update flagged của 1 câu hỏi cụ thể, đồng thời cập nhật flagged_count
          * jsonb_set(student_answers, '{0,flagged}', 'true')
          */
         @Modifying
-        @Query(value = "UPDATE result SET student_answers = " +
-                        "jsonb_set(student_answers, CAST(:path AS text[]), CAST(:value AS jsonb)) " +
-                        "WHERE id = :resultId", nativeQuery = true)
-        int updateFlaggedPath(@Param("resultId") Long resultId,
-                        @Param("path") String path,
-                        @Param("value") String value);
+        @Query(value = "UPDATE result SET student_answers = jsonb_set(student_answers, " +
+                        "ARRAY[:questionIndexStr, 'flagged'], to_jsonb(CAST(:flagged AS boolean))), " +
+                        "flagged_count = flagged_count + CASE WHEN jsonb_exists(student_answers, :questionIndexStr) " +
+                        "THEN CAST(CAST(:flagged AS boolean) AS int) " +
+                        "- CAST(COALESCE(CAST(student_answers->:questionIndexStr->>'flagged' AS boolean), false) AS int) " +
+                        "ELSE 0 END " +
+                        "WHERE id = :resultId AND semester_test_id = :semesterTestId AND submit_date_time IS NULL",
+                        nativeQuery = true)
+        int updateFlagged(@Param("resultId") Long resultId,
+                        @Param("semesterTestId") Long semesterTestId,
+                        @Param("questionIndexStr") String questionIndexStr,
+                        @Param("flagged") Boolean flagged);
 
         /**
-         * Đếm số câu đã trả lời (có selectedAnswers.length > 0)
+         * Phần SET chung của mergeStudentAnswers và applyAnswerEvents (patch là :patch).
+         * Mỗi câu được merge nông với giá trị cũ, bỏ qua câu không tồn tại. Đáp án
+         * (selectedAnswers, answeredAt, selectedSeq) và flag (flagged, flaggedSeq) được xét
+         * riêng: field có seq không lớn hơn seq đã ghi của field đó bị bỏ qua (gửi lại / cũ hơn),
+         * so sánh nằm trong hàm answer_seq_is_newer (schema.sql).
+         * answered_count/flagged_count cộng chênh lệch của các field được áp dụng
          */
-        @Query(value = "SELECT COUNT(*) FROM jsonb_each(student_answers) " +
-                        "WHERE jsonb_array_length(value->'selectedAnswers') > 0 " +
-                        "AND (SELECT id FROM result WHERE id = :resultId) IS NOT NULL", nativeQuery = true)
-        Integer countAnsweredQuestions(@Param("resultId") Long resultId);
+        String MERGE_ANSWERS_SET = "student_answers = r.student_answers || COALESCE(" +
+                        "(SELECT jsonb_object_agg(p.key, (r.student_answers -> p.key) " +
+                        "|| CASE WHEN jsonb_exists(p.value, 'selectedAnswers') " +
+                        "AND answer_seq_is_newer(p.value, r.student_answers -> p.key, 'selectedSeq') " +
+                        "THEN p.value - CAST('{flagged,flaggedSeq}' AS text[]) ELSE '{}'::jsonb END " +
+                        "|| CASE WHEN jsonb_exists(p.value, 'flagged') " +
+                        "AND answer_seq_is_newer(p.value, r.student_answers -> p.key, 'flaggedSeq') " +
+                        "THEN p.value - CAST('{selectedAnswers,answeredAt,selectedSeq}' AS text[]) " +
+                        "ELSE '{}'::jsonb END) " +
+                        "FROM jsonb_each(CAST(:patch AS jsonb)) p " +
+                        "WHERE jsonb_exists(r.student_answers, p.key)), '{}'::jsonb), " +
+                        "answered_count = r.answered_count + COALESCE(" +
+                        "(SELECT SUM(CAST((p.value->'selectedAnswers'->0) IS NOT NULL AS int) " +
+                        "- CAST((r.student_answers->p.key->'selectedAnswers'->0) IS NOT NULL AS int)) " +
+                        "FROM jsonb_each(CAST(:patch AS jsonb)) p " +
+                        "WHERE jsonb_exists(r.student_answers, p.key) AND jsonb_exists(p.value, 'selectedAnswers') " +
+                        "AND answer_seq_is_newer(p.value, r.student_answers -> p.key, 'selectedSeq')), 0), " +
+                        "flagged_count = r.flagged_count + COALESCE(" +
+                        "(SELECT SUM(CAST(COALESCE(CAST(p.value->>'flagged' AS boolean), false) AS int) " +
+                        "- CAST(COALESCE(CAST(r.student_answers->p.key->>'flagged' AS boolean), false) AS int)) " +
+                        "FROM jsonb_each(CAST(:patch AS jsonb)) p " +
+                        "WHERE jsonb_exists(r.student_answers, p.key) AND jsonb_exists(p.value, 'flagged') " +
+                        "AND answer_seq_is_newer(p.value, r.student_answers -> p.key, 'flaggedSeq')), 0) ";
 
         /**
-         * Đếm số câu đã flag
+         * Gộp nhiều thay đổi đáp án vào student_answers trong 1 câu UPDATE (xem MERGE_ANSWERS_SET)
+         * patch: {"0": {"selectedAnswers": [1], "answeredAt": "...", "selectedSeq": 7}, "2": {"flagged": true}}
          */
-        @Query(value = "SELECT COUNT(*) FROM jsonb_each(student_answers) " +
-                        "WHERE (value->>'flagged')::boolean = true " +
-                        "AND (SELECT id FROM result WHERE id = :resultId) IS NOT NULL", nativeQuery = true)
-        Integer countFlaggedQuestions(@Param("resultId") Long resultId);
+        @Modifying
+        @Query(value = "UPDATE result r SET " + MERGE_ANSWERS_SET +
+                        "WHERE r.id = :resultId AND r.semester_test_id = :semesterTestId " +
+                        "AND r.submit_date_time IS NULL", nativeQuery = true)
+        int mergeStudentAnswers(@Param("resultId") Long resultId,
+                        @Param("semesterTestId") Long semesterTestId,
+                        @Param("patch") String patch);
+
+        // ==================== ANSWER LOG ====================
+
+        /**
+         * Khóa Result chưa nộp lúc nộp bài (answer-log), chặn 2 lần nộp cùng lúc áp dụng log.
+         * FOR NO KEY UPDATE xung đột với FOR SHARE của lần ghi sự kiện: chờ các lần ghi đang
+         * chạy commit, lần ghi đến sau chờ lần nộp rồi không ghi được (insertBatch trả về 0)
+         */
+        @Query(value = "SELECT id FROM result WHERE id = :resultId AND submit_date_time IS NULL " +
+                        "FOR NO KEY UPDATE", nativeQuery = true)
+        Optional<Long> lockWritable(@Param("resultId") Long resultId);
+
+        /**
+         * Áp dụng các sự kiện tới lastEventId vào student_answers (giống mergeStudentAnswers,
+         * kể cả bộ đếm) và ghi lại vị trí đã áp dụng. Không lọc submit_date_time vì gọi
+         * ngay lúc nộp bài; lần áp dụng cũ hơn vị trí hiện tại bị bỏ qua.
+         */
+        @Modifying
+        @Query(value = "UPDATE result r SET " + MERGE_ANSWERS_SET + ", " +
+                        "answer_log_applied_id = :lastEventId " +
+                        "WHERE r.id = :resultId AND r.answer_log_applied_id < :lastEventId", nativeQuery = true)
+        int applyAnswerEvents(@Param("resultId") Long resultId,
+                        @Param("patch") String patch,
+                        @Param("lastEventId") Long lastEventId);
+
+        /**
+         * Tạo sẵn Result cho mọi học viên của kỳ học có cùng position với bài thi,
+         * bỏ qua học viên đã có Result. start_date_time để trống tới khi vào thi,
+         * shuffle = true thì mỗi Result có 1 shuffle_seed ngẫu nhiên
+         */
+        @Modifying
+        @Query(value = "INSERT INTO result (semester_test_id, student_id, exam_paper_id, student_answers, " +
+                        "exam_student_id, shuffle_seed, created_at, updated_at) " +
+                        "SELECT s.semester_test_id, s.student_id, :examPaperId, CAST(:studentAnswers AS jsonb), " +
+                        "s.student_id, " +
+                        "CASE WHEN CAST(:shuffle AS boolean) THEN CAST(floor(random() * 9.0e18) AS bigint) END, " +
+                        "now(), now() " +
+                        "FROM (SELECT DISTINCT st.id AS semester_test_id, sa.account_id AS student_id " +
+                        "FROM semester_test st " +
+                        "JOIN test t ON t.id = st.test_id " +
+                        "JOIN semester_account sa ON sa.semester_id = st.semester_id AND sa.position_id = t.position_id " +
+                        "WHERE st.id = :semesterTestId AND sa.account_id IS NOT NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM result r " +
+                        "WHERE r.semester_test_id = st.id AND r.student_id = sa.account_id)) s " +
+                        "ON CONFLICT (semester_test_id, exam_student_id) DO NOTHING", nativeQuery = true)
+        int provisionResults(@Param("semesterTestId") Long semesterTestId,
+                        @Param("examPaperId") Long examPaperId,
+                        @Param("studentAnswers") String studentAnswers,
+                        @Param("shuffle") boolean shuffle);
+
+        /**
+         * Tạo lượt thi EXAM trong 1 câu lệnh (không check-then-insert), học viên đã có
+         * lượt thi (request khác / node khác vừa tạo) thì không trả về dòng nào
+         */
+        @Query(value = "INSERT INTO result (semester_test_id, student_id, exam_student_id, exam_paper_id, " +
+                        "student_answers, shuffle_seed, start_date_time, created_at, updated_at) " +
+                        "VALUES (:semesterTestId, :studentId, :studentId, :examPaperId, CAST(:studentAnswers AS jsonb), " +
+                        "CAST(:shuffleSeed AS bigint), :startDateTime, now(), now()) " +
+                        "ON CONFLICT (semester_test_id, exam_student_id) DO NOTHING " +
+                        "RETURNING id", nativeQuery = true)
+        Optional<Long> insertExamAttempt(@Param("semesterTestId") Long semesterTestId,
+                        @Param("studentId") Long studentId,
+                        @Param("examPaperId") Long examPaperId,
+                        @Param("studentAnswers") String studentAnswers,
+                        @Param("shuffleSeed") Long shuffleSeed,
+                        @Param("startDateTime") LocalDateTime startDateTime);
+
+        /**
+         * Đánh dấu bắt đầu làm bài cho Result tạo sẵn
+         */
+        @Modifying
+        @Query("UPDATE Result r SET r.startDateTime = :startDateTime WHERE r.id = :resultId AND r.startDateTime IS NULL")
+        int markStarted(@Param("resultId") Long resultId, @Param("startDateTime") LocalDateTime startDateTime);
+
+        // ==================== ARCHIVE ====================
+
+        /**
+         * Lấy 1 lô Result của các kỳ học kết thúc trước cutoff để lưu trữ,
+         * khóa dòng (SKIP LOCKED) để nhiều node không lấy trùng.
+         * waitForAnalysis = true thì giữ lại các bài phân tích câu hỏi còn chưa xử lý
+         * (cùng điều kiện với lockUnanalyzed)
+         */
+        @Query(value = "SELECT r.id FROM result r " +
+                        "JOIN semester_test st ON st.id = r.semester_test_id " +
+                        "JOIN semester s ON s.id = st.semester_id " +
+                        "WHERE s.end_date < :cutoff " +
+                        "AND (NOT CAST(:waitForAnalysis AS boolean) OR r.item_analyzed = true " +
+                        "OR r.submit_date_time IS NULL OR NOT EXISTS (SELECT 1 FROM exam_paper p " +
+                        "WHERE p.id = r.exam_paper_id AND p.question_ids IS NOT NULL)) " +
+                        "ORDER BY r.id LIMIT :limit " +
+                        "FOR UPDATE OF r SKIP LOCKED", nativeQuery = true)
+        List<Long> lockArchivableIds(@Param("cutoff") LocalDateTime cutoff,
+                        @Param("waitForAnalysis") boolean waitForAnalysis,
+                        @Param("limit") int limit);
+
+        // ==================== ITEM ANALYSIS ====================
+
+        /**
+         * Lấy 1 lô bài đã nộp chưa phân tích (chỉ các cột cần dùng), khóa SKIP LOCKED
+         * để các worker không lấy trùng. Đề cũ chưa có question_ids thì bỏ qua.
+         */
+        @Query(value = "SELECT r.id AS id, r.exam_paper_id AS examPaperId, " +
+                        "CAST(r.student_answers AS text) AS studentAnswers " +
+                        "FROM result r JOIN exam_paper p ON p.id = r.exam_paper_id " +
+                        "WHERE r.item_analyzed = false AND r.submit_date_time IS NOT NULL " +
+                        "AND p.question_ids IS NOT NULL " +
+                        "ORDER BY r.id LIMIT :limit " +
+                        "FOR UPDATE OF r SKIP LOCKED", nativeQuery = true)
+        List<ResultAnswersProjection> lockUnanalyzed(@Param("limit") int limit);
+
+        @Modifying
+        @Query(value = "UPDATE result SET item_analyzed = true WHERE id = ANY(CAST(:ids AS bigint[]))", nativeQuery = true)
+        int markItemAnalyzed(@Param("ids") String ids);
+
+        // ==================== DEADLINE ====================
+
+        /**
+         * Các Result đang làm bài (đã bắt đầu, chưa nộp) kèm thông tin để tính deadline
+         */
+        @Query("SELECT r.id AS id, st.id AS semesterTestId, r.startDateTime AS startDateTime, " +
+                        "st.endDate AS endDate, st.minutes AS minutes " +
+                        "FROM Result r JOIN r.semesterTest st " +
+                        "WHERE r.submitDateTime IS NULL AND r.startDateTime IS NOT NULL")
+        List<ResultDeadlineProjection> findActiveDeadlines();
+
+        @Query("SELECT r.id AS id, st.id AS semesterTestId, r.startDateTime AS startDateTime, " +
+                        "st.endDate AS endDate, st.minutes AS minutes " +
+                        "FROM Result r JOIN r.semesterTest st " +
+                        "WHERE st.id = :semesterTestId AND r.submitDateTime IS NULL AND r.startDateTime IS NOT NULL")
+        List<ResultDeadlineProjection> findActiveDeadlinesBySemesterTestId(
+                        @Param("semesterTestId") Long semesterTestId);
+
+        /**
+         * Các SemesterTest đang có Result quá hạn chưa nộp
+         * deadline = min(end_date, start_date_time + minutes)
+         * Result tạo sẵn mà học viên chưa vào thi không tính (không có bài để nộp)
+         */
+        @Query(value = "SELECT DISTINCT r.semester_test_id FROM result r " +
+                        "JOIN semester_test st ON st.id = r.semester_test_id " +
+                        "WHERE r.submit_date_time IS NULL AND r.start_date_time IS NOT NULL " +
+                        "AND LEAST(st.end_date, COALESCE(r.start_date_time + " +
+                        "make_interval(mins => NULLIF(st.minutes, 0)), st.end_date)) <= :now", nativeQuery = true)
+        List<Long> findSemesterTestIdsWithExpiredResults(@Param("now") LocalDateTime now);
+
+        /**
+         * Nộp bài tự động mọi Result quá hạn của 1 SemesterTest, submit_date_time = deadline.
+         * Điều kiện submit_date_time IS NULL đảm bảo mỗi Result chỉ được 1 node nộp.
+         * Result tạo sẵn chưa vào thi được giữ nguyên để vẫn tính là chưa thi
+         */
+        @Transactional
+        @Query(value = "UPDATE result r SET submit_date_time = LEAST(st.end_date, " +
+                        "COALESCE(r.start_date_time + make_interval(mins => NULLIF(st.minutes, 0)), st.end_date)), " +
+                        "updated_at = now() " +
+                        "FROM semester_test st " +
+                        "WHERE st.id = r.semester_test_id AND r.semester_test_id = :semesterTestId " +
+                        "AND r.submit_date_time IS NULL AND r.start_date_time IS NOT NULL " +
+                        "AND LEAST(st.end_date, COALESCE(r.start_date_time + " +
+                        "make_interval(mins => NULLIF(st.minutes, 0)), st.end_date)) <= :now " +
+                        "RETURNING r.id", nativeQuery = true)
+        List<Long> finalizeExpired(@Param("semesterTestId") Long semesterTestId, @Param("now") LocalDateTime now);
+
+        /**
+         * Cập nhật điểm cho nhiều Result trong 1 câu UPDATE
+         * ids: '{1,2,3}', scores: '{8.0,7.5,9.0}'
+         */
+        @Modifying
+        @Query(value = "UPDATE result r SET score = s.score " +
+                        "FROM unnest(CAST(:ids AS bigint[]), CAST(:scores AS real[])) AS s(id, score) " +
+                        "WHERE r.id = s.id", nativeQuery = true)
+        int updateScores(@Param("ids") String ids, @Param("scores") String scores);
+
+        /**
+         * Phần chênh của answered_count / flagged_count do các sự kiện answer-log chưa áp dụng
+         * (log chỉ được áp dụng lúc nộp bài). Mỗi câu lấy sự kiện chọn đáp án và sự kiện flag
+         * mới nhất theo id, không xét seq nên chỉ là số gần đúng cho tiến độ; điểm vẫn tính
+         * trên log đã áp dụng. Chỉ đọc student_answers của các câu có sự kiện chờ.
+         */
+        String PENDING_PROGRESS_JOIN = "LEFT JOIN LATERAL (SELECT " +
+                        "SUM(CASE WHEN l.selected IS NULL THEN 0 ELSE CAST((l.selected->0) IS NOT NULL AS int) " +
+                        "- CAST((r.student_answers->CAST(l.q AS text)->'selectedAnswers'->0) IS NOT NULL AS int) END) " +
+                        "AS answered, " +
+                        "SUM(CASE WHEN l.flagged IS NULL THEN 0 ELSE CAST(l.flagged AS int) " +
+                        "- CAST(COALESCE(CAST(r.student_answers->CAST(l.q AS text)->>'flagged' AS boolean), false) " +
+                        "AS int) END) AS flagged " +
+                        "FROM (SELECT e.question_index AS q, " +
+                        "(array_agg(e.selected_answers ORDER BY e.id DESC) " +
+                        "FILTER (WHERE e.selected_answers IS NOT NULL))[1] AS selected, " +
+                        "(array_agg(e.flagged ORDER BY e.id DESC) FILTER (WHERE e.flagged IS NOT NULL))[1] AS flagged " +
+                        "FROM result_answer_event e WHERE e.result_id = r.id AND e.id > r.answer_log_applied_id " +
+                        "AND r.submit_date_time IS NULL GROUP BY e.question_index) l) pending ON true ";
+
+        /**
+         * Tiến độ làm bài của 1 Result: các cột đếm cộng phần chênh của answer-log chưa áp dụng
+         */
+        @Query(value = "SELECT r.id AS id, r.student_id AS studentId, r.semester_test_id AS semesterTestId, " +
+                        "CAST(r.answered_count + COALESCE(pending.answered, 0) AS int) AS answeredCount, " +
+                        "CAST(r.flagged_count + COALESCE(pending.flagged, 0) AS int) AS flaggedCount, " +
+                        "p.question_count AS questionCount, " +
+                        "r.start_date_time AS startDateTime, r.submit_date_time AS submitDateTime " +
+                        "FROM result r LEFT JOIN exam_paper p ON p.id = r.exam_paper_id " + PENDING_PROGRESS_JOIN +
+                        "WHERE r.id = :resultId AND r.semester_test_id = :semesterTestId", nativeQuery = true)
+        Optional<ResultProgressProjection> findProgress(@Param("resultId") Long resultId,
+                        @Param("semesterTestId") Long semesterTestId);
+
+        /**
+         * Tiến độ của các học viên đang làm bài, phân trang keyset theo result id
+         * (cùng cách tính với findProgress)
+         */
+        @Query(value = "SELECT r.id AS id, r.student_id AS studentId, r.semester_test_id AS semesterTestId, " +
+                        "CAST(r.answered_count + COALESCE(pending.answered, 0) AS int) AS answeredCount, " +
+                        "CAST(r.flagged_count + COALESCE(pending.flagged, 0) AS int) AS flaggedCount, " +
+                        "p.question_count AS questionCount, " +
+                        "r.start_date_time AS startDateTime, r.submit_date_time AS submitDateTime " +
+                        "FROM result r LEFT JOIN exam_paper p ON p.id = r.exam_paper_id " + PENDING_PROGRESS_JOIN +
+                        "WHERE r.semester_test_id = :semesterTestId AND r.id > :afterId " +
+                        "AND r.start_date_time IS NOT NULL AND r.submit_date_time IS NULL " +
+                        "ORDER BY r.id LIMIT :limit", nativeQuery = true)
+        List<ResultProgressProjection> findInProgressProgress(@Param("semesterTestId") Long semesterTestId,
+                        @Param("afterId") Long afterId,
+                        @Param("limit") int limit);
 
         /*
          * Check result status
@@ -122,4 +493,100 @@ public interface ResultRepository extends JpaRepository<Result, Long> {
         // @Query("SELECT DISTINCT r.studentId FROM Result r WHERE r.semesterTest.id =
         // :semesterTestId")
         List<ResultStatusProjection> findAllBySemesterTestId(Long semesterTestId);
-}
\ No newline at end of file
+
+        /*
+         * Đọc lần lượt các result của 1 semester test để xuất file (cursor phía server,
+         * phải gọi trong transaction và đóng Stream sau khi dùng)
+         */
+        @QueryHints({
+                        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") })
+        @Query("SELECT r.id AS id, r.studentId AS studentId, r.startDateTime AS startDateTime, " +
+                        "r.submitDateTime AS submitDateTime, r.score AS score " +
+                        "FROM Result r WHERE r.semesterTest.id = :semesterTestId ORDER BY r.id")
+        Stream<ResultStatusProjection> streamBySemesterTestId(@Param("semesterTestId") Long semesterTestId);
+
+        /*
+         * Điểm các bài đã nộp của 1 semester test (dựng lại thống kê điểm)
+         */
+        @Query("SELECT r.id AS id, r.score AS score FROM Result r " +
+                        "WHERE r.semesterTest.id = :semesterTestId " +
+                        "AND r.submitDateTime IS NOT NULL AND r.score IS NOT NULL")
+        List<ResultScoreProjection> findSubmittedScores(@Param("semesterTestId") Long semesterTestId);
+
+        /*
+         * Các bài đã nộp của 1 semester test (lọc trong SQL)
+         */
+        @Query("SELECT r.id AS id, r.studentId AS studentId, r.startDateTime AS startDateTime, " +
+                        "r.submitDateTime AS submitDateTime, r.score AS score " +
+                        "FROM Result r WHERE r.semesterTest.id = :semesterTestId " +
+                        "AND r.submitDateTime IS NOT NULL")
+        List<ResultStatusProjection> findSubmittedBySemesterTestId(@Param("semesterTestId") Long semesterTestId);
+
+        // ==================== ROSTER ====================
+
+        /**
+         * Học viên đã nộp, theo lượt làm gần nhất. Phân trang keyset theo student_id.
+         * Điều kiện trạng thái lọc ngay trên index (semester_test_id, student_id, created_at DESC),
+         * NOT EXISTS chỉ dò lượt mới hơn của cùng học viên nên dừng sau đủ :limit dòng khớp
+         */
+        @Query(value = "SELECT r.id AS id, r.student_id AS studentId, r.start_date_time AS startDateTime, " +
+                        "r.submit_date_time AS submitDateTime, r.score AS score " +
+                        "FROM result r WHERE r.semester_test_id = :semesterTestId AND r.student_id > :afterStudentId " +
+                        "AND r.submit_date_time IS NOT NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM result n WHERE n.semester_test_id = r.semester_test_id " +
+                        "AND n.student_id = r.student_id AND (n.created_at, n.id) > (r.created_at, r.id)) " +
+                        "ORDER BY r.student_id LIMIT :limit", nativeQuery = true)
+        List<ResultStatusProjection> findSubmittedRoster(@Param("semesterTestId") Long semesterTestId,
+                        @Param("afterStudentId") Long afterStudentId,
+                        @Param("limit") int limit);
+
+        /**
+         * Học viên đang làm bài (lượt gần nhất đã bắt đầu, chưa nộp), cùng cách lọc như trên
+         */
+        @Query(value = "SELECT r.id AS id, r.student_id AS studentId, r.start_date_time AS startDateTime, " +
+                        "r.submit_date_time AS submitDateTime, r.score AS score " +
+                        "FROM result r WHERE r.semester_test_id = :semesterTestId AND r.student_id > :afterStudentId " +
+                        "AND r.start_date_time IS NOT NULL AND r.submit_date_time IS NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM result n WHERE n.semester_test_id = r.semester_test_id " +
+                        "AND n.student_id = r.student_id AND (n.created_at, n.id) > (r.created_at, r.id)) " +
+                        "ORDER BY r.student_id LIMIT :limit", nativeQuery = true)
+        List<ResultStatusProjection> findInProgressRoster(@Param("semesterTestId") Long semesterTestId,
+                        @Param("afterStudentId") Long afterStudentId,
+                        @Param("limit") int limit);
+
+        /**
+         * Học viên của kỳ học cùng position với bài thi nhưng chưa vào thi
+         * (không có Result, hoặc chỉ có Result tạo sẵn chưa bắt đầu)
+         */
+        @Query(value = "SELECT DISTINCT sa.account_id AS studentId, CAST(NULL AS bigint) AS id, " +
+                        "CAST(NULL AS timestamp) AS startDateTime, CAST(NULL AS timestamp) AS submitDateTime, " +
+                        "CAST(NULL AS real) AS score " +
+                        "FROM semester_test st " +
+                        "JOIN test t ON t.id = st.test_id " +
+                        "JOIN semester_account sa ON sa.semester_id = st.semester_id AND sa.position_id = t.position_id " +
+                        "WHERE st.id = :semesterTestId AND sa.account_id > :afterStudentId " +
+                        "AND NOT EXISTS (SELECT 1 FROM result r WHERE r.semester_test_id = st.id " +
+                        "AND r.student_id = sa.account_id AND r.start_date_time IS NOT NULL) " +
+                        "ORDER BY sa.account_id LIMIT :limit", nativeQuery = true)
+        List<ResultStatusProjection> findNotStartedRoster(@Param("semesterTestId") Long semesterTestId,
+                        @Param("afterStudentId") Long afterStudentId,
+                        @Param("limit") int limit);
+
+        /**
+         * Số học viên theo từng trạng thái, cùng định nghĩa với 3 danh sách trên
+         */
+        @Query(value = "SELECT COUNT(*) FILTER (WHERE latest.submit_date_time IS NOT NULL) AS submitted, " +
+                        "COUNT(*) FILTER (WHERE latest.start_date_time IS NOT NULL " +
+                        "AND latest.submit_date_time IS NULL) AS inProgress, " +
+                        "(SELECT COUNT(DISTINCT sa.account_id) FROM semester_test st " +
+                        "JOIN test t ON t.id = st.test_id " +
+                        "JOIN semester_account sa ON sa.semester_id = st.semester_id AND sa.position_id = t.position_id " +
+                        "WHERE st.id = :semesterTestId AND sa.account_id IS NOT NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM result r WHERE r.semester_test_id = st.id " +
+                        "AND r.student_id = sa.account_id AND r.start_date_time IS NOT NULL)) AS notStarted " +
+                        "FROM (SELECT DISTINCT ON (r.student_id) r.start_date_time, r.submit_date_time FROM result r " +
+                        "WHERE r.semester_test_id = :semesterTestId ORDER BY r.student_id, r.created_at DESC, r.id DESC) latest",
+                        nativeQuery = true)
+        RosterCountsProjection countRoster(@Param("semesterTestId") Long semesterTestId);
+}
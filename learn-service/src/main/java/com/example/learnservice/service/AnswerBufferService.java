@@ -0,0 +1,276 @@
+package com.example.learnservice.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.learnservice.repository.ResultRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bộ đệm ghi sau (write-behind) cho đáp án của sinh viên trong lúc thi.
+ *
+ * Mỗi lần chọn đáp án / flag chỉ ghi vào bộ nhớ, các lần sửa cùng một câu được
+ * gộp lại. Thay đổi của một result được flush bằng đúng một câu UPDATE:
+ * - định kỳ theo answer-buffer.flush-interval-ms (cửa sổ mất dữ liệu tối đa)
+ * - khi nộp bài / đọc lại result
+ * - khi tắt service
+ * Bộ đệm nằm trong bộ nhớ của từng node nên không dùng được khi chạy nhiều node
+ * (room.backend=redis): lần nộp ở node khác không flush được, và không dùng cùng answer-log.
+ */
+@Slf4j
+@Service
+public class AnswerBufferService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ResultRepository resultRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    // resultId -> thay đổi đang chờ của result, chỉ sửa trong compute()
+    private final ConcurrentHashMap<Long, PendingResult> pending = new ConcurrentHashMap<>();
+    private final Object[] flushLocks = new Object[LOCK_STRIPES];
+    private final AtomicInteger pendingEdits = new AtomicInteger();
+
+    private final Timer flushTimer;
+    private final Counter mergedCounter;
+    private final Counter flushFailureCounter;
+    private final Counter droppedCounter;
+
+    @Value("${learnservice.exam.answer-buffer.enabled:false}")
+    private boolean enabled;
+
+    @Value("${learnservice.exam.answer-buffer.max-pending-results:10000}")
+    private int maxPendingResults;
+
+    @Value("${learnservice.exam.answer-log.enabled:false}")
+    private boolean answerLogEnabled;
+
+    @Value("${learnservice.exam.room.backend:memory}")
+    private String roomBackend;
+
+    public AnswerBufferService(ResultRepository resultRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.resultRepository = resultRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            flushLocks[i] = new Object();
+        }
+
+        this.flushTimer = Timer.builder("learn.exam.answer_buffer.flush")
+                .description("Thời gian flush đáp án của một result xuống DB")
+                .register(meterRegistry);
+        this.mergedCounter = Counter.builder("learn.exam.answer_buffer.merged")
+                .description("Số lần sửa đáp án được gộp vào thay đổi đang chờ")
+                .register(meterRegistry);
+        this.flushFailureCounter = Counter.builder("learn.exam.answer_buffer.flush_failures")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("learn.exam.answer_buffer.dropped")
+                .description("Số câu có thay đổi đã nhận nhưng bị bỏ do bài đã được nộp trước khi flush")
+                .register(meterRegistry);
+        Gauge.builder("learn.exam.answer_buffer.pending_results", pending, Map::size)
+                .description("Số result đang có thay đổi chưa flush")
+                .register(meterRegistry);
+        Gauge.builder("learn.exam.answer_buffer.pending_edits", pendingEdits, AtomicInteger::get)
+                .description("Số câu hỏi đang có thay đổi chưa flush")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Dừng khởi động với cấu hình làm mất đáp án đã xác nhận
+     */
+    @PostConstruct
+    void checkConfig() {
+        if (!enabled) {
+            return;
+        }
+        if (answerLogEnabled) {
+            throw new IllegalStateException(
+                    "answer-buffer and answer-log cannot both be enabled, answer-log would bypass the buffer");
+        }
+        if ("redis".equals(roomBackend)) {
+            throw new IllegalStateException(
+                    "answer-buffer is per node and cannot be used with learnservice.exam.room.backend=redis");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ghi nhận đáp án đã chọn cho 1 câu hỏi
+     */
+    public void bufferAnswer(Long resultId, Long semesterTestId, Integer questionIndex,
+            List<Integer> answerIndices) {
+        List<Integer> selected = answerIndices == null ? List.of() : List.copyOf(answerIndices);
+        buffer(resultId, semesterTestId, questionIndex, AnswerEdit.of(selected, LocalDateTime.now(), null, null));
+    }
+
+    /**
+     * Ghi nhận flag cho 1 câu hỏi
+     */
+    public void bufferFlag(Long resultId, Long semesterTestId, Integer questionIndex, Boolean flagged) {
+        buffer(resultId, semesterTestId, questionIndex, AnswerEdit.of(null, null, flagged, null));
+    }
+
+    /**
+     * Ghi nhận 1 thay đổi có số thứ tự của client (lô đáp án)
+     */
+    public void bufferUpdate(Long resultId, Long semesterTestId, Integer questionIndex, List<Integer> answerIndices,
+            Boolean flagged, Long seq) {
+        List<Integer> selected = answerIndices == null ? null : List.copyOf(answerIndices);
+        buffer(resultId, semesterTestId, questionIndex,
+                AnswerEdit.of(selected, LocalDateTime.now(), flagged, seq));
+    }
+
+    private void buffer(Long resultId, Long semesterTestId, Integer questionIndex, AnswerEdit edit) {
+        pending.compute(resultId, (id, result) -> {
+            if (result == null) {
+                result = new PendingResult(semesterTestId, new HashMap<>());
+            }
+            Map<Integer, AnswerEdit> edits = result.edits();
+            AnswerEdit previous = edits.get(questionIndex);
+            if (previous == null) {
+                edits.put(questionIndex, edit);
+                pendingEdits.incrementAndGet();
+            } else {
+                edits.put(questionIndex, previous.merge(edit));
+                mergedCounter.increment();
+            }
+            return result;
+        });
+
+        // Quá nhiều result đang chờ -> tự flush result của mình để giới hạn bộ nhớ
+        if (pending.size() > maxPendingResults) {
+            flush(resultId);
+        }
+    }
+
+    /**
+     * Flush thay đổi đang chờ của 1 result (gọi trước khi đọc/chấm điểm)
+     * Nếu đang trong transaction thì dùng chung transaction đó
+     */
+    public void flush(Long resultId) {
+        synchronized (lockFor(resultId)) {
+            PendingResult result = pending.remove(resultId);
+            if (result == null || result.edits().isEmpty()) {
+                return;
+            }
+            Map<Integer, AnswerEdit> edits = result.edits();
+            pendingEdits.addAndGet(-edits.size());
+
+            Timer.Sample sample = Timer.start();
+            try {
+                String patch = buildPatch(edits);
+                Integer updated = transactionTemplate.execute(
+                        status -> resultRepository.mergeStudentAnswers(resultId, result.semesterTestId(), patch));
+                if (updated == null || updated == 0) {
+                    // Bài đã được nộp (tự động khi hết giờ / node khác) trước khi flush
+                    droppedCounter.increment(edits.size());
+                    log.warn("Dropped buffered answers of {} questions for result {}: result already submitted",
+                            edits.size(), resultId);
+                }
+            } catch (Exception e) {
+                flushFailureCounter.increment();
+                log.error("Failed to flush buffered answers for result {}, re-queueing", resultId, e);
+                requeue(resultId, result);
+            } finally {
+                sample.stop(flushTimer);
+            }
+        }
+    }
+
+    /**
+     * Flush định kỳ toàn bộ bộ đệm
+     */
+    @Scheduled(fixedDelayString = "${learnservice.exam.answer-buffer.flush-interval-ms:1000}")
+    public void flushAll() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Long resultId : new ArrayList<>(pending.keySet())) {
+            flush(resultId);
+        }
+    }
+
+    /**
+     * Flush các Result của 1 SemesterTest (trước khi tự động nộp bài của test đó)
+     */
+    public void flushTest(Long semesterTestId) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        pending.forEach((resultId, result) -> {
+            if (result.semesterTestId().equals(semesterTestId)) {
+                flush(resultId);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void onShutdown() {
+        if (!pending.isEmpty()) {
+            log.info("Flushing buffered answers of {} results before shutdown", pending.size());
+            flushAll();
+        }
+    }
+
+    public boolean hasPending(Long resultId) {
+        return pending.containsKey(resultId);
+    }
+
+    // Đưa lại các thay đổi flush lỗi vào bộ đệm, thay đổi mới hơn được giữ nguyên
+    private void requeue(Long resultId, PendingResult failed) {
+        pending.compute(resultId, (id, result) -> {
+            if (result == null) {
+                result = new PendingResult(failed.semesterTestId(), new HashMap<>());
+            }
+            Map<Integer, AnswerEdit> edits = result.edits();
+            for (Map.Entry<Integer, AnswerEdit> entry : failed.edits().entrySet()) {
+                AnswerEdit newer = edits.get(entry.getKey());
+                if (newer == null) {
+                    edits.put(entry.getKey(), entry.getValue());
+                    pendingEdits.incrementAndGet();
+                } else {
+                    edits.put(entry.getKey(), entry.getValue().merge(newer));
+                }
+            }
+            return result;
+        });
+    }
+
+    private String buildPatch(Map<Integer, AnswerEdit> edits) throws Exception {
+        return objectMapper.writeValueAsString(AnswerEdit.toPatch(objectMapper, edits));
+    }
+
+    private Object lockFor(Long resultId) {
+        return flushLocks[Math.floorMod(resultId.hashCode(), LOCK_STRIPES)];
+    }
+
+    // semesterTestId giữ lại để câu UPDATE chỉ đụng 1 partition
+    private record PendingResult(Long semesterTestId, Map<Integer, AnswerEdit> edits) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.learnservice.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Thay đổi của 1 câu hỏi, dùng chung cho bộ đệm, answer-log và lô đáp án.
+ * Field null = không thay đổi. seq của client tách theo field (selectedSeq cho
+ * đáp án, flaggedSeq cho flag): flag gửi trễ không chặn đáp án mới hơn của cùng
+ * câu và ngược lại. Cùng quy tắc với hàm SQL answer_seq_is_newer (schema.sql).
+ */
+record AnswerEdit(List<Integer> selectedAnswers, LocalDateTime answeredAt, Long selectedSeq,
+        Boolean flagged, Long flaggedSeq) {
+
+    static AnswerEdit of(List<Integer> selectedAnswers, LocalDateTime answeredAt, Boolean flagged, Long seq) {
+        return new AnswerEdit(selectedAnswers, selectedAnswers != null ? answeredAt : null,
+                selectedAnswers != null ? seq : null, flagged, flagged != null ? seq : null);
+    }
+
+    /**
+     * Thiếu seq ở 1 trong 2 phía thì luôn ghi, ngược lại chỉ ghi khi seq lớn hơn
+     */
+    static boolean isNewer(Long candidate, Long current) {
+        return candidate == null || current == null || candidate > current;
+    }
+
+    /**
+     * Gộp thay đổi đến sau, từng field bị bỏ qua nếu seq của field đó không lớn hơn
+     */
+    AnswerEdit merge(AnswerEdit newer) {
+        boolean takeSelected = newer.selectedAnswers != null && isNewer(newer.selectedSeq, selectedSeq);
+        boolean takeFlagged = newer.flagged != null && isNewer(newer.flaggedSeq, flaggedSeq);
+        return new AnswerEdit(
+                takeSelected ? newer.selectedAnswers : selectedAnswers,
+                takeSelected ? newer.answeredAt : answeredAt,
+                takeSelected && newer.selectedSeq != null ? newer.selectedSeq : selectedSeq,
+                takeFlagged ? newer.flagged : flagged,
+                takeFlagged && newer.flaggedSeq != null ? newer.flaggedSeq : flaggedSeq);
+    }
+
+    /**
+     * Patch cho mergeStudentAnswers / applyAnswerEvents
+     * {"0": {"selectedAnswers": [1], "answeredAt": "...", "selectedSeq": 7}, "3": {"flagged": true, "flaggedSeq": 8}}
+     */
+    static ObjectNode toPatch(ObjectMapper objectMapper, Map<Integer, AnswerEdit> edits) {
+        ObjectNode patch = objectMapper.createObjectNode();
+        edits.forEach((questionIndex, edit) -> patch.set(String.valueOf(questionIndex), edit.toNode(objectMapper)));
+        return patch;
+    }
+
+    private ObjectNode toNode(ObjectMapper objectMapper) {
+        ObjectNode node = objectMapper.createObjectNode();
+        if (selectedAnswers != null) {
+            ArrayNode selected = node.putArray("selectedAnswers");
+            selectedAnswers.forEach(selected::add);
+            node.put("answeredAt", String.valueOf(answeredAt));
+            if (selectedSeq != null) {
+                node.put("selectedSeq", selectedSeq);
+            }
+        }
+        if (flagged != null) {
+            node.put("flagged", flagged);
+            if (flaggedSeq != null) {
+                node.put("flaggedSeq", flaggedSeq);
+            }
+        }
+        return node;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.learnservice.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.learnservice.dto.AnswerUpdate;
+import com.example.learnservice.dto.QuestionResponse;
+import com.example.learnservice.model.ResultAnswerEvent;
+import com.example.learnservice.repository.ResultAnswerEventRepository;
+import com.example.learnservice.repository.ResultRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+/**
+ * Ghi đáp án trong lúc thi dưới dạng log chỉ thêm (result_answer_event).
+ * Mỗi lần chọn đáp án / flag là 1 câu INSERT, không sửa dòng result; INSERT chỉ giữ
+ * FOR SHARE trên dòng result chưa nộp nên các lần ghi chạy song song, còn lần nộp bài
+ * (lockWritable, UPDATE của auto-submit) chờ các lần ghi đang chạy commit. Lần ghi đến
+ * sau lần nộp (kể cả từ node có cache cũ) không ghi được, client nhận 409.
+ * Trong lúc thi student_answers không đổi, đọc câu hỏi thì phủ các sự kiện chưa
+ * áp dụng lên bản đã lưu. Chỉ lúc nộp bài log mới được áp dụng vào student_answers
+ * bằng 1 câu UPDATE, answer_log_applied_id đánh dấu vị trí đã áp dụng.
+ * Log được giữ lại làm lịch sử trả lời.
+ */
+@Service
+public class AnswerEventService {
+
+    @Autowired
+    private ResultAnswerEventRepository resultAnswerEventRepository;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${learnservice.exam.answer-log.enabled:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ghi sự kiện chọn đáp án. Trả về false nếu bài đã nộp (không ghi)
+     */
+    @Transactional
+    public boolean recordAnswer(Long resultId, Long semesterTestId, Integer questionIndex,
+            List<Integer> answerIndices, LocalDateTime clientTimestamp, Long seq) {
+        return recordBatch(resultId, semesterTestId, List.of(new AnswerUpdate(questionIndex,
+                answerIndices != null ? answerIndices : List.of(), null, seq, clientTimestamp)));
+    }
+
+    /**
+     * Ghi sự kiện flag. Trả về false nếu bài đã nộp (không ghi)
+     */
+    @Transactional
+    public boolean recordFlag(Long resultId, Long semesterTestId, Integer questionIndex, Boolean flagged,
+            LocalDateTime clientTimestamp, Long seq) {
+        return recordBatch(resultId, semesterTestId,
+                List.of(new AnswerUpdate(questionIndex, null, flagged, seq, clientTimestamp)));
+    }
+
+    /**
+     * Ghi 1 lô thay đổi bằng 1 câu INSERT. Trả về false nếu bài đã nộp (không ghi).
+     * Thay đổi cũ / gửi lại vẫn được ghi vào log, bị bỏ qua lúc áp dụng.
+     */
+    @Transactional
+    public boolean recordBatch(Long resultId, Long semesterTestId, List<AnswerUpdate> updates) {
+        try {
+            return resultAnswerEventRepository.insertBatch(resultId, semesterTestId,
+                    objectMapper.writeValueAsString(updates)) > 0;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize answer updates for result " + resultId, e);
+        }
+    }
+
+    /**
+     * Phủ các sự kiện chưa áp dụng lên câu hỏi đọc từ student_answers (index của đề).
+     * Chỉ đọc log, không ghi result; bài đã nộp thì không có sự kiện chờ.
+     */
+    public void overlayPending(Long resultId, Long semesterTestId, List<QuestionResponse> questions) {
+        if (!enabled || questions.isEmpty()) {
+            return;
+        }
+        String questionIndices = questions.stream()
+                .map(question -> String.valueOf(question.getQuestionIndex()))
+                .collect(Collectors.joining(",", "{", "}"));
+        List<ResultAnswerEvent> events = resultAnswerEventRepository.findPendingByQuestions(resultId, semesterTestId,
+                questionIndices);
+        if (events.isEmpty()) {
+            return;
+        }
+        ObjectNode patch = fold(events);
+        for (QuestionResponse question : questions) {
+            JsonNode pending = patch.get(String.valueOf(question.getQuestionIndex()));
+            if (pending == null) {
+                continue;
+            }
+            if (pending.has("selectedAnswers")) {
+                List<Integer> selected = new ArrayList<>();
+                pending.get("selectedAnswers").forEach(index -> selected.add(index.asInt()));
+                question.setSelectedAnswers(selected);
+            }
+            if (pending.has("flagged")) {
+                question.setFlagged(pending.get("flagged").asBoolean());
+            }
+        }
+    }
+
+    /**
+     * student_answers đầy đủ kèm các sự kiện chưa áp dụng (bản sao, không ghi result)
+     */
+    public JsonNode withPending(Long resultId, Long semesterTestId, JsonNode studentAnswers) {
+        if (!enabled || studentAnswers == null) {
+            return studentAnswers;
+        }
+        List<ResultAnswerEvent> events = resultAnswerEventRepository.findPending(resultId, semesterTestId);
+        if (events.isEmpty()) {
+            return studentAnswers;
+        }
+        ObjectNode merged = (ObjectNode) studentAnswers.deepCopy();
+        fold(events).fields().forEachRemaining(entry -> {
+            if (merged.get(entry.getKey()) instanceof ObjectNode answer) {
+                answer.setAll((ObjectNode) entry.getValue());
+            }
+        });
+        return merged;
+    }
+
+    /**
+     * Áp dụng các sự kiện chưa áp dụng vào student_answers, trả về số sự kiện đã áp dụng.
+     * Chỉ gọi lúc nộp bài sau khi đã khóa dòng result: trước đó sự kiện có id nhỏ hơn
+     * có thể commit sau, áp dụng giữa giờ thi sẽ bỏ sót chúng.
+     */
+    @Transactional
+    public int materialize(Long resultId) {
+        if (!enabled) {
+            return 0;
+        }
+        List<ResultAnswerEvent> events = resultAnswerEventRepository.findUnapplied(resultId);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        Long lastEventId = events.get(events.size() - 1).getId();
+        try {
+            resultRepository.applyAnswerEvents(resultId, objectMapper.writeValueAsString(fold(events)), lastEventId);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not build answer patch for result " + resultId, e);
+        }
+        return events.size();
+    }
+
+    public void materializeAll(List<Long> resultIds) {
+        if (!enabled) {
+            return;
+        }
+        resultIds.forEach(this::materialize);
+    }
+
+    /**
+     * Khóa bài trước khi nộp (chặn 2 lần nộp cùng lúc) rồi áp dụng log.
+     * Phải gọi trong transaction của lần nộp bài.
+     */
+    public void prepareSubmit(Long resultId) {
+        if (!enabled) {
+            return;
+        }
+        resultRepository.lockWritable(resultId);
+        materialize(resultId);
+    }
+
+    /**
+     * Lịch sử trả lời của 1 Result theo thứ tự ghi
+     */
+    public List<ResultAnswerEvent> getTimeline(Long resultId) {
+        return resultAnswerEventRepository.findByResultIdOrderByIdAsc(resultId);
+    }
+
+    /**
+     * Gộp các sự kiện thành patch cho applyAnswerEvents theo thứ tự ghi (xem AnswerEdit.merge)
+     */
+    private ObjectNode fold(List<ResultAnswerEvent> events) {
+        Map<Integer, AnswerEdit> edits = new TreeMap<>();
+        for (ResultAnswerEvent event : events) {
+            List<Integer> selected = null;
+            if (event.getSelectedAnswers() != null) {
+                selected = new ArrayList<>();
+                for (JsonNode index : event.getSelectedAnswers()) {
+                    selected.add(index.asInt());
+                }
+            }
+            // Thời điểm phía server, clientTimestamp chỉ lưu để đối chiếu
+            AnswerEdit edit = AnswerEdit.of(selected, event.getCreatedAt(), event.getFlagged(), event.getSeq());
+            edits.merge(event.getQuestionIndex(), edit, AnswerEdit::merge);
+        }
+        return AnswerEdit.toPatch(objectMapper, edits);
+    }
+}
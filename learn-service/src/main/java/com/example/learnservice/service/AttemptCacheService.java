@@ -0,0 +1,148 @@
+package com.example.learnservice.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.learnservice.dto.ResultAttemptProjection;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.util.shuffle.ShuffleOrder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache trong bộ nhớ thông tin các lượt làm bài (theo resultId) và quyền vào
+ * thi (theo semesterTestId + studentId) để các API khi đang thi không phải
+ * query lại DB để kiểm tra quyền / trạng thái nộp.
+ * Có giới hạn kích thước và TTL; endTest, openTest, nộp bài tự động... gọi
+ * invalidate để giữ đồng bộ.
+ */
+@Slf4j
+@Service
+public class AttemptCacheService {
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Value("${learnservice.exam.attempt-cache.max-size:50000}")
+    private long maxSize;
+
+    @Value("${learnservice.exam.attempt-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<Long, Attempt> attempts;
+    private Cache<AccessKey, Boolean> accessGrants;
+
+    @PostConstruct
+    void init() {
+        attempts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        accessGrants = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Lấy thông tin lượt làm bài, query DB ở lần đầu
+     */
+    public Attempt getAttempt(Long resultId) {
+        Attempt attempt = attempts.get(resultId, id -> resultRepository.findAttemptById(id)
+                .map(Attempt::of)
+                .orElse(null));
+        if (attempt == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Result not found");
+        }
+        return attempt;
+    }
+
+    public boolean isAccessGranted(Long semesterTestId, Long studentId) {
+        return accessGrants.getIfPresent(new AccessKey(semesterTestId, studentId)) != null;
+    }
+
+    // Chỉ cache kết quả được phép, bị từ chối thì lần sau kiểm tra lại
+    public void grantAccess(Long semesterTestId, Long studentId) {
+        accessGrants.put(new AccessKey(semesterTestId, studentId), Boolean.TRUE);
+    }
+
+    /**
+     * Bỏ cache của 1 Result ngay và sau khi transaction commit (tránh request
+     * khác nạp lại trạng thái cũ trước khi commit)
+     */
+    public void invalidate(Long resultId) {
+        attempts.invalidate(resultId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    attempts.invalidate(resultId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Bỏ cache mọi Result và quyền vào thi của 1 SemesterTest
+     */
+    public void invalidateTest(Long semesterTestId) {
+        attempts.asMap().values().removeIf(attempt -> attempt.semesterTestId().equals(semesterTestId));
+        accessGrants.asMap().keySet().removeIf(key -> key.semesterTestId().equals(semesterTestId));
+    }
+
+    /**
+     * Bỏ quyền vào thi đã cache của 1 học viên (bị xóa khỏi kỳ học, đổi position...)
+     */
+    public void invalidateAccess(Long studentId) {
+        accessGrants.asMap().keySet().removeIf(key -> key.studentId().equals(studentId));
+    }
+
+    // shuffle null = thứ tự theo đề
+    public record Attempt(Long resultId, Long studentId, Long semesterTestId, boolean submitted,
+            LocalDateTime deadline, Integer questionCount, Long examPaperId, ShuffleOrder shuffle) {
+
+        static Attempt of(ResultAttemptProjection projection) {
+            return new Attempt(projection.getId(), projection.getStudentId(), projection.getSemesterTestId(),
+                    projection.getSubmitDateTime() != null,
+                    ExamDeadlineService.deadlineOf(projection.getEndDate(), projection.getMinutes(),
+                            projection.getStartDateTime()),
+                    projection.getQuestionCount(), projection.getExamPaperId(), shuffleOf(projection));
+        }
+
+        private static ShuffleOrder shuffleOf(ResultAttemptProjection projection) {
+            boolean questions = Boolean.TRUE.equals(projection.getShuffleQuestions());
+            boolean answers = Boolean.TRUE.equals(projection.getShuffleAnswers());
+            if (projection.getShuffleSeed() == null || projection.getQuestionCount() == null
+                    || !(questions || answers)) {
+                return null;
+            }
+            return ShuffleOrder.of(projection.getId(), projection.getShuffleSeed(), projection.getQuestionCount(),
+                    questions, answers);
+        }
+
+        // Hết giờ làm bài (deadline null = không giới hạn)
+        public boolean isExpired(LocalDateTime now) {
+            return deadline != null && now.isAfter(deadline);
+        }
+
+        // questionCount null (Result cũ) thì không kiểm tra
+        public boolean isValidQuestionIndex(Integer questionIndex) {
+            return questionIndex != null && questionIndex >= 0
+                    && (questionCount == null || questionIndex < questionCount);
+        }
+    }
+
+    private record AccessKey(Long semesterTestId, Long studentId) {
+    }
+}
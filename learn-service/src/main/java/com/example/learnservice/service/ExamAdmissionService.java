@@ -0,0 +1,138 @@
+package com.example.learnservice.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.learnservice.model.Result;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Kiểm soát lượng request bắt đầu làm bài (startTest) khi mở bài thi.
+ * - Mỗi SemesterTest có 1 cổng (Semaphore fair) giới hạn số startTest chạy cùng lúc,
+ * request xếp hàng theo thứ tự đến, chờ quá queue-timeout-ms thì trả 503 để client thử lại.
+ * - Các request trùng của cùng 1 học viên đang chạy thì chờ và dùng chung kết quả của
+ * request đầu, không chiếm thêm chỗ trong cổng.
+ * Gọi ngoài transaction để request đang xếp hàng không giữ connection.
+ */
+@Slf4j
+@Service
+public class ExamAdmissionService {
+
+    private final ConcurrentHashMap<StartKey, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+    private final Counter rejectedCounter;
+
+    @Value("${learnservice.exam.admission.enabled:false}")
+    private boolean enabled;
+
+    @Value("${learnservice.exam.admission.max-concurrent:6}")
+    private int maxConcurrent;
+
+    @Value("${learnservice.exam.admission.queue-timeout-ms:5000}")
+    private long queueTimeoutMillis;
+
+    private Cache<Long, Semaphore> gates;
+
+    public ExamAdmissionService(MeterRegistry meterRegistry) {
+        this.coalescedCounter = Counter.builder("learn.exam.admission.coalesced")
+                .description("Số request startTest trùng được gộp vào request đang chạy")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("learn.exam.admission.rejected")
+                .description("Số request startTest bị từ chối do chờ quá lâu")
+                .register(meterRegistry);
+        Gauge.builder("learn.exam.admission.in_flight", inFlight, ConcurrentHashMap::size)
+                .description("Số học viên đang bắt đầu làm bài")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        // Cổng đang dùng luôn được truy cập nên không bị bỏ giữa chừng
+        gates = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    /**
+     * Chạy startTest qua cổng của SemesterTest, gộp các request trùng của cùng học viên
+     */
+    public Result start(Long semesterTestId, Long studentId, Supplier<Result> starter) {
+        if (!enabled) {
+            return starter.get();
+        }
+        StartKey key = new StartKey(semesterTestId, studentId);
+        CompletableFuture<Result> own = new CompletableFuture<>();
+        CompletableFuture<Result> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalescedCounter.increment();
+            return await(running);
+        }
+        try {
+            Result result = admit(semesterTestId, starter);
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // Request đang chờ nhận cùng lỗi, không bị treo
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private Result admit(Long semesterTestId, Supplier<Result> starter) {
+        Semaphore gate = gates.get(semesterTestId, id -> new Semaphore(maxConcurrent, true));
+        boolean acquired;
+        try {
+            acquired = gate.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting to start");
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            log.debug("Rejected start of test {}: {} starts already waiting", semesterTestId, gate.getQueueLength());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many students are starting this test, please retry");
+        }
+        try {
+            return starter.get();
+        } finally {
+            gate.release();
+        }
+    }
+
+    private static Result await(CompletableFuture<Result> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private record StartKey(Long semesterTestId, Long studentId) {
+    }
+}
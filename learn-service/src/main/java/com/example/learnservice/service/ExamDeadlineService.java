@@ -0,0 +1,239 @@
+package com.example.learnservice.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.learnservice.controller.WebSocketController;
+import com.example.learnservice.dto.ResultDeadlineProjection;
+import com.example.learnservice.dto.ResultSubmitProjection;
+import com.example.learnservice.model.SemesterTest;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.util.schedule.HashedTimingWheel;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tự động nộp bài khi hết giờ: deadline = min(endDate, startDateTime + minutes).
+ * Mỗi Result đang làm có 1 timer trong timing wheel; khi tới hạn, mọi Result quá
+ * hạn của cùng SemesterTest được nộp bằng 1 câu UPDATE rồi chấm điểm theo lô.
+ * Timer được dựng lại từ bảng result khi khởi động. Nhiều node cùng chạy vẫn an
+ * toàn vì UPDATE chỉ nộp Result chưa nộp; quét DB định kỳ bắt các Result mà
+ * node này không có timer.
+ */
+@Slf4j
+@Service
+public class ExamDeadlineService {
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private ScoringService scoringService;
+
+    @Autowired
+    private AnswerBufferService answerBufferService;
+
+    @Autowired
+    private AnswerEventService answerEventService;
+
+    @Autowired
+    private AttemptCacheService attemptCacheService;
+
+    @Autowired
+    private ScoreStatsService scoreStatsService;
+
+    @Autowired
+    private WebSocketController webSocketController;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${learnservice.exam.deadline.enabled:false}")
+    private boolean enabled;
+
+    @Value("${learnservice.exam.deadline.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${learnservice.exam.deadline.wheel-size:512}")
+    private int wheelSize;
+
+    private HashedTimingWheel<Long> wheel;
+    private TransactionTemplate transactionTemplate;
+    // resultId -> semesterTestId của các timer đang chờ
+    private final ConcurrentHashMap<Long, Long> timerTests = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        wheel = new HashedTimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Deadline của 1 lượt làm bài, minutes null/0 thì chỉ tính endDate
+     */
+    public static LocalDateTime deadlineOf(LocalDateTime endDate, Integer minutes, LocalDateTime startDateTime) {
+        if (startDateTime == null || minutes == null || minutes <= 0) {
+            return endDate;
+        }
+        LocalDateTime byDuration = startDateTime.plusMinutes(minutes);
+        return endDate == null || byDuration.isBefore(endDate) ? byDuration : endDate;
+    }
+
+    public static LocalDateTime deadlineOf(SemesterTest semesterTest, LocalDateTime startDateTime) {
+        return deadlineOf(semesterTest.getEndDate(), semesterTest.getMinutes(), startDateTime);
+    }
+
+    /**
+     * Đặt (hoặc đặt lại) timer cho Result
+     */
+    public void register(Long resultId, Long semesterTestId, LocalDateTime deadline) {
+        if (!enabled || deadline == null) {
+            return;
+        }
+        timerTests.put(resultId, semesterTestId);
+        wheel.schedule(resultId, toMillis(deadline));
+    }
+
+    public void cancel(Long resultId) {
+        if (!enabled) {
+            return;
+        }
+        wheel.cancel(resultId);
+        timerTests.remove(resultId);
+    }
+
+    /**
+     * Tính lại timer khi thời gian của SemesterTest thay đổi
+     */
+    public void reschedule(Long semesterTestId) {
+        if (!enabled) {
+            return;
+        }
+        resultRepository.findActiveDeadlinesBySemesterTestId(semesterTestId).forEach(this::register);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildTimers() {
+        if (!enabled) {
+            return;
+        }
+        List<ResultDeadlineProjection> active = resultRepository.findActiveDeadlines();
+        active.forEach(this::register);
+        log.info("Rebuilt {} exam deadline timers", active.size());
+    }
+
+    @Scheduled(fixedDelayString = "${learnservice.exam.deadline.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        List<Long> expired = wheel.advance(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return;
+        }
+        Set<Long> semesterTestIds = new LinkedHashSet<>();
+        for (Long resultId : expired) {
+            Long semesterTestId = timerTests.remove(resultId);
+            if (semesterTestId != null) {
+                semesterTestIds.add(semesterTestId);
+            }
+        }
+        semesterTestIds.forEach(this::finalizeExpired);
+    }
+
+    /**
+     * Quét DB bắt các Result quá hạn không có timer ở node này
+     * (bắt đầu trên node khác, hoặc được tạo sẵn mà không vào thi)
+     */
+    @Scheduled(fixedDelayString = "${learnservice.exam.deadline.sweep-interval-ms:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        resultRepository.findSemesterTestIdsWithExpiredResults(LocalDateTime.now())
+                .forEach(this::finalizeExpired);
+    }
+
+    /**
+     * Nộp + chấm mọi Result quá hạn của 1 SemesterTest
+     */
+    public void finalizeExpired(Long semesterTestId) {
+        try {
+            // Đáp án còn trong bộ đệm của test này phải được ghi trước khi khóa bài
+            answerBufferService.flushTest(semesterTestId);
+
+            List<Submitted> submitted = transactionTemplate.execute(status -> {
+                List<Long> resultIds = resultRepository.finalizeExpired(semesterTestId, LocalDateTime.now());
+                if (resultIds.isEmpty()) {
+                    return List.<Submitted>of();
+                }
+                // UPDATE ở trên đã chờ các lần ghi answer-log đang giữ FOR SHARE, lần ghi sau đó bị từ chối
+                answerEventService.materializeAll(resultIds);
+                List<Submitted> scored = new ArrayList<>(resultIds.size());
+                for (ResultSubmitProjection result : resultRepository.findSubmitByIds(resultIds)) {
+                    // Chấm lỗi thì để score null như endTest, không ghi thành điểm 0
+                    Float score = null;
+                    try {
+                        score = scoringService.score(result);
+                    } catch (Exception e) {
+                        log.error("Error while scoring result {}: {}", result.getId(), e.getMessage());
+                    }
+                    scored.add(new Submitted(result.getId(), result.getStudentId(), score));
+                }
+                resultRepository.updateScores(
+                        toArray(scored.stream().map(Submitted::resultId).toList()),
+                        toArray(scored.stream().map(Submitted::score).toList()));
+                return scored;
+            });
+
+            for (Submitted result : submitted) {
+                timerTests.remove(result.resultId());
+                wheel.cancel(result.resultId());
+                attemptCacheService.invalidate(result.resultId());
+                if (result.score() == null) {
+                    continue;
+                }
+                webSocketController.notifyTestSubmitted(semesterTestId, result.resultId(), result.studentId(),
+                        result.score());
+                scoreStatsService.record(semesterTestId, result.resultId(), result.score());
+            }
+            if (!submitted.isEmpty()) {
+                log.info("Auto-submitted {} expired results of test {}", submitted.size(), semesterTestId);
+            }
+        } catch (Exception e) {
+            log.error("Error while auto-submitting test {}", semesterTestId, e);
+        }
+    }
+
+    private void register(ResultDeadlineProjection active) {
+        register(active.getId(), active.getSemesterTestId(),
+                deadlineOf(active.getEndDate(), active.getMinutes(), active.getStartDateTime()));
+    }
+
+    private record Submitted(Long resultId, Long studentId, Float score) {
+    }
+
+    private static String toArray(List<?> values) {
+        return values.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
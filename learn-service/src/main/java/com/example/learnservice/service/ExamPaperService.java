@@ -0,0 +1,362 @@
+package com.example.learnservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.learnservice.model.Answer;
+import com.example.learnservice.model.ExamPaper;
+import com.example.learnservice.model.Question;
+import com.example.learnservice.model.Result;
+import com.example.learnservice.model.SemesterTest;
+import com.example.learnservice.model.Test;
+import com.example.learnservice.model.TestQuestion;
+import com.example.learnservice.repository.ExamPaperRepository;
+import com.example.learnservice.repository.QuestionRepository;
+import com.example.learnservice.repository.SemeterTestRepository;
+import com.example.learnservice.repository.TestRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Quản lý đề thi dùng chung (ExamPaper) cho mỗi SemesterTest.
+ * Đề được build 1 lần, lưu vào bảng exam_paper và cache trong bộ nhớ,
+ * Result chỉ trỏ tới đề thay vì copy toàn bộ câu hỏi.
+ */
+@Slf4j
+@Service
+public class ExamPaperService {
+
+    private static final int LOCK_STRIPES = 32;
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+
+    @Autowired
+    private SemeterTestRepository semesterTestRepository;
+
+    @Autowired
+    private TestRepository testRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private ExamPaperRepository examPaperRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Sau TTL thì build lại để phát hiện đề đã bị sửa (trên node khác)
+    @Value("${learnservice.exam.paper-cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    // Đề theo id (cả các phiên bản cũ Result còn trỏ tới), giới hạn số đề giữ trong bộ nhớ
+    @Value("${learnservice.exam.paper-cache.max-size:1000}")
+    private long cacheMaxSize;
+
+    @Value("${learnservice.exam.paper-cache.idle-seconds:3600}")
+    private long cacheIdleSeconds;
+
+    private final ConcurrentHashMap<Long, CachedPaper> currentPapers = new ConcurrentHashMap<>();
+    private Cache<Long, ExamPaper> papersById;
+    private final Object[] buildLocks = new Object[LOCK_STRIPES];
+
+    public ExamPaperService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            buildLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        papersById = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterAccess(Duration.ofSeconds(cacheIdleSeconds))
+                .build();
+    }
+
+    /**
+     * Lấy đề hiện tại của SemesterTest, build + lưu nếu chưa có
+     * Cache chỉ được cập nhật sau khi transaction commit
+     */
+    @Transactional
+    public ExamPaper getCurrentPaper(Long semesterTestId) {
+        CachedPaper cached = currentPapers.get(semesterTestId);
+        if (cached != null && !cached.isExpired(cacheTtlSeconds)) {
+            return cached.paper();
+        }
+
+        synchronized (buildLocks[Math.floorMod(semesterTestId.hashCode(), LOCK_STRIPES)]) {
+            cached = currentPapers.get(semesterTestId);
+            if (cached != null && !cached.isExpired(cacheTtlSeconds)) {
+                return cached.paper();
+            }
+
+            ExamPaper paper = snapshot(semesterTestId);
+            CachedPaper fresh = new CachedPaper(paper, buildStudentAnswers(paper.getQuestionCount()),
+                    System.currentTimeMillis());
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        cache(fresh);
+                    }
+                });
+            } else {
+                cache(fresh);
+            }
+            return paper;
+        }
+    }
+
+    private void cache(CachedPaper cachedPaper) {
+        currentPapers.put(cachedPaper.paper().getSemesterTestId(), cachedPaper);
+        papersById.put(cachedPaper.paper().getId(), cachedPaper.paper());
+    }
+
+    /**
+     * Lấy đề theo id (đề không đổi nên không cần làm mới, chỉ bị bỏ khi đầy hoặc lâu không dùng).
+     * Đọc DB ngoài khóa của cache: 2 request cùng lúc có thể cùng đọc, đổi lại lần đọc chậm
+     * không chặn các đề khác
+     */
+    public ExamPaper getPaperById(Long paperId) {
+        ExamPaper paper = papersById.getIfPresent(paperId);
+        if (paper == null) {
+            paper = examPaperRepository.findById(paperId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Exam paper not found"));
+            papersById.put(paperId, paper);
+        }
+        return paper;
+    }
+
+    /**
+     * Số đáp án của 1 câu trong đề (đổi index đáp án khi xáo thứ tự)
+     */
+    public int answerCountOf(Long paperId, int questionIndex) {
+        return getPaperById(paperId).getDetailTest().path("questions").path(questionIndex).path("answers").size();
+    }
+
+    /**
+     * studentAnswers ban đầu cho 1 Result mới
+     */
+    public JsonNode newStudentAnswers(ExamPaper paper) {
+        CachedPaper cached = currentPapers.get(paper.getSemesterTestId());
+        if (cached != null && cached.paper().getId().equals(paper.getId())) {
+            return cached.initialStudentAnswers().deepCopy();
+        }
+        return buildStudentAnswers(paper.getQuestionCount());
+    }
+
+    /**
+     * detailTest của Result: lấy từ đề dùng chung, Result cũ thì lấy từ chính nó
+     */
+    public JsonNode detailTestOf(Result result) {
+        if (result.getExamPaper() == null) {
+            return result.getDetailTest();
+        }
+        return getPaperById(result.getExamPaper().getId()).getDetailTest();
+    }
+
+    /**
+     * trueAnswers của Result: lấy từ đề dùng chung, Result cũ thì lấy từ chính nó
+     */
+    public JsonNode trueAnswersOf(Result result) {
+        if (result.getExamPaper() == null) {
+            return result.getTrueAnswers();
+        }
+        return getPaperById(result.getExamPaper().getId()).getTrueAnswers();
+    }
+
+    /**
+     * Bỏ cache khi thông tin SemesterTest thay đổi
+     */
+    public void evict(Long semesterTestId) {
+        currentPapers.remove(semesterTestId);
+    }
+
+    /**
+     * Bỏ cache của mọi SemesterTest dùng Test khi câu hỏi trong Test thay đổi
+     */
+    public void evictByTest(Long testId) {
+        semesterTestRepository.findAllByTestId(testId)
+                .forEach(semesterTest -> currentPapers.remove(semesterTest.getId()));
+    }
+
+    /*
+     * Build đề từ Test hiện tại, dùng lại bản đã lưu nếu nội dung không đổi
+     */
+    private ExamPaper snapshot(Long semesterTestId) {
+        SemesterTest semesterTest = semesterTestRepository.findById(semesterTestId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "SemesterTest not found with id: " + semesterTestId));
+
+        Test test = testRepository.findWithQuestionsById(semesterTest.getTest().getId())
+                .orElseThrow(() -> new EntityNotFoundException("Test not found"));
+        List<TestQuestion> testQuestions = test.getTestQuestions();
+        List<Long> questionIds = testQuestions.stream()
+                .map(tq -> tq.getQuestion().getId())
+                .distinct()
+                .toList();
+        if (!questionIds.isEmpty())
+            questionRepository.findAllWithAnswers(questionIds);
+
+        JsonNode detailTest = buildDetailTest(semesterTest, testQuestions);
+        JsonNode trueAnswers = buildTrueAnswers(testQuestions);
+        JsonNode paperQuestionIds = buildQuestionIds(testQuestions);
+        String contentHash = hash(detailTest, trueAnswers, paperQuestionIds);
+
+        for (int attempt = 0; attempt < MAX_INSERT_ATTEMPTS; attempt++) {
+            var existing = examPaperRepository.findBySemesterTestIdAndContentHash(semesterTestId, contentHash);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+
+            int version = examPaperRepository.findLatestVersion(semesterTestId)
+                    .map(latest -> latest + 1)
+                    .orElse(1);
+            // ON CONFLICT DO NOTHING: node khác tạo cùng lúc thì vòng sau sẽ đọc được bản đó
+            int inserted = examPaperRepository.insertIfAbsent(semesterTestId, version, contentHash,
+                    testQuestions.size(), detailTest.toString(), trueAnswers.toString(), paperQuestionIds.toString());
+            if (inserted > 0) {
+                log.info("Created exam paper v{} ({} questions) for semester test {}",
+                        version, testQuestions.size(), semesterTestId);
+            }
+        }
+
+        return examPaperRepository.findBySemesterTestIdAndContentHash(semesterTestId, contentHash)
+                .orElseThrow(() -> new IllegalStateException(
+                        "Cannot create exam paper for semester test " + semesterTestId));
+    }
+
+    /**
+     * Xây dựng detailTest (dùng index thay vì ID)
+     */
+    private JsonNode buildDetailTest(SemesterTest semesterTest, List<TestQuestion> testQuestions) {
+        ObjectNode detailTest = objectMapper.createObjectNode();
+
+        detailTest.put("testName", semesterTest.getTest().getName());
+        detailTest.put("semesterTestName", semesterTest.getName());
+        detailTest.put("startDate", semesterTest.getStartDate().toString());
+        detailTest.put("endDate", semesterTest.getEndDate().toString());
+
+        ArrayNode questionsArray = objectMapper.createArrayNode();
+
+        int questionIndex = 0;
+        for (TestQuestion tq : testQuestions) {
+            Question question = tq.getQuestion();
+            ObjectNode questionNode = objectMapper.createObjectNode();
+            questionNode.put("questionIndex", questionIndex);
+            questionNode.put("questionText", question.getText());
+
+            ArrayNode answersArray = objectMapper.createArrayNode();
+            int answerIndex = 0;
+            for (Answer answer : question.getAnswers()) {
+                ObjectNode answerNode = objectMapper.createObjectNode();
+                answerNode.put("answerIndex", answerIndex);
+                answerNode.put("answerText", answer.getText());
+                answersArray.add(answerNode);
+                answerIndex++;
+            }
+
+            questionNode.set("answers", answersArray);
+            questionsArray.add(questionNode);
+            questionIndex++;
+        }
+
+        detailTest.set("questions", questionsArray);
+
+        return detailTest;
+    }
+
+    /**
+     * Xây dựng trueAnswers (dùng index), cùng thứ tự câu hỏi với detailTest
+     */
+    private JsonNode buildTrueAnswers(List<TestQuestion> testQuestions) {
+        ObjectNode trueAnswers = objectMapper.createObjectNode();
+
+        int questionIndex = 0;
+        for (TestQuestion tq : testQuestions) {
+            Question question = tq.getQuestion();
+
+            ArrayNode correctAnswerIndices = objectMapper.createArrayNode();
+            int answerIndex = 0;
+            for (Answer answer : question.getAnswers()) {
+                if (answer.getTrueAnswer() != null && answer.getTrueAnswer()) {
+                    correctAnswerIndices.add(answerIndex);
+                }
+                answerIndex++;
+            }
+
+            trueAnswers.set(String.valueOf(questionIndex), correctAnswerIndices);
+            questionIndex++;
+        }
+
+        return trueAnswers;
+    }
+
+    /**
+     * Id câu hỏi theo thứ tự câu của đề
+     */
+    private JsonNode buildQuestionIds(List<TestQuestion> testQuestions) {
+        ArrayNode ids = objectMapper.createArrayNode();
+        testQuestions.forEach(tq -> ids.add(tq.getQuestion().getId()));
+        return ids;
+    }
+
+    /**
+     * Xây dựng studentAnswers với giá trị null ban đầu
+     */
+    private JsonNode buildStudentAnswers(int questionCount) {
+        ObjectNode studentAnswers = objectMapper.createObjectNode();
+
+        for (int questionIndex = 0; questionIndex < questionCount; questionIndex++) {
+            ObjectNode answerNode = objectMapper.createObjectNode();
+            answerNode.set("selectedAnswers", objectMapper.createArrayNode());
+            answerNode.put("flagged", false);
+            answerNode.putNull("answeredAt");
+
+            studentAnswers.set(String.valueOf(questionIndex), answerNode);
+        }
+
+        return studentAnswers;
+    }
+
+    private String hash(JsonNode detailTest, JsonNode trueAnswers, JsonNode questionIds) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(objectMapper.writeValueAsBytes(detailTest));
+            digest.update("|".getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(trueAnswers));
+            digest.update("|".getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(questionIds));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot hash exam paper", e);
+        }
+    }
+
+    private record CachedPaper(ExamPaper paper, JsonNode initialStudentAnswers, long loadedAt) {
+        boolean isExpired(long ttlSeconds) {
+            return System.currentTimeMillis() - loadedAt > ttlSeconds * 1000;
+        }
+    }
+}
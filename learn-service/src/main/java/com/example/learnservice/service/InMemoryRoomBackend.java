@@ -0,0 +1,195 @@
+package com.example.learnservice.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.learnservice.controller.WebSocketController.RoomChange;
+import com.example.learnservice.controller.WebSocketController.RoomCounts;
+import com.example.learnservice.controller.WebSocketController.RoomDelta;
+import com.example.learnservice.controller.WebSocketController.RoomEvent;
+import com.example.learnservice.controller.WebSocketController.TestRoomUpdate;
+import com.example.learnservice.controller.WebSocketController.TestStatus;
+import com.example.learnservice.controller.WebSocketController.UserStatus;
+import com.example.learnservice.service.ScoreStatsService.ScoreSubmitted;
+
+/**
+ * Trạng thái phòng chờ thi trong JVM, chỉ dùng khi chạy 1 node.
+ * Mỗi phòng là 1 map userId -> UserStatus kèm bộ đếm theo trạng thái, được cập nhật
+ * ở mỗi lần đổi nên vào / rời / đổi trạng thái đều O(1), chỉ snapshot mới duyệt cả phòng.
+ */
+@Component
+@ConditionalOnProperty(name = "learnservice.exam.room.backend", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRoomBackend implements RoomBackend {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<Long, Room> rooms = new ConcurrentHashMap<>();
+    // Version của delta đã gửi, giữ cả khi phòng trống để version không quay về 0
+    private final ConcurrentHashMap<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public InMemoryRoomBackend(SimpMessagingTemplate messagingTemplate, ApplicationEventPublisher eventPublisher) {
+        this.messagingTemplate = messagingTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void join(Long semesterTestId, UserStatus user, String owner) {
+        while (true) {
+            Room room = rooms.computeIfAbsent(semesterTestId, id -> new Room());
+            synchronized (room) {
+                // Phòng vừa bị xóa vì trống, lấy lại phòng mới
+                if (room.removed) {
+                    continue;
+                }
+                room.put(user);
+                room.owners.put(user.userId(), owner);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public UserStatus leave(Long semesterTestId, Long userId, String owner) {
+        Room room = rooms.get(semesterTestId);
+        if (room == null) {
+            return null;
+        }
+        synchronized (room) {
+            if (room.removed || (owner != null && !owner.equals(room.owners.get(userId)))) {
+                return null;
+            }
+            UserStatus removed = room.remove(userId);
+            if (removed != null && room.users.isEmpty()) {
+                room.removed = true;
+                rooms.remove(semesterTestId, room);
+            }
+            return removed;
+        }
+    }
+
+    @Override
+    public UserStatus updateStatus(Long semesterTestId, Long userId, TestStatus status) {
+        Room room = rooms.get(semesterTestId);
+        if (room == null) {
+            return null;
+        }
+        synchronized (room) {
+            UserStatus old = room.users.get(userId);
+            if (room.removed || old == null || old.status() == status) {
+                return null;
+            }
+            UserStatus updated = new UserStatus(old.userId(), old.fullName(), old.cccd(), status);
+            room.put(updated);
+            return updated;
+        }
+    }
+
+    @Override
+    public TestRoomUpdate snapshot(Long semesterTestId) {
+        Room room = rooms.get(semesterTestId);
+        if (room == null) {
+            return new TestRoomUpdate(semesterTestId, versionOf(semesterTestId).get(), Set.of(), 0, 0, 0);
+        }
+        synchronized (room) {
+            RoomCounts counts = room.counts();
+            return new TestRoomUpdate(
+                    semesterTestId,
+                    versionOf(semesterTestId).get(),
+                    Set.copyOf(room.users.values()),
+                    counts.total(),
+                    counts.waiting(),
+                    counts.testing());
+        }
+    }
+
+    @Override
+    public void publishChanges(Long semesterTestId, Map<Long, RoomEvent> changes) {
+        Room room = rooms.get(semesterTestId);
+        // Phòng đã trống: mọi user trong changes đều đã rời
+        Object lock = room != null ? room : versionOf(semesterTestId);
+        RoomDelta delta;
+        synchronized (lock) {
+            List<RoomChange> list = new ArrayList<>(changes.size());
+            changes.forEach((userId, event) -> {
+                UserStatus user = room != null ? room.users.get(userId) : null;
+                if (user == null) {
+                    list.add(new RoomChange(RoomEvent.LEFT, new UserStatus(userId, null, null, null)));
+                } else {
+                    list.add(new RoomChange(event == RoomEvent.LEFT ? RoomEvent.JOINED : event, user));
+                }
+            });
+            RoomCounts counts = room != null ? room.counts() : new RoomCounts(0, 0, 0);
+            delta = new RoomDelta(
+                    semesterTestId,
+                    versionOf(semesterTestId).incrementAndGet(),
+                    list,
+                    counts.total(),
+                    counts.waiting(),
+                    counts.testing());
+        }
+        // Chỉ 1 lần flush chạy tại 1 thời điểm nên gửi ngoài khóa vẫn đúng thứ tự version
+        fanOut("/topic/test/" + semesterTestId + "/users", delta);
+    }
+
+    @Override
+    public void fanOut(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+    }
+
+    @Override
+    public void publishScore(ScoreSubmitted score) {
+        eventPublisher.publishEvent(score);
+    }
+
+    private AtomicLong versionOf(Long semesterTestId) {
+        return versions.computeIfAbsent(semesterTestId, id -> new AtomicLong());
+    }
+
+    /*
+     * Chỉ sửa trong synchronized (room); users là ConcurrentHashMap để đọc 1 user
+     * không cần khóa
+     */
+    private static final class Room {
+        private final ConcurrentHashMap<Long, UserStatus> users = new ConcurrentHashMap<>();
+        // userId -> session đang giữ user
+        private final Map<Long, String> owners = new HashMap<>();
+        private final int[] statusCounts = new int[TestStatus.values().length];
+        // Đã bị xóa khỏi rooms, thread đang chờ khóa phải lấy phòng mới
+        private boolean removed;
+
+        private void put(UserStatus user) {
+            UserStatus old = users.put(user.userId(), user);
+            if (old != null) {
+                statusCounts[old.status().ordinal()]--;
+            }
+            statusCounts[user.status().ordinal()]++;
+        }
+
+        private UserStatus remove(Long userId) {
+            UserStatus old = users.remove(userId);
+            owners.remove(userId);
+            if (old != null) {
+                statusCounts[old.status().ordinal()]--;
+            }
+            return old;
+        }
+
+        private RoomCounts counts() {
+            return new RoomCounts(
+                    users.size(),
+                    statusCounts[TestStatus.WAITING.ordinal()],
+                    statusCounts[TestStatus.TESTING.ordinal()]);
+        }
+    }
+}
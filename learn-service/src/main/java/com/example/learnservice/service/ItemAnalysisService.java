@@ -0,0 +1,294 @@
+package com.example.learnservice.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.learnservice.dto.ItemStatsResponse;
+import com.example.learnservice.dto.ResultAnswersProjection;
+import com.example.learnservice.model.ExamPaper;
+import com.example.learnservice.model.QuestionItemStats;
+import com.example.learnservice.repository.QuestionItemStatsRepository;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.repository.SemeterTestRepository;
+import com.example.learnservice.util.scoring.AnswerKey;
+import com.example.learnservice.util.stats.ItemStatistics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Phân tích câu hỏi (độ khó, độ phân biệt) theo Test.
+ * Job định kỳ lấy các bài đã nộp chưa phân tích theo lô (chỉ đọc student_answers),
+ * nhiều worker chạy song song, mỗi lô 1 transaction: chấm từng câu, gộp bộ đếm
+ * trong bộ nhớ rồi cộng dồn vào question_item_stats và đánh dấu đã phân tích.
+ * Lần chạy đầu tự xử lý hết bài cũ, sau đó chỉ còn bài mới nộp.
+ */
+@Slf4j
+@Service
+public class ItemAnalysisService {
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private QuestionItemStatsRepository questionItemStatsRepository;
+
+    @Autowired
+    private SemeterTestRepository semesterTestRepository;
+
+    @Autowired
+    private ExamPaperService examPaperService;
+
+    @Autowired
+    private ScoringService scoringService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${learnservice.exam.item-analysis.enabled:false}")
+    private boolean enabled;
+
+    @Value("${learnservice.exam.item-analysis.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${learnservice.exam.item-analysis.workers:4}")
+    private int workers;
+
+    // Cùng giới hạn với cache đề của ExamPaperService
+    @Value("${learnservice.exam.paper-cache.max-size:1000}")
+    private long cacheMaxSize;
+
+    @Value("${learnservice.exam.paper-cache.idle-seconds:3600}")
+    private long cacheIdleSeconds;
+
+    private ExecutorService executor;
+    private TransactionTemplate transactionTemplate;
+    // Đề không đổi sau khi tạo nên cache được
+    private Cache<Long, PaperInfo> papers;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newFixedThreadPool(workers);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        papers = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterAccess(Duration.ofSeconds(cacheIdleSeconds))
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${learnservice.exam.item-analysis.interval-ms:60000}")
+    public void analyzePending() {
+        if (!enabled) {
+            return;
+        }
+        long total = 0;
+        try {
+            boolean drained = false;
+            while (!drained) {
+                List<Future<Integer>> chunks = new ArrayList<>(workers);
+                for (int i = 0; i < workers; i++) {
+                    chunks.add(executor.submit(() -> transactionTemplate.execute(status -> analyzeChunk())));
+                }
+                for (Future<Integer> chunk : chunks) {
+                    int analyzed = chunk.get();
+                    total += analyzed;
+                    // Có worker lấy không đủ lô nghĩa là đã hết bài chờ
+                    drained |= analyzed < chunkSize;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error while analyzing results", e);
+        }
+        if (total > 0) {
+            log.info("Item analysis added {} results", total);
+        }
+    }
+
+    /**
+     * Thống kê các câu của 1 Test
+     */
+    public List<ItemStatsResponse> getTestItemStats(Long testId) {
+        return questionItemStatsRepository.findByTestIdOrderByQuestionId(testId).stream()
+                .map(stats -> toResponse(stats.getQuestionId(), stats.getTestId(), List.of(stats)))
+                .toList();
+    }
+
+    /**
+     * Thống kê 1 câu hỏi: từng Test có dùng câu này và dòng gộp (testId null) ở đầu
+     */
+    public List<ItemStatsResponse> getQuestionItemStats(Long questionId) {
+        List<QuestionItemStats> rows = questionItemStatsRepository.findByQuestionIdOrderByTestId(questionId);
+        List<ItemStatsResponse> responses = new ArrayList<>(rows.size() + 1);
+        responses.add(toResponse(questionId, null, rows));
+        rows.forEach(stats -> responses.add(toResponse(questionId, stats.getTestId(), List.of(stats))));
+        return responses;
+    }
+
+    private int analyzeChunk() {
+        List<ResultAnswersProjection> results = resultRepository.lockUnanalyzed(chunkSize);
+        if (results.isEmpty()) {
+            return 0;
+        }
+
+        // testId -> questionId -> bộ đếm
+        Map<Long, Map<Long, Counters>> countersByTest = new HashMap<>();
+        for (ResultAnswersProjection result : results) {
+            // Đề lỗi (quá 63 đáp án, lệch id, SemesterTest đã xóa) chỉ bỏ qua Result đó,
+            // vẫn đánh dấu đã phân tích để chunk không bị rollback và lấy lại mãi
+            try {
+                PaperInfo paper = paperOf(result.getExamPaperId());
+                Map<Long, Counters> counters = countersByTest.computeIfAbsent(paper.testId(), id -> new TreeMap<>());
+                addResult(paper, objectMapper.readTree(result.getStudentAnswers()), counters);
+            } catch (Exception e) {
+                log.warn("Skipping result {} in item analysis: {}", result.getId(), e.getMessage());
+            }
+        }
+
+        countersByTest.forEach((testId, counters) -> {
+            if (!counters.isEmpty()) {
+                saveCounters(testId, counters);
+            }
+        });
+        resultRepository.markItemAnalyzed(toArray(results.stream().map(ResultAnswersProjection::getId).toList(),
+                Function.identity()));
+        return results.size();
+    }
+
+    private void addResult(PaperInfo paper, JsonNode studentAnswers, Map<Long, Counters> counters) {
+        AnswerKey key = paper.answerKey();
+        long[] selections = key.encodeSelections(studentAnswers);
+        int total = 0;
+        for (int i = 0; i < selections.length; i++) {
+            if (key.isCorrect(i, selections[i])) {
+                total++;
+            }
+        }
+        for (int i = 0; i < selections.length; i++) {
+            Counters counter = counters.computeIfAbsent(paper.questionIds()[i], id -> new Counters());
+            counter.attempts++;
+            counter.sumTotal += total;
+            counter.sumTotalSq += (double) total * total;
+            if (selections[i] != 0L) {
+                counter.answered++;
+            }
+            if (key.isCorrect(i, selections[i])) {
+                counter.correct++;
+                counter.sumTotalCorrect += total;
+            }
+        }
+    }
+
+    // counters là TreeMap nên các mảng theo thứ tự questionId
+    private void saveCounters(Long testId, Map<Long, Counters> counters) {
+        List<Counters> values = List.copyOf(counters.values());
+        questionItemStatsRepository.addCounters(testId,
+                toArray(List.copyOf(counters.keySet()), Function.identity()),
+                toArray(values, c -> c.attempts),
+                toArray(values, c -> c.correct),
+                toArray(values, c -> c.answered),
+                toArray(values, c -> c.sumTotal),
+                toArray(values, c -> c.sumTotalSq),
+                toArray(values, c -> c.sumTotalCorrect));
+    }
+
+    // Nạp ngoài khóa của cache, các worker không chờ nhau khi đọc đề khác nhau
+    private PaperInfo paperOf(Long examPaperId) {
+        PaperInfo paper = papers.getIfPresent(examPaperId);
+        if (paper == null) {
+            paper = loadPaper(examPaperId);
+            papers.put(examPaperId, paper);
+        }
+        return paper;
+    }
+
+    private PaperInfo loadPaper(Long examPaperId) {
+        ExamPaper paper = examPaperService.getPaperById(examPaperId);
+        Long testId = semesterTestRepository.findById(paper.getSemesterTestId())
+                .orElseThrow(() -> new IllegalStateException("SemesterTest not found: " + paper.getSemesterTestId()))
+                .getTest().getId();
+        long[] questionIds = new long[paper.getQuestionIds().size()];
+        for (int i = 0; i < questionIds.length; i++) {
+            questionIds[i] = paper.getQuestionIds().get(i).asLong();
+        }
+        AnswerKey answerKey = scoringService.answerKeyOf(examPaperId);
+        if (answerKey.questionCount() != questionIds.length) {
+            throw new IllegalStateException("Exam paper " + examPaperId + " has mismatched question ids");
+        }
+        return new PaperInfo(testId, questionIds, answerKey);
+    }
+
+    private static ItemStatsResponse toResponse(Long questionId, Long testId, List<QuestionItemStats> rows) {
+        long attempts = 0, correct = 0, answered = 0;
+        double sumTotal = 0, sumTotalSq = 0, sumTotalCorrect = 0;
+        QuestionItemStats latest = null;
+        for (QuestionItemStats stats : rows) {
+            attempts += stats.getAttempts();
+            correct += stats.getCorrect();
+            answered += stats.getAnswered();
+            sumTotal += stats.getSumTotal();
+            sumTotalSq += stats.getSumTotalSq();
+            sumTotalCorrect += stats.getSumTotalCorrect();
+            if (latest == null || stats.getUpdatedAt().isAfter(latest.getUpdatedAt())) {
+                latest = stats;
+            }
+        }
+        return ItemStatsResponse.builder()
+                .questionId(questionId)
+                .testId(testId)
+                .attempts(attempts)
+                .correct(correct)
+                .answered(answered)
+                .pValue(ItemStatistics.pValue(attempts, correct))
+                .pointBiserial(ItemStatistics.pointBiserial(attempts, correct, sumTotal, sumTotalSq, sumTotalCorrect))
+                .updatedAt(latest != null ? latest.getUpdatedAt() : null)
+                .build();
+    }
+
+    private static <T> String toArray(List<T> values, Function<T, ?> mapper) {
+        return values.stream().map(value -> String.valueOf(mapper.apply(value)))
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
+    private record PaperInfo(Long testId, long[] questionIds, AnswerKey answerKey) {
+    }
+
+    private static final class Counters {
+        long attempts;
+        long correct;
+        long answered;
+        double sumTotal;
+        double sumTotalSq;
+        double sumTotalCorrect;
+    }
+}
@@ -21,6 +21,9 @@ public class KafkaService {
     @Autowired
     private SemesterTeacherRepository semesterTeacherRepository;
 
+    @Autowired
+    private AttemptCacheService attemptCacheService;
+
     /**
      * Xử lý khi account bị xóa
      * Xóa tất cả references trong SemesterAccount và SemesterTeacher
@@ -31,6 +34,7 @@ public class KafkaService {
 
         // Xóa khỏi SemesterAccount
         int deletedFromAccounts = semesterAccountRepository.deleteByAccountId(accountId);
+        attemptCacheService.invalidateAccess(accountId);
         log.info("Deleted {} records from SemesterAccount for accountId: {}",
                 deletedFromAccounts, accountId);
 
@@ -61,6 +65,7 @@ public class KafkaService {
                 // Nếu role mới là TEACHER, xóa khỏi SemesterAccount (vì teacher không thể là
                 // student)
                 int deletedAccounts = semesterAccountRepository.deleteByAccountId(account.getId());
+                attemptCacheService.invalidateAccess(account.getId());
                 log.info("Role changed to TEACHER. Deleted {} records from SemesterAccount for accountId: {}",
                         deletedAccounts, account.getId());
                 break;
@@ -76,6 +81,7 @@ public class KafkaService {
             case ADMIN:
                 // Nếu role mới là ADMIN, xóa khỏi cả 2 bảng
                 int deletedFromAccounts = semesterAccountRepository.deleteByAccountId(account.getId());
+                attemptCacheService.invalidateAccess(account.getId());
                 int deletedFromTeachers = semesterTeacherRepository.deleteByTeacherId(account.getId());
                 log.info(
                         "Role changed to ADMIN. Deleted {} records from SemesterAccount and {} records from SemesterTeacher for accountId: {}",
@@ -43,6 +43,8 @@ public class QuestionService {
     private PositionService positionService;
     @Autowired
     private QuestionPositionRepository questionPositionRepository;
+    @Autowired
+    private ExamPaperService examPaperService;
 
     /*
      * Tạo câu hỏi mới
@@ -114,6 +116,7 @@ public class QuestionService {
                 testQuestionRepository.save(tq);
             }
         }
+        examPaperService.evictByTest(testId);
     }
 
     /*
@@ -131,6 +134,7 @@ public class QuestionService {
                 testQuestionRepository.delete(tq.get());
             }
         }
+        examPaperService.evictByTest(testId);
     }
 
     /*
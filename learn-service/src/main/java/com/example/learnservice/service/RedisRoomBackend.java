@@ -0,0 +1,257 @@
+package com.example.learnservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.learnservice.controller.WebSocketController.RoomEvent;
+import com.example.learnservice.controller.WebSocketController.TestRoomUpdate;
+import com.example.learnservice.controller.WebSocketController.TestStatus;
+import com.example.learnservice.controller.WebSocketController.UserStatus;
+import com.example.learnservice.service.ScoreStatsService.ScoreSubmitted;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Trạng thái phòng chờ thi trên Redis, dùng chung giữa các node learn-service.
+ * Mỗi phòng gồm các key exam:room:{id}:users (userId -> UserStatus JSON),
+ * :status (userId -> trạng thái), :counts (trạng thái -> số người), :version,
+ * :owner (userId -> session đang giữ user, để node chỉ xóa user do session của mình giữ).
+ * Mỗi thao tác là 1 script Lua nên đổi trạng thái và bộ đếm luôn đi cùng nhau.
+ * Message gửi cho client được PUBLISH lên kênh exam:ws, mọi node (kể cả node gửi)
+ * nhận và chuyển cho broker trong JVM của mình. Delta được tăng version và PUBLISH
+ * trong cùng 1 script nên mọi node nhận delta theo đúng thứ tự version.
+ * Bài nộp được PUBLISH lên kênh exam:score để thống kê điểm của mọi node cập nhật O(1).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "learnservice.exam.room.backend", havingValue = "redis")
+public class RedisRoomBackend implements RoomBackend, MessageListener {
+
+    public static final String CHANNEL = "exam:ws";
+    public static final String SCORE_CHANNEL = "exam:score";
+
+    private static final RedisScript<Long> JOIN = RedisScript.of("""
+            local old = redis.call('HGET', KEYS[2], ARGV[1])
+            if old then redis.call('HINCRBY', KEYS[3], old, -1) end
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[3])
+            redis.call('HINCRBY', KEYS[3], ARGV[3], 1)
+            redis.call('HSET', KEYS[5], ARGV[1], ARGV[5])
+            for i = 1, 5 do redis.call('EXPIRE', KEYS[i], ARGV[4]) end
+            return 1
+            """, Long.class);
+
+    // ARGV[2] rỗng thì luôn xóa, ngược lại chỉ xóa khi khớp session đang giữ user
+    private static final RedisScript<String> LEAVE = RedisScript.of("""
+            local user = redis.call('HGET', KEYS[1], ARGV[1])
+            if not user then return false end
+            if ARGV[2] ~= '' and redis.call('HGET', KEYS[5], ARGV[1]) ~= ARGV[2] then return false end
+            local old = redis.call('HGET', KEYS[2], ARGV[1])
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            redis.call('HDEL', KEYS[5], ARGV[1])
+            if old then redis.call('HINCRBY', KEYS[3], old, -1) end
+            if redis.call('HLEN', KEYS[1]) == 0 then redis.call('DEL', KEYS[2], KEYS[3], KEYS[5]) end
+            return user
+            """, String.class);
+
+    // Trạng thái chỉ gồm chữ in hoa nên thay trực tiếp trong JSON
+    private static final RedisScript<String> UPDATE_STATUS = RedisScript.of("""
+            local old = redis.call('HGET', KEYS[2], ARGV[1])
+            if not old or old == ARGV[2] then return false end
+            local user = redis.call('HGET', KEYS[1], ARGV[1])
+            user = string.gsub(user, '"status":"' .. old .. '"', '"status":"' .. ARGV[2] .. '"', 1)
+            redis.call('HSET', KEYS[1], ARGV[1], user)
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])
+            redis.call('HINCRBY', KEYS[3], old, -1)
+            redis.call('HINCRBY', KEYS[3], ARGV[2], 1)
+            return user
+            """, String.class);
+
+    // version, waiting, testing, rồi các UserStatus JSON
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SNAPSHOT = RedisScript.of("""
+            local result = redis.call('HVALS', KEYS[1])
+            table.insert(result, 1, redis.call('HGET', KEYS[3], 'TESTING') or '0')
+            table.insert(result, 1, redis.call('HGET', KEYS[3], 'WAITING') or '0')
+            table.insert(result, 1, redis.call('GET', KEYS[4]) or '0')
+            return result
+            """, List.class);
+
+    // ARGV: kênh, destination, semesterTestId, rồi từng cặp (userId, event)
+    private static final RedisScript<Long> PUBLISH_CHANGES = RedisScript.of("""
+            local version = redis.call('INCR', KEYS[4])
+            redis.call('EXPIRE', KEYS[4], ARGV[4])
+            local changes = {}
+            for i = 5, #ARGV, 2 do
+              local user = redis.call('HGET', KEYS[1], ARGV[i])
+              local event = ARGV[i + 1]
+              if user then
+                if event == 'LEFT' then event = 'JOINED' end
+              else
+                event = 'LEFT'
+                user = '{"userId":' .. ARGV[i] .. '}'
+              end
+              changes[#changes + 1] = '{"event":"' .. event .. '","user":' .. user .. '}'
+            end
+            local delta = '{"semesterTestId":' .. ARGV[3] .. ',"version":' .. version
+              .. ',"changes":[' .. table.concat(changes, ',') .. ']'
+              .. ',"totalUsers":' .. redis.call('HLEN', KEYS[1])
+              .. ',"waitingCount":' .. (redis.call('HGET', KEYS[3], 'WAITING') or '0')
+              .. ',"testingCount":' .. (redis.call('HGET', KEYS[3], 'TESTING') or '0') .. '}'
+            redis.call('PUBLISH', ARGV[1], ARGV[2] .. '\\n' .. delta)
+            return version
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Phòng không có thay đổi quá ttl-hours thì tự hết hạn (node chết giữa chừng)
+    @Value("${learnservice.exam.room.redis.ttl-hours:24}")
+    private long ttlHours;
+
+    public RedisRoomBackend(StringRedisTemplate redisTemplate,
+            SimpMessagingTemplate messagingTemplate,
+            ObjectMapper objectMapper,
+            ApplicationEventPublisher eventPublisher) {
+        this.redisTemplate = redisTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void join(Long semesterTestId, UserStatus user, String owner) {
+        redisTemplate.execute(JOIN, keys(semesterTestId),
+                String.valueOf(user.userId()), toJson(user), user.status().name(), ttlSeconds(),
+                owner != null ? owner : "");
+    }
+
+    @Override
+    public UserStatus leave(Long semesterTestId, Long userId, String owner) {
+        return fromJson(redisTemplate.execute(LEAVE, keys(semesterTestId), String.valueOf(userId),
+                owner != null ? owner : ""));
+    }
+
+    @Override
+    public UserStatus updateStatus(Long semesterTestId, Long userId, TestStatus status) {
+        return fromJson(redisTemplate.execute(UPDATE_STATUS, keys(semesterTestId),
+                String.valueOf(userId), status.name()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TestRoomUpdate snapshot(Long semesterTestId) {
+        List<String> result = redisTemplate.execute(SNAPSHOT, keys(semesterTestId));
+        Set<UserStatus> users = new HashSet<>(Math.max(result.size() - 3, 0) * 4 / 3 + 1);
+        for (String json : result.subList(3, result.size())) {
+            users.add(fromJson(json));
+        }
+        return new TestRoomUpdate(
+                semesterTestId,
+                Long.parseLong(result.get(0)),
+                users,
+                users.size(),
+                Integer.parseInt(result.get(1)),
+                Integer.parseInt(result.get(2)));
+    }
+
+    @Override
+    public void publishChanges(Long semesterTestId, Map<Long, RoomEvent> changes) {
+        List<String> args = new ArrayList<>(4 + changes.size() * 2);
+        args.add(CHANNEL);
+        args.add("/topic/test/" + semesterTestId + "/users");
+        args.add(String.valueOf(semesterTestId));
+        args.add(ttlSeconds());
+        changes.forEach((userId, event) -> {
+            args.add(String.valueOf(userId));
+            args.add(event.name());
+        });
+        redisTemplate.execute(PUBLISH_CHANGES, keys(semesterTestId), args.toArray());
+    }
+
+    @Override
+    public void fanOut(String destination, Object payload) {
+        redisTemplate.convertAndSend(CHANNEL, destination + "\n" + toJson(payload));
+    }
+
+    @Override
+    public void publishScore(ScoreSubmitted score) {
+        redisTemplate.convertAndSend(SCORE_CHANNEL, toJson(score));
+    }
+
+    /**
+     * Message từ kênh exam:ws: "destination\njson", chuyển cho client trên node này.
+     * Message từ kênh exam:score: ScoreSubmitted JSON, phát thành ApplicationEvent
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (SCORE_CHANNEL.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+            try {
+                eventPublisher.publishEvent(objectMapper.readValue(body, ScoreSubmitted.class));
+            } catch (Exception e) {
+                log.error("Error while applying score message: {}", e.getMessage());
+            }
+            return;
+        }
+        int newline = body.indexOf('\n');
+        if (newline < 0) {
+            return;
+        }
+        try {
+            messagingTemplate.convertAndSend(body.substring(0, newline),
+                    objectMapper.readTree(body.substring(newline + 1)));
+        } catch (Exception e) {
+            log.error("Error while forwarding room message: {}", e.getMessage());
+        }
+    }
+
+    // Cùng hash tag {id} để các key của 1 phòng nằm cùng slot khi chạy Redis Cluster
+    private static List<String> keys(Long semesterTestId) {
+        String prefix = "exam:room:{" + semesterTestId + "}:";
+        return List.of(prefix + "users", prefix + "status", prefix + "counts", prefix + "version",
+                prefix + "owner");
+    }
+
+    private String ttlSeconds() {
+        return String.valueOf(ttlHours * 3600);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize room message", e);
+        }
+    }
+
+    private UserStatus fromJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, UserStatus.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read room user", e);
+        }
+    }
+}
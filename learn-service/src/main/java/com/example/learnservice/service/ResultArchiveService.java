@@ -0,0 +1,208 @@
+package com.example.learnservice.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.learnservice.model.Result;
+import com.example.learnservice.model.ResultArchive;
+import com.example.learnservice.repository.ResultAnswerEventRepository;
+import com.example.learnservice.repository.ResultArchiveRepository;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.repository.SemeterTestRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chuyển Result của các kỳ học đã kết thúc lâu sang bảng result_archive (JSONB
+ * nén gzip) để bảng result chỉ còn dữ liệu đang dùng.
+ * Chạy theo lô, mỗi lô 1 transaction; các dòng được khóa SKIP LOCKED nên
+ * nhiều node cùng chạy không lấy trùng.
+ */
+@Slf4j
+@Service
+public class ResultArchiveService {
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private ResultArchiveRepository resultArchiveRepository;
+
+    @Autowired
+    private ResultAnswerEventRepository resultAnswerEventRepository;
+
+    @Autowired
+    private SemeterTestRepository semesterTestRepository;
+
+    @Autowired
+    private ExamPaperService examPaperService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${learnservice.result-archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${learnservice.result-archive.after-days:180}")
+    private long afterDays;
+
+    @Value("${learnservice.result-archive.batch-size:500}")
+    private int batchSize;
+
+    // Bật phân tích câu hỏi thì chỉ lưu trữ bài đã được phân tích
+    @Value("${learnservice.exam.item-analysis.enabled:false}")
+    private boolean itemAnalysisEnabled;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${learnservice.result-archive.cron:0 0 3 * * *}")
+    public void archiveClosedSemesters() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(afterDays);
+        int total = 0;
+        try {
+            int archived;
+            do {
+                archived = transactionTemplate.execute(status -> archiveBatch(cutoff));
+                total += archived;
+            } while (archived == batchSize);
+        } catch (Exception e) {
+            log.error("Error while archiving results", e);
+        }
+        if (total > 0) {
+            log.info("Archived {} results of semesters ended before {}", total, cutoff);
+        }
+    }
+
+    /**
+     * Lưu trữ 1 lô, trả về số Result đã chuyển
+     */
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> ids = resultRepository.lockArchivableIds(cutoff, itemAnalysisEnabled, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<ResultArchive> archives = new ArrayList<>(ids.size());
+        for (Result result : resultRepository.findAllById(ids)) {
+            archives.add(toArchive(result, now));
+        }
+        resultArchiveRepository.saveAll(archives);
+        // Log trả lời đã được dựng vào studentAnswers khi nộp bài
+        resultAnswerEventRepository.deleteByResultIds(
+                ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}")));
+        resultRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+
+    /**
+     * Đọc Result đã lưu trữ (chỉ để xem, không gắn với persistence context)
+     */
+    public Optional<Result> findArchived(Long resultId) {
+        return resultArchiveRepository.findById(resultId).map(this::toResult);
+    }
+
+    private ResultArchive toArchive(Result result, LocalDateTime archivedAt) {
+        ObjectNode document = objectMapper.createObjectNode();
+        document.set("detailTest", result.getDetailTest());
+        document.set("trueAnswers", result.getTrueAnswers());
+        document.set("studentAnswers", result.getStudentAnswers());
+
+        ResultArchive archive = new ResultArchive();
+        archive.setId(result.getId());
+        archive.setSemesterTestId(result.getSemesterTest().getId());
+        archive.setStudentId(result.getStudentId());
+        archive.setExamPaperId(result.getExamPaper() != null ? result.getExamPaper().getId() : null);
+        archive.setStartDateTime(result.getStartDateTime());
+        archive.setSubmitDateTime(result.getSubmitDateTime());
+        archive.setScore(result.getScore());
+        archive.setShuffleSeed(result.getShuffleSeed());
+        archive.setAnsweredCount(result.getAnsweredCount());
+        archive.setFlaggedCount(result.getFlaggedCount());
+        archive.setCreatedAt(result.getCreatedAt());
+        archive.setArchivedAt(archivedAt);
+        archive.setPayload(compress(document));
+        return archive;
+    }
+
+    private Result toResult(ResultArchive archive) {
+        JsonNode document = decompress(archive.getPayload());
+
+        Result result = new Result();
+        result.setId(archive.getId());
+        result.setStudentId(archive.getStudentId());
+        // Bài kiểm tra đã bị xóa thì không còn đủ dữ liệu để xem (thời gian, kỳ học để kiểm tra quyền)
+        result.setSemesterTest(semesterTestRepository.findById(archive.getSemesterTestId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Semester test not found")));
+        if (archive.getExamPaperId() != null) {
+            result.setExamPaper(examPaperService.getPaperById(archive.getExamPaperId()));
+        }
+        result.setStartDateTime(archive.getStartDateTime());
+        result.setSubmitDateTime(archive.getSubmitDateTime());
+        result.setScore(archive.getScore());
+        result.setShuffleSeed(archive.getShuffleSeed());
+        result.setAnsweredCount(archive.getAnsweredCount());
+        result.setFlaggedCount(archive.getFlaggedCount());
+        result.setCreatedAt(archive.getCreatedAt());
+        result.setDetailTest(nullIfMissing(document.get("detailTest")));
+        result.setTrueAnswers(nullIfMissing(document.get("trueAnswers")));
+        result.setStudentAnswers(nullIfMissing(document.get("studentAnswers")));
+        return result;
+    }
+
+    private byte[] compress(JsonNode document) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(out, document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private JsonNode decompress(byte[] payload) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readTree(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonNode nullIfMissing(JsonNode node) {
+        return node == null || node.isNull() ? null : node;
+    }
+}
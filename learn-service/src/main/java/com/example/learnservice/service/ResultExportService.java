@@ -0,0 +1,108 @@
+package com.example.learnservice.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.learnservice.client.AccountClient;
+import com.example.learnservice.dto.AccountDTO;
+import com.example.learnservice.dto.ResultStatusProjection;
+import com.example.learnservice.enums.ExportFormat;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.util.export.ExportRowWriter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Xuất kết quả thi của 1 SemesterTest ra CSV/XLSX.
+ * Đọc result bằng cursor (fetch size), mỗi lô batchSize dòng gọi account-service
+ * 1 lần để lấy tên rồi ghi thẳng ra response, bộ nhớ không phụ thuộc số bài làm.
+ */
+@Slf4j
+@Service
+public class ResultExportService {
+
+    private static final List<String> HEADER = List.of("resultId", "studentId", "username", "lastName",
+            "firstName", "status", "startDateTime", "submitDateTime", "score");
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private AccountClient accountClient;
+
+    @Value("${learnservice.exam.export.batch-size:500}")
+    private int batchSize;
+
+    @Transactional(readOnly = true)
+    public void exportResults(Long semesterTestId, ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<ResultStatusProjection> results = resultRepository.streamBySemesterTestId(semesterTestId);
+                ExportRowWriter writer = ExportRowWriter.of(format, out)) {
+            writer.writeRow(HEADER);
+
+            List<ResultStatusProjection> batch = new ArrayList<>(batchSize);
+            Iterator<ResultStatusProjection> iterator = results.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize) {
+                    writeBatch(writer, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(writer, batch);
+            }
+        }
+    }
+
+    private void writeBatch(ExportRowWriter writer, List<ResultStatusProjection> batch) throws IOException {
+        Map<Long, AccountDTO> accounts = findAccounts(batch.stream()
+                .map(ResultStatusProjection::getStudentId)
+                .distinct()
+                .toList());
+
+        for (ResultStatusProjection result : batch) {
+            AccountDTO account = accounts.get(result.getStudentId());
+            writer.writeRow(Arrays.asList(
+                    result.getId(),
+                    result.getStudentId(),
+                    account != null ? account.getUsername() : null,
+                    account != null ? account.getLastName() : null,
+                    account != null ? account.getFirstName() : null,
+                    statusOf(result),
+                    result.getStartDateTime(),
+                    result.getSubmitDateTime(),
+                    result.getScore()));
+        }
+    }
+
+    // account-service lỗi thì vẫn xuất điểm, chỉ thiếu tên
+    private Map<Long, AccountDTO> findAccounts(List<Long> studentIds) {
+        try {
+            return accountClient.getAccountsByIds(studentIds).stream()
+                    .collect(Collectors.toMap(AccountDTO::getId, Function.identity(), (a, b) -> a));
+        } catch (Exception e) {
+            log.warn("Could not load {} accounts for export: {}", studentIds.size(), e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static String statusOf(ResultStatusProjection result) {
+        if (result.getSubmitDateTime() != null) {
+            return "COMPLETED";
+        }
+        return result.getStartDateTime() != null ? "IN_PROGRESS" : "NOT_STARTED";
+    }
+}
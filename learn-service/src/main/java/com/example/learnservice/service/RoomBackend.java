@@ -0,0 +1,56 @@
+package com.example.learnservice.service;
+
+import java.util.Map;
+
+import com.example.learnservice.controller.WebSocketController.RoomEvent;
+import com.example.learnservice.controller.WebSocketController.TestRoomUpdate;
+import com.example.learnservice.controller.WebSocketController.TestStatus;
+import com.example.learnservice.controller.WebSocketController.UserStatus;
+import com.example.learnservice.service.ScoreStatsService.ScoreSubmitted;
+
+/**
+ * Nơi lưu trạng thái phòng chờ thi và gửi message tới client của mọi node.
+ * Chọn bằng learnservice.exam.room.backend: memory (1 node) hoặc redis (nhiều node).
+ */
+public interface RoomBackend {
+
+    /**
+     * Thêm user vào phòng, user đã có thì thay bằng trạng thái mới.
+     * owner là session WebSocket đang giữ user, lần join sau (kể cả qua node khác) thay owner
+     */
+    void join(Long semesterTestId, UserStatus user, String owner);
+
+    /**
+     * Xóa user khỏi phòng nếu owner là session đang giữ user (owner null thì luôn xóa).
+     * Trả về trạng thái cũ, null nếu user không ở trong phòng hoặc đã join lại qua session khác
+     */
+    UserStatus leave(Long semesterTestId, Long userId, String owner);
+
+    /**
+     * Đổi trạng thái user. Trả về trạng thái mới, null nếu user không ở trong
+     * phòng hoặc trạng thái không đổi
+     */
+    UserStatus updateStatus(Long semesterTestId, Long userId, TestStatus status);
+
+    /**
+     * Danh sách + bộ đếm + version của phòng tại cùng 1 thời điểm
+     */
+    TestRoomUpdate snapshot(Long semesterTestId);
+
+    /**
+     * Gửi 1 RoomDelta với version kế tiếp cho cả phòng. Delta được dựng từ trạng
+     * thái hiện tại của các user đã đổi (user không còn trong phòng thành LEFT),
+     * nên delta luôn khớp với snapshot dù các thay đổi đến từ node nào
+     */
+    void publishChanges(Long semesterTestId, Map<Long, RoomEvent> changes);
+
+    /**
+     * Gửi message tới client đang subscribe destination trên mọi node
+     */
+    void fanOut(String destination, Object payload);
+
+    /**
+     * Gửi 1 bài nộp tới mọi node, mỗi node nhận ScoreSubmitted dưới dạng ApplicationEvent
+     */
+    void publishScore(ScoreSubmitted score);
+}
@@ -0,0 +1,86 @@
+package com.example.learnservice.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.learnservice.controller.WebSocketController.RoomEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gộp thay đổi của phòng chờ thi trước khi gửi lên /topic/test/{id}/users.
+ * Mỗi thay đổi chỉ được ghi vào bộ nhớ và đánh dấu phòng; scheduler dùng chung gửi
+ * tối đa 1 RoomDelta cho mỗi phòng mỗi broadcast-window-ms qua RoomBackend.
+ * Nhiều thay đổi của cùng 1 user trong 1 cửa sổ chỉ giữ thay đổi cuối.
+ */
+@Slf4j
+@Service
+public class RoomBroadcastService {
+
+    private final RoomBackend roomBackend;
+
+    private final ConcurrentHashMap<Long, Map<Long, RoomEvent>> pending = new ConcurrentHashMap<>();
+    // Các phòng có thay đổi chưa gửi
+    private final Set<Long> dirtyRooms = ConcurrentHashMap.newKeySet();
+
+    private final Counter eventCounter;
+    private final Counter broadcastCounter;
+
+    public RoomBroadcastService(RoomBackend roomBackend, MeterRegistry meterRegistry) {
+        this.roomBackend = roomBackend;
+        this.eventCounter = Counter.builder("learn.exam.room.events")
+                .description("Số thay đổi phòng thi được ghi nhận (vào, rời, đổi trạng thái)")
+                .register(meterRegistry);
+        this.broadcastCounter = Counter.builder("learn.exam.room.broadcasts")
+                .description("Số message delta phòng thi đã gửi")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ghi nhận 1 thay đổi của user, delta được dựng từ trạng thái của user lúc gửi
+     */
+    public void changed(Long semesterTestId, Long userId, RoomEvent event) {
+        Map<Long, RoomEvent> changes = pending.computeIfAbsent(semesterTestId, id -> new LinkedHashMap<>());
+        synchronized (changes) {
+            changes.put(userId, event);
+        }
+        eventCounter.increment();
+        dirtyRooms.add(semesterTestId);
+    }
+
+    /*
+     * Chỉ 1 lần flush chạy tại 1 thời điểm nên delta được gửi theo đúng thứ tự version
+     */
+    @Scheduled(fixedDelayString = "${learnservice.exam.room.broadcast-window-ms:200}")
+    public void flushDirty() {
+        for (Long semesterTestId : dirtyRooms) {
+            dirtyRooms.remove(semesterTestId);
+            Map<Long, RoomEvent> changes = pending.get(semesterTestId);
+            if (changes == null) {
+                continue;
+            }
+            Map<Long, RoomEvent> batch;
+            synchronized (changes) {
+                if (changes.isEmpty()) {
+                    continue;
+                }
+                batch = new LinkedHashMap<>(changes);
+                changes.clear();
+            }
+            try {
+                roomBackend.publishChanges(semesterTestId, batch);
+                broadcastCounter.increment();
+            } catch (Exception e) {
+                // Client thấy version hụt hoặc không nhận được delta sẽ tự lấy lại snapshot
+                log.error("Error while broadcasting room {}", semesterTestId, e);
+            }
+        }
+    }
+}
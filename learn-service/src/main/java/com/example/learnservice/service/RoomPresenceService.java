@@ -0,0 +1,155 @@
+package com.example.learnservice.service;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.learnservice.util.schedule.HashedTimingWheel;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Presence của user trong phòng chờ: client gửi heartbeat định kỳ, mỗi user có
+ * last-seen và 1 timer trong timing wheel (deadline = last-seen + timeout).
+ * User ngừng heartbeat (kết nối nửa mở, mạng chập chờn không có SessionDisconnectEvent)
+ * bị xóa khỏi phòng qua RoomRegistry, nên mọi user bị xóa của 1 phòng được gộp
+ * vào 1 delta. Mỗi node chỉ theo dõi các session kết nối tới nó và chỉ xóa user khi
+ * session đó vẫn đang giữ user trong phòng: user join lại qua node khác không bị
+ * node cũ xóa.
+ */
+@Slf4j
+@Service
+public class RoomPresenceService {
+
+    private final RoomRegistry roomRegistry;
+    // (semesterTestId, userId) -> session + lần heartbeat cuối (millis)
+    private final ConcurrentHashMap<PresenceKey, Presence> lastSeen = new ConcurrentHashMap<>();
+    private final Counter reapedCounter;
+
+    @Value("${learnservice.exam.room.presence.enabled:false}")
+    private boolean enabled;
+
+    @Value("${learnservice.exam.room.presence.timeout-ms:30000}")
+    private long timeoutMillis;
+
+    @Value("${learnservice.exam.room.presence.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${learnservice.exam.room.presence.wheel-size:64}")
+    private int wheelSize;
+
+    private HashedTimingWheel<PresenceKey> wheel;
+
+    public RoomPresenceService(RoomRegistry roomRegistry, MeterRegistry meterRegistry) {
+        this.roomRegistry = roomRegistry;
+        this.reapedCounter = Counter.builder("learn.exam.room.reaped")
+                .description("Số user bị xóa khỏi phòng chờ do ngừng heartbeat")
+                .register(meterRegistry);
+        Gauge.builder("learn.exam.room.presence", lastSeen, ConcurrentHashMap::size)
+                .description("Số user đang được theo dõi heartbeat trên node này")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        wheel = new HashedTimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+    }
+
+    /**
+     * Bắt đầu theo dõi user vừa vào phòng qua session owner
+     */
+    public void track(Long semesterTestId, Long userId, String owner) {
+        if (!enabled) {
+            return;
+        }
+        PresenceKey key = new PresenceKey(semesterTestId, userId);
+        long now = System.currentTimeMillis();
+        lastSeen.put(key, new Presence(owner, now));
+        wheel.schedule(key, now + timeoutMillis);
+    }
+
+    /**
+     * Ghi nhận heartbeat. Trả về false nếu user không được theo dõi (chưa vào
+     * phòng hoặc đã bị xóa do quá hạn), client cần join lại
+     */
+    public boolean heartbeat(Long semesterTestId, Long userId) {
+        if (!enabled) {
+            return true;
+        }
+        PresenceKey key = new PresenceKey(semesterTestId, userId);
+        long now = System.currentTimeMillis();
+        // Chỉ cập nhật user còn được theo dõi, không tạo lại user vừa bị reap xóa
+        if (lastSeen.computeIfPresent(key, (k, presence) -> new Presence(presence.owner(), now)) == null) {
+            return false;
+        }
+        wheel.schedule(key, now + timeoutMillis);
+        return true;
+    }
+
+    /**
+     * Ngừng theo dõi user đã rời phòng qua session owner (null = mọi session)
+     */
+    public void untrack(Long semesterTestId, Long userId, String owner) {
+        if (!enabled) {
+            return;
+        }
+        PresenceKey key = new PresenceKey(semesterTestId, userId);
+        boolean[] removed = new boolean[1];
+        lastSeen.computeIfPresent(key, (k, presence) -> {
+            if (owner != null && !owner.equals(presence.owner())) {
+                return presence;
+            }
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            wheel.cancel(key);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${learnservice.exam.room.presence.tick-ms:1000}")
+    public void reap() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<PresenceKey> expired = wheel.advance(now);
+        int reaped = 0;
+        for (PresenceKey key : expired) {
+            Presence presence = lastSeen.get(key);
+            if (presence == null) {
+                continue;
+            }
+            if (now - presence.seenAt() < timeoutMillis) {
+                // Heartbeat tới cùng lúc với advance: đặt lại timer
+                wheel.schedule(key, presence.seenAt() + timeoutMillis);
+                continue;
+            }
+            if (!lastSeen.remove(key, presence)) {
+                continue;
+            }
+            // User đã join lại qua session khác (có thể ở node khác) thì không xóa
+            if (roomRegistry.leave(key.semesterTestId(), key.userId(), presence.owner()) != null) {
+                reaped++;
+                log.debug("User {} timed out of test room {}", key.userId(), key.semesterTestId());
+            }
+        }
+        if (reaped > 0) {
+            reapedCounter.increment(reaped);
+            log.info("Removed {} stale users from test rooms", reaped);
+        }
+    }
+
+    private record PresenceKey(Long semesterTestId, Long userId) {
+    }
+
+    private record Presence(String owner, long seenAt) {
+    }
+}
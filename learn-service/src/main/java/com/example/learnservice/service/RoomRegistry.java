@@ -0,0 +1,64 @@
+package com.example.learnservice.service;
+
+import org.springframework.stereotype.Component;
+
+import com.example.learnservice.controller.WebSocketController.RoomEvent;
+import com.example.learnservice.controller.WebSocketController.TestRoomUpdate;
+import com.example.learnservice.controller.WebSocketController.TestStatus;
+import com.example.learnservice.controller.WebSocketController.UserStatus;
+
+/**
+ * Phòng chờ thi: đổi trạng thái qua RoomBackend (trong JVM hoặc Redis) rồi báo
+ * cho RoomBroadcastService gộp và gửi delta. Delta được dựng lại từ trạng thái lúc
+ * gửi nên không cần giữ khóa giữa 2 bước.
+ */
+@Component
+public class RoomRegistry {
+
+    private final RoomBackend roomBackend;
+    private final RoomBroadcastService roomBroadcastService;
+
+    public RoomRegistry(RoomBackend roomBackend, RoomBroadcastService roomBroadcastService) {
+        this.roomBackend = roomBackend;
+        this.roomBroadcastService = roomBroadcastService;
+    }
+
+    /**
+     * Thêm user vào phòng qua session owner, user đã có thì thay bằng trạng thái mới
+     */
+    public void join(Long semesterTestId, UserStatus user, String owner) {
+        roomBackend.join(semesterTestId, user, owner);
+        roomBroadcastService.changed(semesterTestId, user.userId(), RoomEvent.JOINED);
+    }
+
+    /**
+     * Xóa user khỏi phòng nếu session owner còn giữ user (null = luôn xóa).
+     * Trả về trạng thái cũ, null nếu không có hoặc user đã join lại qua session khác
+     */
+    public UserStatus leave(Long semesterTestId, Long userId, String owner) {
+        UserStatus removed = roomBackend.leave(semesterTestId, userId, owner);
+        if (removed != null) {
+            roomBroadcastService.changed(semesterTestId, userId, RoomEvent.LEFT);
+        }
+        return removed;
+    }
+
+    /**
+     * Đổi trạng thái user đang ở trong phòng. Trả về trạng thái mới, null nếu user
+     * không ở trong phòng hoặc trạng thái không đổi
+     */
+    public UserStatus updateStatus(Long semesterTestId, Long userId, TestStatus status) {
+        UserStatus updated = roomBackend.updateStatus(semesterTestId, userId, status);
+        if (updated != null) {
+            roomBroadcastService.changed(semesterTestId, userId, RoomEvent.STATUS_CHANGED);
+        }
+        return updated;
+    }
+
+    /**
+     * Danh sách + bộ đếm + version của phòng tại cùng 1 thời điểm
+     */
+    public TestRoomUpdate snapshot(Long semesterTestId) {
+        return roomBackend.snapshot(semesterTestId);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.learnservice.service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.learnservice.controller.WebSocketController;
+import com.example.learnservice.dto.ResultScoreProjection;
+import com.example.learnservice.dto.ScoreStatsResponse;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.util.stats.ScoreStatistics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thống kê điểm trực tiếp theo SemesterTest.
+ * Lần đầu được xem thì dựng từ bảng result, sau đó mỗi bài nộp cập nhật O(1).
+ * Bài nộp được gửi tới mọi node qua RoomBackend.publishScore nên node nào cũng cập nhật
+ * thống kê của mình; cache vẫn được dựng lại sau ttl-seconds phòng khi lỡ message.
+ * Mỗi node gửi bản mới nhất cho client của mình lên /topic/test/{id}/stats tối đa
+ * 1 lần mỗi publish-interval-ms.
+ */
+@Slf4j
+@Service
+public class ScoreStatsService {
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private WebSocketController webSocketController;
+
+    @Autowired
+    private RoomBackend roomBackend;
+
+    @Value("${learnservice.exam.stats.bucket-width:1.0}")
+    private double bucketWidth;
+
+    @Value("${learnservice.exam.stats.max-tests:1000}")
+    private long maxTests;
+
+    @Value("${learnservice.exam.stats.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<Long, TestStats> stats;
+    // Các test có bài nộp mới chưa được gửi qua WebSocket
+    private final Set<Long> dirtyTests = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        stats = Caffeine.newBuilder()
+                .maximumSize(maxTests)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public ScoreStatsResponse getStats(Long semesterTestId) {
+        return stats.get(semesterTestId, this::load).snapshot(semesterTestId);
+    }
+
+    /**
+     * Ghi nhận 1 bài nộp, trong transaction thì chỉ gửi sau khi commit
+     */
+    public void record(Long semesterTestId, Long resultId, Float score) {
+        if (score == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    roomBackend.publishScore(new ScoreSubmitted(semesterTestId, resultId, score));
+                }
+            });
+        } else {
+            roomBackend.publishScore(new ScoreSubmitted(semesterTestId, resultId, score));
+        }
+    }
+
+    /**
+     * Bài nộp từ node bất kỳ (kể cả node này). Chưa ai xem thống kê của test này
+     * trên node này thì bỏ qua, lần xem đầu sẽ đọc DB
+     */
+    @EventListener
+    public void onScoreSubmitted(ScoreSubmitted submitted) {
+        TestStats testStats = stats.getIfPresent(submitted.semesterTestId());
+        if (testStats != null && testStats.add(submitted.resultId(), submitted.score())) {
+            dirtyTests.add(submitted.semesterTestId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${learnservice.exam.stats.publish-interval-ms:1000}")
+    public void publishDirty() {
+        for (Long semesterTestId : dirtyTests) {
+            dirtyTests.remove(semesterTestId);
+            TestStats testStats = stats.getIfPresent(semesterTestId);
+            if (testStats != null) {
+                webSocketController.notifyScoreStats(semesterTestId, testStats.snapshot(semesterTestId));
+            }
+        }
+    }
+
+    private TestStats load(Long semesterTestId) {
+        TestStats testStats = new TestStats(new ScoreStatistics(bucketWidth));
+        for (ResultScoreProjection result : resultRepository.findSubmittedScores(semesterTestId)) {
+            testStats.add(result.getId(), result.getScore());
+        }
+        log.debug("Loaded score stats of test {} ({} results)", semesterTestId, testStats.statistics.getCount());
+        return testStats;
+    }
+
+    /**
+     * 1 bài nộp gửi giữa các node
+     */
+    public record ScoreSubmitted(Long semesterTestId, Long resultId, float score) {
+    }
+
+    private static final class TestStats {
+        private final ScoreStatistics statistics;
+        // Tránh đếm 2 lần bài vừa commit lúc đang dựng từ DB
+        private final Set<Long> resultIds = new HashSet<>();
+
+        private TestStats(ScoreStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        synchronized boolean add(Long resultId, float score) {
+            if (!resultIds.add(resultId)) {
+                return false;
+            }
+            statistics.add(score);
+            return true;
+        }
+
+        synchronized ScoreStatsResponse snapshot(Long semesterTestId) {
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            statistics.getQuantiles().forEach(
+                    (p, value) -> percentiles.put("p" + Math.round(p * 100), nullIfNaN(value)));
+            return ScoreStatsResponse.builder()
+                    .semesterTestId(semesterTestId)
+                    .count(statistics.getCount())
+                    .mean(nullIfNaN(statistics.getMean()))
+                    .variance(nullIfNaN(statistics.getVariance()))
+                    .stdDev(nullIfNaN(statistics.getStdDev()))
+                    .min(nullIfNaN(statistics.getMin()))
+                    .max(nullIfNaN(statistics.getMax()))
+                    .percentiles(percentiles)
+                    .bucketWidth(statistics.getBucketWidth())
+                    .histogram(statistics.getHistogram())
+                    .build();
+        }
+
+        // JSON không có NaN
+        private static Double nullIfNaN(double value) {
+            return Double.isNaN(value) ? null : value;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.learnservice.service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.learnservice.dto.ResultSubmitProjection;
+import com.example.learnservice.enums.ScoringPolicy;
+import com.example.learnservice.model.Result;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.util.scoring.AnswerKey;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chấm điểm bài thi bằng AnswerKey đã biên dịch.
+ * Đề dùng chung không đổi nên AnswerKey được cache theo id đề.
+ */
+@Slf4j
+@Service
+public class ScoringService {
+
+    @Autowired
+    private ExamPaperService examPaperService;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    // Điểm bị trừ cho mỗi câu sai với NEGATIVE_MARKING
+    @Value("${learnservice.exam.scoring.negative-penalty:0.25}")
+    private float negativePenalty;
+
+    // Cùng giới hạn với cache đề của ExamPaperService
+    @Value("${learnservice.exam.paper-cache.max-size:1000}")
+    private long cacheMaxSize;
+
+    @Value("${learnservice.exam.paper-cache.idle-seconds:3600}")
+    private long cacheIdleSeconds;
+
+    private Cache<Long, AnswerKey> keysByPaperId;
+
+    @PostConstruct
+    void init() {
+        keysByPaperId = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterAccess(Duration.ofSeconds(cacheIdleSeconds))
+                .build();
+    }
+
+    public float score(Result result) {
+        ScoringPolicy policy = result.getSemesterTest().getScoringPolicy();
+        return answerKeyOf(result).score(result.getStudentAnswers(), policy, negativePenalty);
+    }
+
+    /**
+     * Chấm từ projection khi nộp bài, không cần nạp cả entity Result
+     */
+    public float score(ResultSubmitProjection result) {
+        AnswerKey answerKey = result.getExamPaperId() != null
+                ? answerKeyOf(result.getExamPaperId())
+                : AnswerKey.compile(resultRepository.findTrueAnswersById(result.getId()));
+        return answerKey.score(result.getStudentAnswers(), result.getScoringPolicy(), negativePenalty);
+    }
+
+    /**
+     * AnswerKey của Result: cache theo đề, Result cũ (không có đề) thì biên dịch
+     * từ trueAnswers của chính nó
+     */
+    public AnswerKey answerKeyOf(Result result) {
+        if (result.getExamPaper() == null) {
+            return AnswerKey.compile(result.getTrueAnswers());
+        }
+        return answerKeyOf(result.getExamPaper().getId());
+    }
+
+    // Nạp đề + biên dịch ngoài khóa của cache
+    public AnswerKey answerKeyOf(Long examPaperId) {
+        AnswerKey answerKey = keysByPaperId.getIfPresent(examPaperId);
+        if (answerKey == null) {
+            answerKey = AnswerKey.compile(examPaperService.getPaperById(examPaperId).getTrueAnswers());
+            keysByPaperId.put(examPaperId, answerKey);
+        }
+        return answerKey;
+    }
+}
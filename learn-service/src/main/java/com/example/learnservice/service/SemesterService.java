@@ -54,6 +54,9 @@ public class SemesterService {
     @Autowired
     private SemesterRepository semesterRepository;
 
+    @Autowired
+    private AttemptCacheService attemptCacheService;
+
     @Autowired
     private DocumentRepository documentRepository;
 
@@ -417,6 +420,7 @@ public class SemesterService {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Account not found in semester");
         }
 
+        attemptCacheService.invalidateAccess(accountId);
         log.info("Removed account {} from semester {}", accountId, semesterId);
     }
 
@@ -439,6 +443,7 @@ public class SemesterService {
 
         semesterAccount.setPosition(newPosition);
         semesterAccountRepository.save(semesterAccount);
+        attemptCacheService.invalidateAccess(accountId);
 
         log.info("Updated account {} position in semester {}", accountId, semesterId);
     }
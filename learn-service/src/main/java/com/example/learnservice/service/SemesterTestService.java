@@ -3,50 +3,63 @@ package com.example.learnservice.service;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.example.learnservice.controller.WebSocketController;
+import com.example.learnservice.dto.AnswerUpdate;
+import com.example.learnservice.dto.ProgressPageResponse;
+import com.example.learnservice.dto.QuestionBundleResponse;
+import com.example.learnservice.dto.QuestionResponse;
+import com.example.learnservice.dto.ResultProgressProjection;
+import com.example.learnservice.dto.ResultProgressResponse;
 import com.example.learnservice.dto.ResultStatusProjection;
+import com.example.learnservice.dto.ResultSubmitProjection;
+import com.example.learnservice.dto.RosterCountsProjection;
+import com.example.learnservice.dto.RosterEntry;
+import com.example.learnservice.dto.RosterPageResponse;
+import com.example.learnservice.dto.RosterSummaryResponse;
 import com.example.learnservice.dto.SubmittedStudent;
 import com.example.learnservice.dto.SemesterResponse;
 import com.example.learnservice.dto.SemesterTestAssignRequest;
 import com.example.learnservice.dto.SemesterTestUpdateRequest;
 import com.example.learnservice.dto.SemesterTestCreateRequest;
 import com.example.learnservice.enums.Role;
+import com.example.learnservice.enums.RosterStatus;
 import com.example.learnservice.enums.TestType;
-import com.example.learnservice.model.Answer;
+import com.example.learnservice.model.ExamPaper;
 import com.example.learnservice.model.Position;
-import com.example.learnservice.model.Question;
 import com.example.learnservice.model.Result;
 import com.example.learnservice.model.Semester;
 import com.example.learnservice.model.SemesterAccount;
 import com.example.learnservice.model.SemesterTeacher;
 import com.example.learnservice.model.SemesterTest;
 import com.example.learnservice.model.Test;
-import com.example.learnservice.model.TestQuestion;
-import com.example.learnservice.repository.QuestionRepository;
 import com.example.learnservice.repository.ResultRepository;
 import com.example.learnservice.repository.SemesterAccountRepository;
 import com.example.learnservice.repository.SemesterRepository;
 import com.example.learnservice.repository.SemesterTeacherRepository;
 import com.example.learnservice.repository.SemeterTestRepository;
 import com.example.learnservice.repository.TestRepository;
-import com.example.learnservice.util.ValidateUtil;
+import com.example.learnservice.util.shuffle.ShuffleOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import jakarta.persistence.EntityNotFoundException;
 import jakarta.ws.rs.ForbiddenException;
 import lombok.extern.slf4j.Slf4j;
 
@@ -68,9 +81,6 @@ public class SemesterTestService {
     @Autowired
     private TestRepository testRepository;
 
-    @Autowired
-    private QuestionRepository questionRepository;
-
     @Autowired
     private WebSocketController webSocketController;
 
@@ -83,6 +93,39 @@ public class SemesterTestService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private AnswerBufferService answerBufferService;
+
+    @Autowired
+    private ExamPaperService examPaperService;
+
+    @Autowired
+    private ScoringService scoringService;
+
+    @Autowired
+    private ExamDeadlineService examDeadlineService;
+
+    @Autowired
+    private AttemptCacheService attemptCacheService;
+
+    @Autowired
+    private ResultArchiveService resultArchiveService;
+
+    @Autowired
+    private ScoreStatsService scoreStatsService;
+
+    @Autowired
+    private AnswerEventService answerEventService;
+
+    @Value("${learnservice.exam.question-bundle.max-count:50}")
+    private int maxBundleSize;
+
+    @Value("${learnservice.exam.answer-batch.max-size:200}")
+    private int maxAnswerBatchSize;
+
+    @Value("${learnservice.exam.roster.max-page-size:500}")
+    private int maxRosterPageSize;
+
     /**
      * Lấy thông tin chi tiết của một bài thi
      */
@@ -112,6 +155,11 @@ public class SemesterTestService {
         SemesterTest semesterTest = getSemesterTestById(semesterTestId);
         semesterTest.setOpen(true);
         semesterTestRepository.save(semesterTest);
+        attemptCacheService.invalidateTest(semesterTestId);
+
+        if (Boolean.TRUE.equals(semesterTest.getProvisionOnOpen()) && semesterTest.getType() == TestType.EXAM) {
+            provisionResults(semesterTest);
+        }
 
         // Notify all users via WebSocket
         webSocketController.notifyTestOpened(semesterTestId);
@@ -119,6 +167,19 @@ public class SemesterTestService {
         log.info("Test {} opened by user {}", semesterTestId, userId);
     }
 
+    /*
+     * Tạo sẵn Result (chưa bắt đầu) cho mọi học viên cùng position trong kỳ học
+     * bằng 1 câu INSERT ... SELECT, startTest sau đó chỉ cần tìm lại Result
+     */
+    private void provisionResults(SemesterTest semesterTest) {
+        ExamPaper paper = examPaperService.getCurrentPaper(semesterTest.getId());
+        String studentAnswers = examPaperService.newStudentAnswers(paper).toString();
+        int provisioned = resultRepository.provisionResults(semesterTest.getId(), paper.getId(), studentAnswers,
+                isShuffled(semesterTest));
+        log.info("Provisioned {} results for test {} with exam paper v{}",
+                provisioned, semesterTest.getId(), paper.getVersion());
+    }
+
     /*
      * Check test status
      */
@@ -128,18 +189,57 @@ public class SemesterTestService {
     }
 
     public List<SubmittedStudent> getListSubmittedStudents(Long semesterTestId) {
-        List<ResultStatusProjection> result = resultRepository.findAllBySemesterTestId(semesterTestId);
-        List<SubmittedStudent> submittedStudents = result.stream()
-                .filter(r -> r.getSubmitDateTime() != null)
+        return resultRepository.findSubmittedBySemesterTestId(semesterTestId).stream()
                 .map(r -> SubmittedStudent.builder()
                         .userId(r.getStudentId())
                         .score(r.getScore())
                         .resultId(r.getId())
                         .build())
                 .toList();
-        ;
+    }
 
-        return submittedStudents;
+    /**
+     * Danh sách học viên theo trạng thái (theo lượt làm gần nhất), phân trang
+     * keyset theo studentId: trang sau truyền after = nextAfter của trang trước
+     */
+    public RosterPageResponse getRoster(Long semesterTestId, RosterStatus status, Long after, int limit) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        int pageSize = Math.min(limit, maxRosterPageSize);
+        long afterStudentId = after != null ? after : Long.MIN_VALUE;
+
+        List<ResultStatusProjection> rows = switch (status) {
+            case SUBMITTED -> resultRepository.findSubmittedRoster(semesterTestId, afterStudentId, pageSize);
+            case IN_PROGRESS -> resultRepository.findInProgressRoster(semesterTestId, afterStudentId, pageSize);
+            case NOT_STARTED -> resultRepository.findNotStartedRoster(semesterTestId, afterStudentId, pageSize);
+        };
+
+        List<RosterEntry> entries = rows.stream()
+                .map(r -> RosterEntry.builder()
+                        .studentId(r.getStudentId())
+                        .resultId(r.getId())
+                        .startDateTime(r.getStartDateTime())
+                        .submitDateTime(r.getSubmitDateTime())
+                        .score(r.getScore())
+                        .build())
+                .toList();
+
+        return RosterPageResponse.builder()
+                .status(status)
+                .entries(entries)
+                .nextAfter(entries.size() == pageSize ? entries.get(entries.size() - 1).getStudentId() : null)
+                .build();
+    }
+
+    public RosterSummaryResponse getRosterSummary(Long semesterTestId) {
+        RosterCountsProjection counts = resultRepository.countRoster(semesterTestId);
+        return RosterSummaryResponse.builder()
+                .semesterTestId(semesterTestId)
+                .submitted(counts.getSubmitted())
+                .inProgress(counts.getInProgress())
+                .notStarted(counts.getNotStarted())
+                .build();
     }
 
     /**
@@ -148,9 +248,9 @@ public class SemesterTestService {
      */
     @Transactional
     public Result startTest(Long semesterTestId, Long studentId, Role role) {
-        if (role.equals(Role.STUDENT))
-            validateAccessTest(semesterTestId, studentId);
-        SemesterTest semesterTest = getSemesterTestById(semesterTestId);
+        SemesterTest semesterTest = role.equals(Role.STUDENT)
+                ? validateAccessTest(semesterTestId, studentId)
+                : getSemesterTestById(semesterTestId);
 
         // Kiểm tra test đã mở chưa
         if (!semesterTest.getOpen()) {
@@ -170,50 +270,87 @@ public class SemesterTestService {
         if (semesterTest.getType() == TestType.EXAM) {
             Optional<ResultStatusProjection> existingResult = resultRepository
                     .findFirstBySemesterTestIdAndStudentIdOrderByCreatedAtDesc(semesterTestId, studentId);
-
             if (existingResult.isPresent()) {
-                ResultStatusProjection result = existingResult.get();
-
-                // Nếu đã submit rồi thì không cho vào lại
-                if (result.getSubmitDateTime() != null) {
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                            "You have already submitted this exam");
-                }
-                webSocketController.updateUserStatus(semesterTestId, studentId,
-                        WebSocketController.TestStatus.TESTING);
-                Result tempResult = new Result();
-                tempResult.setId(result.getId());
-                // Trả về result hiện tại để tiếp tục thi
-                log.info("Student {} continuing exam {} with existing result {}",
-                        studentId, semesterTestId, result.getId());
-                return tempResult;
+                return continueExam(semesterTest, studentId, existingResult.get(), now);
+            }
+
+            // INSERT ... ON CONFLICT: 2 request cùng lúc (kể cả trên 2 node) chỉ tạo được 1 Result
+            ExamPaper paper = examPaperService.getCurrentPaper(semesterTestId);
+            Optional<Long> insertedId = resultRepository.insertExamAttempt(semesterTestId, studentId, paper.getId(),
+                    examPaperService.newStudentAnswers(paper).toString(), newShuffleSeed(semesterTest), now);
+            if (insertedId.isEmpty()) {
+                // Request khác vừa tạo trước, dùng lại lượt thi đó
+                ResultStatusProjection created = resultRepository
+                        .findFirstBySemesterTestIdAndStudentIdOrderByCreatedAtDesc(semesterTestId, studentId)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT,
+                                "Exam attempt is being created, please retry"));
+                return continueExam(semesterTest, studentId, created, now);
             }
+
+            Result result = new Result();
+            result.setId(insertedId.get());
+            startedNewAttempt(semesterTest, studentId, result.getId(), now);
+            return result;
         }
 
-        // Tạo detailTest từ Test hiện tại
-        JsonNode detailTest = buildDetailTest(semesterTest);
-        JsonNode trueAnswers = buildTrueAnswers(semesterTest);
-        JsonNode studentAnswers = buildStudentAnswers(semesterTest);
+        // Dùng đề chung của SemesterTest, Result chỉ lưu đáp án của sinh viên
+        ExamPaper paper = examPaperService.getCurrentPaper(semesterTestId);
 
         // Tạo Result mới
         Result result = new Result();
         result.setSemesterTest(semesterTest);
         result.setStudentId(studentId);
-        result.setDetailTest(detailTest);
-        result.setTrueAnswers(trueAnswers);
-        result.setStudentAnswers(studentAnswers);
+        result.setExamPaper(paper);
+        result.setStudentAnswers(examPaperService.newStudentAnswers(paper));
+        result.setShuffleSeed(newShuffleSeed(semesterTest));
         result.setStartDateTime(now);
 
         Result savedResult = resultRepository.save(result);
+        startedNewAttempt(semesterTest, studentId, savedResult.getId(), now);
+        return savedResult;
+    }
+
+    private void startedNewAttempt(SemesterTest semesterTest, Long studentId, Long resultId, LocalDateTime now) {
+        examDeadlineService.register(resultId, semesterTest.getId(), ExamDeadlineService.deadlineOf(semesterTest, now));
 
         // Update WebSocket status to TESTING
-        webSocketController.updateUserStatus(semesterTestId, studentId,
+        webSocketController.updateUserStatus(semesterTest.getId(), studentId,
                 WebSocketController.TestStatus.TESTING);
 
-        log.info("Student {} started test {} with new result {}",
-                studentId, semesterTestId, savedResult.getId());
+        log.info("Student {} started test {} with new result {}", studentId, semesterTest.getId(), resultId);
+    }
 
-        return savedResult;
+    /*
+     * Vào lại lượt thi EXAM đã có (đang làm hoặc tạo sẵn khi mở bài thi)
+     */
+    private Result continueExam(SemesterTest semesterTest, Long studentId, ResultStatusProjection result,
+            LocalDateTime now) {
+        // Nếu đã submit rồi thì không cho vào lại
+        if (result.getSubmitDateTime() != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "You have already submitted this exam");
+        }
+        // Result tạo sẵn khi mở bài thi: bắt đầu tính giờ từ lần vào đầu tiên
+        LocalDateTime startDateTime = result.getStartDateTime();
+        if (startDateTime == null) {
+            resultRepository.markStarted(result.getId(), now);
+            attemptCacheService.invalidate(result.getId());
+            startDateTime = now;
+        }
+        examDeadlineService.register(result.getId(), semesterTest.getId(),
+                ExamDeadlineService.deadlineOf(semesterTest, startDateTime));
+        webSocketController.updateUserStatus(semesterTest.getId(), studentId,
+                WebSocketController.TestStatus.TESTING);
+        Result tempResult = new Result();
+        tempResult.setId(result.getId());
+        // Trả về result hiện tại để tiếp tục thi
+        log.info("Student {} continuing exam {} with existing result {}",
+                studentId, semesterTest.getId(), result.getId());
+        return tempResult;
+    }
+
+    private static Long newShuffleSeed(SemesterTest semesterTest) {
+        return isShuffled(semesterTest) ? ThreadLocalRandom.current().nextLong() : null;
     }
 
     /*
@@ -221,74 +358,236 @@ public class SemesterTestService {
      */
     @Transactional
     public Float endTest(Long resultId, Long studentId) {
-        Result result = getResultById(resultId);
+        // Kiểm tra chủ bài trước khi khóa dòng / ghi đáp án của người khác
+        if (!attemptCacheService.getAttempt(resultId).studentId().equals(studentId))
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You are not the summitter of this result!");
+        // Chờ các lần ghi đáp án đang dở rồi dựng student_answers từ log
+        answerEventService.prepareSubmit(resultId);
+        answerBufferService.flush(resultId);
+        // Chỉ đọc các cột cần để chấm, không nạp detailTest/trueAnswers
+        ResultSubmitProjection result = resultRepository.findSubmitById(resultId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Result not found"));
         if (!result.getStudentId().equals(studentId))
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You are not the summitter of this result!");
-        SemesterTest semesterTest = result.getSemesterTest();
+        if (result.getSubmitDateTime() != null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test already submitted");
 
         // Kiểm tra thời gian thi
         LocalDateTime now = LocalDateTime.now();
-        if (now.isBefore(semesterTest.getStartDate())) {
+        if (now.isBefore(result.getStartDate())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test has not started yet");
         }
-        if (now.isAfter(semesterTest.getEndDate())) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test has ended");
-        }
 
-        result.setSubmitDateTime(now);
+        // Nộp sau khi hết giờ thì tính như nộp đúng lúc hết giờ
+        LocalDateTime deadline = ExamDeadlineService.deadlineOf(result.getEndDate(), result.getMinutes(),
+                result.getStartDateTime());
+        LocalDateTime submitDateTime = deadline != null && now.isAfter(deadline) ? deadline : now;
 
+        Float score = null;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode trueAnswerJson = result.getTrueAnswers();
-            JsonNode studentAnswerJson = result.getStudentAnswers();
-
-            Iterator<String> fieldNames = trueAnswerJson.fieldNames();
-            result.setScore((float) 0);
-            while (fieldNames.hasNext()) {
-                String index = fieldNames.next();
-
-                List<Integer> trueAnswers = mapper.convertValue(trueAnswerJson.get(index),
-                        mapper.getTypeFactory().constructCollectionType(List.class, Integer.class));
-
-                JsonNode selectedAnswersNode = studentAnswerJson.get(index).get("selectedAnswers");
-                List<Integer> selectedAnswers = mapper.convertValue(selectedAnswersNode,
-                        mapper.getTypeFactory().constructCollectionType(List.class, Integer.class));
-
-                boolean isSame = ValidateUtil.isSameList(trueAnswers, selectedAnswers);
-                if (isSame)
-                    result.setScore(result.getScore() + 1);
-            }
-
-            // Update WebSocket status to SUBMITTED
-            webSocketController.notifyTestSubmitted(semesterTest.getId(), resultId, studentId, result.getScore());
-
-            return result.getScore();
+            score = scoringService.score(result);
         } catch (Exception e) {
             log.error("Error while scoring" + e.getMessage());
         }
+        if (resultRepository.submit(resultId, submitDateTime, score) == 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test already submitted");
+        examDeadlineService.cancel(resultId);
+        attemptCacheService.invalidate(resultId);
 
-        return null;
+        if (score != null) {
+            // Update WebSocket status to SUBMITTED
+            webSocketController.notifyTestSubmitted(result.getSemesterTestId(), resultId, studentId, score);
+            scoreStatsService.record(result.getSemesterTestId(), resultId, score);
+        }
+        return score;
     }
 
     /**
      * Lấy Result theo ID (full)
      */
     public Result getResultById(Long resultId) {
+        // Ghi các đáp án còn trong bộ đệm trước khi đọc
+        answerBufferService.flush(resultId);
         return resultRepository.findById(resultId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Result not found"));
     }
 
+    /**
+     * Lấy Result để xem chi tiết, không còn trong bảng result thì đọc từ kho lưu trữ
+     */
+    public Result getResultForDetail(Long resultId) {
+        answerBufferService.flush(resultId);
+        return resultRepository.findById(resultId)
+                .or(() -> resultArchiveService.findArchived(resultId))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Result not found"));
+    }
+
+    /**
+     * student_answers để hiển thị, bài chưa nộp thì kèm các sự kiện answer-log chưa áp dụng
+     */
+    public JsonNode studentAnswersOf(Result result) {
+        if (result.getSubmitDateTime() != null) {
+            return result.getStudentAnswers();
+        }
+        return answerEventService.withPending(result.getId(), result.getSemesterTest().getId(),
+                result.getStudentAnswers());
+    }
+
     /**
      * Lấy 1 câu hỏi cụ thể bằng JSONB operator
      * Query: detail_test->'questions'->0, student_answers->'0'
+     * questionIndex là index hiển thị, đề được xáo thì đổi sang index của đề trước khi query
      */
-    public Object[] getQuestionByIndex(Long resultId, Integer questionIndex, Long userId) {
+    public QuestionResponse getQuestionByIndex(Long resultId, Integer questionIndex, Long userId) {
         // Kiểm tra quyền truy cập trước
-        validateStudentAccessLight(resultId, userId);
+        AttemptCacheService.Attempt attempt = validateStudentAccessLight(resultId, userId);
+        if (answerBufferService.hasPending(resultId)) {
+            answerBufferService.flush(resultId);
+        }
 
-        String questionIndexStr = String.valueOf(questionIndex);
-        return resultRepository.findQuestionByIndex(resultId, questionIndex, questionIndexStr)
+        int canonicalIndex = canonicalQuestion(attempt, questionIndex);
+        Object[] data = resultRepository.findQuestionByIndex(resultId, attempt.semesterTestId(), canonicalIndex,
+                String.valueOf(canonicalIndex))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found"));
+
+        // Parse từ native query result
+        Object[] row = (Object[]) data[0];
+        String questionJson = (String) row[0];
+        String studentAnswerJson = (String) row[1];
+        if (questionJson == null || studentAnswerJson == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found");
+
+        try {
+            JsonNode question = objectMapper.readTree(questionJson);
+            JsonNode studentAnswer = objectMapper.readTree(studentAnswerJson);
+
+            // Map sang DTO
+            QuestionResponse response = new QuestionResponse();
+            response.setQuestionIndex(canonicalIndex);
+            response.setQuestionText(question.get("questionText").asText());
+
+            List<QuestionResponse.AnswerOption> answers = new ArrayList<>();
+            for (JsonNode answerNode : question.get("answers")) {
+                QuestionResponse.AnswerOption option = new QuestionResponse.AnswerOption();
+                option.setAnswerIndex(answerNode.get("answerIndex").asInt());
+                option.setAnswerText(answerNode.get("answerText").asText());
+                answers.add(option);
+            }
+            response.setAnswers(answers);
+
+            List<Integer> selectedAnswers = new ArrayList<>();
+            for (JsonNode selected : studentAnswer.get("selectedAnswers")) {
+                selectedAnswers.add(selected.asInt());
+            }
+            response.setSelectedAnswers(selectedAnswers);
+            response.setFlagged(studentAnswer.get("flagged").asBoolean());
+            // Answer-log: student_answers chỉ được cập nhật lúc nộp bài
+            answerEventService.overlayPending(resultId, attempt.semesterTestId(), List.of(response));
+
+            applyShuffle(attempt, response);
+            return response;
+        } catch (JsonProcessingException e) {
+            log.error("Error parsing question {} of result {}", canonicalIndex, resultId, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to read question");
+        }
+    }
+
+    /**
+     * Lấy count câu hỏi (theo thứ tự hiển thị) từ câu from (kèm đáp án đã chọn, flag)
+     * trong 1 query, client dùng để prefetch các câu tiếp theo
+     */
+    public QuestionBundleResponse getQuestionBundle(Long resultId, Integer from, Integer count, Long userId) {
+        if (from == null || from < 0 || count == null || count < 1 || count > maxBundleSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "from must be >= 0 and count between 1 and " + maxBundleSize);
+        }
+        AttemptCacheService.Attempt attempt = validateStudentAccessLight(resultId, userId);
+        if (answerBufferService.hasPending(resultId)) {
+            answerBufferService.flush(resultId);
+        }
+
+        // Index của đề cho các câu hiển thị from..from+count-1 (theo thứ tự hiển thị)
+        int end = attempt.questionCount() != null ? Math.min(from + count, attempt.questionCount()) : from + count;
+        String questionIndices = IntStream.range(from, end)
+                .mapToObj(i -> String.valueOf(canonicalQuestion(attempt, i)))
+                .collect(Collectors.joining(",", "{", "}"));
+
+        String bundleJson = resultRepository.findQuestionBundle(resultId, attempt.semesterTestId(), questionIndices)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Result not found"));
+        try {
+            QuestionBundleResponse response = objectMapper.readValue(bundleJson, QuestionBundleResponse.class);
+            answerEventService.overlayPending(resultId, attempt.semesterTestId(), response.getQuestions());
+            response.getQuestions().forEach(question -> applyShuffle(attempt, question));
+            response.setResultId(resultId);
+            response.setFrom(from);
+            return response;
+        } catch (JsonProcessingException e) {
+            log.error("Error parsing question bundle of result {}", resultId, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to read questions");
+        }
+    }
+
+    private static boolean isShuffled(SemesterTest semesterTest) {
+        return Boolean.TRUE.equals(semesterTest.getShuffleQuestions())
+                || Boolean.TRUE.equals(semesterTest.getShuffleAnswers());
+    }
+
+    /*
+     * Client dùng index hiển thị của lượt làm bài, student_answers luôn lưu theo index
+     * của đề nên chấm điểm / phân tích câu hỏi không cần biết thứ tự đã xáo
+     */
+    private int canonicalQuestion(AttemptCacheService.Attempt attempt, int questionIndex) {
+        return attempt.shuffle() != null ? attempt.shuffle().toCanonicalQuestion(questionIndex) : questionIndex;
+    }
+
+    private List<Integer> canonicalAnswers(AttemptCacheService.Attempt attempt, int canonicalQuestion,
+            List<Integer> answerIndices) {
+        ShuffleOrder shuffle = attempt.shuffle();
+        if (shuffle == null || !shuffle.shufflesAnswers() || answerIndices == null) {
+            return answerIndices;
+        }
+        int answerCount = examPaperService.answerCountOf(attempt.examPaperId(), canonicalQuestion);
+        try {
+            return shuffle.toCanonicalAnswers(canonicalQuestion, answerCount, answerIndices);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid answer index");
+        }
+    }
+
+    private AnswerUpdate toCanonical(AttemptCacheService.Attempt attempt, AnswerUpdate update) {
+        if (attempt.shuffle() == null) {
+            return update;
+        }
+        int questionIndex = canonicalQuestion(attempt, update.getQuestionIndex());
+        return new AnswerUpdate(questionIndex, canonicalAnswers(attempt, questionIndex, update.getAnswerIndices()),
+                update.getFlagged(), update.getSeq(), update.getClientTimestamp());
+    }
+
+    /*
+     * Đổi câu hỏi đọc theo index của đề sang thứ tự hiển thị của lượt làm bài
+     */
+    private void applyShuffle(AttemptCacheService.Attempt attempt, QuestionResponse question) {
+        ShuffleOrder shuffle = attempt.shuffle();
+        if (shuffle == null) {
+            return;
+        }
+        int canonicalIndex = question.getQuestionIndex();
+        question.setQuestionIndex(shuffle.toDisplayQuestion(canonicalIndex));
+        if (!shuffle.shufflesAnswers()) {
+            return;
+        }
+        // answers trong đề xếp theo answerIndex
+        List<QuestionResponse.AnswerOption> answers = question.getAnswers();
+        int[] order = shuffle.answerOrder(canonicalIndex, answers.size());
+        List<QuestionResponse.AnswerOption> shuffled = new ArrayList<>(answers.size());
+        for (int i = 0; i < order.length; i++) {
+            QuestionResponse.AnswerOption option = answers.get(order[i]);
+            option.setAnswerIndex(i);
+            shuffled.add(option);
+        }
+        question.setAnswers(shuffled);
+        question.setSelectedAnswers(
+                shuffle.toDisplayAnswers(canonicalIndex, answers.size(), question.getSelectedAnswers()));
     }
 
     /**
@@ -296,45 +595,56 @@ public class SemesterTestService {
      * UPDATE: jsonb_set(student_answers, '{0,selectedAnswers}', '[1,2]')
      */
     @Transactional
-    public void selectAnswer(Long resultId, Integer questionIndex, List<Integer> answerIndices, Long userId) {
-        // Kiểm tra quyền truy cập
-        validateStudentAccessLight(resultId, userId);
+    public void selectAnswer(Long resultId, Integer questionIndex, List<Integer> answerIndices,
+            LocalDateTime clientTimestamp, Long seq, Long userId) {
+        // Kiểm tra quyền truy cập, đã submit chưa (từ cache)
+        AttemptCacheService.Attempt attempt = validateWritableAttempt(resultId, questionIndex, userId);
+        questionIndex = canonicalQuestion(attempt, questionIndex);
+        answerIndices = canonicalAnswers(attempt, questionIndex, answerIndices);
+
+        // Có seq thì đi đường lô để bỏ qua lần gửi lại
+        if (seq != null && !answerEventService.isEnabled()) {
+            applyAnswerUpdates(attempt, List.of(new AnswerUpdate(questionIndex,
+                    answerIndices != null ? answerIndices : List.of(), null, seq, clientTimestamp)));
+            return;
+        }
 
-        // Kiểm tra đã submit chưa
-        Boolean isSubmitted = resultRepository.isSubmitted(resultId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Result not found"));
-        if (isSubmitted) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test already submitted");
+        // Ghi vào log sự kiện (chỉ INSERT), student_answers được dựng lại khi đọc / nộp bài
+        if (answerEventService.isEnabled()) {
+            requireAppended(resultId, answerEventService.recordAnswer(resultId, attempt.semesterTestId(),
+                    questionIndex, answerIndices, clientTimestamp, seq));
+            return;
         }
 
-        try {
-            // Build JSONB path: {0, selectedAnswers}
-            String path = String.format("{\"%d\",\"selectedAnswers\"}", questionIndex);
+        // Ghi vào bộ đệm, flush định kỳ bằng 1 câu UPDATE cho mỗi result
+        if (answerBufferService.isEnabled()) {
+            answerBufferService.bufferAnswer(resultId, attempt.semesterTestId(), questionIndex, answerIndices);
+            log.debug("Student {} buffered answers {} for question {}", userId, answerIndices, questionIndex);
+            return;
+        }
 
+        try {
             // Build JSONB value: [1,2,3]
             ArrayNode valueArray = objectMapper.createArrayNode();
             if (answerIndices != null) {
                 answerIndices.forEach(valueArray::add);
             }
             String value = objectMapper.writeValueAsString(valueArray);
+            String timestamp = LocalDateTime.now().toString();
 
-            // Update bằng jsonb_set
-            int updated = resultRepository.updateStudentAnswerPath(resultId, path, value);
+            // 1 câu UPDATE: selectedAnswers, answeredAt và answered_count
+            int updated = resultRepository.updateSelectedAnswers(resultId, attempt.semesterTestId(),
+                    String.valueOf(questionIndex), value, timestamp);
             if (updated == 0) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to update answer");
+                // Đã được nộp (trên node khác / tự động) sau khi cache
+                attemptCacheService.invalidate(resultId);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test already submitted");
             }
 
-            // Build JSONB path for timestamp: {0, answeredAt}
-            String pathTimestamp = String.format("{\"%d\",\"answeredAt\"}", questionIndex);
-
-            // Get current timestamp in ISO format
-            String timestamp = String.format("\"%s\"", LocalDateTime.now().toString());
-
-            // Update timestamp
-            resultRepository.updateStudentAnswerPath(resultId, pathTimestamp, timestamp);
-
             log.info("Student {} selected answers {} for question {} at {}",
                     userId, answerIndices, questionIndex, timestamp);
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error updating student answers", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to update answer");
@@ -342,33 +652,135 @@ public class SemesterTestService {
     }
 
     /**
-     * Đánh flag câu hỏi
-     * UPDATE: jsonb_set(student_answers, '{0,flagged}', 'true')
+     * Ghi 1 lô thay đổi (đáp án / flag) có số thứ tự của client.
+     * Kiểm tra lượt làm bài 1 lần cho cả lô; thay đổi gửi lại hoặc cũ hơn (seq không lớn
+     * hơn seq đã ghi của câu đó) bị bỏ qua, phần còn lại ghi bằng 1 câu lệnh.
+     * Trả về seq lớn nhất trong lô để client xóa khỏi hàng đợi.
      */
     @Transactional
-    public void flagQuestion(Long resultId, Integer questionIndex, Boolean flagged, Long userId) {
-        // Kiểm tra quyền truy cập
-        validateStudentAccessLight(resultId, userId);
+    public Long submitAnswers(Long resultId, List<AnswerUpdate> updates, Long userId) {
+        if (updates == null || updates.isEmpty() || updates.size() > maxAnswerBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "updates must contain between 1 and " + maxAnswerBatchSize + " items");
+        }
+        AttemptCacheService.Attempt attempt = attemptCacheService.getAttempt(resultId);
+        if (!attempt.studentId().equals(userId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        }
+        if (attempt.submitted()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test already submitted");
+        }
+        if (attempt.isExpired(LocalDateTime.now())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Time is up");
+        }
+        for (AnswerUpdate update : updates) {
+            if (!attempt.isValidQuestionIndex(update.getQuestionIndex())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid question index");
+            }
+            if (update.getSeq() == null || (update.getAnswerIndices() == null && update.getFlagged() == null)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Each update needs seq and answerIndices or flagged");
+            }
+        }
 
-        // Kiểm tra đã submit chưa
-        Boolean isSubmitted = resultRepository.isSubmitted(resultId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Result not found"));
-        if (isSubmitted) {
+        // Áp dụng theo thứ tự seq dù client gửi lộn xộn
+        List<AnswerUpdate> ordered = updates.stream()
+                .map(update -> toCanonical(attempt, update))
+                .sorted(Comparator.comparing(AnswerUpdate::getSeq))
+                .toList();
+        applyAnswerUpdates(attempt, ordered);
+        return ordered.get(ordered.size() - 1).getSeq();
+    }
+
+    /*
+     * Ghi các thay đổi (index của đề, đã sắp theo seq) theo cách ghi đang bật
+     */
+    private void applyAnswerUpdates(AttemptCacheService.Attempt attempt, List<AnswerUpdate> ordered) {
+        Long resultId = attempt.resultId();
+        if (answerEventService.isEnabled()) {
+            requireAppended(resultId, answerEventService.recordBatch(resultId, attempt.semesterTestId(), ordered));
+            return;
+        }
+
+        if (answerBufferService.isEnabled()) {
+            ordered.forEach(update -> answerBufferService.bufferUpdate(resultId, attempt.semesterTestId(),
+                    update.getQuestionIndex(), update.getAnswerIndices(), update.getFlagged(), update.getSeq()));
+            return;
+        }
+
+        int updated = resultRepository.mergeStudentAnswers(resultId, attempt.semesterTestId(),
+                buildSequencedPatch(ordered));
+        if (updated == 0) {
+            attemptCacheService.invalidate(resultId);
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test already submitted");
         }
+    }
 
+    /*
+     * Lần ghi answer-log bị lần nộp chặn lại (nộp trên node khác hoặc đua với nút nộp bài)
+     */
+    private void requireAppended(Long resultId, boolean appended) {
+        if (!appended) {
+            attemptCacheService.invalidate(resultId);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Test already submitted");
+        }
+    }
+
+    /**
+     * Patch cho mergeStudentAnswers, các thay đổi (đã sắp theo seq) của cùng 1 câu được gộp
+     */
+    private String buildSequencedPatch(List<AnswerUpdate> ordered) {
+        Map<Integer, AnswerEdit> edits = new TreeMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (AnswerUpdate update : ordered) {
+            edits.merge(update.getQuestionIndex(),
+                    AnswerEdit.of(update.getAnswerIndices(), now, update.getFlagged(), update.getSeq()),
+                    AnswerEdit::merge);
+        }
         try {
-            // Build JSONB path: {0, flagged}
-            String path = String.format("{\"%d\",\"flagged\"}", questionIndex);
+            return objectMapper.writeValueAsString(AnswerEdit.toPatch(objectMapper, edits));
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to update answers");
+        }
+    }
+
+    /**
+     * Đánh flag câu hỏi
+     * UPDATE: jsonb_set(student_answers, '{0,flagged}', 'true')
+     */
+    @Transactional
+    public void flagQuestion(Long resultId, Integer questionIndex, Boolean flagged,
+            LocalDateTime clientTimestamp, Long seq, Long userId) {
+        // Kiểm tra quyền truy cập, đã submit chưa (từ cache)
+        AttemptCacheService.Attempt attempt = validateWritableAttempt(resultId, questionIndex, userId);
+        questionIndex = canonicalQuestion(attempt, questionIndex);
+
+        if (seq != null && !answerEventService.isEnabled()) {
+            applyAnswerUpdates(attempt, List.of(new AnswerUpdate(questionIndex, null, flagged, seq, clientTimestamp)));
+            return;
+        }
 
-            // Build JSONB value: true/false
-            String value = String.valueOf(flagged);
+        if (answerEventService.isEnabled()) {
+            requireAppended(resultId, answerEventService.recordFlag(resultId, attempt.semesterTestId(),
+                    questionIndex, flagged, clientTimestamp, seq));
+            return;
+        }
 
-            // Update bằng jsonb_set
-            int updated = resultRepository.updateFlaggedPath(resultId, path, value);
+        if (answerBufferService.isEnabled()) {
+            answerBufferService.bufferFlag(resultId, attempt.semesterTestId(), questionIndex, flagged);
+            return;
+        }
+
+        try {
+            // Update bằng jsonb_set, kèm flagged_count
+            int updated = resultRepository.updateFlagged(resultId, attempt.semesterTestId(),
+                    String.valueOf(questionIndex), flagged);
             if (updated == 0) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to update flag");
+                attemptCacheService.invalidate(resultId);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test already submitted");
             }
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error updating flag", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to update flag");
@@ -378,141 +790,112 @@ public class SemesterTestService {
     /**
      * Lấy danh sách kết quả của user trong một bài thi
      */
-    public List<Result> getMyResultsBySemesterTest(Long semesterTestId, Long userId) {
-        return resultRepository.findBySemesterTestIdAndStudentId(semesterTestId, userId);
+    public List<ResultStatusProjection> getMyResultsBySemesterTest(Long semesterTestId, Long userId) {
+        return resultRepository.findSummariesBySemesterTestIdAndStudentId(semesterTestId, userId);
     }
 
     /**
-     * Đếm số câu đã trả lời (dùng JSONB query)
+     * Số câu đã trả lời (cột answered_count kèm answer-log chưa áp dụng)
      */
     public Integer countAnsweredQuestions(Long resultId) {
-        return resultRepository.countAnsweredQuestions(resultId);
+        return getProgress(resultId).getAnsweredCount();
     }
 
     /**
-     * Đếm số câu đã flag (dùng JSONB query)
+     * Số câu đã flag (cột flagged_count kèm answer-log chưa áp dụng)
      */
     public Integer countFlaggedQuestions(Long resultId) {
-        return resultRepository.countFlaggedQuestions(resultId);
+        return getProgress(resultId).getFlaggedCount();
     }
 
     /**
-     * Kiểm tra quyền truy cập Result cho Student (lightweight)
+     * Tiến độ làm bài của 1 Result (tra theo khóa chính)
      */
-    public void validateStudentAccessLight(Long resultId, Long studentId) {
-        Long ownerId = resultRepository.findStudentIdById(resultId)
+    public ResultProgressResponse getProgress(Long resultId) {
+        // semesterTestId lấy từ cache để query chỉ đọc 1 partition
+        Long semesterTestId = attemptCacheService.getAttempt(resultId).semesterTestId();
+        return resultRepository.findProgress(resultId, semesterTestId)
+                .map(SemesterTestService::toProgressResponse)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Result not found"));
-
-        if (!ownerId.equals(studentId)) {
-            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
-        }
     }
 
     /**
-     * Xây dựng detailTest từ SemesterTest (dùng index thay vì ID)
+     * Tiến độ các học viên đang làm bài của 1 SemesterTest, phân trang keyset theo resultId
      */
-    private JsonNode buildDetailTest(SemesterTest semesterTest) {
-        ObjectNode detailTest = objectMapper.createObjectNode();
-
-        detailTest.put("testName", semesterTest.getTest().getName());
-        detailTest.put("semesterTestName", semesterTest.getName());
-        detailTest.put("startDate", semesterTest.getStartDate().toString());
-        detailTest.put("endDate", semesterTest.getEndDate().toString());
-
-        ArrayNode questionsArray = objectMapper.createArrayNode();
-
-        int questionIndex = 0;
-        Test test = testRepository.findWithQuestionsById(semesterTest.getTest().getId())
-                .orElseThrow(() -> new EntityNotFoundException("Test not found"));
-        List<Long> questionIds = test.getTestQuestions().stream()
-                .map(tq -> tq.getQuestion().getId())
-                .distinct()
-                .toList();
-
-        if (!questionIds.isEmpty())
-            questionRepository.findAllWithAnswers(questionIds);
-        // Test test = semesterTest.getTest();
-        for (TestQuestion tq : test.getTestQuestions()) {
-            Question question = tq.getQuestion();
-            ObjectNode questionNode = objectMapper.createObjectNode();
-            questionNode.put("questionIndex", questionIndex);
-            questionNode.put("questionText", question.getText());
-
-            ArrayNode answersArray = objectMapper.createArrayNode();
-            int answerIndex = 0;
-            for (Answer answer : question.getAnswers()) {
-                ObjectNode answerNode = objectMapper.createObjectNode();
-                answerNode.put("answerIndex", answerIndex);
-                answerNode.put("answerText", answer.getText());
-                answersArray.add(answerNode);
-                answerIndex++;
-            }
-
-            questionNode.set("answers", answersArray);
-            questionsArray.add(questionNode);
-            questionIndex++;
+    public ProgressPageResponse getTestProgress(Long semesterTestId, Long after, int limit) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
         }
+        int pageSize = Math.min(limit, maxRosterPageSize);
+        List<ResultProgressResponse> entries = resultRepository
+                .findInProgressProgress(semesterTestId, after != null ? after : 0L, pageSize).stream()
+                .map(SemesterTestService::toProgressResponse)
+                .toList();
+        return ProgressPageResponse.builder()
+                .entries(entries)
+                .nextAfter(entries.size() == pageSize ? entries.get(entries.size() - 1).getResultId() : null)
+                .build();
+    }
 
-        detailTest.set("questions", questionsArray);
-
-        return detailTest;
+    private static ResultProgressResponse toProgressResponse(ResultProgressProjection progress) {
+        return ResultProgressResponse.builder()
+                .resultId(progress.getId())
+                .studentId(progress.getStudentId())
+                .semesterTestId(progress.getSemesterTestId())
+                .answeredCount(progress.getAnsweredCount())
+                .flaggedCount(progress.getFlaggedCount())
+                .questionCount(progress.getQuestionCount())
+                .startDateTime(progress.getStartDateTime())
+                .submitDateTime(progress.getSubmitDateTime())
+                .build();
     }
 
     /**
-     * Xây dựng trueAnswers từ SemesterTest (dùng index)
-     */
-    private JsonNode buildTrueAnswers(SemesterTest semesterTest) {
-        ObjectNode trueAnswers = objectMapper.createObjectNode();
-
-        int questionIndex = 0;
-        for (TestQuestion tq : semesterTest.getTest().getTestQuestions()) {
-            Question question = tq.getQuestion();
-
-            ArrayNode correctAnswerIndices = objectMapper.createArrayNode();
-            int answerIndex = 0;
-            for (Answer answer : question.getAnswers()) {
-                if (answer.getTrueAnswer() != null && answer.getTrueAnswer()) {
-                    correctAnswerIndices.add(answerIndex);
-                }
-                answerIndex++;
-            }
+     * Kiểm tra quyền truy cập Result cho Student (lightweight)
+     */
+    public AttemptCacheService.Attempt validateStudentAccessLight(Long resultId, Long studentId) {
+        AttemptCacheService.Attempt attempt = attemptCacheService.getAttempt(resultId);
 
-            trueAnswers.set(String.valueOf(questionIndex), correctAnswerIndices);
-            questionIndex++;
+        if (!attempt.studentId().equals(studentId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
         }
-
-        return trueAnswers;
+        return attempt;
     }
 
-    /**
-     * Xây dựng studentAnswers với giá trị null ban đầu
+    /*
+     * Kiểm tra quyền + chưa nộp + chưa hết giờ + index câu hỏi hợp lệ trước khi ghi đáp án/flag
      */
-    private JsonNode buildStudentAnswers(SemesterTest semesterTest) {
-        ObjectNode studentAnswers = objectMapper.createObjectNode();
-
-        int questionIndex = 0;
-        for (TestQuestion tq : semesterTest.getTest().getTestQuestions()) {
-            ObjectNode answerNode = objectMapper.createObjectNode();
-            answerNode.set("selectedAnswers", objectMapper.createArrayNode());
-            answerNode.put("flagged", false);
-            answerNode.putNull("answeredAt");
-
-            studentAnswers.set(String.valueOf(questionIndex), answerNode);
-            questionIndex++;
+    private AttemptCacheService.Attempt validateWritableAttempt(Long resultId, Integer questionIndex,
+            Long studentId) {
+        AttemptCacheService.Attempt attempt = attemptCacheService.getAttempt(resultId);
+        if (!attempt.studentId().equals(studentId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
         }
-
-        return studentAnswers;
+        if (attempt.submitted()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Test already submitted");
+        }
+        if (attempt.isExpired(LocalDateTime.now())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Time is up");
+        }
+        if (!attempt.isValidQuestionIndex(questionIndex)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid question index");
+        }
+        return attempt;
     }
 
     public SemesterTest validateAccessTest(Long semesterTestId, Long studentId) {
         SemesterTest semesterTest = semesterTestRepository.findById(semesterTestId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Test not found"));
+        if (attemptCacheService.isAccessGranted(semesterTestId, studentId)) {
+            return semesterTest;
+        }
         SemesterAccount semesterAccount = semesterAccountRepository
                 .findBySemesterIdAndAccountId(semesterTest.getSemester().getId(), studentId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied"));
         if (!semesterTest.getTest().getPosition().getId().equals(semesterAccount.getPosition().getId())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
         }
+        attemptCacheService.grantAccess(semesterTestId, studentId);
         return semesterTest;
     }
 
@@ -550,6 +933,10 @@ public class SemesterTestService {
         semesterTest.setEndDate(request.getEndDate());
         semesterTest.setType(request.getType());
         semesterTest.setMinutes(request.getMinutes());
+        semesterTest.setScoringPolicy(request.getScoringPolicy());
+        semesterTest.setProvisionOnOpen(request.getProvisionOnOpen());
+        semesterTest.setShuffleQuestions(request.getShuffleQuestions());
+        semesterTest.setShuffleAnswers(request.getShuffleAnswers());
         semesterTest.setSemester(semester);
         semesterTest.setTest(savedTest);
         semesterTest.setCreatedBy(userId);
@@ -602,11 +989,46 @@ public class SemesterTestService {
         semesterTest.setStartDate(request.getStartDate());
         semesterTest.setEndDate(request.getEndDate());
         semesterTest.setMinutes(request.getMinutes());
+        // Client cũ không gửi các field mới thì giữ nguyên giá trị đang có
+        if (request.getScoringPolicy() != null) {
+            semesterTest.setScoringPolicy(request.getScoringPolicy());
+        }
+        if (request.getProvisionOnOpen() != null) {
+            semesterTest.setProvisionOnOpen(request.getProvisionOnOpen());
+        }
+        applyShuffleSettings(semesterTest, request.getShuffleQuestions(), request.getShuffleAnswers());
         semesterTest.setUpdatedBy(userId);
         semesterTestRepository.save(semesterTest);
+        examPaperService.evict(semesterTest.getId());
+        examDeadlineService.reschedule(semesterTest.getId());
+        attemptCacheService.invalidateTest(semesterTest.getId());
         return semesterTest;
     }
 
+    /*
+     * Thứ tự xáo của lượt làm bài suy ra từ cờ hiện tại của SemesterTest, client đang
+     * thi giữ index hiển thị cũ nên không cho đổi cờ khi đã có Result
+     */
+    private void applyShuffleSettings(SemesterTest semesterTest, Boolean shuffleQuestions, Boolean shuffleAnswers) {
+        boolean questionsChanged = shuffleQuestions != null
+                && shuffleQuestions != Boolean.TRUE.equals(semesterTest.getShuffleQuestions());
+        boolean answersChanged = shuffleAnswers != null
+                && shuffleAnswers != Boolean.TRUE.equals(semesterTest.getShuffleAnswers());
+        if (!questionsChanged && !answersChanged) {
+            return;
+        }
+        if (resultRepository.existsBySemesterTestId(semesterTest.getId())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Shuffle settings cannot be changed after results have been created");
+        }
+        if (shuffleQuestions != null) {
+            semesterTest.setShuffleQuestions(shuffleQuestions);
+        }
+        if (shuffleAnswers != null) {
+            semesterTest.setShuffleAnswers(shuffleAnswers);
+        }
+    }
+
     /*
      * Lấy ra danh sách các Semester sử dụng 1 Test (Không tính semester đang sử
      * dụng)
@@ -658,6 +1080,10 @@ public class SemesterTestService {
         semesterTest.setEndDate(request.getEndDate());
         semesterTest.setMinutes(request.getMinutes());
         semesterTest.setType(request.getType());
+        semesterTest.setScoringPolicy(request.getScoringPolicy());
+        semesterTest.setProvisionOnOpen(request.getProvisionOnOpen());
+        semesterTest.setShuffleQuestions(request.getShuffleQuestions());
+        semesterTest.setShuffleAnswers(request.getShuffleAnswers());
         semesterTest.setSemester(semester);
         semesterTest.setTest(test);
         semesterTest.setCreatedBy(userId);
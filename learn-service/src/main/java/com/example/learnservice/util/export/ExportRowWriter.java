@@ -0,0 +1,24 @@
+package com.example.learnservice.util.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.example.learnservice.enums.ExportFormat;
+
+/**
+ * Ghi từng dòng ra OutputStream, không giữ lại các dòng đã ghi.
+ * close() chỉ flush phần còn lại, không đóng OutputStream bên dưới.
+ */
+public interface ExportRowWriter extends Closeable {
+
+    void writeRow(List<?> values) throws IOException;
+
+    static ExportRowWriter of(ExportFormat format, OutputStream out) {
+        return switch (format) {
+            case CSV -> new CsvRowWriter(out);
+            case XLSX -> new XlsxRowWriter(out);
+        };
+    }
+}
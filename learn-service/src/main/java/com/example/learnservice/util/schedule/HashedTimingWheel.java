@@ -0,0 +1,100 @@
+package com.example.learnservice.util.schedule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel: mỗi key có 1 deadline, được băm vào bucket theo tick.
+ * schedule/cancel O(1), advance chỉ duyệt các bucket đã tới hạn.
+ * Không tự chạy thread, bên gọi tự gọi advance() định kỳ.
+ * Gọi lại schedule với cùng key sẽ thay deadline cũ.
+ */
+public class HashedTimingWheel<K> {
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<ArrayDeque<K>> buckets;
+    private final Map<K, Long> deadlines = new HashMap<>();
+    // Tick cuối cùng đã xử lý
+    private long currentTick;
+
+    /**
+     * @param wheelSize làm tròn lên lũy thừa của 2
+     */
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        this.currentTick = tickOf(startMillis);
+    }
+
+    public synchronized void schedule(K key, long deadlineMillis) {
+        deadlines.put(key, deadlineMillis);
+        // Deadline đã qua thì hết hạn ở lần advance kế tiếp
+        long tick = Math.max(tickOf(deadlineMillis), currentTick + 1);
+        buckets.get((int) (tick & mask)).add(key);
+    }
+
+    public synchronized boolean cancel(K key) {
+        // Phần tử trong bucket được bỏ qua khi duyệt tới
+        return deadlines.remove(key) != null;
+    }
+
+    public synchronized boolean contains(K key) {
+        return deadlines.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Tiến tới thời điểm nowMillis, trả về các key đã hết hạn (và bỏ khỏi wheel)
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long targetTick = tickOf(nowMillis);
+        if (targetTick <= currentTick) {
+            return List.of();
+        }
+
+        List<K> expired = new ArrayList<>();
+        // Bỏ lỡ nhiều vòng thì chỉ cần duyệt mỗi bucket 1 lần
+        long steps = Math.min(targetTick - currentTick, (long) mask + 1);
+        for (long tick = currentTick + 1; tick <= currentTick + steps; tick++) {
+            int index = (int) (tick & mask);
+            ArrayDeque<K> bucket = buckets.get(index);
+            for (int i = bucket.size(); i > 0; i--) {
+                K key = bucket.poll();
+                Long deadline = deadlines.get(key);
+                if (deadline == null) {
+                    continue;
+                }
+                long deadlineTick = tickOf(deadline);
+                if (deadlineTick <= targetTick) {
+                    deadlines.remove(key);
+                    expired.add(key);
+                } else if ((deadlineTick & mask) == index) {
+                    // Vòng sau
+                    bucket.add(key);
+                }
+                // Còn lại: key đã được schedule lại sang bucket khác
+            }
+        }
+        currentTick = targetTick;
+        return expired;
+    }
+
+    private long tickOf(long millis) {
+        return Math.floorDiv(millis, tickMillis);
+    }
+}
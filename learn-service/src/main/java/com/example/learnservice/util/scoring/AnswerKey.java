@@ -0,0 +1,155 @@
+package com.example.learnservice.util.scoring;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.example.learnservice.enums.ScoringPolicy;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Đáp án của một đề đã được "biên dịch" sang bitmask: mỗi câu là 1 long,
+ * bit thứ i bật nếu đáp án i đúng. Bài làm của học viên được mã hóa giống
+ * vậy nên chấm điểm chỉ là so sánh/đếm bit, không tạo object.
+ * Immutable, dùng chung giữa các thread.
+ */
+public final class AnswerKey {
+
+    // Đáp án hợp lệ có index 0..62, bit 63 đánh dấu lựa chọn không hợp lệ
+    // (index ngoài khoảng hoặc chọn trùng) để không bao giờ khớp đáp án
+    public static final int MAX_ANSWERS = 63;
+    static final long INVALID = 1L << 63;
+
+    private final long[] masks;
+    private final int[] correctCounts;
+    private final String[] questionKeys;
+
+    private AnswerKey(long[] masks) {
+        this.masks = masks;
+        this.correctCounts = new int[masks.length];
+        this.questionKeys = new String[masks.length];
+        for (int i = 0; i < masks.length; i++) {
+            correctCounts[i] = Long.bitCount(masks[i]);
+            questionKeys[i] = String.valueOf(i);
+        }
+    }
+
+    /**
+     * Biên dịch trueAnswers dạng {"0": [1], "1": [0, 2], ...}
+     */
+    public static AnswerKey compile(JsonNode trueAnswers) {
+        long[] masks = new long[trueAnswers.size()];
+        Iterator<Map.Entry<String, JsonNode>> fields = trueAnswers.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            int questionIndex = Integer.parseInt(field.getKey());
+            if (questionIndex < 0 || questionIndex >= masks.length) {
+                throw new IllegalArgumentException("Question index out of range: " + questionIndex);
+            }
+            long mask = encode(field.getValue());
+            if ((mask & INVALID) != 0) {
+                throw new IllegalArgumentException("Invalid answer key at question " + questionIndex);
+            }
+            masks[questionIndex] = mask;
+        }
+        return new AnswerKey(masks);
+    }
+
+    /**
+     * Mã hóa 1 mảng index đáp án thành bitmask
+     */
+    public static long encode(JsonNode selectedAnswers) {
+        if (selectedAnswers == null || !selectedAnswers.isArray()) {
+            return 0L;
+        }
+        long mask = 0L;
+        for (int i = 0, n = selectedAnswers.size(); i < n; i++) {
+            JsonNode node = selectedAnswers.get(i);
+            int answerIndex = node.canConvertToInt() ? node.asInt(-1) : -1;
+            if (answerIndex < 0 || answerIndex >= MAX_ANSWERS) {
+                mask |= INVALID;
+                continue;
+            }
+            long bit = 1L << answerIndex;
+            // Chọn trùng đáp án không được tính là đúng (giống isSameList)
+            mask |= (mask & bit) != 0 ? INVALID : bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Mã hóa studentAnswers dạng {"0": {"selectedAnswers": [1]}, ...} theo thứ
+     * tự câu của đề; câu thiếu coi như bỏ trống
+     */
+    public long[] encodeSelections(JsonNode studentAnswers) {
+        long[] selections = new long[masks.length];
+        if (studentAnswers == null) {
+            return selections;
+        }
+        for (int i = 0; i < masks.length; i++) {
+            JsonNode answer = studentAnswers.get(questionKeys[i]);
+            if (answer != null) {
+                selections[i] = encode(answer.get("selectedAnswers"));
+            }
+        }
+        return selections;
+    }
+
+    public float score(JsonNode studentAnswers, ScoringPolicy policy, float penalty) {
+        return score(encodeSelections(studentAnswers), policy, penalty);
+    }
+
+    /**
+     * Chấm điểm bài làm đã mã hóa, mỗi câu tối đa 1 điểm
+     */
+    public float score(long[] selections, ScoringPolicy policy, float penalty) {
+        if (selections.length != masks.length) {
+            throw new IllegalArgumentException("Expected " + masks.length + " selections but got " + selections.length);
+        }
+        float total = 0f;
+        switch (policy == null ? ScoringPolicy.ALL_OR_NOTHING : policy) {
+            case ALL_OR_NOTHING:
+                for (int i = 0; i < masks.length; i++) {
+                    if (selections[i] == masks[i])
+                        total += 1f;
+                }
+                break;
+            case PARTIAL_CREDIT:
+                for (int i = 0; i < masks.length; i++) {
+                    long selection = selections[i];
+                    long key = masks[i];
+                    if (selection == key) {
+                        total += 1f;
+                    } else if ((selection & INVALID) == 0 && correctCounts[i] > 0) {
+                        int net = Long.bitCount(selection & key) - Long.bitCount(selection & ~key);
+                        if (net > 0)
+                            total += (float) net / correctCounts[i];
+                    }
+                }
+                break;
+            case NEGATIVE_MARKING:
+                for (int i = 0; i < masks.length; i++) {
+                    long selection = selections[i];
+                    if (selection == masks[i]) {
+                        total += 1f;
+                    } else if (selection != 0L) {
+                        total -= penalty;
+                    }
+                }
+                // Tổng điểm không âm
+                total = Math.max(total, 0f);
+                break;
+        }
+        return total;
+    }
+
+    /**
+     * Câu questionIndex có được chọn đúng hoàn toàn không
+     */
+    public boolean isCorrect(int questionIndex, long selection) {
+        return selection == masks[questionIndex];
+    }
+
+    public int questionCount() {
+        return masks.length;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.learnservice.util.shuffle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thứ tự câu hỏi / đáp án riêng của 1 lượt làm bài, suy ra từ (resultId, seed).
+ * Không lưu bản đề đã xáo: index hiển thị được đổi về index gốc khi ghi đáp án
+ * và ngược lại khi trả câu hỏi, nên studentAnswers, chấm điểm và phân tích câu
+ * hỏi vẫn theo đề dùng chung.
+ * Immutable, dùng chung giữa các thread.
+ */
+public final class ShuffleOrder {
+
+    // Luồng số ngẫu nhiên của thứ tự câu hỏi, thứ tự đáp án dùng index gốc của câu
+    private static final long QUESTION_STREAM = -1L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long key;
+    private final boolean shuffleAnswers;
+    // index hiển thị -> index gốc và ngược lại, null = giữ thứ tự đề
+    private final int[] questions;
+    private final int[] displayIndices;
+
+    private ShuffleOrder(long key, int[] questions, boolean shuffleAnswers) {
+        this.key = key;
+        this.questions = questions;
+        this.displayIndices = questions != null ? inverse(questions) : null;
+        this.shuffleAnswers = shuffleAnswers;
+    }
+
+    public static ShuffleOrder of(long resultId, long seed, int questionCount, boolean shuffleQuestions,
+            boolean shuffleAnswers) {
+        long key = mix(seed ^ mix(resultId));
+        int[] questions = shuffleQuestions ? permutation(streamKey(key, QUESTION_STREAM), questionCount) : null;
+        return new ShuffleOrder(key, questions, shuffleAnswers);
+    }
+
+    public boolean shufflesQuestions() {
+        return questions != null;
+    }
+
+    public boolean shufflesAnswers() {
+        return shuffleAnswers;
+    }
+
+    /**
+     * Index gốc của câu hiển thị ở vị trí displayIndex (ngoài khoảng thì giữ nguyên)
+     */
+    public int toCanonicalQuestion(int displayIndex) {
+        if (questions == null || displayIndex < 0 || displayIndex >= questions.length) {
+            return displayIndex;
+        }
+        return questions[displayIndex];
+    }
+
+    public int toDisplayQuestion(int canonicalIndex) {
+        if (displayIndices == null || canonicalIndex < 0 || canonicalIndex >= displayIndices.length) {
+            return canonicalIndex;
+        }
+        return displayIndices[canonicalIndex];
+    }
+
+    /**
+     * Thứ tự đáp án của 1 câu: phần tử i là index gốc của đáp án hiển thị ở vị trí i
+     */
+    public int[] answerOrder(int canonicalQuestion, int answerCount) {
+        if (!shuffleAnswers) {
+            int[] identity = new int[answerCount];
+            for (int i = 0; i < answerCount; i++) {
+                identity[i] = i;
+            }
+            return identity;
+        }
+        return permutation(streamKey(key, canonicalQuestion), answerCount);
+    }
+
+    /**
+     * Đổi đáp án client chọn (index hiển thị) về index gốc
+     *
+     * @throws IllegalArgumentException nếu có index ngoài khoảng
+     */
+    public List<Integer> toCanonicalAnswers(int canonicalQuestion, int answerCount, List<Integer> displayAnswers) {
+        int[] order = answerOrder(canonicalQuestion, answerCount);
+        List<Integer> canonical = new ArrayList<>(displayAnswers.size());
+        for (Integer displayAnswer : displayAnswers) {
+            if (displayAnswer == null || displayAnswer < 0 || displayAnswer >= answerCount) {
+                throw new IllegalArgumentException("Answer index out of range: " + displayAnswer);
+            }
+            canonical.add(order[displayAnswer]);
+        }
+        return canonical;
+    }
+
+    /**
+     * Đổi đáp án đã lưu (index gốc) sang index hiển thị, index không hợp lệ bị bỏ
+     */
+    public List<Integer> toDisplayAnswers(int canonicalQuestion, int answerCount, List<Integer> canonicalAnswers) {
+        int[] displayOf = inverse(answerOrder(canonicalQuestion, answerCount));
+        List<Integer> display = new ArrayList<>(canonicalAnswers.size());
+        for (Integer canonicalAnswer : canonicalAnswers) {
+            if (canonicalAnswer != null && canonicalAnswer >= 0 && canonicalAnswer < answerCount) {
+                display.add(displayOf[canonicalAnswer]);
+            }
+        }
+        return display;
+    }
+
+    /*
+     * Fisher-Yates với SplitMix64 tự cài: seed được lưu lâu dài nên thứ tự không
+     * được phụ thuộc vào cài đặt Random của JDK
+     */
+    static int[] permutation(long streamKey, int size) {
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = i;
+        }
+        long state = streamKey;
+        for (int i = size - 1; i > 0; i--) {
+            state += GOLDEN_GAMMA;
+            int j = (int) (((mix(state) >>> 32) * (i + 1)) >>> 32);
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+        return permutation;
+    }
+
+    static int[] inverse(int[] permutation) {
+        int[] inverse = new int[permutation.length];
+        for (int i = 0; i < permutation.length; i++) {
+            inverse[permutation[i]] = i;
+        }
+        return inverse;
+    }
+
+    private static long streamKey(long key, long stream) {
+        return mix(key + stream * GOLDEN_GAMMA);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.learnservice.util.stats;
+
+/**
+ * Chỉ số phân tích câu hỏi tính từ các tổng cộng dồn được:
+ * - p-value (độ khó): tỉ lệ làm đúng
+ * - point-biserial (độ phân biệt): tương quan giữa đúng/sai câu này và tổng
+ * điểm cả bài, (M1 - M0) / s * sqrt(p * q) với s là độ lệch chuẩn tổng thể
+ */
+public final class ItemStatistics {
+
+    private ItemStatistics() {
+    }
+
+    /**
+     * null khi chưa có bài làm
+     */
+    public static Double pValue(long attempts, long correct) {
+        return attempts == 0 ? null : (double) correct / attempts;
+    }
+
+    /**
+     * null khi không xác định (mọi bài cùng đúng/sai hoặc tổng điểm không đổi)
+     */
+    public static Double pointBiserial(long attempts, long correct, double sumTotal, double sumTotalSq,
+            double sumTotalCorrect) {
+        long wrong = attempts - correct;
+        if (attempts == 0 || correct == 0 || wrong == 0) {
+            return null;
+        }
+        double mean = sumTotal / attempts;
+        double variance = sumTotalSq / attempts - mean * mean;
+        if (variance <= 1e-12) {
+            return null;
+        }
+        double meanCorrect = sumTotalCorrect / correct;
+        double meanWrong = (sumTotal - sumTotalCorrect) / wrong;
+        double p = (double) correct / attempts;
+        return (meanCorrect - meanWrong) / Math.sqrt(variance) * Math.sqrt(p * (1 - p));
+    }
+}
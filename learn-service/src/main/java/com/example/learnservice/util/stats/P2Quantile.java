@@ -0,0 +1,111 @@
+package com.example.learnservice.util.stats;
+
+import java.util.Arrays;
+
+/**
+ * Ước lượng 1 phân vị theo thuật toán P² (Jain & Chlamtac, 1985):
+ * chỉ giữ 5 marker, mỗi lần add O(1), không lưu lại dữ liệu.
+ * Dưới 5 giá trị thì tính chính xác.
+ * Không thread-safe.
+ */
+public class P2Quantile {
+
+    private final double p;
+    // Chiều cao marker
+    private final double[] q = new double[5];
+    // Vị trí thực tế của marker
+    private final int[] n = { 0, 1, 2, 3, 4 };
+    // Vị trí mong muốn và bước tăng của nó
+    private final double[] desired;
+    private final double[] increment;
+    private long count;
+
+    public P2Quantile(double p) {
+        if (p <= 0 || p >= 1) {
+            throw new IllegalArgumentException("p must be in (0, 1)");
+        }
+        this.p = p;
+        this.desired = new double[] { 0, 2 * p, 4 * p, 2 + 2 * p, 4 };
+        this.increment = new double[] { 0, p / 2, p, (1 + p) / 2, 1 };
+    }
+
+    public double getP() {
+        return p;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void add(double x) {
+        if (count < 5) {
+            q[(int) count++] = x;
+            if (count == 5) {
+                Arrays.sort(q);
+            }
+            return;
+        }
+        count++;
+
+        // Tìm ô chứa x, mở rộng min/max nếu cần
+        int k;
+        if (x < q[0]) {
+            q[0] = x;
+            k = 0;
+        } else if (x >= q[4]) {
+            q[4] = x;
+            k = 3;
+        } else {
+            k = 0;
+            while (x >= q[k + 1]) {
+                k++;
+            }
+        }
+
+        for (int i = k + 1; i < 5; i++) {
+            n[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            desired[i] += increment[i];
+        }
+
+        // Chỉnh 3 marker giữa về gần vị trí mong muốn
+        for (int i = 1; i <= 3; i++) {
+            double d = desired[i] - n[i];
+            if ((d >= 1 && n[i + 1] - n[i] > 1) || (d <= -1 && n[i - 1] - n[i] < -1)) {
+                int s = d >= 0 ? 1 : -1;
+                double candidate = parabolic(i, s);
+                q[i] = q[i - 1] < candidate && candidate < q[i + 1] ? candidate : linear(i, s);
+                n[i] += s;
+            }
+        }
+    }
+
+    /**
+     * Giá trị phân vị hiện tại, NaN khi chưa có dữ liệu
+     */
+    public double getValue() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count < 5) {
+            double[] sorted = Arrays.copyOf(q, (int) count);
+            Arrays.sort(sorted);
+            double rank = p * (count - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = Math.min(lower + 1, sorted.length - 1);
+            return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+        }
+        return q[2];
+    }
+
+    private double parabolic(int i, int s) {
+        return q[i] + (double) s / (n[i + 1] - n[i - 1])
+                * ((n[i] - n[i - 1] + s) * (q[i + 1] - q[i]) / (n[i + 1] - n[i])
+                        + (n[i + 1] - n[i] - s) * (q[i] - q[i - 1]) / (n[i] - n[i - 1]));
+    }
+
+    private double linear(int i, int s) {
+        return q[i] + s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+    }
+}
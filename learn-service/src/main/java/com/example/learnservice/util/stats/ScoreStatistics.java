@@ -0,0 +1,120 @@
+package com.example.learnservice.util.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thống kê điểm cập nhật dần: mỗi add O(1), không lưu lại từng điểm.
+ * count/mean/variance theo Welford, min/max, histogram bucket cố định độ rộng
+ * và các phân vị ước lượng bằng P².
+ * Không thread-safe.
+ */
+public class ScoreStatistics {
+
+    public static final double[] QUANTILES = { 0.25, 0.5, 0.75, 0.9 };
+
+    private final double bucketWidth;
+    private final P2Quantile[] quantiles;
+    // floor(score / bucketWidth) -> số bài
+    private final Map<Long, Long> buckets = new HashMap<>();
+
+    private long count;
+    private double mean;
+    // Tổng bình phương độ lệch (Welford)
+    private double m2;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public ScoreStatistics(double bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("bucketWidth must be positive");
+        }
+        this.bucketWidth = bucketWidth;
+        this.quantiles = new P2Quantile[QUANTILES.length];
+        for (int i = 0; i < QUANTILES.length; i++) {
+            quantiles[i] = new P2Quantile(QUANTILES[i]);
+        }
+    }
+
+    public void add(double score) {
+        count++;
+        double delta = score - mean;
+        mean += delta / count;
+        m2 += delta * (score - mean);
+
+        if (count == 1 || score < min) {
+            min = score;
+        }
+        if (count == 1 || score > max) {
+            max = score;
+        }
+
+        buckets.merge((long) Math.floor(score / bucketWidth), 1L, Long::sum);
+        for (P2Quantile quantile : quantiles) {
+            quantile.add(score);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Phương sai tổng thể (chia cho count)
+     */
+    public double getVariance() {
+        return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Phân vị ước lượng theo thứ tự của QUANTILES
+     */
+    public Map<Double, Double> getQuantiles() {
+        Map<Double, Double> values = new LinkedHashMap<>();
+        for (P2Quantile quantile : quantiles) {
+            values.put(quantile.getP(), quantile.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Các bucket có dữ liệu, sắp theo cận dưới
+     */
+    public List<Bucket> getHistogram() {
+        List<Bucket> histogram = new ArrayList<>(buckets.size());
+        buckets.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> histogram.add(new Bucket(entry.getKey() * bucketWidth,
+                        (entry.getKey() + 1) * bucketWidth, entry.getValue())));
+        return histogram;
+    }
+
+    /**
+     * Bucket [from, to)
+     */
+    public record Bucket(double from, double to, long count) {
+    }
+}
@@ -0,0 +1,18 @@
+-- Điền exam_student_id cho các Result EXAM có từ trước khi thêm cột.
+-- Chạy tay 1 lần sau khi deploy (ddl-auto=update thêm cột với giá trị null).
+-- Học viên có nhiều lượt thi (tạo trùng trước đây) thì chỉ lượt mới nhất được điền,
+-- các lượt cũ giữ null nên không vi phạm uk_result_exam_attempt.
+-- Chạy lại nhiều lần vẫn cho cùng kết quả.
+
+UPDATE result r SET exam_student_id = r.student_id
+FROM (
+    SELECT DISTINCT ON (r2.semester_test_id, r2.student_id) r2.id
+    FROM result r2
+    JOIN semester_test st ON st.id = r2.semester_test_id
+    WHERE st.type = 'EXAM'
+    ORDER BY r2.semester_test_id, r2.student_id, r2.created_at DESC, r2.id DESC
+) latest
+WHERE r.id = latest.id
+    AND r.exam_student_id IS NULL
+    AND NOT EXISTS (SELECT 1 FROM result r3
+        WHERE r3.semester_test_id = r.semester_test_id AND r3.exam_student_id = r.student_id);
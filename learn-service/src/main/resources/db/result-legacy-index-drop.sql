@@ -0,0 +1,21 @@
+-- Xóa các index chưa đặt tên cũ của bảng result (tên do Hibernate sinh nên tìm theo định nghĩa).
+-- (semester_test_id, student_id, created_at) đã được idx_result_roster phủ; (item_analyzed, id)
+-- và (semester_test_id, id) nay là idx_result_item_analyzed / idx_result_semester_test do
+-- ddl-auto=update tạo theo tên mới. ddl-auto không xóa index nên phải chạy tay 1 lần sau khi
+-- deploy; chạy lại nhiều lần vẫn cho cùng kết quả.
+
+DO $$
+DECLARE
+    legacy record;
+BEGIN
+    FOR legacy IN
+        SELECT schemaname, indexname FROM pg_indexes
+        WHERE tablename = 'result'
+            AND indexname NOT LIKE 'idx\_result\_%'
+            AND (indexdef LIKE '%(semester_test_id, student_id, created_at)'
+                OR indexdef LIKE '%(item_analyzed, id)'
+                OR indexdef LIKE '%(semester_test_id, id)')
+    LOOP
+        EXECUTE format('DROP INDEX %I.%I', legacy.schemaname, legacy.indexname);
+    END LOOP;
+END $$;
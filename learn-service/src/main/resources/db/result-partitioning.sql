@@ -0,0 +1,59 @@
+-- Chuyển bảng result sang partition theo hash(semester_test_id).
+-- Chạy tay 1 lần trong cửa sổ bảo trì (Hibernate ddl-auto không tạo được bảng partition).
+-- LIKE chỉ chép cột, default, identity nên script tự tạo lại khóa chính, unique constraint,
+-- khóa ngoại và mọi index của entity Result với đúng tên trong @Table. ddl-auto=update so
+-- index/constraint theo tên nên không tạo thêm, nhưng vẫn ALTER TABLE thêm cột mới của entity
+-- trên bảng cha (tự lan xuống các partition). Thêm index mới vào Result thì phải đặt tên.
+-- Không có bảng nào tham chiếu result nên không cần tạo lại khóa ngoại trỏ vào.
+--
+-- Chi phí tra theo id: PostgreSQL không có index toàn cục, query chỉ lọc r.id phải dò
+-- index (id) của cả 16 partition. Các query mỗi lần click trong lúc thi (đọc câu hỏi,
+-- ghi đáp án/flag, flush bộ đệm, tiến độ) đã lọc thêm semester_test_id lấy từ cache lượt
+-- làm bài nên chỉ đọc 1 partition. Còn lại tra theo id đơn thuần ở các bước thưa:
+-- nạp cache lượt làm bài (1 lần mỗi ttl), nộp bài, xem chi tiết, lưu trữ.
+-- Đo trước/sau khi chạy script:
+--   EXPLAIN (ANALYZE, BUFFERS) SELECT id FROM result WHERE id = <id>;
+--   EXPLAIN (ANALYZE, BUFFERS) SELECT id FROM result WHERE id = <id> AND semester_test_id = <stId>;
+-- Câu đầu có 16 Index Scan (mỗi partition 1), câu sau chỉ còn 1.
+
+BEGIN;
+
+LOCK TABLE result IN ACCESS EXCLUSIVE MODE;
+
+ALTER TABLE result RENAME TO result_unpartitioned;
+
+CREATE TABLE result (
+    LIKE result_unpartitioned INCLUDING DEFAULTS INCLUDING IDENTITY INCLUDING GENERATED
+) PARTITION BY HASH (semester_test_id);
+
+-- Khóa chính của bảng partition phải chứa cột partition
+ALTER TABLE result ADD PRIMARY KEY (id, semester_test_id);
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format(
+            'CREATE TABLE result_p%s PARTITION OF result FOR VALUES WITH (MODULUS 16, REMAINDER %s)', i, i);
+    END LOOP;
+END $$;
+
+-- Unique constraint trên bảng partition phải chứa cột partition, đã có semester_test_id
+ALTER TABLE result ADD CONSTRAINT uk_result_exam_attempt UNIQUE (semester_test_id, exam_student_id);
+
+CREATE INDEX idx_result_roster ON result (semester_test_id, student_id, created_at DESC);
+CREATE INDEX idx_result_item_analyzed ON result (item_analyzed, id);
+CREATE INDEX idx_result_semester_test ON result (semester_test_id, id);
+CREATE INDEX idx_result_id ON result (id);
+
+ALTER TABLE result
+    ADD FOREIGN KEY (semester_test_id) REFERENCES semester_test (id),
+    ADD FOREIGN KEY (exam_paper_id) REFERENCES exam_paper (id);
+
+INSERT INTO result OVERRIDING SYSTEM VALUE SELECT * FROM result_unpartitioned;
+
+-- Sequence identity mới bắt đầu sau id lớn nhất đã có
+SELECT setval(pg_get_serial_sequence('result', 'id'), COALESCE((SELECT MAX(id) FROM result), 0) + 1, false);
+
+DROP TABLE result_unpartitioned;
+
+COMMIT;
@@ -0,0 +1,16 @@
+-- Tính answered_count / flagged_count cho các Result có từ trước khi thêm 2 cột.
+-- Chạy tay 1 lần sau khi deploy (ddl-auto=update thêm cột với giá trị 0).
+-- Chỉ cần cho bài chưa nộp; chạy lại nhiều lần vẫn cho cùng kết quả.
+
+UPDATE result r SET
+    answered_count = c.answered,
+    flagged_count = c.flagged
+FROM (
+    SELECT r2.id,
+        COUNT(*) FILTER (WHERE (a.value->'selectedAnswers'->0) IS NOT NULL) AS answered,
+        COUNT(*) FILTER (WHERE COALESCE(CAST(a.value->>'flagged' AS boolean), false)) AS flagged
+    FROM result r2, jsonb_each(r2.student_answers) a
+    WHERE r2.submit_date_time IS NULL
+    GROUP BY r2.id
+) c
+WHERE r.id = c.id;
@@ -0,0 +1,16 @@
+-- Các hàm SQL dùng trong native query của ResultRepository.
+-- Chạy mỗi lần khởi động (spring.sql.init.mode=always), trước khi Hibernate cập nhật bảng,
+-- nên chỉ chứa hàm không phụ thuộc bảng và phải chạy lại được (CREATE OR REPLACE).
+-- Thân hàm không chứa dấu ';' vì script được tách lệnh theo ';'.
+
+-- Thay đổi trong patch (incoming) có mới hơn giá trị đã lưu (stored) của 1 field không,
+-- seq_key là selectedSeq (đáp án) hoặc flaggedSeq (flag).
+-- Thiếu seq ở 1 trong 2 phía thì luôn ghi, ngược lại chỉ ghi khi seq lớn hơn.
+-- Cùng quy tắc với AnswerEdit.isNewer phía Java.
+CREATE OR REPLACE FUNCTION answer_seq_is_newer(incoming jsonb, stored jsonb, seq_key text)
+RETURNS boolean LANGUAGE sql IMMUTABLE AS $$
+    SELECT stored IS NULL
+        OR NOT jsonb_exists(incoming, seq_key)
+        OR NOT jsonb_exists(stored, seq_key)
+        OR CAST(incoming ->> seq_key AS bigint) > CAST(stored ->> seq_key AS bigint)
+$$;
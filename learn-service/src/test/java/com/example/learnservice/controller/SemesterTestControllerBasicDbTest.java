@@ -15,6 +15,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -42,6 +43,7 @@ import com.example.learnservice.repository.SemesterRepository;
 import com.example.learnservice.repository.SemeterTestRepository;
 import com.example.learnservice.repository.TestQuestionRepository;
 import com.example.learnservice.repository.TestRepository;
+import com.example.learnservice.service.AnswerBufferService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -90,6 +92,9 @@ class SemesterTestControllerBasicDbTest extends BaseIntegrationTest {
     @Autowired
     private ResultRepository resultRepository;
 
+    @Autowired
+    private AnswerBufferService answerBufferService;
+
     private Semester semester;
     private Position position;
     private com.example.learnservice.model.Test test;
@@ -543,7 +548,7 @@ class SemesterTestControllerBasicDbTest extends BaseIntegrationTest {
     /*
      * 14. Không thể kết thúc bài thi của người khác
      * - When: Student gửi request kết thúc bài thi của student khác
-     * - Then: Trả về 403 Forbidden
+     * - Then: Trả về 403 Forbidden, đáp án trong bộ đệm của chủ bài chưa bị ghi
      */
     @Test
     @DisplayName("Cannot end test that is not yours")
@@ -559,10 +564,20 @@ class SemesterTestControllerBasicDbTest extends BaseIntegrationTest {
 
         Long otherStudentId = 999L;
 
-        mockMvc.perform(post("/semester/test/" + result.getId() + "/end")
-                .header("X-User-Id", otherStudentId.toString())
-                .header("X-User-Role", "STUDENT"))
-                .andExpect(status().isForbidden());
+        ReflectionTestUtils.setField(answerBufferService, "enabled", true);
+        try {
+            answerBufferService.bufferAnswer(result.getId(), semesterTest.getId(), 0, List.of(1));
+
+            mockMvc.perform(post("/semester/test/" + result.getId() + "/end")
+                    .header("X-User-Id", otherStudentId.toString())
+                    .header("X-User-Role", "STUDENT"))
+                    .andExpect(status().isForbidden());
+
+            assert answerBufferService.hasPending(result.getId());
+        } finally {
+            answerBufferService.flush(result.getId());
+            ReflectionTestUtils.setField(answerBufferService, "enabled", false);
+        }
     }
 
     /*
@@ -684,4 +699,53 @@ class SemesterTestControllerBasicDbTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.resultId").value(result.getId()))
                 .andExpect(jsonPath("$.score").value(8.5));
     }
-}
\ No newline at end of file
+
+    /*
+     * 19. Đáp án còn trong bộ đệm ghi sau được ghi trước khi chấm điểm
+     * - Given: Bộ đệm đáp án bật, đáp án đúng của câu 1 mới chỉ nằm trong bộ đệm
+     * - When: Student kết thúc bài thi
+     * - Then: Đáp án được flush rồi mới chấm, score = 2.0
+     */
+    @Test
+    @DisplayName("Buffered answers are flushed before scoring")
+    void testEndTest_FlushesBufferedAnswers() throws Exception {
+        semesterTest.setOpen(true);
+        semesterTestRepository.save(semesterTest);
+
+        Result result = new Result();
+        result.setSemesterTest(semesterTest);
+        result.setStudentId(studentId);
+        result.setStartDateTime(LocalDateTime.now().minusMinutes(30));
+
+        ObjectNode studentAnswers = objectMapper.createObjectNode();
+        ObjectNode answer0 = objectMapper.createObjectNode();
+        answer0.set("selectedAnswers", objectMapper.createArrayNode().add(1));
+        answer0.put("flagged", false);
+        studentAnswers.set("0", answer0);
+        ObjectNode answer1 = objectMapper.createObjectNode();
+        answer1.set("selectedAnswers", objectMapper.createArrayNode().add(0));
+        answer1.put("flagged", false);
+        studentAnswers.set("1", answer1);
+        result.setStudentAnswers(studentAnswers);
+
+        ObjectNode trueAnswers = objectMapper.createObjectNode();
+        trueAnswers.set("0", objectMapper.createArrayNode().add(1));
+        trueAnswers.set("1", objectMapper.createArrayNode().add(1));
+        result.setTrueAnswers(trueAnswers);
+        result = resultRepository.save(result);
+
+        ReflectionTestUtils.setField(answerBufferService, "enabled", true);
+        try {
+            answerBufferService.bufferAnswer(result.getId(), semesterTest.getId(), 1, List.of(1));
+
+            mockMvc.perform(post("/semester/test/" + result.getId() + "/end")
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.score").value(2.0));
+        } finally {
+            ReflectionTestUtils.setField(answerBufferService, "enabled", false);
+        }
+        assert !answerBufferService.hasPending(result.getId());
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.WebApplicationContext;
@@ -24,6 +25,8 @@ import org.springframework.web.context.WebApplicationContext;
 import com.example.learnservice.BaseIntegrationTest;
 import com.example.learnservice.config.TestConfig;
 
+import com.example.learnservice.dto.AnswerBatchRequest;
+import com.example.learnservice.dto.AnswerUpdate;
 import com.example.learnservice.dto.SelectAnswerRequest;
 import com.example.learnservice.enums.TestType;
 import com.example.learnservice.model.Answer;
@@ -43,6 +46,7 @@ import com.example.learnservice.repository.SemesterRepository;
 import com.example.learnservice.repository.SemeterTestRepository;
 import com.example.learnservice.repository.TestQuestionRepository;
 import com.example.learnservice.repository.TestRepository;
+import com.example.learnservice.service.AnswerEventService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -50,7 +54,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * Integration test cho SemesterTestController với H2 database
- * Test các API: getSubmittedStudents, getQuestion, selectAnswer, flagQuestion,
+ * Test các API: getSubmittedStudents, getQuestion, getQuestionBundle, selectAnswer, flagQuestion,
  * getMyResults, getResultDetail, getTestExams
  */
 class SemesterTestControllerQuestionResultDbTest extends BaseIntegrationTest {
@@ -91,6 +95,9 @@ class SemesterTestControllerQuestionResultDbTest extends BaseIntegrationTest {
     @Autowired
     private ResultRepository resultRepository;
 
+    @Autowired
+    private AnswerEventService answerEventService;
+
     private Semester semester;
     private Position position;
     private com.example.learnservice.model.Test test;
@@ -501,6 +508,32 @@ class SemesterTestControllerQuestionResultDbTest extends BaseIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    /*
+     * 10b. Không thể chọn đáp án sau khi hết giờ làm bài
+     * - Given: Result bắt đầu từ 2 giờ trước, bài thi 60 phút, chưa nộp
+     * - When: Student gửi request chọn đáp án
+     * - Then: Trả về 400 Bad Request, đáp án không đổi
+     */
+    @Test
+    @DisplayName("Cannot select answer after the deadline")
+    void testSelectAnswer_AfterDeadline() throws Exception {
+        studentResult.setStartDateTime(LocalDateTime.now().minusHours(2));
+        resultRepository.save(studentResult);
+
+        SelectAnswerRequest request = new SelectAnswerRequest();
+        request.setAnswerIndices(Arrays.asList(2));
+
+        mockMvc.perform(put("/semester/test/result/" + studentResult.getId() + "/question/0/answer")
+                .header("X-User-Id", studentId.toString())
+                .header("X-User-Role", "STUDENT")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        Result unchanged = resultRepository.findById(studentResult.getId()).get();
+        assert unchanged.getStudentAnswers().get("0").get("selectedAnswers").get(0).asInt() == 1;
+    }
+
     /*
      * 11. Không thể chọn đáp án trên result của người khác
      * - When: Student gửi request với result của người khác
@@ -829,4 +862,309 @@ class SemesterTestControllerQuestionResultDbTest extends BaseIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
     }
-}
\ No newline at end of file
+
+    /*
+     * ===============================================
+     * TEST: GET /semester/test/result/{resultId}/questions
+     * ===============================================
+     */
+
+    /*
+     * 26. Student có thể lấy nhiều câu hỏi trong 1 request
+     * - Given: Result có 2 câu hỏi
+     * - When: Gửi request từ câu 0, lấy 10 câu
+     * - Then: Trả về 2 câu kèm đáp án đã chọn và flag, status 200
+     */
+    @Test
+    @DisplayName("Student can get a window of questions with answer state")
+    void testGetQuestionBundle_Success() throws Exception {
+        mockMvc.perform(get("/semester/test/result/" + studentResult.getId() + "/questions")
+                .header("X-User-Id", studentId.toString())
+                .header("X-User-Role", "STUDENT")
+                .param("from", "0")
+                .param("count", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resultId").value(studentResult.getId()))
+                .andExpect(jsonPath("$.totalQuestions").value(2))
+                .andExpect(jsonPath("$.questions.length()").value(2))
+                .andExpect(jsonPath("$.questions[0].questionIndex").value(0))
+                .andExpect(jsonPath("$.questions[0].answers.length()").value(3))
+                .andExpect(jsonPath("$.questions[0].selectedAnswers[0]").value(1))
+                .andExpect(jsonPath("$.questions[1].questionText").value("What is the capital of France?"))
+                .andExpect(jsonPath("$.questions[1].flagged").value(true));
+
+        mockMvc.perform(get("/semester/test/result/" + studentResult.getId() + "/questions")
+                .header("X-User-Id", studentId.toString())
+                .header("X-User-Role", "STUDENT")
+                .param("from", "1")
+                .param("count", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.questions.length()").value(1))
+                .andExpect(jsonPath("$.questions[0].questionIndex").value(1));
+    }
+
+    /*
+     * 27. Không thể lấy câu hỏi của result khác hoặc với count không hợp lệ
+     * - Then: Trả về 403 Forbidden / 400 Bad Request
+     */
+    @Test
+    @DisplayName("Question bundle checks access and window size")
+    void testGetQuestionBundle_InvalidRequest() throws Exception {
+        mockMvc.perform(get("/semester/test/result/" + studentResult.getId() + "/questions")
+                .header("X-User-Id", "999")
+                .header("X-User-Role", "STUDENT"))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/semester/test/result/" + studentResult.getId() + "/questions")
+                .header("X-User-Id", studentId.toString())
+                .header("X-User-Role", "STUDENT")
+                .param("count", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /*
+     * ===============================================
+     * TEST: answer-log (ghi đáp án dạng log chỉ thêm)
+     * ===============================================
+     */
+
+    /*
+     * 28. Đáp án ghi vào log hiện ra khi đọc câu hỏi, dòng result không bị sửa
+     * - Given: Bật answer-log
+     * - When: Student chọn đáp án câu 1 rồi đọc lại câu 1 và bundle
+     * - Then: Đọc thấy đáp án mới, student_answers trong DB vẫn như cũ, log có 1 sự kiện
+     */
+    @Test
+    @DisplayName("Answer log: pending answers are overlaid on reads without touching the result row")
+    void testAnswerLog_ReadOverlaysPendingEvents() throws Exception {
+        ReflectionTestUtils.setField(answerEventService, "enabled", true);
+        try {
+            SelectAnswerRequest request = new SelectAnswerRequest();
+            request.setAnswerIndices(Arrays.asList(2));
+            mockMvc.perform(put("/semester/test/result/" + studentResult.getId() + "/question/1/answer")
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isOk());
+            mockMvc.perform(put("/semester/test/result/" + studentResult.getId() + "/question/1/flag")
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT")
+                    .param("flagged", "false"))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(get("/semester/test/result/" + studentResult.getId() + "/question/1")
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.selectedAnswers[0]").value(2))
+                    .andExpect(jsonPath("$.flagged").value(false));
+
+            mockMvc.perform(get("/semester/test/result/" + studentResult.getId() + "/questions")
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT")
+                    .param("from", "0")
+                    .param("count", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.questions[0].selectedAnswers[0]").value(1))
+                    .andExpect(jsonPath("$.questions[1].selectedAnswers[0]").value(2))
+                    .andExpect(jsonPath("$.questions[1].flagged").value(false));
+        } finally {
+            ReflectionTestUtils.setField(answerEventService, "enabled", false);
+        }
+
+        JsonNode answer1 = objectMapper.readTree(
+                resultRepository.findStudentAnswerByIndex(studentResult.getId(), "1").orElseThrow());
+        assert answer1.get("selectedAnswers").isEmpty();
+        assert answer1.get("flagged").asBoolean();
+        assert answerEventService.getTimeline(studentResult.getId()).size() == 2;
+    }
+
+    /*
+     * 29. Chi tiết result đang làm kèm các sự kiện chưa áp dụng
+     * - Given: Bật answer-log, đáp án câu 1 mới chỉ nằm trong log
+     * - When: Student xem chi tiết result
+     * - Then: studentAnswers có đáp án mới
+     */
+    @Test
+    @DisplayName("Answer log: result detail of an unsubmitted result includes pending answers")
+    void testAnswerLog_DetailIncludesPendingEvents() throws Exception {
+        ReflectionTestUtils.setField(answerEventService, "enabled", true);
+        try {
+            answerEventService.recordAnswer(studentResult.getId(), semesterTest.getId(), 1, List.of(2), null, null);
+
+            mockMvc.perform(get("/semester/test/result/" + studentResult.getId())
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.studentAnswers.1.selectedAnswers[0]").value(2))
+                    .andExpect(jsonPath("$.studentAnswers.0.selectedAnswers[0]").value(1));
+        } finally {
+            ReflectionTestUtils.setField(answerEventService, "enabled", false);
+        }
+    }
+
+    /*
+     * 30. Log được áp dụng vào student_answers khi nộp bài
+     * - Given: Bật answer-log, đáp án đúng của câu 1 mới chỉ nằm trong log
+     * - When: Student kết thúc bài thi
+     * - Then: Chấm cả đáp án trong log, score = 2.0, student_answers có đáp án mới
+     */
+    @Test
+    @DisplayName("Answer log: pending events are applied when the test ends")
+    void testAnswerLog_AppliedOnSubmit() throws Exception {
+        ReflectionTestUtils.setField(answerEventService, "enabled", true);
+        try {
+            answerEventService.recordAnswer(studentResult.getId(), semesterTest.getId(), 1, List.of(1), null, null);
+
+            mockMvc.perform(post("/semester/test/" + studentResult.getId() + "/end")
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.score").value(2.0));
+        } finally {
+            ReflectionTestUtils.setField(answerEventService, "enabled", false);
+        }
+
+        JsonNode answer1 = objectMapper.readTree(
+                resultRepository.findStudentAnswerByIndex(studentResult.getId(), "1").orElseThrow());
+        assert answer1.get("selectedAnswers").get(0).asInt() == 1;
+    }
+
+    /*
+     * 31. Tiến độ (1 result và feed của giám thị) tính cả answer-log chưa áp dụng
+     * - Given: Bật answer-log, câu 1 được chọn đáp án và câu 0 được flag trong log
+     * - When: Student xem tiến độ, admin xem feed tiến độ của bài thi
+     * - Then: answeredCount = 1, flaggedCount = 1 dù cột đếm chưa được cập nhật
+     */
+    @Test
+    @DisplayName("Answer log: progress counters include pending events")
+    void testAnswerLog_ProgressIncludesPendingEvents() throws Exception {
+        ReflectionTestUtils.setField(answerEventService, "enabled", true);
+        try {
+            answerEventService.recordAnswer(studentResult.getId(), semesterTest.getId(), 1, List.of(2), null, null);
+            answerEventService.recordFlag(studentResult.getId(), semesterTest.getId(), 0, true, null, null);
+
+            mockMvc.perform(get("/semester/test/result/" + studentResult.getId() + "/progress")
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.answeredCount").value(1))
+                    .andExpect(jsonPath("$.flaggedCount").value(1));
+
+            mockMvc.perform(get("/semester/test/" + semesterTest.getId() + "/progress")
+                    .header("X-User-Id", adminId.toString())
+                    .header("X-User-Role", "ADMIN"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.entries[0].resultId").value(studentResult.getId()))
+                    .andExpect(jsonPath("$.entries[0].answeredCount").value(1))
+                    .andExpect(jsonPath("$.entries[0].flaggedCount").value(1));
+        } finally {
+            ReflectionTestUtils.setField(answerEventService, "enabled", false);
+        }
+    }
+
+    /*
+     * ===============================================
+     * TEST: PUT /semester/test/result/{resultId}/answers (lô đáp án có seq)
+     * ===============================================
+     */
+
+    /*
+     * 32. Lô đáp án được ghi theo thứ tự seq, trả về seq lớn nhất
+     * - Given: Lô gửi lộn xộn: câu 1 chọn [2] (seq 2), câu 1 chọn [0] (seq 1), flag câu 0 (seq 3)
+     * - When: Student gửi lô
+     * - Then: Câu 1 giữ [2], câu 0 được flag, ackSeq = 3
+     */
+    @Test
+    @DisplayName("Answer batch is applied in seq order and acknowledges the highest seq")
+    void testSubmitAnswers_AppliedInSeqOrder() throws Exception {
+        mockMvc.perform(put("/semester/test/result/" + studentResult.getId() + "/answers")
+                .header("X-User-Id", studentId.toString())
+                .header("X-User-Role", "STUDENT")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch(
+                        new AnswerUpdate(1, List.of(2), null, 2L, null),
+                        new AnswerUpdate(1, List.of(0), null, 1L, null),
+                        new AnswerUpdate(0, null, true, 3L, null)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.ackSeq").value(3));
+
+        JsonNode answer0 = storedAnswer("0");
+        JsonNode answer1 = storedAnswer("1");
+        assert answer1.get("selectedAnswers").get(0).asInt() == 2;
+        assert answer1.get("selectedSeq").asLong() == 2L;
+        assert answer0.get("flagged").asBoolean();
+        assert answer0.get("flaggedSeq").asLong() == 3L;
+    }
+
+    /*
+     * 33. seq tách theo field, lô gửi lại không ghi đè
+     * - Given: Câu 1 đã được bỏ flag với seq 5
+     * - When: Lô sau chọn đáp án câu 1 với seq 4 (tạo trước lúc bỏ flag nhưng tới sau), rồi gửi lại
+     *   lô đó với đáp án khác cùng seq 4
+     * - Then: Đáp án seq 4 vẫn được ghi, lần gửi lại bị bỏ qua, flag không đổi
+     */
+    @Test
+    @DisplayName("Answer batch tracks seq per field and ignores resent updates")
+    void testSubmitAnswers_SeqPerField() throws Exception {
+        for (AnswerBatchRequest request : List.of(
+                batch(new AnswerUpdate(1, null, false, 5L, null)),
+                batch(new AnswerUpdate(1, List.of(2), null, 4L, null)),
+                batch(new AnswerUpdate(1, List.of(0), null, 4L, null)))) {
+            mockMvc.perform(put("/semester/test/result/" + studentResult.getId() + "/answers")
+                    .header("X-User-Id", studentId.toString())
+                    .header("X-User-Role", "STUDENT")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isOk());
+        }
+
+        JsonNode answer1 = storedAnswer("1");
+        assert answer1.get("selectedAnswers").size() == 1;
+        assert answer1.get("selectedAnswers").get(0).asInt() == 2;
+        assert !answer1.get("flagged").asBoolean();
+        assert answer1.get("flaggedSeq").asLong() == 5L;
+    }
+
+    /*
+     * 34. Lô không hợp lệ hoặc của học viên khác bị từ chối
+     * - Then: 403 với result của người khác, 400 khi thiếu seq hoặc index câu sai
+     */
+    @Test
+    @DisplayName("Answer batch checks ownership and each update")
+    void testSubmitAnswers_InvalidRequest() throws Exception {
+        mockMvc.perform(put("/semester/test/result/" + studentResult.getId() + "/answers")
+                .header("X-User-Id", student2Id.toString())
+                .header("X-User-Role", "STUDENT")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch(new AnswerUpdate(0, List.of(1), null, 1L, null)))))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(put("/semester/test/result/" + studentResult.getId() + "/answers")
+                .header("X-User-Id", studentId.toString())
+                .header("X-User-Role", "STUDENT")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch(new AnswerUpdate(0, List.of(1), null, null, null)))))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(put("/semester/test/result/" + studentResult.getId() + "/answers")
+                .header("X-User-Id", studentId.toString())
+                .header("X-User-Role", "STUDENT")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch(new AnswerUpdate(9, List.of(1), null, 1L, null)))))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static AnswerBatchRequest batch(AnswerUpdate... updates) {
+        AnswerBatchRequest request = new AnswerBatchRequest();
+        request.setUpdates(List.of(updates));
+        return request;
+    }
+
+    private JsonNode storedAnswer(String questionIndex) throws Exception {
+        return objectMapper.readTree(
+                resultRepository.findStudentAnswerByIndex(studentResult.getId(), questionIndex).orElseThrow());
+    }
+}
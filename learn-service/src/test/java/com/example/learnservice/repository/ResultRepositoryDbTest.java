@@ -0,0 +1,419 @@
+package com.example.learnservice.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.learnservice.BaseIntegrationTest;
+import com.example.learnservice.dto.ResultStatusProjection;
+import com.example.learnservice.dto.RosterCountsProjection;
+import com.example.learnservice.enums.TestType;
+import com.example.learnservice.model.Position;
+import com.example.learnservice.model.Result;
+import com.example.learnservice.model.Semester;
+import com.example.learnservice.model.SemesterAccount;
+import com.example.learnservice.model.SemesterTest;
+
+/**
+ * Các native query của ResultRepository chạy trên PostgreSQL thật
+ * (ON CONFLICT, NOT EXISTS, phân trang keyset)
+ */
+class ResultRepositoryDbTest extends BaseIntegrationTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. provisionResults tạo Result chưa bắt đầu cho học viên cùng position, bỏ qua học viên khác position
+     * 2. Gọi lại provisionResults không tạo thêm, học viên đã vào thi trước đó được bỏ qua
+     * 3. insertExamAttempt cho học viên đã có lượt thi (tạo sẵn) không trả về id, không tạo thêm
+     * 4. 2 lần bắt đầu thi cùng lúc của 1 học viên chỉ tạo được 1 lượt thi
+     * 5. Roster đã nộp / đang làm chỉ xét lượt gần nhất của mỗi học viên
+     * 6. Roster chưa thi gồm học viên chưa có Result và Result tạo sẵn chưa bắt đầu, chỉ trong position của bài
+     * 7. Phân trang keyset theo student_id đi hết danh sách, không trùng không sót
+     * 8. countRoster khớp với số dòng của 3 danh sách
+     */
+
+    private static final String STUDENT_ANSWERS = "{\"0\":{\"selectedAnswers\":[],\"flagged\":false}}";
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private SemesterRepository semesterRepository;
+
+    @Autowired
+    private TestRepository testRepository;
+
+    @Autowired
+    private SemeterTestRepository semesterTestRepository;
+
+    @Autowired
+    private PositionRepository positionRepository;
+
+    @Autowired
+    private SemesterAccountRepository semesterAccountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Long adminId = 1L;
+    private Semester semester;
+    private Position position;
+    private Position otherPosition;
+    private SemesterTest semesterTest;
+
+    @BeforeEach
+    void setUp() {
+        position = new Position();
+        position.setName("Software Engineer");
+        position = positionRepository.save(position);
+
+        otherPosition = new Position();
+        otherPosition.setName("Tester");
+        otherPosition = positionRepository.save(otherPosition);
+
+        semester = new Semester();
+        semester.setName("Semester 2024");
+        semester.setStartDate(LocalDateTime.now().minusDays(30));
+        semester.setEndDate(LocalDateTime.now().plusDays(60));
+        semester.setCreatedBy(adminId);
+        semester = semesterRepository.save(semester);
+
+        com.example.learnservice.model.Test test = new com.example.learnservice.model.Test();
+        test.setName("Midterm Test");
+        test.setPosition(position);
+        test.setVisible(true);
+        test.setCreatedBy(adminId);
+        test = testRepository.save(test);
+
+        semesterTest = new SemesterTest();
+        semesterTest.setName("Midterm Exam");
+        semesterTest.setSemester(semester);
+        semesterTest.setTest(test);
+        semesterTest.setType(TestType.EXAM);
+        semesterTest.setMinutes(60);
+        semesterTest.setStartDate(LocalDateTime.now().minusHours(1));
+        semesterTest.setEndDate(LocalDateTime.now().plusHours(2));
+        semesterTest.setOpen(true);
+        semesterTest.setCreatedBy(adminId);
+        semesterTest = semesterTestRepository.save(semesterTest);
+    }
+
+    // Test chạy trong transaction thì các lệnh xóa bị rollback cùng dữ liệu,
+    // test chạy ngoài transaction (bắt đầu thi song song) thì dữ liệu được xóa ở đây
+    @AfterEach
+    void tearDown() {
+        resultRepository.deleteAll();
+        semesterAccountRepository.deleteAll();
+        semesterTestRepository.deleteAll();
+        testRepository.deleteAll();
+        semesterRepository.deleteAll();
+        positionRepository.deleteAll();
+    }
+
+    /*
+     * 1. provisionResults tạo Result chưa bắt đầu cho học viên cùng position, bỏ qua học viên khác position
+     * - Given: 3 học viên cùng position (1 học viên có 2 dòng semester_account), 1 học viên khác position
+     * - When: Tạo sẵn Result
+     * - Then: Mỗi học viên cùng position có đúng 1 Result chưa bắt đầu, exam_student_id = student_id
+     */
+    @Test
+    @DisplayName("provisionResults creates one unstarted result per enrolled student of the test position")
+    void testProvisionCreatesUnstartedResults() {
+        enroll(101L, position);
+        enroll(102L, position);
+        enroll(103L, position);
+        enroll(103L, position);
+        enroll(201L, otherPosition);
+
+        int provisioned = resultRepository.provisionResults(semesterTest.getId(), null, STUDENT_ANSWERS, false);
+
+        assertEquals(3, provisioned);
+        List<Result> results = resultsOfTest();
+        assertEquals(List.of(101L, 102L, 103L), results.stream().map(Result::getStudentId).sorted().toList());
+        for (Result result : results) {
+            assertNull(result.getStartDateTime());
+            assertNull(result.getSubmitDateTime());
+            assertNull(result.getShuffleSeed());
+            assertEquals(result.getStudentId(), result.getExamStudentId());
+            assertFalse(result.getStudentAnswers().get("0").get("flagged").asBoolean());
+        }
+    }
+
+    /*
+     * 2. Gọi lại provisionResults không tạo thêm, học viên đã vào thi trước đó được bỏ qua
+     * - Given: Học viên 101 đã vào thi trước khi mở bài, đã tạo sẵn 1 lần
+     * - When: Mở lại bài thi (tạo sẵn lần 2, có xáo đề) sau khi thêm học viên 103
+     * - Then: Chỉ tạo thêm Result cho học viên 103, Result đã có giữ nguyên
+     */
+    @Test
+    @DisplayName("provisionResults is idempotent and skips students who already have a result")
+    void testProvisionIsIdempotent() {
+        enroll(101L, position);
+        enroll(102L, position);
+        Result started = attempt(101L, LocalDateTime.now().minusMinutes(5), null, null);
+
+        assertEquals(1, resultRepository.provisionResults(semesterTest.getId(), null, STUDENT_ANSWERS, false));
+
+        enroll(103L, position);
+        assertEquals(1, resultRepository.provisionResults(semesterTest.getId(), null, STUDENT_ANSWERS, true));
+        assertEquals(0, resultRepository.provisionResults(semesterTest.getId(), null, STUDENT_ANSWERS, true));
+
+        List<Result> results = resultsOfTest();
+        assertEquals(3, results.size());
+        Result kept = results.stream().filter(r -> r.getStudentId().equals(101L)).findFirst().orElseThrow();
+        assertEquals(started.getId(), kept.getId());
+        assertNotNull(kept.getStartDateTime());
+        Result late = results.stream().filter(r -> r.getStudentId().equals(103L)).findFirst().orElseThrow();
+        assertNotNull(late.getShuffleSeed());
+    }
+
+    /*
+     * 3. insertExamAttempt cho học viên đã có lượt thi (tạo sẵn) không trả về id, không tạo thêm
+     * - Given: Học viên 101 có Result tạo sẵn
+     * - When: Học viên 101 và 102 bắt đầu thi
+     * - Then: 101 không được tạo lượt mới, 102 có lượt thi đã bắt đầu
+     */
+    @Test
+    @DisplayName("insertExamAttempt does nothing when the student already has an exam attempt")
+    void testInsertExamAttemptSkipsExistingAttempt() {
+        enroll(101L, position);
+        resultRepository.provisionResults(semesterTest.getId(), null, STUDENT_ANSWERS, false);
+        LocalDateTime now = LocalDateTime.now();
+
+        assertTrue(insertAttempt(101L, now).isEmpty());
+        Optional<Long> created = insertAttempt(102L, now);
+
+        assertTrue(created.isPresent());
+        assertEquals(2, resultsOfTest().size());
+        Result result = resultRepository.findById(created.get()).orElseThrow();
+        assertEquals(102L, result.getExamStudentId());
+        assertNotNull(result.getStartDateTime());
+        assertEquals(42L, result.getShuffleSeed());
+    }
+
+    /*
+     * 4. 2 lần bắt đầu thi cùng lúc của 1 học viên chỉ tạo được 1 lượt thi
+     * - Given: Lần bắt đầu thứ nhất đã INSERT nhưng chưa commit
+     * - When: Lần bắt đầu thứ hai INSERT cùng học viên trên connection khác
+     * - Then: Lần thứ hai chờ unique index tới khi lần thứ nhất commit rồi không tạo gì,
+     *   bảng chỉ có 1 Result của học viên
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Concurrent starts of the same student create a single exam attempt")
+    void testConcurrentStartsCreateOneAttempt() throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Long>> first = executor.submit(() -> transactionTemplate.execute(status -> {
+                Optional<Long> id = insertAttempt(101L, LocalDateTime.now());
+                inserted.countDown();
+                awaitLatch(commit);
+                return id;
+            }));
+            assertTrue(inserted.await(10, TimeUnit.SECONDS));
+
+            Future<Optional<Long>> second = executor.submit(
+                    () -> transactionTemplate.execute(status -> insertAttempt(101L, LocalDateTime.now())));
+            Thread.sleep(300);
+            assertFalse(second.isDone(), "Second insert must wait for the first on uk_result_exam_attempt");
+
+            commit.countDown();
+            assertTrue(first.get(10, TimeUnit.SECONDS).isPresent());
+            assertTrue(second.get(10, TimeUnit.SECONDS).isEmpty());
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(1, resultsOfTest().size());
+    }
+
+    /*
+     * 5. Roster đã nộp / đang làm chỉ xét lượt gần nhất của mỗi học viên
+     * - Given: Roster mẫu (học viên 102 có lượt cũ đã nộp và lượt mới đang làm)
+     * - When: Lấy danh sách đã nộp và đang làm
+     * - Then: Đã nộp = 101, 106; đang làm = 102 (lượt mới), 103
+     */
+    @Test
+    @DisplayName("Submitted and in-progress rosters only consider each student's latest attempt")
+    void testRosterUsesLatestAttempt() {
+        Long latestOf102 = createRoster();
+
+        List<ResultStatusProjection> submitted = resultRepository.findSubmittedRoster(semesterTest.getId(),
+                Long.MIN_VALUE, 10);
+        assertEquals(List.of(101L, 106L), studentIds(submitted));
+        assertEquals(9.5f, submitted.get(1).getScore());
+
+        List<ResultStatusProjection> inProgress = resultRepository.findInProgressRoster(semesterTest.getId(),
+                Long.MIN_VALUE, 10);
+        assertEquals(List.of(102L, 103L), studentIds(inProgress));
+        assertEquals(latestOf102, inProgress.get(0).getId());
+        assertNull(inProgress.get(0).getSubmitDateTime());
+    }
+
+    /*
+     * 6. Roster chưa thi gồm học viên chưa có Result và Result tạo sẵn chưa bắt đầu, chỉ trong position của bài
+     * - Given: Roster mẫu (104 có Result tạo sẵn, 105 chưa có Result, 201 khác position)
+     * - When: Lấy danh sách chưa thi
+     * - Then: 104, 105 (mỗi học viên 1 dòng, không có resultId)
+     */
+    @Test
+    @DisplayName("Not-started roster lists enrolled students without a started attempt")
+    void testNotStartedRoster() {
+        createRoster();
+
+        List<ResultStatusProjection> notStarted = resultRepository.findNotStartedRoster(semesterTest.getId(),
+                Long.MIN_VALUE, 10);
+
+        assertEquals(List.of(104L, 105L), studentIds(notStarted));
+        assertTrue(notStarted.stream().allMatch(r -> r.getId() == null && r.getStartDateTime() == null));
+    }
+
+    /*
+     * 7. Phân trang keyset theo student_id đi hết danh sách, không trùng không sót
+     * - Given: Roster mẫu
+     * - When: Lấy từng trang 1 dòng, trang sau bắt đầu sau student_id cuối của trang trước
+     * - Then: Các trang nối lại đúng bằng danh sách đầy đủ của mỗi trạng thái
+     */
+    @Test
+    @DisplayName("Keyset pagination walks every roster without gaps or duplicates")
+    void testRosterKeysetPagination() {
+        createRoster();
+
+        assertEquals(List.of(101L, 106L), walkPages(resultRepository::findSubmittedRoster));
+        assertEquals(List.of(102L, 103L), walkPages(resultRepository::findInProgressRoster));
+        assertEquals(List.of(104L, 105L), walkPages(resultRepository::findNotStartedRoster));
+        assertTrue(resultRepository.findSubmittedRoster(semesterTest.getId(), 101L, 10).stream()
+                .noneMatch(r -> r.getStudentId() <= 101L));
+    }
+
+    /*
+     * 8. countRoster khớp với số dòng của 3 danh sách
+     * - Given: Roster mẫu
+     * - When: Đếm theo trạng thái
+     * - Then: Đã nộp 2, đang làm 2, chưa thi 2
+     */
+    @Test
+    @DisplayName("countRoster matches the three roster lists")
+    void testCountRoster() {
+        createRoster();
+
+        RosterCountsProjection counts = resultRepository.countRoster(semesterTest.getId());
+
+        assertEquals(2L, counts.getSubmitted());
+        assertEquals(2L, counts.getInProgress());
+        assertEquals(2L, counts.getNotStarted());
+    }
+
+    /**
+     * Roster mẫu, trả về id lượt mới của học viên 102:
+     * 101 đã nộp, 102 lượt cũ đã nộp + lượt mới đang làm, 103 đang làm, 104 tạo sẵn chưa vào,
+     * 105 chưa có Result, 106 đã nộp, 201 khác position
+     */
+    private Long createRoster() {
+        for (long studentId = 101; studentId <= 106; studentId++) {
+            enroll(studentId, position);
+        }
+        enroll(201L, otherPosition);
+
+        LocalDateTime now = LocalDateTime.now();
+        attempt(101L, now.minusMinutes(50), now.minusMinutes(10), 8f);
+        // Lượt cũ từ trước khi có exam_student_id nên không vướng uk_result_exam_attempt
+        Result older = new Result();
+        older.setSemesterTest(semesterTest);
+        older.setStudentId(102L);
+        older.setStartDateTime(now.minusDays(1));
+        older.setSubmitDateTime(now.minusDays(1).plusMinutes(30));
+        older.setScore(4f);
+        resultRepository.saveAndFlush(older);
+        Long latestOf102 = attempt(102L, now.minusMinutes(20), null, null).getId();
+        attempt(103L, now.minusMinutes(15), null, null);
+        attempt(104L, null, null, null);
+        attempt(106L, now.minusMinutes(40), now.minusMinutes(5), 9.5f);
+        return latestOf102;
+    }
+
+    private List<Long> walkPages(RosterPage page) {
+        List<Long> studentIds = new ArrayList<>();
+        long after = Long.MIN_VALUE;
+        while (true) {
+            List<ResultStatusProjection> rows = page.fetch(semesterTest.getId(), after, 1);
+            if (rows.isEmpty()) {
+                return studentIds;
+            }
+            assertEquals(1, rows.size());
+            after = rows.get(0).getStudentId();
+            studentIds.add(after);
+        }
+    }
+
+    private static List<Long> studentIds(List<ResultStatusProjection> rows) {
+        return rows.stream().map(ResultStatusProjection::getStudentId).toList();
+    }
+
+    @FunctionalInterface
+    private interface RosterPage {
+        List<ResultStatusProjection> fetch(Long semesterTestId, Long afterStudentId, int limit);
+    }
+
+    private Optional<Long> insertAttempt(Long studentId, LocalDateTime startDateTime) {
+        return resultRepository.insertExamAttempt(semesterTest.getId(), studentId, null, STUDENT_ANSWERS, 42L,
+                startDateTime);
+    }
+
+    private void enroll(Long accountId, Position accountPosition) {
+        SemesterAccount semesterAccount = new SemesterAccount();
+        semesterAccount.setSemester(semester);
+        semesterAccount.setAccountId(accountId);
+        semesterAccount.setPosition(accountPosition);
+        semesterAccount.setCreatedBy(adminId);
+        semesterAccountRepository.save(semesterAccount);
+    }
+
+    // Lượt thi EXAM tạo qua JPA (như lúc bắt đầu thi khi chưa tạo sẵn)
+    private Result attempt(Long studentId, LocalDateTime startDateTime, LocalDateTime submitDateTime, Float score) {
+        Result result = new Result();
+        result.setSemesterTest(semesterTest);
+        result.setStudentId(studentId);
+        result.setExamStudentId(studentId);
+        result.setStartDateTime(startDateTime);
+        result.setSubmitDateTime(submitDateTime);
+        result.setScore(score);
+        return resultRepository.saveAndFlush(result);
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Result> resultsOfTest() {
+        return resultRepository.findAll().stream()
+                .filter(r -> r.getSemesterTest().getId().equals(semesterTest.getId()))
+                .toList();
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.learnservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.example.learnservice.repository.ResultRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AnswerBufferServiceTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Các lần sửa cùng 1 câu được gộp, 1 result flush bằng 1 câu UPDATE
+     * 2. Thay đổi có seq cũ hơn không ghi đè thay đổi mới hơn
+     * 3. Nhiều thread cùng ghi + flush: mỗi thay đổi được flush đúng 1 lần
+     * 4. Flush lỗi thì đưa lại vào bộ đệm, thay đổi mới hơn được giữ
+     * 5. Bài đã nộp trước khi flush: thay đổi bị bỏ được đếm lại
+     * 6. Tắt service thì flush hết bộ đệm
+     * 7. seq tách theo field: flag có seq lớn hơn không chặn đáp án có seq nhỏ hơn
+     * 8. Không khởi động khi bật cùng answer-log hoặc chạy nhiều node (room.backend=redis)
+     * 9. Flush theo SemesterTest chỉ ghi các Result của test đó
+     */
+
+    private static final long TEST_ID = 10L;
+
+    private ResultRepository resultRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private AnswerBufferService answerBufferService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        resultRepository = mock(ResultRepository.class);
+        when(resultRepository.mergeStudentAnswers(anyLong(), anyLong(), anyString())).thenReturn(1);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        meterRegistry = new SimpleMeterRegistry();
+
+        answerBufferService = new AnswerBufferService(resultRepository, objectMapper, transactionManager,
+                meterRegistry);
+        ReflectionTestUtils.setField(answerBufferService, "enabled", true);
+        ReflectionTestUtils.setField(answerBufferService, "maxPendingResults", 10000);
+    }
+
+    /*
+     * 1. Các lần sửa cùng 1 câu được gộp, 1 result flush bằng 1 câu UPDATE
+     */
+    @Test
+    void testEditsAreMergedIntoOnePatch() throws Exception {
+        answerBufferService.bufferAnswer(1L, TEST_ID, 0, List.of(1));
+        answerBufferService.bufferAnswer(1L, TEST_ID, 0, List.of(2, 3));
+        answerBufferService.bufferFlag(1L, TEST_ID, 0, true);
+        answerBufferService.bufferFlag(1L, TEST_ID, 4, true);
+
+        answerBufferService.flush(1L);
+
+        JsonNode patch = capturePatches(1).get(0);
+        assertEquals(2, patch.size());
+        assertEquals("[2,3]", patch.get("0").get("selectedAnswers").toString());
+        assertTrue(patch.get("0").get("flagged").asBoolean());
+        assertTrue(patch.get("0").has("answeredAt"));
+        assertFalse(patch.get("4").has("selectedAnswers"));
+        assertFalse(answerBufferService.hasPending(1L));
+        assertEquals(2, meterRegistry.get("learn.exam.answer_buffer.merged").counter().count());
+    }
+
+    /*
+     * 2. Thay đổi có seq cũ hơn không ghi đè thay đổi mới hơn
+     */
+    @Test
+    void testStaleSequencedEditIsIgnored() throws Exception {
+        answerBufferService.bufferUpdate(1L, TEST_ID, 0, List.of(2), null, 5L);
+        answerBufferService.bufferUpdate(1L, TEST_ID, 0, List.of(1), null, 4L);
+
+        answerBufferService.flush(1L);
+
+        JsonNode question = capturePatches(1).get(0).get("0");
+        assertEquals("[2]", question.get("selectedAnswers").toString());
+        assertEquals(5L, question.get("selectedSeq").asLong());
+    }
+
+    /*
+     * 3. Nhiều thread cùng ghi + flush: mỗi thay đổi được flush đúng 1 lần
+     */
+    @Test
+    void testConcurrentBufferAndFlush() throws Exception {
+        int threads = 8;
+        int questionsPerThread = 200;
+        List<String> patches = Collections.synchronizedList(new ArrayList<>());
+        when(resultRepository.mergeStudentAnswers(anyLong(), anyLong(), anyString())).thenAnswer(invocation -> {
+            patches.add(invocation.getArgument(2));
+            return 1;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * questionsPerThread;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < questionsPerThread; i++) {
+                    answerBufferService.bufferFlag(1L, TEST_ID, offset + i, true);
+                    if (i % 10 == 0) {
+                        answerBufferService.flush(1L);
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        answerBufferService.flushAll();
+
+        Set<String> flushed = new HashSet<>();
+        int total = 0;
+        for (String patch : patches) {
+            Iterator<String> names = objectMapper.readTree(patch).fieldNames();
+            while (names.hasNext()) {
+                flushed.add(names.next());
+                total++;
+            }
+        }
+        assertEquals(threads * questionsPerThread, flushed.size());
+        assertEquals(threads * questionsPerThread, total);
+        assertEquals(0.0, meterRegistry.get("learn.exam.answer_buffer.pending_edits").gauge().value());
+    }
+
+    /*
+     * 4. Flush lỗi thì đưa lại vào bộ đệm, thay đổi mới hơn được giữ
+     */
+    @Test
+    void testFailedFlushIsRequeued() throws Exception {
+        when(resultRepository.mergeStudentAnswers(anyLong(), anyLong(), anyString()))
+                .thenThrow(new IllegalStateException("connection lost"))
+                .thenReturn(1);
+
+        answerBufferService.bufferAnswer(1L, TEST_ID, 0, List.of(1));
+        answerBufferService.bufferFlag(1L, TEST_ID, 1, true);
+        answerBufferService.flush(1L);
+
+        assertTrue(answerBufferService.hasPending(1L));
+        assertEquals(1, meterRegistry.get("learn.exam.answer_buffer.flush_failures").counter().count());
+
+        answerBufferService.bufferAnswer(1L, TEST_ID, 0, List.of(2));
+        answerBufferService.flush(1L);
+
+        List<JsonNode> patches = capturePatches(2);
+        JsonNode retried = patches.get(1);
+        assertEquals("[2]", retried.get("0").get("selectedAnswers").toString());
+        assertTrue(retried.get("1").get("flagged").asBoolean());
+        assertFalse(answerBufferService.hasPending(1L));
+    }
+
+    /*
+     * 5. Bài đã nộp trước khi flush: thay đổi bị bỏ được đếm lại
+     */
+    @Test
+    void testEditsOfSubmittedResultAreCounted() {
+        when(resultRepository.mergeStudentAnswers(eq(1L), eq(TEST_ID), anyString())).thenReturn(0);
+
+        answerBufferService.bufferAnswer(1L, TEST_ID, 0, List.of(1));
+        answerBufferService.bufferAnswer(1L, TEST_ID, 1, List.of(2));
+        answerBufferService.flush(1L);
+
+        assertFalse(answerBufferService.hasPending(1L));
+        assertEquals(2, meterRegistry.get("learn.exam.answer_buffer.dropped").counter().count());
+    }
+
+    /*
+     * 6. Tắt service thì flush hết bộ đệm
+     */
+    @Test
+    void testShutdownFlushesEverything() {
+        answerBufferService.bufferAnswer(1L, TEST_ID, 0, List.of(1));
+        answerBufferService.bufferAnswer(2L, TEST_ID, 0, List.of(1));
+
+        answerBufferService.onShutdown();
+
+        verify(resultRepository).mergeStudentAnswers(eq(1L), eq(TEST_ID), anyString());
+        verify(resultRepository).mergeStudentAnswers(eq(2L), eq(TEST_ID), anyString());
+        assertFalse(answerBufferService.hasPending(1L));
+        assertFalse(answerBufferService.hasPending(2L));
+    }
+
+    /*
+     * 7. seq tách theo field: flag có seq lớn hơn không chặn đáp án có seq nhỏ hơn
+     */
+    @Test
+    void testSeqIsTrackedPerField() throws Exception {
+        answerBufferService.bufferUpdate(1L, TEST_ID, 0, null, true, 6L);
+        answerBufferService.bufferUpdate(1L, TEST_ID, 0, List.of(3), null, 5L);
+        answerBufferService.bufferUpdate(1L, TEST_ID, 0, null, false, 4L);
+
+        answerBufferService.flush(1L);
+
+        JsonNode question = capturePatches(1).get(0).get("0");
+        assertEquals("[3]", question.get("selectedAnswers").toString());
+        assertEquals(5L, question.get("selectedSeq").asLong());
+        assertTrue(question.get("flagged").asBoolean());
+        assertEquals(6L, question.get("flaggedSeq").asLong());
+    }
+
+    /*
+     * 8. Không khởi động khi bật cùng answer-log hoặc chạy nhiều node (room.backend=redis)
+     */
+    @Test
+    void testConflictingConfigFailsStartup() {
+        ReflectionTestUtils.setField(answerBufferService, "roomBackend", "memory");
+        assertDoesNotThrow(answerBufferService::checkConfig);
+
+        ReflectionTestUtils.setField(answerBufferService, "answerLogEnabled", true);
+        assertThrows(IllegalStateException.class, answerBufferService::checkConfig);
+
+        ReflectionTestUtils.setField(answerBufferService, "answerLogEnabled", false);
+        ReflectionTestUtils.setField(answerBufferService, "roomBackend", "redis");
+        assertThrows(IllegalStateException.class, answerBufferService::checkConfig);
+
+        ReflectionTestUtils.setField(answerBufferService, "enabled", false);
+        assertDoesNotThrow(answerBufferService::checkConfig);
+    }
+
+    /*
+     * 9. Flush theo SemesterTest chỉ ghi các Result của test đó
+     */
+    @Test
+    void testFlushTestOnlyFlushesThatTest() {
+        answerBufferService.bufferAnswer(1L, TEST_ID, 0, List.of(1));
+        answerBufferService.bufferAnswer(2L, TEST_ID + 1, 0, List.of(1));
+
+        answerBufferService.flushTest(TEST_ID);
+
+        verify(resultRepository).mergeStudentAnswers(eq(1L), eq(TEST_ID), anyString());
+        verify(resultRepository, never()).mergeStudentAnswers(eq(2L), anyLong(), anyString());
+        assertFalse(answerBufferService.hasPending(1L));
+        assertTrue(answerBufferService.hasPending(2L));
+    }
+
+    private List<JsonNode> capturePatches(int times) throws Exception {
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(resultRepository, times(times)).mergeStudentAnswers(eq(1L), eq(TEST_ID), captor.capture());
+        List<JsonNode> patches = new ArrayList<>();
+        for (String patch : captor.getAllValues()) {
+            patches.add(objectMapper.readTree(patch));
+        }
+        return patches;
+    }
+}
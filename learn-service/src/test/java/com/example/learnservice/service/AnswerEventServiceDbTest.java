@@ -0,0 +1,255 @@
+package com.example.learnservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.learnservice.BaseIntegrationTest;
+import com.example.learnservice.enums.TestType;
+import com.example.learnservice.model.Result;
+import com.example.learnservice.model.Semester;
+import com.example.learnservice.model.SemesterTest;
+import com.example.learnservice.repository.ResultAnswerEventRepository;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.repository.SemesterRepository;
+import com.example.learnservice.repository.SemeterTestRepository;
+import com.example.learnservice.repository.TestRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Ghi answer-log song song với lần nộp bài. Các lần ghi và lần nộp chạy trên
+ * connection riêng nên test không chạy trong transaction của BaseIntegrationTest,
+ * dữ liệu được xóa sau mỗi test.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AnswerEventServiceDbTest extends BaseIntegrationTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Lần nộp chờ lần ghi đang chạy commit, đáp án đó được tính
+     * 2. Ghi sau lần nộp (cache của node còn cũ) thì trả 409, không có sự kiện nào được ghi
+     * 3. Ghi liên tục trong lúc nộp: mọi lần ghi đã trả về thành công đều có trong bài đã nộp
+     */
+
+    @Autowired
+    private SemesterTestService semesterTestService;
+
+    @Autowired
+    private AnswerEventService answerEventService;
+
+    @Autowired
+    private AttemptCacheService attemptCacheService;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private ResultAnswerEventRepository resultAnswerEventRepository;
+
+    @Autowired
+    private SemesterRepository semesterRepository;
+
+    @Autowired
+    private TestRepository testRepository;
+
+    @Autowired
+    private SemeterTestRepository semesterTestRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Long studentId = 100L;
+    private final Long adminId = 1L;
+    private SemesterTest semesterTest;
+    private Result result;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        Semester semester = new Semester();
+        semester.setName("Semester 2024");
+        semester.setStartDate(LocalDateTime.now().minusDays(30));
+        semester.setEndDate(LocalDateTime.now().plusDays(60));
+        semester.setCreatedBy(adminId);
+        semester = semesterRepository.save(semester);
+
+        com.example.learnservice.model.Test test = new com.example.learnservice.model.Test();
+        test.setName("Answer log test");
+        test.setVisible(true);
+        test.setCreatedBy(adminId);
+        test = testRepository.save(test);
+
+        semesterTest = new SemesterTest();
+        semesterTest.setName("Midterm Exam");
+        semesterTest.setSemester(semester);
+        semesterTest.setTest(test);
+        semesterTest.setType(TestType.EXAM);
+        semesterTest.setMinutes(60);
+        semesterTest.setStartDate(LocalDateTime.now().minusHours(1));
+        semesterTest.setEndDate(LocalDateTime.now().plusHours(2));
+        semesterTest.setOpen(true);
+        semesterTest.setCreatedBy(adminId);
+        semesterTest = semesterTestRepository.save(semesterTest);
+
+        result = new Result();
+        result.setSemesterTest(semesterTest);
+        result.setStudentId(studentId);
+        result.setStartDateTime(LocalDateTime.now().minusMinutes(10));
+        ObjectNode studentAnswers = objectMapper.createObjectNode();
+        for (String index : List.of("0", "1")) {
+            ObjectNode answer = objectMapper.createObjectNode();
+            answer.set("selectedAnswers", objectMapper.createArrayNode());
+            answer.put("flagged", false);
+            answer.putNull("answeredAt");
+            studentAnswers.set(index, answer);
+        }
+        result.setStudentAnswers(studentAnswers);
+        ObjectNode trueAnswers = objectMapper.createObjectNode();
+        trueAnswers.set("0", objectMapper.createArrayNode().add(1));
+        trueAnswers.set("1", objectMapper.createArrayNode().add(1));
+        result.setTrueAnswers(trueAnswers);
+        result = resultRepository.save(result);
+
+        ReflectionTestUtils.setField(answerEventService, "enabled", true);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        ReflectionTestUtils.setField(answerEventService, "enabled", false);
+        attemptCacheService.invalidate(result.getId());
+        resultAnswerEventRepository.deleteAll();
+        resultRepository.deleteAll();
+        semesterTestRepository.deleteAll();
+        testRepository.deleteAll();
+        semesterRepository.deleteAll();
+    }
+
+    /*
+     * 1. Lần nộp chờ lần ghi đang chạy commit, đáp án đó được tính
+     * - Given: 1 lần ghi đáp án câu 1 đã INSERT nhưng chưa commit
+     * - When: Student nộp bài
+     * - Then: Lần nộp chờ tới khi lần ghi commit, bài đã nộp có đáp án đó
+     */
+    @Test
+    @DisplayName("Submit waits for an in-flight append and applies it")
+    void testSubmitWaitsForInFlightAppend() throws Exception {
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Future<Boolean> append = executor.submit(() -> transactionTemplate.execute(status -> {
+            boolean ok = answerEventService.recordAnswer(result.getId(), semesterTest.getId(), 1, List.of(1),
+                    null, null);
+            appended.countDown();
+            awaitLatch(commit);
+            return ok;
+        }));
+        assertTrue(appended.await(10, TimeUnit.SECONDS));
+
+        Future<Float> submit = executor.submit(() -> semesterTestService.endTest(result.getId(), studentId));
+        Thread.sleep(300);
+        assertFalse(submit.isDone(), "Submit must wait for the append holding FOR SHARE");
+
+        commit.countDown();
+        assertTrue(append.get(10, TimeUnit.SECONDS));
+        submit.get(10, TimeUnit.SECONDS);
+
+        assertEquals("[1]", storedAnswer("1").get("selectedAnswers").toString());
+        assertTrue(resultRepository.findById(result.getId()).orElseThrow().getSubmitDateTime() != null);
+    }
+
+    /*
+     * 2. Ghi sau lần nộp (cache của node còn cũ) thì trả 409, không có sự kiện nào được ghi
+     * - Given: Cache lượt làm bài đã nạp, bài được nộp ở node khác (cache không bị xóa)
+     * - When: Student chọn đáp án qua node này
+     * - Then: 409 Conflict, log không có sự kiện mới
+     */
+    @Test
+    @DisplayName("Append after submit is rejected with 409 even with a stale attempt cache")
+    void testAppendAfterSubmitIsRejected() {
+        attemptCacheService.getAttempt(result.getId());
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> resultRepository.submit(result.getId(), LocalDateTime.now(), 0f));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> semesterTestService.selectAnswer(result.getId(), 1, List.of(1), null, null, studentId));
+        assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+        assertTrue(answerEventService.getTimeline(result.getId()).isEmpty());
+    }
+
+    /*
+     * 3. Ghi liên tục trong lúc nộp: mọi lần ghi đã trả về thành công đều có trong bài đã nộp
+     * - Given: 1 thread đổi đáp án câu 1 liên tục tới khi bị từ chối
+     * - When: Student nộp bài giữa chừng
+     * - Then: Đáp án đã lưu của câu 1 là đáp án của lần ghi thành công cuối cùng
+     */
+    @Test
+    @DisplayName("Every acknowledged append is part of the submitted answers")
+    void testAppendsRacingSubmitAreNeverLost() throws Exception {
+        CountDownLatch firstAppend = new CountDownLatch(1);
+        Future<Integer> writer = executor.submit(() -> {
+            Integer lastAcknowledged = null;
+            for (int i = 0; i < 10000; i++) {
+                int choice = i % 3;
+                try {
+                    semesterTestService.selectAnswer(result.getId(), 1, List.of(choice), null, null, studentId);
+                } catch (ResponseStatusException e) {
+                    assertTrue(e.getStatusCode() == HttpStatus.CONFLICT
+                            || e.getStatusCode() == HttpStatus.BAD_REQUEST);
+                    return lastAcknowledged;
+                }
+                lastAcknowledged = choice;
+                firstAppend.countDown();
+            }
+            fail("Appends were never rejected after submit");
+            return null;
+        });
+        assertTrue(firstAppend.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        semesterTestService.endTest(result.getId(), studentId);
+
+        Integer lastAcknowledged = writer.get(30, TimeUnit.SECONDS);
+        assertNotNull(lastAcknowledged);
+        assertEquals("[" + lastAcknowledged + "]", storedAnswer("1").get("selectedAnswers").toString());
+    }
+
+    private JsonNode storedAnswer(String questionIndex) throws Exception {
+        return objectMapper.readTree(
+                resultRepository.findStudentAnswerByIndex(result.getId(), questionIndex).orElseThrow());
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.learnservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.learnservice.model.Result;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ExamAdmissionServiceTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Tắt service thì chạy startTest trực tiếp
+     * 2. Request trùng của cùng học viên dùng chung kết quả, startTest chạy 1 lần
+     * 3. Request trùng nhận cùng lỗi với request đầu
+     * 4. Số startTest chạy cùng lúc không vượt max-concurrent
+     * 5. Cổng đầy quá queue-timeout-ms thì trả 503
+     */
+
+    private static final long TEST_ID = 10L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExamAdmissionService examAdmissionService;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        examAdmissionService = new ExamAdmissionService(meterRegistry);
+        ReflectionTestUtils.setField(examAdmissionService, "enabled", true);
+        ReflectionTestUtils.setField(examAdmissionService, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(examAdmissionService, "queueTimeoutMillis", 5000L);
+        examAdmissionService.init();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /*
+     * 1. Tắt service thì chạy startTest trực tiếp
+     */
+    @Test
+    void testDisabledRunsStarterDirectly() {
+        ReflectionTestUtils.setField(examAdmissionService, "enabled", false);
+        Result result = new Result();
+
+        assertSame(result, examAdmissionService.start(TEST_ID, 1L, () -> result));
+        assertEquals(0, meterRegistry.get("learn.exam.admission.coalesced").counter().count());
+    }
+
+    /*
+     * 2. Request trùng của cùng học viên dùng chung kết quả, startTest chạy 1 lần
+     */
+    @Test
+    void testDuplicateStartsAreCoalesced() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Result result = new Result();
+
+        Future<Result> first = executor.submit(() -> examAdmissionService.start(TEST_ID, 1L, () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return result;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Result> duplicate = executor.submit(() -> examAdmissionService.start(TEST_ID, 1L, () -> {
+            calls.incrementAndGet();
+            return new Result();
+        }));
+        waitFor(() -> meterRegistry.get("learn.exam.admission.coalesced").counter().count() == 1);
+        release.countDown();
+
+        assertSame(result, first.get(5, TimeUnit.SECONDS));
+        assertSame(result, duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(0.0, meterRegistry.get("learn.exam.admission.in_flight").gauge().value());
+    }
+
+    /*
+     * 3. Request trùng nhận cùng lỗi với request đầu
+     */
+    @Test
+    void testDuplicateStartReceivesSameError() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Result> first = executor.submit(() -> examAdmissionService.start(TEST_ID, 1L, () -> {
+            started.countDown();
+            await(release);
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Test is not open");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Result> duplicate = executor.submit(() -> examAdmissionService.start(TEST_ID, 1L, Result::new));
+        waitFor(() -> meterRegistry.get("learn.exam.admission.coalesced").counter().count() == 1);
+        release.countDown();
+
+        for (Future<Result> future : List.of(first, duplicate)) {
+            Exception e = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+            ResponseStatusException cause = assertInstanceOf(ResponseStatusException.class, e.getCause());
+            assertEquals(HttpStatus.FORBIDDEN, cause.getStatusCode());
+        }
+    }
+
+    /*
+     * 4. Số startTest chạy cùng lúc không vượt max-concurrent
+     */
+    @Test
+    void testConcurrentStartsAreLimited() throws Exception {
+        int students = 8;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<Result>> futures = new ArrayList<>();
+        for (long studentId = 1; studentId <= students; studentId++) {
+            long id = studentId;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return examAdmissionService.start(TEST_ID, id, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(20);
+                    running.decrementAndGet();
+                    return new Result();
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<Result> future : futures) {
+            assertNotNull(future.get(10, TimeUnit.SECONDS));
+        }
+
+        assertTrue(maxRunning.get() <= 2);
+        assertEquals(0, meterRegistry.get("learn.exam.admission.rejected").counter().count());
+    }
+
+    /*
+     * 5. Cổng đầy quá queue-timeout-ms thì trả 503
+     */
+    @Test
+    void testFullGateRejectsAfterTimeout() throws Exception {
+        ReflectionTestUtils.setField(examAdmissionService, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(examAdmissionService, "queueTimeoutMillis", 50L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Result> holder = executor.submit(() -> examAdmissionService.start(TEST_ID, 1L, () -> {
+            started.countDown();
+            await(release);
+            return new Result();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> examAdmissionService.start(TEST_ID, 2L, Result::new));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals(1, meterRegistry.get("learn.exam.admission.rejected").counter().count());
+
+        release.countDown();
+        assertNotNull(holder.get(5, TimeUnit.SECONDS));
+        // Test khác có cổng riêng
+        assertNotNull(examAdmissionService.start(TEST_ID + 1, 2L, Result::new));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for condition");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.learnservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.example.learnservice.controller.WebSocketController.RoomDelta;
+import com.example.learnservice.controller.WebSocketController.RoomEvent;
+import com.example.learnservice.controller.WebSocketController.TestRoomUpdate;
+import com.example.learnservice.controller.WebSocketController.TestStatus;
+import com.example.learnservice.controller.WebSocketController.UserStatus;
+
+public class InMemoryRoomBackendTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Bộ đếm theo trạng thái đúng qua vào / vào lại / đổi trạng thái / rời
+     * 2. Chỉ session đang giữ user mới xóa được user, owner null luôn xóa
+     * 3. Phòng trống bị xóa, version delta không quay về 0, user đã rời được báo LEFT
+     * 4. Vào / rời song song khiến phòng bị xóa và tạo lại liên tục: không user nào bị mất
+     */
+
+    private static final Long ROOM = 1L;
+
+    private SimpMessagingTemplate messagingTemplate;
+    private InMemoryRoomBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        backend = new InMemoryRoomBackend(messagingTemplate, event -> {
+        });
+    }
+
+    /*
+     * 1. Bộ đếm theo trạng thái đúng qua vào / vào lại / đổi trạng thái / rời
+     */
+    @Test
+    void testCountersFollowEveryChange() {
+        backend.join(ROOM, user(1L, TestStatus.WAITING), "s-1");
+        backend.join(ROOM, user(2L, TestStatus.WAITING), "s-2");
+        backend.join(ROOM, user(3L, TestStatus.TESTING), "s-3");
+        assertCounts(3, 2, 1);
+
+        // Vào lại với trạng thái khác thay trạng thái cũ, không đếm 2 lần
+        backend.join(ROOM, user(1L, TestStatus.TESTING), "s-1b");
+        assertCounts(3, 1, 2);
+
+        assertEquals(TestStatus.TESTING, backend.updateStatus(ROOM, 2L, TestStatus.TESTING).status());
+        assertNull(backend.updateStatus(ROOM, 2L, TestStatus.TESTING));
+        assertNull(backend.updateStatus(ROOM, 9L, TestStatus.TESTING));
+        assertCounts(3, 0, 3);
+
+        assertEquals(3L, backend.leave(ROOM, 3L, "s-3").userId());
+        assertNull(backend.leave(ROOM, 3L, "s-3"));
+        assertCounts(2, 0, 2);
+        assertEquals(List.of(1L, 2L), backend.snapshot(ROOM).users().stream()
+                .map(UserStatus::userId).sorted().toList());
+    }
+
+    /*
+     * 2. Chỉ session đang giữ user mới xóa được user, owner null luôn xóa
+     */
+    @Test
+    void testOnlyOwningSessionRemovesUser() {
+        backend.join(ROOM, user(1L, TestStatus.WAITING), "old");
+        backend.join(ROOM, user(1L, TestStatus.TESTING), "new");
+
+        assertNull(backend.leave(ROOM, 1L, "old"));
+        assertCounts(1, 0, 1);
+
+        assertEquals(1L, backend.leave(ROOM, 1L, "new").userId());
+        assertCounts(0, 0, 0);
+
+        backend.join(ROOM, user(2L, TestStatus.WAITING), "s-2");
+        assertEquals(2L, backend.leave(ROOM, 2L, null).userId());
+    }
+
+    /*
+     * 3. Phòng trống bị xóa, version delta không quay về 0, user đã rời được báo LEFT
+     */
+    @Test
+    void testEmptyRoomKeepsVersion() {
+        backend.join(ROOM, user(1L, TestStatus.WAITING), "s-1");
+        backend.publishChanges(ROOM, Map.of(1L, RoomEvent.JOINED));
+        backend.leave(ROOM, 1L, "s-1");
+        backend.publishChanges(ROOM, Map.of(1L, RoomEvent.LEFT));
+
+        TestRoomUpdate snapshot = backend.snapshot(ROOM);
+        assertEquals(0, snapshot.totalUsers());
+        assertEquals(2, snapshot.version());
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(2)).convertAndSend(eq("/topic/test/" + ROOM + "/users"), captor.capture());
+        RoomDelta last = (RoomDelta) captor.getAllValues().get(1);
+        assertEquals(2, last.version());
+        assertEquals(RoomEvent.LEFT, last.changes().get(0).event());
+        assertEquals(0, last.totalUsers());
+
+        backend.join(ROOM, user(2L, TestStatus.WAITING), "s-2");
+        backend.publishChanges(ROOM, Map.of(2L, RoomEvent.JOINED));
+        assertEquals(3, backend.snapshot(ROOM).version());
+    }
+
+    /*
+     * 4. Vào / rời song song khiến phòng bị xóa và tạo lại liên tục: không user nào bị mất
+     */
+    @Test
+    void testJoinRacingRoomRemoval() throws Exception {
+        int threads = 8;
+        int rounds = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long userId = t + 1;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < rounds; i++) {
+                    backend.join(ROOM, user(userId, TestStatus.WAITING), "s-" + userId);
+                    assertNotNull(backend.leave(ROOM, userId, "s-" + userId));
+                }
+                // Lần vào cuối có thể rơi đúng lúc phòng đang bị xóa
+                backend.join(ROOM, user(userId, TestStatus.TESTING), "s-" + userId);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertCounts(threads, 0, threads);
+    }
+
+    private void assertCounts(int total, int waiting, int testing) {
+        TestRoomUpdate snapshot = backend.snapshot(ROOM);
+        assertEquals(total, snapshot.totalUsers());
+        assertEquals(total, snapshot.users().size());
+        assertEquals(waiting, snapshot.waitingCount());
+        assertEquals(testing, snapshot.testingCount());
+    }
+
+    private static UserStatus user(Long userId, TestStatus status) {
+        return new UserStatus(userId, "Student " + userId, String.format("%012d", userId), status);
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.learnservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.learnservice.controller.WebSocketController.RoomEvent;
+import com.example.learnservice.controller.WebSocketController.TestRoomUpdate;
+import com.example.learnservice.controller.WebSocketController.TestStatus;
+import com.example.learnservice.controller.WebSocketController.UserStatus;
+import com.example.learnservice.service.ScoreStatsService.ScoreSubmitted;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@Testcontainers
+public class RedisRoomBackendTest {
+
+    /*
+     * Danh sách các test case (2 backend dùng chung 1 Redis như 2 node):
+     * 1. Vào / đổi trạng thái / rời trên node này thấy ngay ở node kia, bộ đếm khớp
+     * 2. Delta gửi từ 1 node tới client của mọi node, version tăng dần
+     * 3. User đã rời trước lúc gửi thì delta báo LEFT
+     * 4. Bài nộp gửi từ 1 node tới thống kê điểm của mọi node
+     * 5. User join lại qua node khác thì session cũ rời / bị reap không xóa được user
+     */
+
+    private static final Long ROOM = 1L;
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private LettuceConnectionFactory connectionFactory;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.serverCommands().flushAll();
+        }
+
+        nodeA = new Node();
+        nodeB = new Node();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.listener.stop();
+        nodeB.listener.stop();
+        connectionFactory.destroy();
+    }
+
+    /*
+     * 1. Vào / đổi trạng thái / rời trên node này thấy ngay ở node kia, bộ đếm khớp
+     */
+    @Test
+    void testStateIsShared() {
+        nodeA.backend.join(ROOM, user(1L, TestStatus.WAITING), "a-1");
+        nodeB.backend.join(ROOM, user(2L, TestStatus.WAITING), "b-2");
+
+        UserStatus updated = nodeB.backend.updateStatus(ROOM, 1L, TestStatus.TESTING);
+        assertEquals(TestStatus.TESTING, updated.status());
+        assertEquals("Student 1", updated.fullName());
+        assertNull(nodeA.backend.updateStatus(ROOM, 1L, TestStatus.TESTING));
+
+        TestRoomUpdate snapshot = nodeA.backend.snapshot(ROOM);
+        assertEquals(2, snapshot.totalUsers());
+        assertEquals(1, snapshot.waitingCount());
+        assertEquals(1, snapshot.testingCount());
+
+        assertEquals(2L, nodeA.backend.leave(ROOM, 2L, null).userId());
+        assertNull(nodeB.backend.leave(ROOM, 2L, null));
+
+        snapshot = nodeB.backend.snapshot(ROOM);
+        assertEquals(1, snapshot.totalUsers());
+        assertEquals(0, snapshot.waitingCount());
+        assertEquals(1, snapshot.testingCount());
+    }
+
+    /*
+     * 2. Delta gửi từ 1 node tới client của mọi node, version tăng dần
+     */
+    @Test
+    void testDeltaReachesEveryNode() throws Exception {
+        nodeA.backend.join(ROOM, user(1L, TestStatus.WAITING), "a-1");
+        nodeA.backend.publishChanges(ROOM, Map.of(1L, RoomEvent.JOINED));
+        nodeB.backend.updateStatus(ROOM, 1L, TestStatus.TESTING);
+        nodeB.backend.publishChanges(ROOM, Map.of(1L, RoomEvent.STATUS_CHANGED));
+
+        for (Node node : List.of(nodeA, nodeB)) {
+            List<JsonNode> deltas = node.await(2);
+            assertEquals(1, deltas.get(0).get("version").asLong());
+            assertEquals(2, deltas.get(1).get("version").asLong());
+            JsonNode change = deltas.get(1).get("changes").get(0);
+            assertEquals("STATUS_CHANGED", change.get("event").asText());
+            assertEquals("TESTING", change.get("user").get("status").asText());
+            assertEquals(1, deltas.get(1).get("testingCount").asInt());
+        }
+        assertEquals(2, nodeB.backend.snapshot(ROOM).version());
+    }
+
+    /*
+     * 3. User đã rời trước lúc gửi thì delta báo LEFT
+     */
+    @Test
+    void testLeftUserIsReportedAsLeft() throws Exception {
+        nodeA.backend.join(ROOM, user(1L, TestStatus.WAITING), "a-1");
+        nodeA.backend.join(ROOM, user(2L, TestStatus.WAITING), "a-2");
+        nodeB.backend.leave(ROOM, 1L, null);
+
+        Map<Long, RoomEvent> changes = new LinkedHashMap<>();
+        changes.put(1L, RoomEvent.JOINED);
+        changes.put(2L, RoomEvent.JOINED);
+        nodeA.backend.publishChanges(ROOM, changes);
+
+        JsonNode delta = nodeB.await(1).get(0);
+        assertEquals("LEFT", delta.get("changes").get(0).get("event").asText());
+        assertEquals(1, delta.get("changes").get(0).get("user").get("userId").asLong());
+        assertEquals("JOINED", delta.get("changes").get(1).get("event").asText());
+        assertEquals(1, delta.get("totalUsers").asInt());
+    }
+
+    /*
+     * 4. Bài nộp gửi từ 1 node tới thống kê điểm của mọi node
+     */
+    @Test
+    void testScoreReachesEveryNode() throws Exception {
+        nodeA.backend.publishScore(new ScoreSubmitted(ROOM, 7L, 8.5f));
+
+        for (Node node : List.of(nodeA, nodeB)) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (node.scores.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(List.of(new ScoreSubmitted(ROOM, 7L, 8.5f)), node.scores);
+        }
+        assertTrue(nodeA.messages.isEmpty());
+    }
+
+    /*
+     * 5. User join lại qua node khác thì session cũ rời / bị reap không xóa được user
+     */
+    @Test
+    void testStaleSessionCannotRemoveRejoinedUser() {
+        nodeA.backend.join(ROOM, user(1L, TestStatus.WAITING), "a-1");
+        nodeB.backend.join(ROOM, user(1L, TestStatus.TESTING), "b-1");
+
+        assertNull(nodeA.backend.leave(ROOM, 1L, "a-1"));
+        TestRoomUpdate snapshot = nodeA.backend.snapshot(ROOM);
+        assertEquals(1, snapshot.totalUsers());
+        assertEquals(1, snapshot.testingCount());
+
+        assertEquals(1L, nodeB.backend.leave(ROOM, 1L, "b-1").userId());
+        snapshot = nodeA.backend.snapshot(ROOM);
+        assertEquals(0, snapshot.totalUsers());
+        assertEquals(0, snapshot.testingCount());
+    }
+
+    private static UserStatus user(Long userId, TestStatus status) {
+        return new UserStatus(userId, "Student " + userId, String.format("%012d", userId), status);
+    }
+
+    /*
+     * 1 node: backend + listener pub/sub, broker được thay bằng channel ghi lại message
+     */
+    private class Node {
+        private final List<Message<?>> messages = new CopyOnWriteArrayList<>();
+        private final List<Object> scores = new CopyOnWriteArrayList<>();
+        private final RedisRoomBackend backend;
+        private final RedisMessageListenerContainer listener;
+
+        Node() {
+            SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> {
+                messages.add(message);
+                return true;
+            });
+            messagingTemplate.setMessageConverter(new MappingJackson2MessageConverter());
+            backend = new RedisRoomBackend(new StringRedisTemplate(connectionFactory), messagingTemplate,
+                    objectMapper, scores::add);
+            ReflectionTestUtils.setField(backend, "ttlHours", 1L);
+
+            listener = new RedisMessageListenerContainer();
+            listener.setConnectionFactory(connectionFactory);
+            listener.addMessageListener(backend, new ChannelTopic(RedisRoomBackend.CHANNEL));
+            listener.addMessageListener(backend, new ChannelTopic(RedisRoomBackend.SCORE_CHANNEL));
+            listener.afterPropertiesSet();
+            listener.start();
+        }
+
+        List<JsonNode> await(int count) throws Exception {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (messages.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(count, messages.size());
+            List<JsonNode> deltas = new ArrayList<>();
+            for (Message<?> message : messages) {
+                deltas.add(objectMapper.readTree((byte[]) message.getPayload()));
+            }
+            return deltas;
+        }
+    }
+}
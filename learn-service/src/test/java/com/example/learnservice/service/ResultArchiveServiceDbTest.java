@@ -0,0 +1,202 @@
+package com.example.learnservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.learnservice.BaseIntegrationTest;
+import com.example.learnservice.enums.TestType;
+import com.example.learnservice.model.Result;
+import com.example.learnservice.model.ResultArchive;
+import com.example.learnservice.model.Semester;
+import com.example.learnservice.model.SemesterTest;
+import com.example.learnservice.repository.ResultArchiveRepository;
+import com.example.learnservice.repository.ResultRepository;
+import com.example.learnservice.repository.SemesterRepository;
+import com.example.learnservice.repository.SemeterTestRepository;
+import com.example.learnservice.repository.TestRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Lưu trữ Result của kỳ học đã kết thúc và đọc lại qua getResultForDetail
+ */
+class ResultArchiveServiceDbTest extends BaseIntegrationTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Result của kỳ học đã kết thúc được chuyển sang result_archive và đọc lại đủ dữ liệu
+     * 2. Result đã lưu trữ của bài kiểm tra đã bị xóa trả 404
+     */
+
+    @Autowired
+    private ResultArchiveService resultArchiveService;
+
+    @Autowired
+    private SemesterTestService semesterTestService;
+
+    @Autowired
+    private ResultRepository resultRepository;
+
+    @Autowired
+    private ResultArchiveRepository resultArchiveRepository;
+
+    @Autowired
+    private SemesterRepository semesterRepository;
+
+    @Autowired
+    private TestRepository testRepository;
+
+    @Autowired
+    private SemeterTestRepository semesterTestRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Long studentId = 100L;
+    private final Long adminId = 1L;
+    private SemesterTest closedTest;
+    private SemesterTest activeTest;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(resultArchiveService, "enabled", true);
+        closedTest = createSemesterTest(LocalDateTime.now().minusDays(400), LocalDateTime.now().minusDays(200));
+        activeTest = createSemesterTest(LocalDateTime.now().minusDays(30), LocalDateTime.now().plusDays(60));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(resultArchiveService, "enabled", false);
+    }
+
+    /*
+     * 1. Result của kỳ học đã kết thúc được chuyển sang result_archive và đọc lại đủ dữ liệu
+     * - Given: 1 Result đã nộp của kỳ học kết thúc 200 ngày trước (có xáo đề, bộ đếm),
+     *   1 Result của kỳ học đang diễn ra
+     * - When: Chạy job lưu trữ rồi xem chi tiết Result đã lưu trữ
+     * - Then: Chỉ Result cũ bị chuyển; đọc lại có đủ JSONB, shuffleSeed, answeredCount, flaggedCount
+     */
+    @Test
+    @DisplayName("Archived results are moved out of result and read back through getResultForDetail")
+    void testArchiveRoundTrip() {
+        Result closed = createResult(closedTest);
+        Result active = createResult(activeTest);
+        entityManager.clear();
+
+        resultArchiveService.archiveClosedSemesters();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertTrue(resultRepository.findById(closed.getId()).isEmpty());
+        assertTrue(resultRepository.findById(active.getId()).isPresent());
+        ResultArchive archive = resultArchiveRepository.findById(closed.getId()).orElseThrow();
+        assertFalse(archive.isNew());
+        assertEquals(closedTest.getId(), archive.getSemesterTestId());
+
+        Result restored = semesterTestService.getResultForDetail(closed.getId());
+        assertEquals(closed.getId(), restored.getId());
+        assertEquals(studentId, restored.getStudentId());
+        assertEquals(closedTest.getId(), restored.getSemesterTest().getId());
+        assertEquals(7.5f, restored.getScore());
+        assertEquals(1234L, restored.getShuffleSeed());
+        assertEquals(2, restored.getAnsweredCount());
+        assertEquals(1, restored.getFlaggedCount());
+        assertEquals(closed.getStartDateTime().withNano(0), restored.getStartDateTime().withNano(0));
+        assertEquals(closed.getStudentAnswers(), restored.getStudentAnswers());
+        assertEquals(closed.getTrueAnswers(), restored.getTrueAnswers());
+        assertEquals(closed.getDetailTest(), restored.getDetailTest());
+    }
+
+    /*
+     * 2. Result đã lưu trữ của bài kiểm tra đã bị xóa trả 404
+     * - Given: Result đã lưu trữ, sau đó SemesterTest của nó bị xóa
+     * - When: Xem chi tiết Result
+     * - Then: 404 Not Found
+     */
+    @Test
+    @DisplayName("Archived result of a deleted semester test returns 404")
+    void testArchivedResultOfDeletedTestIsNotFound() {
+        Result closed = createResult(closedTest);
+        entityManager.clear();
+        resultArchiveService.archiveClosedSemesters();
+        semesterTestRepository.deleteById(closedTest.getId());
+        entityManager.flush();
+        entityManager.clear();
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> semesterTestService.getResultForDetail(closed.getId()));
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+    }
+
+    private SemesterTest createSemesterTest(LocalDateTime semesterStart, LocalDateTime semesterEnd) {
+        Semester semester = new Semester();
+        semester.setName("Semester");
+        semester.setStartDate(semesterStart);
+        semester.setEndDate(semesterEnd);
+        semester.setCreatedBy(adminId);
+        semester = semesterRepository.save(semester);
+
+        com.example.learnservice.model.Test test = new com.example.learnservice.model.Test();
+        test.setName("Final Test");
+        test.setVisible(true);
+        test.setCreatedBy(adminId);
+        test = testRepository.save(test);
+
+        SemesterTest semesterTest = new SemesterTest();
+        semesterTest.setName("Final Exam");
+        semesterTest.setSemester(semester);
+        semesterTest.setTest(test);
+        semesterTest.setType(TestType.EXAM);
+        semesterTest.setMinutes(60);
+        semesterTest.setStartDate(semesterStart.plusDays(1));
+        semesterTest.setEndDate(semesterStart.plusDays(2));
+        semesterTest.setOpen(false);
+        semesterTest.setCreatedBy(adminId);
+        return semesterTestRepository.save(semesterTest);
+    }
+
+    // Result cũ (không có exam_paper) đã nộp, JSONB nằm trên chính Result
+    private Result createResult(SemesterTest semesterTest) {
+        ObjectNode detailTest = objectMapper.createObjectNode();
+        detailTest.putArray("questions").addObject().put("text", "What is 2 + 2?");
+        ObjectNode trueAnswers = objectMapper.createObjectNode();
+        trueAnswers.putArray("0").add(1);
+        ObjectNode studentAnswers = objectMapper.createObjectNode();
+        ObjectNode answer = studentAnswers.putObject("0");
+        answer.putArray("selectedAnswers").add(1);
+        answer.put("flagged", true);
+
+        Result result = new Result();
+        result.setSemesterTest(semesterTest);
+        result.setStudentId(studentId);
+        result.setDetailTest(detailTest);
+        result.setTrueAnswers(trueAnswers);
+        result.setStudentAnswers(studentAnswers);
+        result.setShuffleSeed(1234L);
+        result.setStartDateTime(semesterTest.getStartDate().plusMinutes(5));
+        result.setSubmitDateTime(semesterTest.getStartDate().plusMinutes(50));
+        result.setScore(7.5f);
+        result = resultRepository.saveAndFlush(result);
+        // Bộ đếm chỉ được ghi bằng câu UPDATE student_answers (không insertable),
+        // test phải clear persistence context để job lưu trữ đọc lại từ DB
+        entityManager.createNativeQuery("UPDATE result SET answered_count = 2, flagged_count = 1 WHERE id = :id")
+                .setParameter("id", result.getId())
+                .executeUpdate();
+        return result;
+    }
+}
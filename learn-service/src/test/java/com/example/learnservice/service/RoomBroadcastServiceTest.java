@@ -0,0 +1,146 @@
+package com.example.learnservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.example.learnservice.controller.WebSocketController.RoomEvent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RoomBroadcastServiceTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Nhiều thay đổi trong 1 cửa sổ được gửi bằng 1 delta, mỗi user giữ thay đổi cuối
+     * 2. Không có thay đổi thì không gửi, mỗi phòng có delta riêng
+     * 3. Gửi lỗi không chặn các lần gửi sau
+     * 4. Nhiều thread cùng ghi + flush: mỗi user có trong đúng 1 delta
+     */
+
+    private static final Long ROOM = 1L;
+
+    private RoomBackend roomBackend;
+    private SimpleMeterRegistry meterRegistry;
+    private RoomBroadcastService roomBroadcastService;
+
+    @BeforeEach
+    void setUp() {
+        roomBackend = mock(RoomBackend.class);
+        meterRegistry = new SimpleMeterRegistry();
+        roomBroadcastService = new RoomBroadcastService(roomBackend, meterRegistry);
+    }
+
+    /*
+     * 1. Nhiều thay đổi trong 1 cửa sổ được gửi bằng 1 delta, mỗi user giữ thay đổi cuối
+     */
+    @Test
+    void testChangesInWindowAreCoalesced() {
+        roomBroadcastService.changed(ROOM, 10L, RoomEvent.JOINED);
+        roomBroadcastService.changed(ROOM, 11L, RoomEvent.JOINED);
+        roomBroadcastService.changed(ROOM, 10L, RoomEvent.STATUS_CHANGED);
+        roomBroadcastService.changed(ROOM, 10L, RoomEvent.LEFT);
+
+        roomBroadcastService.flushDirty();
+
+        Map<Long, RoomEvent> batch = captureBatches(ROOM, 1).get(0);
+        assertEquals(List.of(10L, 11L), new ArrayList<>(batch.keySet()));
+        assertEquals(RoomEvent.LEFT, batch.get(10L));
+        assertEquals(RoomEvent.JOINED, batch.get(11L));
+        assertEquals(4, meterRegistry.get("learn.exam.room.events").counter().count());
+        assertEquals(1, meterRegistry.get("learn.exam.room.broadcasts").counter().count());
+    }
+
+    /*
+     * 2. Không có thay đổi thì không gửi, mỗi phòng có delta riêng
+     */
+    @Test
+    void testOnlyDirtyRoomsArePublished() {
+        roomBroadcastService.flushDirty();
+        verify(roomBackend, never()).publishChanges(anyLong(), anyMap());
+
+        roomBroadcastService.changed(ROOM, 10L, RoomEvent.JOINED);
+        roomBroadcastService.changed(2L, 20L, RoomEvent.JOINED);
+        roomBroadcastService.flushDirty();
+        roomBroadcastService.flushDirty();
+
+        assertEquals(Map.of(10L, RoomEvent.JOINED), captureBatches(ROOM, 1).get(0));
+        assertEquals(Map.of(20L, RoomEvent.JOINED), captureBatches(2L, 1).get(0));
+    }
+
+    /*
+     * 3. Gửi lỗi không chặn các lần gửi sau
+     */
+    @Test
+    void testFailedPublishDoesNotStopLaterBroadcasts() {
+        doThrow(new IllegalStateException("connection lost")).doNothing()
+                .when(roomBackend).publishChanges(eq(ROOM), anyMap());
+
+        roomBroadcastService.changed(ROOM, 10L, RoomEvent.JOINED);
+        roomBroadcastService.flushDirty();
+        roomBroadcastService.changed(ROOM, 11L, RoomEvent.JOINED);
+        roomBroadcastService.flushDirty();
+
+        List<Map<Long, RoomEvent>> batches = captureBatches(ROOM, 2);
+        assertEquals(Map.of(11L, RoomEvent.JOINED), batches.get(1));
+        assertEquals(1, meterRegistry.get("learn.exam.room.broadcasts").counter().count());
+    }
+
+    /*
+     * 4. Nhiều thread cùng ghi + flush: mỗi user có trong đúng 1 delta
+     */
+    @Test
+    void testConcurrentChangesAndFlush() throws Exception {
+        int threads = 8;
+        int usersPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            long offset = (long) t * usersPerThread;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < usersPerThread; i++) {
+                    roomBroadcastService.changed(ROOM, offset + i, RoomEvent.JOINED);
+                    if (i % 10 == 0) {
+                        roomBroadcastService.flushDirty();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        roomBroadcastService.flushDirty();
+
+        List<Long> published = new ArrayList<>();
+        ArgumentCaptor<Map<Long, RoomEvent>> captor = batchCaptor();
+        verify(roomBackend, atLeastOnce()).publishChanges(eq(ROOM), captor.capture());
+        captor.getAllValues().forEach(batch -> published.addAll(batch.keySet()));
+        assertEquals(threads * usersPerThread, published.size());
+        assertEquals(threads * usersPerThread, published.stream().distinct().count());
+    }
+
+    private List<Map<Long, RoomEvent>> captureBatches(Long semesterTestId, int times) {
+        ArgumentCaptor<Map<Long, RoomEvent>> captor = batchCaptor();
+        verify(roomBackend, times(times)).publishChanges(eq(semesterTestId), captor.capture());
+        return captor.getAllValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Map<Long, RoomEvent>> batchCaptor() {
+        return ArgumentCaptor.forClass(Map.class);
+    }
+}
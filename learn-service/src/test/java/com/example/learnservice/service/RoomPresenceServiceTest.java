@@ -0,0 +1,142 @@
+package com.example.learnservice.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.learnservice.controller.WebSocketController.TestStatus;
+import com.example.learnservice.controller.WebSocketController.UserStatus;
+import com.example.learnservice.util.schedule.HashedTimingWheel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RoomPresenceServiceTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. User ngừng heartbeat bị xóa khỏi phòng sau timeout
+     * 2. Heartbeat giữ user trong phòng, heartbeat của user không được theo dõi trả về false
+     * 3. Heartbeat tới đúng lúc advance trả user về: user được đặt lại timer, không bị xóa
+     * 4. User đã join lại qua session khác: session cũ rời / bị reap không xóa được user
+     */
+
+    private static final Long ROOM = 1L;
+    private static final long TIMEOUT_MS = 200;
+
+    private InMemoryRoomBackend roomBackend;
+    private RoomRegistry roomRegistry;
+    private SimpleMeterRegistry meterRegistry;
+    private RoomPresenceService roomPresenceService;
+
+    @BeforeEach
+    void setUp() {
+        roomBackend = new InMemoryRoomBackend(mock(SimpMessagingTemplate.class), event -> {
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        roomRegistry = new RoomRegistry(roomBackend, new RoomBroadcastService(roomBackend, meterRegistry));
+        roomPresenceService = new RoomPresenceService(roomRegistry, meterRegistry);
+        ReflectionTestUtils.setField(roomPresenceService, "enabled", true);
+        ReflectionTestUtils.setField(roomPresenceService, "timeoutMillis", TIMEOUT_MS);
+        ReflectionTestUtils.setField(roomPresenceService, "tickMillis", 10L);
+        ReflectionTestUtils.setField(roomPresenceService, "wheelSize", 64);
+        roomPresenceService.init();
+    }
+
+    /*
+     * 1. User ngừng heartbeat bị xóa khỏi phòng sau timeout
+     */
+    @Test
+    void testSilentUserIsReaped() throws Exception {
+        join(1L, "s-1");
+        join(2L, "s-2");
+
+        roomPresenceService.reap();
+        assertEquals(2, roomRegistry.snapshot(ROOM).totalUsers());
+
+        Thread.sleep(TIMEOUT_MS * 2);
+        roomPresenceService.reap();
+
+        assertEquals(0, roomRegistry.snapshot(ROOM).totalUsers());
+        assertEquals(2, meterRegistry.get("learn.exam.room.reaped").counter().count());
+        assertEquals(0.0, meterRegistry.get("learn.exam.room.presence").gauge().value());
+        assertFalse(roomPresenceService.heartbeat(ROOM, 1L));
+    }
+
+    /*
+     * 2. Heartbeat giữ user trong phòng, heartbeat của user không được theo dõi trả về false
+     */
+    @Test
+    void testHeartbeatKeepsUser() throws Exception {
+        join(1L, "s-1");
+        assertFalse(roomPresenceService.heartbeat(ROOM, 9L));
+
+        for (int i = 0; i < 8; i++) {
+            Thread.sleep(TIMEOUT_MS / 4);
+            assertTrue(roomPresenceService.heartbeat(ROOM, 1L));
+            roomPresenceService.reap();
+        }
+
+        assertEquals(1, roomRegistry.snapshot(ROOM).totalUsers());
+        assertEquals(0, meterRegistry.get("learn.exam.room.reaped").counter().count());
+    }
+
+    /*
+     * 3. Heartbeat tới đúng lúc advance trả user về: user được đặt lại timer, không bị xóa
+     */
+    @Test
+    void testHeartbeatDuringAdvanceReschedules() throws Exception {
+        // Heartbeat chen vào giữa lúc wheel trả key hết hạn và lúc reap đọc last-seen:
+        // last-seen đã mới nhưng timer của heartbeat chưa được đặt (cancel), chỉ reap đặt lại
+        HashedTimingWheel<Object> wheel = new HashedTimingWheel<>(10L, 64, System.currentTimeMillis()) {
+            @Override
+            public synchronized List<Object> advance(long nowMillis) {
+                List<Object> expired = super.advance(nowMillis);
+                if (!expired.isEmpty()) {
+                    roomPresenceService.heartbeat(ROOM, 1L);
+                    cancel(expired.get(0));
+                }
+                return expired;
+            }
+        };
+        ReflectionTestUtils.setField(roomPresenceService, "wheel", wheel);
+        join(1L, "s-1");
+
+        Thread.sleep(TIMEOUT_MS * 2);
+        roomPresenceService.reap();
+
+        assertEquals(1, roomRegistry.snapshot(ROOM).totalUsers());
+        assertEquals(1, wheel.size(), "User must be scheduled again after the late heartbeat");
+        assertTrue(roomPresenceService.heartbeat(ROOM, 1L));
+    }
+
+    /*
+     * 4. User đã join lại qua session khác: session cũ rời / bị reap không xóa được user
+     */
+    @Test
+    void testStaleSessionDoesNotRemoveRejoinedUser() throws Exception {
+        join(1L, "old");
+        // Join lại qua node khác: phòng (chung) đổi session giữ user, node này vẫn theo dõi session cũ
+        roomRegistry.join(ROOM, new UserStatus(1L, "Student 1", "000000000001", TestStatus.TESTING), "other");
+
+        roomPresenceService.untrack(ROOM, 1L, "other");
+        Thread.sleep(TIMEOUT_MS * 2);
+        roomPresenceService.reap();
+
+        assertEquals(1, roomRegistry.snapshot(ROOM).totalUsers());
+        assertEquals(0, meterRegistry.get("learn.exam.room.reaped").counter().count());
+        assertNull(roomRegistry.leave(ROOM, 1L, "old"));
+        assertEquals(1L, roomRegistry.leave(ROOM, 1L, "other").userId());
+    }
+
+    private void join(Long userId, String sessionId) {
+        roomRegistry.join(ROOM, new UserStatus(userId, "Student " + userId, String.format("%012d", userId),
+                TestStatus.WAITING), sessionId);
+        roomPresenceService.track(ROOM, userId, sessionId);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.learnservice.util.export;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CsvRowWriterTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Ghi BOM, dấu phân cách và xuống dòng CRLF
+     * 2. Escape dấu phẩy, nháy kép, xuống dòng và chặn công thức
+     */
+
+    /*
+     * 1. Ghi BOM, dấu phân cách và xuống dòng CRLF
+     */
+    @Test
+    void testWritesRows() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CsvRowWriter writer = new CsvRowWriter(out)) {
+            writer.writeRow(List.of("resultId", "score"));
+            writer.writeRow(Arrays.asList(1L, null, 7.5f, LocalDateTime.of(2025, 1, 2, 3, 4, 5)));
+        }
+
+        assertEquals("\uFEFFresultId,score\r\n1,,7.5,2025-01-02 03:04:05\r\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    /*
+     * 2. Escape dấu phẩy, nháy kép, xuống dòng và chặn công thức
+     */
+    @Test
+    void testEscapesValues() {
+        assertEquals("\"Nguyễn, Văn A\"", CsvRowWriter.format("Nguyễn, Văn A"));
+        assertEquals("\"a \"\"b\"\"\"", CsvRowWriter.format("a \"b\""));
+        assertEquals("\"x\ny\"", CsvRowWriter.format("x\ny"));
+        assertEquals("'=SUM(A1)", CsvRowWriter.format("=SUM(A1)"));
+        assertEquals("-0.25", CsvRowWriter.format(-0.25f));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.learnservice.util.schedule;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class HashedTimingWheelTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Key hết hạn đúng tick, chưa tới hạn thì không trả về
+     * 2. Deadline xa hơn 1 vòng wheel vẫn hết hạn đúng lúc
+     * 3. Schedule lại thay deadline cũ, cancel thì không hết hạn
+     * 4. Deadline đã qua hết hạn ở lần advance kế tiếp
+     * 5. Bỏ lỡ nhiều vòng vẫn trả về đủ key
+     */
+
+    private static final long START = 1_000_000L;
+
+    private HashedTimingWheel<Long> wheel;
+
+    @BeforeEach
+    void setUp() {
+        // tick 100ms, 8 bucket => 1 vòng = 800ms
+        wheel = new HashedTimingWheel<>(100, 8, START);
+    }
+
+    /*
+     * 1. Key hết hạn đúng tick, chưa tới hạn thì không trả về
+     */
+    @Test
+    void testExpiresOnDeadline() {
+        wheel.schedule(1L, START + 300);
+        wheel.schedule(2L, START + 500);
+
+        assertTrue(wheel.advance(START + 200).isEmpty());
+        assertEquals(List.of(1L), wheel.advance(START + 300));
+        assertEquals(List.of(2L), wheel.advance(START + 550));
+        assertEquals(0, wheel.size());
+    }
+
+    /*
+     * 2. Deadline xa hơn 1 vòng wheel vẫn hết hạn đúng lúc
+     */
+    @Test
+    void testDeadlineBeyondOneRound() {
+        wheel.schedule(1L, START + 2_000);
+
+        for (long now = START + 100; now < START + 2_000; now += 100) {
+            assertTrue(wheel.advance(now).isEmpty(), "expired too early at " + now);
+        }
+        assertEquals(List.of(1L), wheel.advance(START + 2_000));
+    }
+
+    /*
+     * 3. Schedule lại thay deadline cũ, cancel thì không hết hạn
+     */
+    @Test
+    void testRescheduleAndCancel() {
+        wheel.schedule(1L, START + 300);
+        wheel.schedule(1L, START + 600);
+        wheel.schedule(2L, START + 300);
+        assertTrue(wheel.cancel(2L));
+
+        assertTrue(wheel.advance(START + 400).isEmpty());
+        assertEquals(List.of(1L), wheel.advance(START + 600));
+        assertFalse(wheel.contains(1L));
+    }
+
+    /*
+     * 4. Deadline đã qua hết hạn ở lần advance kế tiếp
+     */
+    @Test
+    void testPastDeadline() {
+        wheel.advance(START + 500);
+        wheel.schedule(1L, START);
+
+        assertEquals(List.of(1L), wheel.advance(START + 600));
+    }
+
+    /*
+     * 5. Bỏ lỡ nhiều vòng vẫn trả về đủ key
+     */
+    @Test
+    void testCatchUpAfterLongPause() {
+        for (long i = 1; i <= 20; i++) {
+            wheel.schedule(i, START + i * 150);
+        }
+
+        List<Long> expired = wheel.advance(START + 10_000);
+        assertEquals(20, expired.size());
+        assertEquals(0, wheel.size());
+    }
+}
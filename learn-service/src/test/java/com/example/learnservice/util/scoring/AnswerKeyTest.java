@@ -0,0 +1,121 @@
+package com.example.learnservice.util.scoring;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.learnservice.enums.ScoringPolicy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class AnswerKeyTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. ALL_OR_NOTHING cho điểm giống cách chấm cũ (isSameList)
+     * 2. Chọn trùng hoặc index không hợp lệ không được tính là đúng
+     * 3. PARTIAL_CREDIT tính theo tỉ lệ đáp án đúng, trừ đáp án sai
+     * 4. NEGATIVE_MARKING trừ điểm câu sai, bỏ trống không bị trừ, tổng không âm
+     * 5. Câu thiếu trong studentAnswers coi như bỏ trống
+     */
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private AnswerKey answerKey;
+
+    /*
+     * Đề 3 câu: câu 0 đáp án [1], câu 1 đáp án [0, 2], câu 2 đáp án [3]
+     */
+    @BeforeEach
+    void setUp() {
+        ObjectNode trueAnswers = objectMapper.createObjectNode();
+        trueAnswers.set("0", array(1));
+        trueAnswers.set("1", array(0, 2));
+        trueAnswers.set("2", array(3));
+        answerKey = AnswerKey.compile(trueAnswers);
+    }
+
+    /*
+     * 1. ALL_OR_NOTHING cho điểm giống cách chấm cũ (isSameList)
+     * - Given: câu 0 đúng, câu 1 đúng nhưng khác thứ tự, câu 2 sai
+     * - Then: 2 điểm
+     */
+    @Test
+    void testAllOrNothing() {
+        ObjectNode studentAnswers = studentAnswers(array(1), array(2, 0), array(2));
+
+        assertEquals(3, answerKey.questionCount());
+        assertEquals(2f, answerKey.score(studentAnswers, ScoringPolicy.ALL_OR_NOTHING, 0.25f));
+        assertEquals(2f, answerKey.score(studentAnswers, null, 0.25f));
+    }
+
+    /*
+     * 2. Chọn trùng hoặc index không hợp lệ không được tính là đúng
+     */
+    @Test
+    void testDuplicateAndInvalidSelections() {
+        ObjectNode studentAnswers = studentAnswers(array(1, 1), array(0, 2, 99), array(3));
+
+        assertEquals(1f, answerKey.score(studentAnswers, ScoringPolicy.ALL_OR_NOTHING, 0.25f));
+        assertEquals(1f, answerKey.score(studentAnswers, ScoringPolicy.PARTIAL_CREDIT, 0.25f));
+    }
+
+    /*
+     * 3. PARTIAL_CREDIT tính theo tỉ lệ đáp án đúng, trừ đáp án sai
+     * - Given: câu 0 đúng (1), câu 1 chọn [0] (0.5), câu 2 chọn [0, 3] (1 - 1 = 0)
+     */
+    @Test
+    void testPartialCredit() {
+        ObjectNode studentAnswers = studentAnswers(array(1), array(0), array(0, 3));
+
+        assertEquals(1.5f, answerKey.score(studentAnswers, ScoringPolicy.PARTIAL_CREDIT, 0.25f));
+    }
+
+    /*
+     * 4. NEGATIVE_MARKING trừ điểm câu sai, bỏ trống không bị trừ, tổng không âm
+     */
+    @Test
+    void testNegativeMarking() {
+        ObjectNode studentAnswers = studentAnswers(array(1), array(0), array());
+        assertEquals(0.75f, answerKey.score(studentAnswers, ScoringPolicy.NEGATIVE_MARKING, 0.25f));
+
+        ObjectNode allWrong = studentAnswers(array(0), array(1), array(0));
+        assertEquals(0f, answerKey.score(allWrong, ScoringPolicy.NEGATIVE_MARKING, 0.25f));
+    }
+
+    /*
+     * 5. Câu thiếu trong studentAnswers coi như bỏ trống
+     */
+    @Test
+    void testMissingQuestion() {
+        ObjectNode studentAnswers = objectMapper.createObjectNode();
+        ObjectNode answer0 = objectMapper.createObjectNode();
+        answer0.set("selectedAnswers", array(1));
+        studentAnswers.set("0", answer0);
+
+        long[] selections = answerKey.encodeSelections(studentAnswers);
+        assertArrayEquals(new long[] { 1L << 1, 0L, 0L }, selections);
+        assertEquals(1f, answerKey.score(selections, ScoringPolicy.ALL_OR_NOTHING, 0.25f));
+    }
+
+    private ArrayNode array(int... values) {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (int value : values) {
+            array.add(value);
+        }
+        return array;
+    }
+
+    private ObjectNode studentAnswers(ArrayNode... selections) {
+        ObjectNode studentAnswers = objectMapper.createObjectNode();
+        for (int i = 0; i < selections.length; i++) {
+            ObjectNode answer = objectMapper.createObjectNode();
+            answer.set("selectedAnswers", selections[i]);
+            answer.put("flagged", false);
+            studentAnswers.set(String.valueOf(i), answer);
+        }
+        return studentAnswers;
+    }
+}
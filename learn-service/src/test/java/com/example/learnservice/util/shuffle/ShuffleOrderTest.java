@@ -0,0 +1,99 @@
+package com.example.learnservice.util.shuffle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ShuffleOrderTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Thứ tự câu là 1 hoán vị, cùng (resultId, seed) luôn ra cùng thứ tự
+     * 2. resultId khác nhau cho thứ tự khác nhau
+     * 3. Đổi index câu hiển thị <-> gốc khớp nhau, ngoài khoảng thì giữ nguyên
+     * 4. Đổi đáp án hiển thị <-> gốc khớp nhau, index không hợp lệ bị từ chối
+     * 5. Tắt xáo thì giữ nguyên thứ tự đề
+     */
+
+    private static final int QUESTIONS = 40;
+
+    /*
+     * 1. Thứ tự câu là 1 hoán vị, cùng (resultId, seed) luôn ra cùng thứ tự
+     */
+    @Test
+    void testDeterministicPermutation() {
+        ShuffleOrder first = ShuffleOrder.of(12L, 987654321L, QUESTIONS, true, true);
+        ShuffleOrder second = ShuffleOrder.of(12L, 987654321L, QUESTIONS, true, true);
+
+        boolean[] seen = new boolean[QUESTIONS];
+        for (int i = 0; i < QUESTIONS; i++) {
+            int canonical = first.toCanonicalQuestion(i);
+            assertFalse(seen[canonical]);
+            seen[canonical] = true;
+            assertEquals(canonical, second.toCanonicalQuestion(i));
+        }
+        assertArrayEquals(first.answerOrder(3, 5), second.answerOrder(3, 5));
+    }
+
+    /*
+     * 2. resultId khác nhau cho thứ tự khác nhau
+     */
+    @Test
+    void testDifferentResultsGetDifferentOrders() {
+        int[] a = order(ShuffleOrder.of(1L, 42L, QUESTIONS, true, false));
+        int[] b = order(ShuffleOrder.of(2L, 42L, QUESTIONS, true, false));
+
+        assertFalse(Arrays.equals(a, b));
+    }
+
+    /*
+     * 3. Đổi index câu hiển thị <-> gốc khớp nhau, ngoài khoảng thì giữ nguyên
+     */
+    @Test
+    void testQuestionRoundTrip() {
+        ShuffleOrder order = ShuffleOrder.of(7L, -5L, QUESTIONS, true, false);
+
+        for (int i = 0; i < QUESTIONS; i++) {
+            assertEquals(i, order.toDisplayQuestion(order.toCanonicalQuestion(i)));
+        }
+        assertEquals(QUESTIONS, order.toCanonicalQuestion(QUESTIONS));
+        assertEquals(-1, order.toCanonicalQuestion(-1));
+    }
+
+    /*
+     * 4. Đổi đáp án hiển thị <-> gốc khớp nhau, index không hợp lệ bị từ chối
+     */
+    @Test
+    void testAnswerRoundTrip() {
+        ShuffleOrder order = ShuffleOrder.of(7L, 99L, QUESTIONS, false, true);
+
+        List<Integer> canonical = order.toCanonicalAnswers(4, 6, List.of(0, 2, 5));
+        assertEquals(List.of(0, 2, 5), order.toDisplayAnswers(4, 6, canonical));
+        assertEquals(List.of(), order.toDisplayAnswers(4, 6, List.of(6)));
+        assertThrows(IllegalArgumentException.class, () -> order.toCanonicalAnswers(4, 6, List.of(6)));
+    }
+
+    /*
+     * 5. Tắt xáo thì giữ nguyên thứ tự đề
+     */
+    @Test
+    void testDisabled() {
+        ShuffleOrder order = ShuffleOrder.of(7L, 99L, QUESTIONS, false, false);
+
+        assertFalse(order.shufflesQuestions());
+        assertEquals(5, order.toCanonicalQuestion(5));
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, order.answerOrder(5, 4));
+        assertEquals(List.of(3, 1), order.toCanonicalAnswers(5, 4, List.of(3, 1)));
+    }
+
+    private static int[] order(ShuffleOrder order) {
+        int[] canonical = new int[QUESTIONS];
+        for (int i = 0; i < QUESTIONS; i++) {
+            canonical[i] = order.toCanonicalQuestion(i);
+        }
+        return canonical;
+    }
+}
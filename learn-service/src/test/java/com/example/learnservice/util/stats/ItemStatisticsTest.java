@@ -0,0 +1,63 @@
+package com.example.learnservice.util.stats;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ItemStatisticsTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. Point-biserial từ các tổng bằng tương quan Pearson tính trực tiếp
+     * 2. Không xác định khi mọi bài cùng đúng hoặc chưa có bài
+     */
+
+    /*
+     * 1. Point-biserial từ các tổng bằng tương quan Pearson tính trực tiếp
+     */
+    @Test
+    void testPointBiserialMatchesPearson() {
+        int[] item = { 1, 1, 0, 1, 0, 0, 1, 1 };
+        double[] total = { 9, 8, 3, 7, 5, 2, 6, 9 };
+
+        long correct = 0;
+        double sumTotal = 0, sumTotalSq = 0, sumTotalCorrect = 0;
+        for (int i = 0; i < item.length; i++) {
+            correct += item[i];
+            sumTotal += total[i];
+            sumTotalSq += total[i] * total[i];
+            sumTotalCorrect += item[i] * total[i];
+        }
+
+        assertEquals(pearson(item, total),
+                ItemStatistics.pointBiserial(item.length, correct, sumTotal, sumTotalSq, sumTotalCorrect), 1e-9);
+        assertEquals(5.0 / 8, ItemStatistics.pValue(item.length, correct), 1e-9);
+    }
+
+    /*
+     * 2. Không xác định khi mọi bài cùng đúng hoặc chưa có bài
+     */
+    @Test
+    void testUndefined() {
+        assertNull(ItemStatistics.pointBiserial(3, 3, 15, 77, 15));
+        assertNull(ItemStatistics.pointBiserial(0, 0, 0, 0, 0));
+        assertNull(ItemStatistics.pValue(0, 0));
+    }
+
+    private static double pearson(int[] x, double[] y) {
+        double meanX = 0, meanY = 0;
+        for (int i = 0; i < x.length; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= x.length;
+        meanY /= y.length;
+        double cov = 0, varX = 0, varY = 0;
+        for (int i = 0; i < x.length; i++) {
+            cov += (x[i] - meanX) * (y[i] - meanY);
+            varX += (x[i] - meanX) * (x[i] - meanX);
+            varY += (y[i] - meanY) * (y[i] - meanY);
+        }
+        return cov / Math.sqrt(varX * varY);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.learnservice.util.stats;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ScoreStatisticsTest {
+
+    /*
+     * Danh sách các test case:
+     * 1. count/mean/variance/min/max đúng như tính trực tiếp
+     * 2. Histogram gom điểm theo bucket [from, to)
+     * 3. Phân vị P² gần với phân vị chính xác
+     * 4. Chưa có dữ liệu thì trả về NaN
+     */
+
+    /*
+     * 1. count/mean/variance/min/max đúng như tính trực tiếp
+     */
+    @Test
+    void testMoments() {
+        ScoreStatistics statistics = new ScoreStatistics(1);
+        for (double score : new double[] { 2, 4, 4, 4, 5, 5, 7, 9 }) {
+            statistics.add(score);
+        }
+
+        assertEquals(8, statistics.getCount());
+        assertEquals(5.0, statistics.getMean(), 1e-9);
+        assertEquals(4.0, statistics.getVariance(), 1e-9);
+        assertEquals(2.0, statistics.getStdDev(), 1e-9);
+        assertEquals(2.0, statistics.getMin());
+        assertEquals(9.0, statistics.getMax());
+    }
+
+    /*
+     * 2. Histogram gom điểm theo bucket [from, to)
+     */
+    @Test
+    void testHistogram() {
+        ScoreStatistics statistics = new ScoreStatistics(2.5);
+        for (double score : new double[] { 0, 2.4, 2.5, 7.5, -0.25 }) {
+            statistics.add(score);
+        }
+
+        assertEquals(List.of(
+                new ScoreStatistics.Bucket(-2.5, 0, 1),
+                new ScoreStatistics.Bucket(0, 2.5, 2),
+                new ScoreStatistics.Bucket(2.5, 5, 1),
+                new ScoreStatistics.Bucket(7.5, 10, 1)), statistics.getHistogram());
+    }
+
+    /*
+     * 3. Phân vị P² gần với phân vị chính xác
+     */
+    @Test
+    void testQuantileEstimate() {
+        Random random = new Random(7);
+        P2Quantile median = new P2Quantile(0.5);
+        P2Quantile p90 = new P2Quantile(0.9);
+        double[] values = new double[20_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 10 + 50;
+            median.add(values[i]);
+            p90.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values[10_000], median.getValue(), 0.5);
+        assertEquals(values[18_000], p90.getValue(), 0.5);
+    }
+
+    /*
+     * 4. Chưa có dữ liệu thì trả về NaN
+     */
+    @Test
+    void testEmpty() {
+        ScoreStatistics statistics = new ScoreStatistics(1);
+
+        assertEquals(0, statistics.getCount());
+        assertTrue(Double.isNaN(statistics.getMean()));
+        assertTrue(Double.isNaN(statistics.getQuantiles().get(0.5)));
+        assertTrue(statistics.getHistogram().isEmpty());
+    }
+}